@@ -0,0 +1,28 @@
+package com.kalle.syncedhealthbar.benchmarks;
+
+/**
+ * A class to get the default values the fakes return for methods they do not implement.
+ */
+final class Defaults {
+
+    private Defaults() {
+    }
+
+    /**
+     * A method to get the default value of a type.
+     * @param type return type of a method
+     * @return 0 or false for primitive types, null otherwise
+     */
+    static Object of(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0F;
+        return 0D;
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.kalle.syncedhealthbar.benchmarks;
+
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+
+/**
+ * A class that stands in for a player of the server. Only the methods the plugin uses are
+ * implemented (UUID, name, health, dead and online state), every other method returns a
+ * default value. Every call allocates the array of its arguments, which shows up as a small
+ * constant in the allocation profile.
+ */
+public class FakePlayer implements InvocationHandler {
+
+    private UUID uuid;
+    private String name;
+    private double health = 20;
+    private boolean dead = false;
+    private boolean online = true;
+
+    /**
+     * A method to create a fake player.
+     * @param uuid UUID of the player
+     * @param name name of the player
+     * @return player that is backed by a fake player
+     */
+    public static Player create(UUID uuid, String name) {
+        FakePlayer handler = new FakePlayer();
+        handler.uuid = uuid;
+        handler.name = name;
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[] {Player.class}, handler);
+    }
+
+    /**
+     * A method to get the fake player behind a player.
+     * @param player player created by create(uuid, name)
+     * @return fake player of the player
+     */
+    public static FakePlayer of(Player player) {
+        return (FakePlayer) Proxy.getInvocationHandler(player);
+    }
+
+    /**
+     * A method to set if the player is online.
+     * @param online true if the player is online
+     */
+    public void setOnline(boolean online) {
+        this.online = online;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getUniqueId": return uuid;
+            case "getName": case "getDisplayName": return name;
+            case "getHealth": return health;
+            case "setHealth": health = (Double) args[0]; return null;
+            case "isDead": return dead;
+            case "isOnline": return online;
+            case "hashCode": return System.identityHashCode(proxy);
+            case "equals": return proxy == args[0];
+            case "toString": return "FakePlayer{" + name + "}";
+            default: return Defaults.of(method.getReturnType());
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.kalle.syncedhealthbar.benchmarks;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A class that stands in for the server, so the plugin can run inside a benchmark. Scheduled tasks
+ * are dropped (the benchmarks call the code of the tasks directly), messages to the console are
+ * dropped and the online players are the fake players set by the benchmark.
+ */
+public final class FakeServer {
+
+    private static final Logger LOGGER = Logger.getLogger("FakeServer");
+    private static final ArrayList<Player> ONLINE = new ArrayList<Player>(); //online players of the server
+    private static Server server;
+
+    static {
+        LOGGER.setLevel(Level.WARNING);
+    }
+
+    private FakeServer() {
+    }
+
+    /**
+     * The plugin the benchmarks load the health bars with. It is created by the constructor Bukkit
+     * provides for running a plugin without a server.
+     */
+    private static final class BenchmarkPlugin extends JavaPlugin {
+
+        private BenchmarkPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+            super(loader, description, dataFolder, file);
+        }
+
+    }
+
+    /**
+     * A method to get the server and register it as the server of Bukkit on the first call.
+     * @return fake server
+     */
+    public static synchronized Server get() {
+        if (server == null) {
+            ConsoleCommandSender console = fake(ConsoleCommandSender.class);
+            BukkitScheduler scheduler = fake(BukkitScheduler.class);
+            PluginManager pluginManager = fake(PluginManager.class);
+            server = (Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[] {Server.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getOnlinePlayers": return Collections.unmodifiableList(ONLINE);
+                    case "getLogger": return LOGGER;
+                    case "getConsoleSender": return console;
+                    case "getScheduler": return scheduler;
+                    case "getPluginManager": return pluginManager;
+                    case "isPrimaryThread": return true;
+                    case "getName": case "getVersion": case "getBukkitVersion": return "FakeServer";
+                    case "hashCode": return System.identityHashCode(proxy);
+                    case "equals": return proxy == args[0];
+                    default: return Defaults.of(method.getReturnType());
+                }
+            });
+            Bukkit.setServer(server);
+        }
+        return server;
+    }
+
+    /**
+     * A method to set the online players of the server.
+     * @param players players that are online from now on
+     */
+    public static void setOnlinePlayers(Collection<Player> players) {
+        ONLINE.clear();
+        ONLINE.addAll(players);
+    }
+
+    /**
+     * A method to create the plugin without a server starting it.
+     * @param dataFolder folder of the config.yml of the plugin
+     * @return plugin that is not enabled yet
+     */
+    public static JavaPlugin createPlugin(File dataFolder) {
+        PluginDescriptionFile description = new PluginDescriptionFile("SyncedHealthBar", "benchmark", BenchmarkPlugin.class.getName());
+        return new BenchmarkPlugin(new JavaPluginLoader(get()), description, dataFolder, new File(dataFolder, "SyncedHealthBar.jar"));
+    }
+
+    /**
+     * A method to replace the loaded config.yml of the plugin with a config kept in memory.
+     * @param plugin plugin whose config is replaced
+     * @param config config the plugin returns from now on
+     */
+    public static void setConfig(JavaPlugin plugin, FileConfiguration config) {
+        try {
+            Field field = JavaPlugin.class.getDeclaredField("newConfig");
+            field.setAccessible(true);
+            field.set(plugin, config);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The config of the plugin can not be replaced", e);
+        }
+    }
+
+    /**
+     * A method to create an object that returns default values for all methods.
+     * @param type interface the object implements
+     * @param <T> type of the object
+     * @return fake object
+     */
+    private static <T> T fake(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                default: return Defaults.of(method.getReturnType());
+            }
+        }));
+    }
+
+}
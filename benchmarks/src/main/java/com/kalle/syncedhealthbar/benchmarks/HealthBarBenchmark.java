@@ -0,0 +1,86 @@
+package com.kalle.syncedhealthbar.benchmarks;
+
+import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.HealthPipeline;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the damage fan-out of a health bar.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HealthBarBenchmark {
+
+    /**
+     * A state that holds the pipeline which merges the hits of a tick.
+     */
+    @State(Scope.Benchmark)
+    public static class PipelineState {
+
+        public HealthPipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void setUp(PluginState state) {
+            pipeline = new HealthPipeline(TaskScheduler.get(), HealthPipeline.Policy.SUM);
+        }
+
+    }
+
+    /**
+     * One player of a health bar takes damage and the damage is dealt to all other players.
+     */
+    @Benchmark
+    public double dealDamage(PluginState state) {
+        HealthBar hb = state.nextBar();
+        hb.dealDamage(hb.getPlayers().get(0), 0.5);
+        return hb.getHealth();
+    }
+
+    /**
+     * All players of a health bar take damage in the same tick (e.g. an explosion) and every hit
+     * is dealt to the health bar on its own.
+     */
+    @Benchmark
+    public double explosionDirect(PluginState state) {
+        HealthBar hb = state.nextBar();
+        List<Player> players = hb.getPlayers();
+        for (int i = 0 ; i < players.size() ; i++) {
+            hb.dealDamage(players.get(i), 0.1);
+        }
+        return hb.getHealth();
+    }
+
+    /**
+     * All players of a health bar take damage in the same tick and the hits are merged by the
+     * pipeline into one fan-out.
+     */
+    @Benchmark
+    public double explosionCoalesced(PluginState state, PipelineState pipeline) {
+        HealthBar hb = state.nextBar();
+        List<Player> players = hb.getPlayers();
+        for (int i = 0 ; i < players.size() ; i++) {
+            pipeline.pipeline.damage(hb, players.get(i), 0.1);
+        }
+        pipeline.pipeline.apply(); //task that runs at the end of the tick
+        return hb.getHealth();
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.kalle.syncedhealthbar.benchmarks;
+
+import com.kalle.syncedhealthbar.Config;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of loading the plugin on the server start.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+    /**
+     * Loading the health bars from the already parsed config.yml (kept in memory) and adding the
+     * online players to them. Includes writing the config.yml once, as on every start.
+     */
+    @Benchmark
+    public Config load(PluginState state) throws Exception {
+        Config config = new Config(state.plugin);
+        config.saveDefaults();
+        config.attach(config.load());
+        return config;
+    }
+
+    /**
+     * Parsing the config.yml written by the last load and loading the health bars from it.
+     */
+    @Benchmark
+    public Config parseAndLoad(PluginState state) throws Exception {
+        state.plugin.reloadConfig();
+        Config config = new Config(state.plugin);
+        config.saveDefaults();
+        config.attach(config.load());
+        return config;
+    }
+
+}
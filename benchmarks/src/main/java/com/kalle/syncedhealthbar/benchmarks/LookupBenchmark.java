@@ -0,0 +1,68 @@
+package com.kalle.syncedhealthbar.benchmarks;
+
+import com.kalle.syncedhealthbar.Exceptions.PlayerNotInListException;
+import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.api.BarSnapshot;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the lookups of the health bar of a player that every event does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    /**
+     * The lookup of the listeners by the registry.
+     */
+    @Benchmark
+    public HealthBar healthBarOfPlayer(PluginState state) throws PlayerNotInListException {
+        return HealthBar.getHealthBar(state.nextPlayer());
+    }
+
+    /**
+     * The lookup of the entry of a player in the config.
+     */
+    @Benchmark
+    public MemberRecord memberOfPlayer(PluginState state) throws PlayerNotInListException {
+        return state.config.getMember(state.nextPlayer());
+    }
+
+    /**
+     * The lookup of the health bar of a player by his entry in the config (used on join).
+     */
+    @Benchmark
+    public HealthBar healthBarOfEntry(PluginState state) {
+        return state.config.getHealthBar(state.nextPlayer());
+    }
+
+    /**
+     * The lookup of the snapshot of the health bar of a player by the service for other plugins.
+     */
+    @Benchmark
+    public BarSnapshot snapshotOfPlayer(PluginState state) {
+        return state.config.getSnapshots().getBarOf(state.nextPlayer().getUniqueId());
+    }
+
+    /**
+     * The tab completion of a health bar name after two typed characters ("ba" matches every health bar).
+     */
+    @Benchmark
+    public List<String> completeHealthBar(PluginState state) {
+        return state.config.completeHealthBars("ba", 50);
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.kalle.syncedhealthbar.benchmarks;
+
+import com.kalle.syncedhealthbar.Events.PlayerJoin;
+import com.kalle.syncedhealthbar.Events.PlayerQuit;
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.Exceptions.PlayerAlreadyInListException;
+import com.kalle.syncedhealthbar.Exceptions.PlayerNotInListException;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of players joining and leaving the server and of removing offline players.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerBenchmark {
+
+    /**
+     * A state that holds the listeners of the join and quit events.
+     */
+    @State(Scope.Benchmark)
+    public static class ListenerState {
+
+        public PlayerJoin join;
+        public PlayerQuit quit;
+
+        @Setup(Level.Trial)
+        public void setUp(PluginState state) {
+            join = new PlayerJoin(state.config);
+            quit = new PlayerQuit();
+        }
+
+    }
+
+    /**
+     * A player leaves the server and joins again, so the state stays the same.
+     */
+    @Benchmark
+    public Player quitAndJoin(PluginState state, ListenerState listeners) {
+        Player player = state.nextPlayer();
+        listeners.quit.onQuit(new PlayerQuitEvent(player, null));
+        listeners.join.onJoin(new PlayerJoinEvent(player, null));
+        return player;
+    }
+
+    /**
+     * The last player of the last health bar is removed by his name (as for offline players) and
+     * added again, so the state stays the same. He is found by the index of the names.
+     */
+    @Benchmark
+    public Player removeByNameAndReAdd(PluginState state) throws CorruptedConfigException, PlayerNotInListException, PlayerAlreadyInListException {
+        int bar = state.bars - 1;
+        Player player = state.getPlayer(bar, state.membersPerBar - 1);
+        state.config.removePlayer(player.getName());
+        state.config.addPlayer(state.generator.getBarName(bar), player);
+        return player;
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.kalle.syncedhealthbar.benchmarks;
+
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * A state that holds a loaded plugin with a generated config.yml. All players of the config.yml are
+ * online. The persistence is not started, so changes are only made in memory.
+ */
+@State(Scope.Benchmark)
+public class PluginState {
+
+    @Param({"10", "100", "1000"})
+    public int bars; //count of health bars
+
+    @Param({"2", "10", "50"})
+    public int membersPerBar; //count of players of every health bar
+
+    public SyntheticConfig generator;
+    public JavaPlugin plugin;
+    public Config config;
+    public ArrayList<Player> players; //all players ordered by health bar
+    public HealthBar[] healthBars; //health bars ordered by their index
+    public Player[] shuffled; //all players in random order, so the lookups do not hit the caches in order
+
+    private File dataFolder;
+    private int nextBar = 0;
+    private int nextPlayer = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        generator = new SyntheticConfig(bars, membersPerBar, 42);
+        players = generator.createPlayers();
+        FakeServer.setOnlinePlayers(players);
+        dataFolder = Files.createTempDirectory("SyncedHealthBar").toFile();
+        plugin = FakeServer.createPlugin(dataFolder);
+        TaskScheduler.init(plugin); //tasks go to the fake scheduler and are dropped
+        FakeServer.setConfig(plugin, generator.toConfiguration());
+        config = new Config(plugin);
+        config.saveDefaults();
+        config.attach(config.load()); //both phases on the benchmark thread
+        healthBars = new HealthBar[bars];
+        for (int i = 0 ; i < bars ; i++) {
+            healthBars[i] = HealthBar.getHealthBar(generator.getBarName(i));
+        }
+        ArrayList<Player> copy = new ArrayList<Player>(players);
+        Collections.shuffle(copy, new Random(42));
+        shuffled = copy.toArray(new Player[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = dataFolder.listFiles();
+        if (files != null) {
+            for (File i : files) {
+                i.delete();
+            }
+        }
+        dataFolder.delete();
+    }
+
+    /**
+     * A method to get the health bars one after another.
+     * @return next health bar
+     */
+    public HealthBar nextBar() {
+        HealthBar hb = healthBars[nextBar];
+        nextBar = nextBar + 1 == healthBars.length ? 0 : nextBar + 1;
+        return hb;
+    }
+
+    /**
+     * A method to get the players in random order.
+     * @return next player
+     */
+    public Player nextPlayer() {
+        Player player = shuffled[nextPlayer];
+        nextPlayer = nextPlayer + 1 == shuffled.length ? 0 : nextPlayer + 1;
+        return player;
+    }
+
+    /**
+     * A method to get a player of a health bar by its index.
+     * @param bar index of the health bar
+     * @param member index of the player in the health bar
+     * @return player
+     */
+    public Player getPlayer(int bar, int member) {
+        return players.get(bar * membersPerBar + member);
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.kalle.syncedhealthbar.benchmarks;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A class that generates a config.yml with any amount of health bars and players. The content only
+ * depends on the passed sizes and seed, so every run of a benchmark works on the same data. Running
+ * the class writes the config.yml to a file, e.g. to load it on a test server:
+ * java -cp benchmarks.jar com.kalle.syncedhealthbar.benchmarks.SyntheticConfig 100 10 config.yml
+ */
+public class SyntheticConfig {
+
+    private int bars; //count of health bars
+    private int membersPerBar; //count of players of every health bar
+    private long seed; //seed of the health values and last logins
+
+    /**
+     * Class constructor.
+     * @param bars count of health bars
+     * @param membersPerBar count of players of every health bar
+     * @param seed seed of the random health values and last logins
+     */
+    public SyntheticConfig(int bars, int membersPerBar, long seed) {
+        this.bars = bars;
+        this.membersPerBar = membersPerBar;
+        this.seed = seed;
+    }
+
+    /**
+     * A method to get the name of a health bar.
+     * @param bar index of the health bar
+     * @return name of the health bar
+     */
+    public String getBarName(int bar) {
+        return "bar" + bar;
+    }
+
+    /**
+     * A method to get the UUID of a player.
+     * @param bar index of the health bar of the player
+     * @param member index of the player in the health bar
+     * @return UUID of the player
+     */
+    public UUID getUniqueId(int bar, int member) {
+        return new UUID(0x5348420000000000L | bar, member);
+    }
+
+    /**
+     * A method to get the name of a player.
+     * @param bar index of the health bar of the player
+     * @param member index of the player in the health bar
+     * @return name of the player
+     */
+    public String getPlayerName(int bar, int member) {
+        return "p" + bar + "_" + member;
+    }
+
+    /**
+     * A method to create the fake players of all players in the config.yml.
+     * @return players ordered by health bar and index in the health bar
+     */
+    public ArrayList<Player> createPlayers() {
+        ArrayList<Player> players = new ArrayList<Player>(bars * membersPerBar);
+        for (int i = 0 ; i < bars ; i++) {
+            for (int j = 0 ; j < membersPerBar ; j++) {
+                players.add(FakePlayer.create(getUniqueId(i, j), getPlayerName(i, j)));
+            }
+        }
+        return players;
+    }
+
+    /**
+     * A method to generate the config.yml in memory. The journal is disabled, so loading it does not
+     * touch any other file.
+     * @return generated config.yml
+     */
+    public YamlConfiguration toConfiguration() {
+        Random random = new Random(seed);
+        long now = System.currentTimeMillis();
+        YamlConfiguration file = new YamlConfiguration();
+        file.set("Settings.Flush Interval", 100);
+        file.set("Settings.Max Flush Lag", 30000);
+        file.set("Settings.Storage", "yaml");
+        file.set("Settings.Journal.Enabled", false);
+        file.set("Settings.Coalescing Policy", "sum");
+        for (int i = 0 ; i < bars ; i++) {
+            String path = "Health Bars." + new UUID(0x4842000000000000L, i); //stable id of the health bar
+            file.set(path + ".Name", getBarName(i));
+            file.set(path + ".Health", 1 + random.nextInt(20));
+            for (int j = 0 ; j < membersPerBar ; j++) {
+                String pPath = path + ".Players." + getUniqueId(i, j);
+                file.set(pPath + ".Name", getPlayerName(i, j));
+                file.set(pPath + ".Last Login", now - random.nextInt(30 * 24 * 60) * 60000L);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * A method to write a generated config.yml to a file.
+     * @param args count of health bars, count of players per health bar and the file
+     * @throws IOException file could not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: SyntheticConfig <health bars> <players per health bar> <file>");
+            System.exit(1);
+        }
+        SyntheticConfig config = new SyntheticConfig(Integer.parseInt(args[0]), Integer.parseInt(args[1]), 42);
+        config.toConfiguration().save(new File(args[2]));
+    }
+
+}
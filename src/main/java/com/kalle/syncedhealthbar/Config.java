@@ -4,133 +4,492 @@ import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
 import com.kalle.syncedhealthbar.Exceptions.ItemNotFoundException;
 import com.kalle.syncedhealthbar.Exceptions.PlayerAlreadyInListException;
 import com.kalle.syncedhealthbar.Exceptions.PlayerNotInListException;
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import com.kalle.syncedhealthbar.api.SnapshotService;
+import com.kalle.syncedhealthbar.api.event.HealthBarEvents;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import com.kalle.syncedhealthbar.metrics.Mutation;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import com.kalle.syncedhealthbar.model.NameIndex;
+import com.kalle.syncedhealthbar.scheduler.IoExecutor;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import com.kalle.syncedhealthbar.storage.HealthJournal;
+import com.kalle.syncedhealthbar.storage.Storage;
+import com.kalle.syncedhealthbar.storage.StorageSnapshot;
+import com.kalle.syncedhealthbar.storage.YamlStorage;
+import com.kalle.syncedhealthbar.sync.HealthSync;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
-import org.checkerframework.checker.units.qual.A;
-import org.checkerframework.checker.units.qual.C;
+import org.bukkit.plugin.Plugin;
 
 import javax.naming.NameAlreadyBoundException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
- * A class to handle all operations on the config.yml file of the plugin.
+ * A class to handle all operations on the data of the plugin. The data is loaded once from the
+ * storage into records of the health bars and their players, which are the authoritative state
+ * from then on. The storage (config.yml or database) only holds a copy of the records. Health
+ * bars are keyed by their name and players by their UUID, so every change only touches its own
+ * record and only the changed records are handed to the storage.
  */
 public class Config {
 
-    private Main plugin;
-    SimpleDateFormat sdf = new SimpleDateFormat("HH:mm | dd.MM.yyyy"); //The format how dates are stored
+    private Plugin plugin;
+    private ConfigPersistence persistence; //writes the changes to the storage write-behind
+    private HealthJournal journal; //appends every change, so it survives a crash until the next snapshot (null if disabled)
 
-    //paths of the config.yml entries to make statements more readable
-    String hbPath = "Health Bar ";
-    String pPath = ".Player ";
-    String hbCountPath = "Health Bar Count";
-    String pCountPath = ".Player Count";
+    private LinkedHashMap<String, BarRecord> bars = new LinkedHashMap<String, BarRecord>(); //records of all health bars by their name in the order they were created
+    private HashMap<UUID, BarRecord> memberIndex = new HashMap<UUID, BarRecord>(); //record of the health bar of every player by his UUID
+    private HashMap<String, ArrayList<UUID>> nameIndex = new HashMap<String, ArrayList<UUID>>(); //UUIDs of the players by their name in lower case (names can be duplicated until a player joins again)
+    private volatile NameIndex barNames = new NameIndex(); //names of the health bars for the tab completion (read on every thread)
+    private volatile NameIndex memberNames = new NameIndex(); //names of the players assigned to a health bar for the tab completion (read on every thread)
+    private HashSet<String> dirtyBars = new HashSet<String>(); //names of the health bars that changed since the last snapshot
+    private HashSet<UUID> dirtyMembers = new HashSet<UUID>(); //UUIDs of the players that were added or changed since the last snapshot
+    private HashMap<String, HashSet<UUID>> removedMembers = new HashMap<String, HashSet<UUID>>(); //UUIDs of the players removed since the last snapshot by their former health bar
+    private HashSet<String> deletedBars = new HashSet<String>(); //names of the health bars deleted since the last snapshot
+    private boolean fullDirty = false; //true if the next snapshot needs to contain all health bars
+    private long modCount = 0; //count of the structural changes, a changed health bar gets it as its version
+    private SnapshotService snapshots = new SnapshotService(); //immutable copies of the records for other plugins
 
     /**
      * Class constructor.
      * @param plugin main class must be passed in order to be able
      *               to make changes to the config.yml
      */
-    public Config(Main plugin) {
+    public Config(Plugin plugin) {
         this.plugin = plugin;
+        this.persistence = new ConfigPersistence(plugin, this);
     }
 
     /**
-     * A method to load on every server start and restart all health bars
-     * from the config.yml.
-     * @throws CorruptedConfigException manually changes were made to the config.yml
-     *                                  so that the file is corrupted and can not
-     *                                  be worked with
-     * @throws PlayerAlreadyInListException when a player gets added to the health bar he
-     *                                      already has been added to the exception is
-     *                                      thrown (config.yml must be corrupted since
-     *                                      player is duplicated in file)
+     * A method to get the persistence that writes the changes to the storage.
+     * @return persistence of the config
      */
-    public void loadConfig() throws CorruptedConfigException, PlayerAlreadyInListException {
-        plugin.getConfig().options().copyDefaults(true);
-        if (plugin.getConfig().get(hbCountPath) == null) { //if the config.yml does not exist yet
-            plugin.getConfig().set(hbCountPath,"0");
+    public ConfigPersistence getPersistence() {
+        return persistence;
+    }
+
+    /**
+     * A method to get the service that publishes the records to other plugins.
+     * @return service of the snapshots
+     */
+    public SnapshotService getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * A class to hold the data loaded by the worker threads until it is attached on the main thread.
+     */
+    public static class Loaded {
+
+        private long start = System.nanoTime(); //time in ns the load started
+        private Storage storage;
+        private HealthJournal journal; //null if disabled
+        private ArrayList<BarRecord> records;
+        private LinkedHashMap<String, BarRecord> bars = new LinkedHashMap<String, BarRecord>();
+        private HashMap<UUID, BarRecord> memberIndex = new HashMap<UUID, BarRecord>();
+        private HashMap<String, ArrayList<UUID>> nameIndex = new HashMap<String, ArrayList<UUID>>();
+        private NameIndex barNames = new NameIndex();
+        private NameIndex memberNames = new NameIndex();
+        private int memberCount = 0;
+        private boolean replayed = false; //true if the journal recovered changes
+        private long parseTime, journalTime, indexTime; //time in ns of the phases
+        private int threads; //count of worker threads
+        private Exception error; //exception of the load (null if it succeeded)
+
+        /**
+         * A method to throw the exception of the load again on the thread that attaches the data.
+         * @throws CorruptedConfigException the data was corrupted and exception is thrown
+         * @throws StorageException the storage could not be opened or read and exception is thrown
+         */
+        private void rethrow() throws CorruptedConfigException, StorageException {
+            if (error instanceof CorruptedConfigException) throw (CorruptedConfigException) error;
+            if (error instanceof StorageException) throw (StorageException) error;
+            if (error instanceof RuntimeException) throw (RuntimeException) error;
         }
+
+    }
+
+    /**
+     * A method to add the missing default settings to the config.yml. It needs to be called on the
+     * main thread before load() or loadAsync(), the loader only reads the storage.
+     */
+    public void saveDefaults() {
+        plugin.getConfig().options().copyDefaults(true);
         plugin.saveConfig();
-        int hbCount = getHBCount(); //count of health bars
-        for (int i = 0 ; i < hbCount ; i++) { //loops through all health bars
-            String hbName = getHBName(i); //get the name of the health bar
-            double health = getHBHealth(i); //get the health value of the health bar
+    }
+
+    /**
+     * A method to read, validate and index all health bars on the calling thread (the parsing on a
+     * pool of worker threads). An error is kept in the loaded data and thrown by attach(), so
+     * nothing of the config is changed until the data is attached.
+     * @return loaded data
+     */
+    public Loaded load() {
+        ExecutorService pool = createPool();
+        try {
+            return load(pool, threads());
+        } catch (CorruptedConfigException | StorageException | RuntimeException e) {
+            Loaded loaded = new Loaded();
+            loaded.error = e;
+            return loaded;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A method to load all health bars without blocking the main thread. The storage is read,
+     * parsed and indexed by worker threads, then the callback gets the loaded data on the main
+     * thread where it needs to be passed to attach(). The callback is not executed if the plugin
+     * was disabled in the meantime.
+     * @param callback callback executed on the main thread
+     */
+    public void loadAsync(Consumer<Loaded> callback) {
+        IoExecutor.shared().execute(() -> { //the storage is read by a blocking task (virtual thread on Java 21)
+            Loaded loaded = load();
+            if (!plugin.isEnabled()) { //plugin was disabled while loading
+                if (loaded.storage != null) loaded.storage.close();
+                if (loaded.journal != null) loaded.journal.close();
+                return;
+            }
+            TaskScheduler.get().run(() -> callback.accept(loaded));
+        });
+    }
+
+    /**
+     * A method to get how many worker threads parse the storage (one core is left for the server).
+     * @return count of threads
+     */
+    private static int threads() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * A method to create the worker threads that parse the storage.
+     * @return pool of worker threads
+     */
+    private static ExecutorService createPool() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads(), r -> {
+            Thread thread = new Thread(r, "SyncedHealthBar-Load-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A method to read, validate and index all health bars (first phase, does not need the main
+     * thread). Nothing of the config is changed until the data is attached.
+     * @param pool worker threads that parse the storage
+     * @param threads count of worker threads
+     * @return loaded data
+     * @throws CorruptedConfigException the data was corrupted and exception is thrown
+     * @throws StorageException the storage could not be opened or read
+     */
+    private Loaded load(ExecutorService pool, int threads) throws CorruptedConfigException, StorageException {
+        Loaded loaded = new Loaded();
+        loaded.threads = threads;
+        loaded.storage = Storage.create(plugin, plugin.getConfig().getString("Settings.Storage", YamlStorage.NAME));
+        loaded.storage.open();
+        loaded.records = loaded.storage.load(pool); //read the records once
+        long parsed = System.nanoTime();
+        loaded.parseTime = parsed - loaded.start;
+        if (plugin.getConfig().getBoolean("Settings.Journal.Enabled", true)) {
+            HealthJournal.FsyncPolicy policy;
             try {
-                HealthBar hb = new HealthBar(this, hbName, health); //create the health bar
-            } catch (NameAlreadyBoundException e) { //config.yml must have been manually changed so the names are duplicated
+                policy = HealthJournal.FsyncPolicy.valueOf(plugin.getConfig().getString("Settings.Journal.Fsync", "interval").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new CorruptedConfigException("CONFIG ERROR: journal fsync policy must be always, interval or os!");
+            }
+            loaded.journal = new HealthJournal(new File(plugin.getDataFolder(), "journal"), policy, plugin.getConfig().getLong("Settings.Journal.Fsync Interval", 1000), plugin.getLogger());
+            loaded.replayed = loaded.journal.replay(loaded.records) > 0; //changes after the last snapshot were recovered
+            loaded.journal.open();
+        }
+        long replayed = System.nanoTime();
+        loaded.journalTime = replayed - parsed;
+        index(loaded);
+        loaded.indexTime = System.nanoTime() - replayed;
+        return loaded;
+    }
+
+    /**
+     * A method to build the indices of the loaded records and to validate them.
+     * @param loaded loaded data with the records in the order the health bars were created
+     * @throws CorruptedConfigException a health bar name is duplicated and exception is thrown
+     */
+    private void index(Loaded loaded) throws CorruptedConfigException {
+        for (BarRecord i : loaded.records) { //loop through all health bars
+            if (loaded.bars.put(i.getName(), i) != null) { //config.yml must have been manually changed so the names are duplicated
                 throw new CorruptedConfigException("CONFIG ERROR: health bar name duplicate found!");
             }
+            loaded.barNames.add(i.getName());
+            for (MemberRecord j : i.getMembers()) { //loop through the players of the health bar
+                if (!loaded.memberIndex.containsKey(j.getUniqueId())) { //the first entry of a player wins like in the former lookup
+                    loaded.memberIndex.put(j.getUniqueId(), i);
+                    indexName(loaded.nameIndex, loaded.memberNames, j.getName(), j.getUniqueId());
+                }
+            }
+            loaded.memberCount += i.getMembers().size();
+        }
+    }
+
+    /**
+     * A method to take over the loaded data, create the health bars and add the online players to
+     * them in one pass (second phase, on the main thread). The timings of the phases are logged.
+     * @param loaded data loaded by load()
+     * @throws CorruptedConfigException the data was corrupted and exception is thrown
+     * @throws PlayerAlreadyInListException a player is duplicated and exception is thrown
+     * @throws StorageException the storage could not be opened or read
+     */
+    public void attach(Loaded loaded) throws CorruptedConfigException, PlayerAlreadyInListException, StorageException {
+        loaded.rethrow();
+        long start = System.nanoTime();
+        HealthBarRegistry registry = HealthBar.getRegistry();
+        registry.clear(); //health bars of a previous load get replaced
+        bars = loaded.bars;
+        memberIndex = loaded.memberIndex;
+        nameIndex = loaded.nameIndex;
+        barNames = loaded.barNames;
+        memberNames = loaded.memberNames;
+        journal = loaded.journal;
+        if (loaded.replayed || loaded.storage.needsMigration()) {
+            fullDirty = true;
+            persistence.markDirty();
         }
+        persistence.setStorage(loaded.storage);
+        persistence.setJournal(journal);
+        snapshots.publishAll(bars.values());
+        //health bars are created from their records when they are needed
+        registry.setLoader(this, Math.max(1, plugin.getConfig().getInt("Settings.Cache.Max Resident Bars", 10000)),
+                Math.max(0, plugin.getConfig().getLong("Settings.Cache.Idle Time", 600)) * 1000);
+        int attached = 0;
         for (Player i : Bukkit.getOnlinePlayers()) { //loop through online players to add them all to their health bar in case of a server restart
+            BarRecord bar = memberIndex.get(i.getUniqueId()); //record of the health bar he needs to be added to
+            if (bar == null) continue; //player is not assigned to any health bar
+            HealthBar hb = registry.getHealthBar(bar.getName()); //created on the first player
+            if (hb == null) { //the config.yml must be gotten corrupted in the process of loading the data in this method
+                throw new CorruptedConfigException("CONFIG ERROR: health bar name corrupted!");
+            }
             try {
-                int[] index = getPIndex(i); //the index array contains the health bar index and player index to tell us which health bar he needs to be added to
-                String hbName = getHBName(index[0]); //name of the health bar works as unique identifier
-                HealthBar hb = HealthBar.getHealthBar(hbName); //get the health bar
                 hb.loadPlayer(i); //add player to array list of the health bar which contains the players
-            } catch (PlayerAlreadyInListException | PlayerNotInListException e) { //these exceptions should not occur but do not need to be handled because the plugin can function normally
+                attached++;
+            } catch (PlayerAlreadyInListException e) { //should not occur but does not need to be handled because the plugin can function normally
                 continue;
-            } catch (ItemNotFoundException e) { //the config.yml must be gotten corrupted in the process of loading the data in this method
-                throw new CorruptedConfigException("CONFIG ERROR: health bar name corrupted!");
             }
         }
+        long end = System.nanoTime();
+        plugin.getLogger().info("Loaded " + bars.size() + " health bars with " + loaded.memberCount + " players in " + ms(end - loaded.start) + " ms (parse "
+                + ms(loaded.parseTime) + " ms, journal " + ms(loaded.journalTime) + " ms, index " + ms(loaded.indexTime) + " ms on " + loaded.threads
+                + " worker threads, attach " + attached + " online players to " + registry.getHealthBars().size() + " health bars " + ms(end - start) + " ms on the main thread)");
+    }
+
+    /**
+     * A method to create the health bar of a record that is not resident.
+     * @param hbName name of the health bar
+     * @return created health bar or null if no health bar has the name
+     * @throws NameAlreadyBoundException the health bar was created by another thread in the meantime
+     */
+    HealthBar hydrate(String hbName) throws NameAlreadyBoundException {
+        BarRecord bar = bars.get(hbName);
+        if (bar == null) return null;
+        try {
+            return new HealthBar(this, hbName, bar.getHealth());
+        } catch (CorruptedConfigException e) { //loading a health bar does not change the config
+            plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * A method to write the health of a health bar back to its record before it gets evicted.
+     * @param hb health bar that gets evicted
+     */
+    void evict(HealthBar hb) {
+        BarRecord bar = bars.get(hb.getName());
+        if (bar != null && bar.getHealth() != hb.getHealth()) setHealth(hb, hb.getHealth()); //a save is still pending (Folia)
+    }
+
+    /**
+     * A method to check if a health bar with the passed name is stored.
+     * @param hbName name of the health bar
+     * @return true if the health bar is stored
+     */
+    public boolean hasHealthBar(String hbName) {
+        return bars.containsKey(hbName);
+    }
+
+    /**
+     * A method to format a time in ms.
+     * @param nanos time in ns
+     * @return time in ms with one decimal
+     */
+    private static String ms(long nanos) {
+        return String.format("%.1f", nanos / 1000000.0);
+    }
+
+    /**
+     * A method to copy the changed records, so they can be written to the storage on another thread.
+     * Clears the changes, so every change is only part of one snapshot.
+     * @param full true if the snapshot needs to contain all health bars
+     * @return snapshot of the changes
+     */
+    public StorageSnapshot snapshot(boolean full) {
+        StorageSnapshot snapshot;
+        if (full || fullDirty) { //copy every health bar with its players
+            snapshot = new StorageSnapshot(copyRecords());
+        } else { //copy only the changed health bars and players
+            ArrayList<BarRecord> copy = new ArrayList<BarRecord>(dirtyBars.size());
+            for (String i : dirtyBars) {
+                BarRecord bar = bars.get(i);
+                copy.add(new BarRecord(bar.getName(), bar.getHealth())); //players are copied on their own
+            }
+            HashMap<String, ArrayList<MemberRecord>> members = new HashMap<String, ArrayList<MemberRecord>>();
+            for (UUID i : dirtyMembers) {
+                BarRecord bar = memberIndex.get(i);
+                if (bar == null) continue; //player was removed again
+                ArrayList<MemberRecord> changed = members.get(bar.getName());
+                if (changed == null) {
+                    changed = new ArrayList<MemberRecord>();
+                    members.put(bar.getName(), changed);
+                }
+                changed.add(bar.getMember(i).copy());
+            }
+            snapshot = new StorageSnapshot(false, copy, members, removedMembers, deletedBars);
+        }
+        dirtyBars.clear();
+        dirtyMembers.clear();
+        removedMembers = new HashMap<String, HashSet<UUID>>();
+        deletedBars = new HashSet<String>();
+        fullDirty = false;
+        return snapshot;
+    }
+
+    /**
+     * A method to mark all records as changed (when a write failed or the storage changed).
+     */
+    public void markAllDirty() {
+        fullDirty = true;
+        persistence.markDirty();
+    }
+
+    /**
+     * A method to mark a health bar as changed.
+     * @param hbName name of the health bar
+     */
+    private void markDirty(String hbName) {
+        dirtyBars.add(hbName);
+    }
+
+    /**
+     * A method to mark a player as added or changed.
+     * @param uuid UUID of the player
+     */
+    private void markDirty(UUID uuid) {
+        dirtyMembers.add(uuid);
     }
 
     /**
      * A method to add a new health bar to the config.yml.
      * @param hb health bar gets passed to get all necessary values
      *           that need to be stored
-     * @throws CorruptedConfigException the count of health bars is either deleted from the config.yml
-     *                                  or is not an integer anymore (due to manual changes)
+     * @throws CorruptedConfigException the health bar is already stored in the config.yml
      */
     public void addHealthBar(HealthBar hb) throws CorruptedConfigException {
-        String name = hb.getName();
-        String health = hb.getHealth() + ""; //health value (double) gets converted to string
-        int hbCount;
-        try {
-            hbCount = getHBCount();
-        } catch (NullPointerException e) { //entry was deleted (count = null)
-            throw new CorruptedConfigException("CONFIG ERROR: health bar count not found!");
-        } catch (NumberFormatException e) { //entry was changed and is not convertable to integer anymore
-            throw new CorruptedConfigException("CONFIG ERROR: health bar count corrupted!");
+        createRecord(hb.getName(), hb.getHealth()); //the health bar fires the event once it is registered
+    }
+
+    /**
+     * A method to add a new health bar to the config.yml without creating it (e.g. on an import).
+     * It is created from its record when it is needed.
+     * @param hbName name of the health bar
+     * @param health health value of the health bar
+     * @throws CorruptedConfigException the health bar is already stored in the config.yml
+     */
+    public void addHealthBar(String hbName, double health) throws CorruptedConfigException {
+        createRecord(hbName, health);
+        HealthBarEvents.created(hbName, health);
+    }
+
+    /**
+     * A method to create the record of a new health bar.
+     * @param hbName name of the health bar
+     * @param health health value of the health bar
+     * @throws CorruptedConfigException the health bar is already stored in the config.yml
+     */
+    private void createRecord(String hbName, double health) throws CorruptedConfigException {
+        if (bars.containsKey(hbName)) { //records and health bars must have gotten out of sync
+            throw new CorruptedConfigException("CONFIG ERROR: health bar name duplicate found!");
         }
-        plugin.getConfig().set(hbPath + hbCount + ".Name", name); //store name of the health bar
-        plugin.getConfig().set(hbPath + hbCount + ".Health", health); //store health value of the health bar
-        plugin.getConfig().set(hbPath + hbCount + pCountPath, 0); //create player count and set it to 0 since there has been no players added yet
-        plugin.getConfig().set(hbCountPath, (hbCount + 1) + ""); //increment health bar count since we added a new health bar
-        plugin.saveConfig(); //save all changes made
+        BarRecord bar = new BarRecord(hbName, health);
+        bar.setVersion(++modCount);
+        bars.put(hbName, bar);
+        barNames.add(hbName);
+        snapshots.publish(bar);
+        markDirty(hbName);
+        if (journal != null) journal.createBar(hbName, health);
+        persistence.requestFlush(); //write all changes made on the next tick
+        Metrics.get().getStorage().mutation(Mutation.CREATE_BAR);
+        HealthSync sync = HealthSync.get();
+        if (sync != null) sync.barCreated(hbName, health);
     }
 
     /**
      * A method to delete a health bar from the config.yml.
      * @param hbName name of the health bar that needs to be deleted
      *               since the name is used as unique identifier
-     * @throws CorruptedConfigException the count of health bars is either deleted from the config.yml
-     *                                  or is not an integer anymore (due to manual changes)
+     * @throws CorruptedConfigException the health bar was not found in the config.yml
      */
     public void deleteHealthBar(String hbName) throws CorruptedConfigException {
-        int hbCount;
-        try {
-            hbCount = getHBCount();
-        } catch (NullPointerException e) { //entry was deleted (count = null)
-            throw new CorruptedConfigException("CONFIG ERROR: health bar count not found!");
-        } catch (NumberFormatException e) { //entry was changed and is not convertable to integer anymore
-            throw new CorruptedConfigException("CONFIG ERROR: health bar count corrupted!");
-        }
-        for (int j = getHBIndex(hbName) ; j < hbCount - 1 ; j++) { //loop through all the health bars behind the one that needs to be deleted
-            //put every health bar one position further front, so no empty entries getting created
-            Object next = plugin.getConfig().get(hbPath + (j+1));
-            plugin.getConfig().set(hbPath + j,next);
+        BarRecord bar = getRecord(hbName);
+        bars.remove(hbName);
+        barNames.remove(hbName);
+        modCount++;
+        dirtyBars.remove(hbName);
+        removedMembers.remove(hbName); //the players are deleted with the health bar
+        deletedBars.add(hbName);
+        if (journal != null) journal.deleteBar(hbName);
+        snapshots.remove(bar);
+        for (MemberRecord i : bar.getMembers()) { //players of the deleted health bar are not assigned anymore
+            if (memberIndex.get(i.getUniqueId()) == bar) {
+                memberIndex.remove(i.getUniqueId());
+                unindexName(i.getName(), i.getUniqueId());
+            }
         }
-        plugin.getConfig().set(hbPath + (hbCount-1), null); //delete the last health bar since copy is saved one count lower
-        plugin.getConfig().set(hbCountPath, (hbCount-1) + ""); //set the count of health bars to -1 since we deleted a health bar
-        plugin.saveConfig(); //save all changes made
+        persistence.requestFlush(); //write all changes made on the next tick
+        Metrics.get().getStorage().mutation(Mutation.DELETE_BAR);
+        HealthSync sync = HealthSync.get();
+        if (sync != null) sync.barDeleted(hbName);
+    }
+
+    /**
+     * A method to start a batch of changes (e.g. of a bulk command). The entries of the journal
+     * are collected and written at once when the batch ends.
+     */
+    public void beginBatch() {
+        if (journal != null) journal.beginBatch();
+    }
+
+    /**
+     * A method to end a batch of changes. The changes are written with one snapshot on the next tick.
+     */
+    public void endBatch() {
+        if (journal != null) journal.endBatch();
+        persistence.requestFlush();
     }
 
     /**
@@ -144,25 +503,66 @@ public class Config {
      * @throws CorruptedConfigException manually changes were made to the config.yml
      *                                  so that the file is corrupted and can not
      *                                  be worked with (name of health bar is deleted)
-     * @throws PlayerAlreadyInListException getPIndex(player) returns an index which means that a
+     * @throws PlayerAlreadyInListException getMember(player) returns a record which means that a
      *                                      player is already added to a health bar and
      *                                      the exception is thrown
      */
     public void addPlayer(String hbName, Player player) throws CorruptedConfigException, PlayerAlreadyInListException {
-        Calendar calendar = new GregorianCalendar();
-        try {
-            getPIndex(player); //check if the player is already added to a health bar and throws PlayerNotInListException if not
-            throw new PlayerAlreadyInListException("Player: '" + player.getName() + "' is already added to the health bar: '" + hbName + "'!");
-        } catch (PlayerNotInListException e) { //player is not added to any health bar, and we can presume
-            plugin.getConfig().set(hbPath + getHBIndex(hbName) + pPath + getPCount(hbName) + ".Name", player.getName()); //set player name in config.yml
-            plugin.getConfig().set(hbPath + getHBIndex(hbName) + pPath + getPCount(hbName) + ".UUID", player.getUniqueId().toString()); //set player UUID in config.yml
-            Date date = calendar.getTime(); //get the time of when the player is added to health bar
-            plugin.getConfig().set(hbPath + getHBIndex(hbName) + pPath + getPCount(hbName) + ".Last Login", sdf.format(date)); //set player last login to time he was added to the health bar
-            plugin.getConfig().set(hbPath + getHBIndex(hbName) + pCountPath, (getPCount(hbName)+1) + ""); //increase the player count of the health bar by 1
-            plugin.saveConfig(); //save all changes made
-        } catch (NullPointerException e) { //entry was deleted (name = null)
-            throw new CorruptedConfigException("CONFIG ERROR: health bar name not found!");
+        createMember(hbName, player.getUniqueId(), player.getName(), System.currentTimeMillis()); //the health bar fires the event once the player is bound
+    }
+
+    /**
+     * A method to add a player to a health bar in the config.yml by his UUID (he does not need to be online).
+     * @param hbName name of the health bar the player needs to be added to
+     * @param uuid UUID of the player
+     * @param name name of the player
+     * @throws CorruptedConfigException the health bar was not found in the config.yml
+     * @throws PlayerAlreadyInListException the player is already added to a health bar
+     */
+    public void addMember(String hbName, UUID uuid, String name) throws CorruptedConfigException, PlayerAlreadyInListException {
+        addMember(hbName, uuid, name, System.currentTimeMillis()); //last login is the time he was added to the health bar
+    }
+
+    /**
+     * A method to add a player to a health bar in the config.yml with a known last login (e.g. on an import).
+     * @param hbName name of the health bar the player needs to be added to
+     * @param uuid UUID of the player
+     * @param name name of the player
+     * @param lastLogin last login of the player in ms since the epoch
+     * @throws CorruptedConfigException the health bar was not found in the config.yml
+     * @throws PlayerAlreadyInListException the player is already added to a health bar
+     */
+    public void addMember(String hbName, UUID uuid, String name, long lastLogin) throws CorruptedConfigException, PlayerAlreadyInListException {
+        createMember(hbName, uuid, name, lastLogin);
+        HealthBarEvents.memberAdded(hbName, uuid, name);
+    }
+
+    /**
+     * A method to create the record of a player of a health bar.
+     * @param hbName name of the health bar the player needs to be added to
+     * @param uuid UUID of the player
+     * @param name name of the player
+     * @param lastLogin last login of the player in ms since the epoch
+     * @throws CorruptedConfigException the health bar was not found in the config.yml
+     * @throws PlayerAlreadyInListException the player is already added to a health bar
+     */
+    private void createMember(String hbName, UUID uuid, String name, long lastLogin) throws CorruptedConfigException, PlayerAlreadyInListException {
+        if (memberIndex.containsKey(uuid)) { //check if the player is already added to a health bar
+            throw new PlayerAlreadyInListException("Player: '" + name + "' is already added to the health bar: '" + hbName + "'!");
         }
+        BarRecord bar = getRecord(hbName);
+        memberIndex.put(uuid, bar);
+        indexName(nameIndex, memberNames, name, uuid);
+        MemberRecord member = new MemberRecord(uuid, name, lastLogin);
+        bar.addMember(member);
+        bar.setVersion(++modCount);
+        snapshots.publish(bar);
+        markDirty(uuid);
+        if (journal != null) journal.addMember(hbName, member);
+        persistence.requestFlush(); //write all changes made on the next tick
+        Metrics.get().getStorage().mutation(Mutation.ADD_MEMBER);
+        HealthSync sync = HealthSync.get();
+        if (sync != null) sync.memberAdded(hbName, uuid, name);
     }
 
     /**
@@ -175,13 +575,8 @@ public class Config {
      * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
      */
     public void removePlayer(HealthBar hb, Player player) throws PlayerNotInListException, CorruptedConfigException {
-        try {
-            int[] index = getPIndex(player); //get index of the health bar the player is assigned to and the index of the player
-            int pcount = getPCount(hb.getName()); //get the player count of the health bar
-            deletePlayerEntry(index, pcount); //delete the entry in the config.yml
-        } catch (NumberFormatException e) {
-            throw new CorruptedConfigException("CONFIG ERROR: player count corrupted!");
-        }
+        getMember(player); //check if the player is assigned to a health bar
+        deleteMember(memberIndex.get(player.getUniqueId()), player.getUniqueId()); //delete the entry in the config.yml (the health bar fires the event)
     }
 
     /**
@@ -189,90 +584,84 @@ public class Config {
      * Players can have the same name in the config. If player1 changes his name to another name and
      * player2 changes his name to the old name of player1 and player1 has not joined the server since
      * the name change. We need to remove the player with the most recent "last login".
+     * Names are compared case-insensitively like the server does.
      * @param name name of the player to find him in the config.yml
-     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     * @return record of the removed player
      * @throws PlayerNotInListException the player was not found in the config.yml
      */
-    public void removePlayer(String name) throws CorruptedConfigException, PlayerNotInListException {
-        ArrayList<int[]> index = getPIndex(name); //get all the index of every player with the name
-        if (index.isEmpty()) { //if the array list is empty there is no player with that name
+    public MemberRecord removePlayer(String name) throws PlayerNotInListException {
+        ArrayList<UUID> uuids = nameIndex.get(name.toLowerCase(Locale.ROOT)); //get the UUIDs of every player with the name
+        if (uuids == null) { //there is no player with that name
             throw new PlayerNotInListException("Player: '" + name + "' has no health bar assigned!");
         }
-        int[] remove = index.get(0); //initialize with the first player in the array list
-        String sDate;
-        try {
-            sDate = plugin.getConfig().get(hbPath + index.get(0)[0] + pPath + index.get(0)[1] + ".Last Login").toString(); //get the last login of the first in array list
-            Date dateAkt = sdf.parse(sDate); //parse to the date
-            for (int i = 1 ; i < index.size() ; i++) { //loop through the array list
-                sDate = plugin.getConfig().get(hbPath + index.get(i)[0] + pPath + index.get(i)[1] + ".Last Login").toString(); //get the date of the player we look at in this iteration
-                if (dateAkt.before(sdf.parse(sDate))) {  //check if he logged in after the one with the latest login
-                    dateAkt = sdf.parse(sDate);
-                    remove = index.get(i); //change the one that needs be removed
-                }
+        MemberRecord remove = null;
+        for (UUID i : uuids) { //loop through the players with the name
+            MemberRecord member = memberIndex.get(i).getMember(i);
+            if (remove == null || member.getLastLogin() > remove.getLastLogin()) { //check if he logged in after the one with the latest login
+                remove = member; //change the one that needs be removed
             }
-        } catch (NullPointerException e) { //entry was deleted (last login = null)
-            throw new CorruptedConfigException("CONFIG ERROR: players last login not found!");
-        } catch (ParseException e) { //entry was changed and can not be parsed to a date anymore
-            throw new CorruptedConfigException("CONFIG ERROR: players last login corrupted!");
-        }
-        try {
-            String hbName = plugin.getConfig().get(hbPath + remove[0] + ".Name").toString();
-            int pCount = getPCount(hbName); //get the player count of the health bar with the player that gets removed
-            deletePlayerEntry(remove,pCount); //delete the entry with the player that gets removed
-        } catch (NullPointerException e) { //entry was deleted (name = null)
-            throw new CorruptedConfigException("CONFIG ERROR: health bar name not found!");
-        } catch (NumberFormatException e) { //entry was changed and could not be parsed into integer
-            throw new CorruptedConfigException("CONFIG ERROR: player count corrupted!");
         }
+        String hbName = memberIndex.get(remove.getUniqueId()).getName();
+        deleteMember(memberIndex.get(remove.getUniqueId()), remove.getUniqueId()); //delete the entry with the player that gets removed
+        HealthBarEvents.memberRemoved(hbName, remove.getUniqueId(), remove.getName());
+        return remove;
     }
 
     /**
-     * A method to delete the entry of a player from the config.yml.
-     * @param index an array with the index of the health bar the player is in
-     *              and the index of the player to find the path of the entry
-     *              that needs to be deleted
-     * @param pcount the count of players in the health bar for bounds of the loop
-     */
-    public void deletePlayerEntry(int[] index, int pcount) {
-        for (int i = index[1] ; i < pcount - 1 ; i++) { //loop through all the players behind the one that needs to be deleted
-            //put every player one position further front, so no empty entries getting created
-            Object next = plugin.getConfig().get(hbPath + index[0] + pPath + (i + 1));
-            plugin.getConfig().set(hbPath + index[0] + pPath + i,next);
+     * A method to remove a player from his health bar in the config.yml by his UUID (he does not need to be online).
+     * @param uuid UUID of the player
+     * @throws PlayerNotInListException the player was not found in the config.yml
+     */
+    public void removeMember(UUID uuid) throws PlayerNotInListException {
+        BarRecord bar = memberIndex.get(uuid);
+        if (bar == null) {
+            throw new PlayerNotInListException("Player: '" + uuid + "' is not assigned to any health bar!");
         }
-        plugin.getConfig().set(hbPath + index[0] + pPath + (pcount-1), null); //delete the last player since copy is saved one count lower
-        plugin.getConfig().set(hbPath + index[0] + pCountPath, (pcount-1) + ""); //set the count of players to -1 since we deleted a player
-        plugin.saveConfig(); //save all changes made
+        MemberRecord removed = deleteMember(bar, uuid);
+        HealthBarEvents.memberRemoved(bar.getName(), uuid, removed.getName());
     }
 
     /**
-     * A method to get the health bar count in the config.yml.
-     * @return the health bar count (how many health bars are stored in the config.yml)
-     * @throws NullPointerException entry was deleted (count = null)
-     * @throws NumberFormatException entry was changed and is not convertable to integer anymore
+     * A method to delete the entry of a player from the config.yml.
+     * @param bar record of the health bar the player is assigned to
+     * @param uuid UUID of the player
+     * @return record of the removed player
      */
-    public int getHBCount() throws NullPointerException,NumberFormatException {
-        return Integer.parseInt(plugin.getConfig().get(hbCountPath).toString()); //parse entry to integer
+    private MemberRecord deleteMember(BarRecord bar, UUID uuid) {
+        MemberRecord removed = bar.removeMember(uuid);
+        bar.setVersion(++modCount);
+        memberIndex.remove(uuid);
+        unindexName(removed.getName(), uuid);
+        snapshots.removeMember(bar, uuid);
+        if (journal != null) journal.removeMember(uuid);
+        markRemoved(bar.getName(), uuid);
+        persistence.requestFlush(); //write all changes made on the next tick
+        Metrics.get().getStorage().mutation(Mutation.REMOVE_MEMBER);
+        HealthSync sync = HealthSync.get();
+        if (sync != null) sync.memberRemoved(bar.getName(), uuid, removed.getName());
+        return removed;
     }
 
     /**
-     * A method to get the health bar health value in the config.yml.
-     * @param index the index of the health bar of which the health value is needed
-     * @return the double of the value that is stored in the config.yml of the health bar
-     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     * A method to mark a player as removed from a health bar.
+     * @param hbName name of the health bar
+     * @param uuid UUID of the player
      */
-    public double getHBHealth(int index) throws CorruptedConfigException {
-        double health;
-        try {
-            health = Double.parseDouble(plugin.getConfig().get(hbPath + index + ".Health").toString()); //parsing the entry into a double
-        } catch (NullPointerException e) {
-            throw new CorruptedConfigException("CONFIG ERROR: health bar health value not found!");
-        } catch (NumberFormatException e) {
-            throw new CorruptedConfigException("CONFIG ERROR: health bar health value corrupted!");
+    private void markRemoved(String hbName, UUID uuid) {
+        HashSet<UUID> removed = removedMembers.get(hbName);
+        if (removed == null) {
+            removed = new HashSet<UUID>();
+            removedMembers.put(hbName, removed);
         }
-        if (health > 20 || health < 0) { //health needs to be between 0 and 20
-            throw new CorruptedConfigException("CONFIG ERROR: health bar health value corrupted!");
-        }
-        return health;
+        removed.add(uuid);
+    }
+
+    /**
+     * A method to get the health bar count in the config.yml.
+     * @return the health bar count (how many health bars are stored in the config.yml)
+     */
+    public int getHBCount() {
+        return bars.size();
     }
 
     /**
@@ -280,117 +669,160 @@ public class Config {
      * @param hbName the name of the health bar to identify the health bar of which
      *               the player count is needed
      * @return the player count of the health bar
-     * @throws NullPointerException entry was deleted (count = null)
      * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
-     * @throws NumberFormatException the count could not be parsed to integer and exception is thrown
      */
-    public int getPCount(String hbName) throws NullPointerException, CorruptedConfigException, NumberFormatException {
-        return Integer.parseInt(plugin.getConfig().get(hbPath + getHBIndex(hbName) + pCountPath).toString()); //parse entry to integer
+    public int getPCount(String hbName) throws CorruptedConfigException {
+        return getRecord(hbName).getMembers().size();
     }
 
     /**
-     * A method to get the index of the entry of a health bar.
+     * A method to get the record of a health bar.
      * @param hbName the name of the health bar to identify it in the config.yml
-     * @return the index of the entry
+     * @return record of the health bar
      * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
      */
-    public int getHBIndex(String hbName) throws CorruptedConfigException {
-        int hbCount;
-        try {
-            hbCount = getHBCount(); //get the count for the bound of the for-loop
-        } catch (NullPointerException e) {
-            throw new CorruptedConfigException("CONFIG ERROR: health bar count not found!");
-        } catch (NumberFormatException e) {
-            throw new CorruptedConfigException("CONFIG ERROR: health bar count corrupted!");
-        }
-        for (int i = 0 ; i < hbCount ; i++) { //loop through all health bars
-            String tmpName;
-            try {
-                tmpName = plugin.getConfig().get(hbPath + i + ".Name").toString(); //put name of the health bar we look at in this iteration in temporary variable
-            } catch (NullPointerException e) {
-                throw new CorruptedConfigException("CONFIG ERROR: health bar name not found!");
-            }
-            if (tmpName.equals(hbName)) { //compare names, if equal we found the needed health bar
-                return i;
-            }
+    private BarRecord getRecord(String hbName) throws CorruptedConfigException {
+        BarRecord bar = bars.get(hbName);
+        if (bar == null) {
+            throw new CorruptedConfigException("CONFIG ERROR: health bar name not found!");
         }
-        throw new CorruptedConfigException("CONFIG ERROR: health bar name not found!");
+        return bar;
     }
 
     /**
-     * A method to get the index of the health bar a player is added to and the index
-     * of the player in that health bar.
-     * @param player the player of which the index is needed
-     * @return the index of the entry of the health bar and the index of the entry of
-     *         the player in the config.yml
-     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     * A method to get the record of a player assigned to a health bar.
+     * @param player the player of which the record is needed
+     * @return record of the player (must not be modified)
      * @throws PlayerNotInListException the player has no entry in the config.yml and
-     *                                  no index can be returned
-     */
-    public int[] getPIndex(Player player) throws CorruptedConfigException, PlayerNotInListException {
-        String uuid = player.getUniqueId().toString();
-        for (int i = 0 ; i < getHBCount() ; i++) { //loop through health bars
-            for (int j = 0 ; j < getPCount(getHBName(i)) ; j++) { //loop through players
-                String tmpUUID;
-                try {
-                    tmpUUID = plugin.getConfig().get(hbPath + i + pPath + j + ".UUID").toString(); //put uuid of the player we look at in this iteration in temporary variable
-                } catch (NullPointerException e) {
-                    throw new CorruptedConfigException("CONFIG ERROR: player uuid not found!");
-                }
-                if (uuid.equals(tmpUUID)) { //compare UUIDs, if equal we found the needed player
-                    int[] index = new int[2];
-                    index[0] = i; //put index of the health bar in array
-                    index[1] = j; //put index of the player in array
-                    return index; //return array
-                }
-            }
+     *                                  no record can be returned
+     */
+    public MemberRecord getMember(Player player) throws PlayerNotInListException {
+        BarRecord bar = memberIndex.get(player.getUniqueId());
+        if (bar == null) {
+            throw new PlayerNotInListException("Player: '" + player.getName() + "' is not assigned to any health bar!"); //player was no where found
         }
-        throw new PlayerNotInListException("Player: '" + player.getName() + "' is not assigned to any health bar!"); //player was no where found
+        return bar.getMember(player.getUniqueId());
     }
 
     /**
-     * A method to get the index of the health bar a player is added to and the index
-     * of the player in that health bar for all players with the passed name.
-     * @param name name of the players of which the indices are needed
-     * @return array list with all the indices of players with given name
-     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     * A method to add a player to the index of the names.
+     * @param index index of the names
+     * @param names names for the tab completion (a name is added with its first player)
+     * @param name name of the player
+     * @param uuid UUID of the player
      */
-    public ArrayList<int[]> getPIndex(String name) throws CorruptedConfigException {
-        ArrayList<int[]> index = new ArrayList<int[]>();
-        for (int i = 0 ; i < getHBCount() ; i++) { //loop through health bars
-            for (int j = 0 ; j < getPCount(getHBName(i)) ; j++) { //loop through players
-                String tmpName;
-                try {
-                    tmpName = plugin.getConfig().get(hbPath + i + pPath + j + ".Name").toString(); //put name of the player we look at in this iteration in temporary variable
-                } catch (NullPointerException e) {
-                    throw new CorruptedConfigException("CONFIG ERROR: player name not found!");
-                }
-                if (name.equals(tmpName)) { //compare names, if equal we found one of the needed players
-                    int[] akt = new int[2];
-                    akt[0] = i; //put index of the health bar in array
-                    akt[1] = j; //put index of the player in array
-                    index.add(akt); //put array in array list
-                }
-            }
+    private static void indexName(HashMap<String, ArrayList<UUID>> index, NameIndex names, String name, UUID uuid) {
+        ArrayList<UUID> uuids = index.get(name.toLowerCase(Locale.ROOT));
+        if (uuids == null) {
+            uuids = new ArrayList<UUID>(1); //names are unique most of the time
+            index.put(name.toLowerCase(Locale.ROOT), uuids);
+            names.add(name);
         }
-        return index; //return array list
+        uuids.add(uuid);
     }
 
     /**
-     * A method to get the name of a health bar by the index of its
-     * entry in the config.yml.
-     * @param i index of the entry of the health bar
-     * @return name of the health bar
-     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     * A method to remove a player from the index of the names.
+     * @param name name of the player
+     * @param uuid UUID of the player
      */
-    public String getHBName(int i) throws CorruptedConfigException {
-        String hbName;
-        try {
-            hbName = plugin.getConfig().get(hbPath + i + ".Name").toString(); //get the name from the entry in config.yml
-        } catch (NullPointerException e) {
-            throw new CorruptedConfigException("CONFIG ERROR: health bar name not found!");
+    private void unindexName(String name, UUID uuid) {
+        ArrayList<UUID> uuids = nameIndex.get(name.toLowerCase(Locale.ROOT));
+        if (uuids == null) return;
+        uuids.remove(uuid);
+        if (uuids.isEmpty()) {
+            nameIndex.remove(name.toLowerCase(Locale.ROOT));
+            memberNames.removeIgnoreCase(name); //the stored name can differ in case
+        }
+    }
+
+    /**
+     * A method to get the names of the health bars that start with the prefix for the tab completion
+     * (can be called on every thread).
+     * @param prefix typed beginning of the name (case-insensitive)
+     * @param limit maximum count of names
+     * @return names of the health bars in alphabetical order
+     */
+    public List<String> completeHealthBars(String prefix, int limit) {
+        return barNames.complete(prefix, limit);
+    }
+
+    /**
+     * A method to get the names of the players assigned to a health bar (online or not) that start
+     * with the prefix for the tab completion (can be called on every thread).
+     * @param prefix typed beginning of the name (case-insensitive)
+     * @param limit maximum count of names
+     * @return names of the players in alphabetical order
+     */
+    public List<String> completeMembers(String prefix, int limit) {
+        return memberNames.complete(prefix, limit);
+    }
+
+    /**
+     * A method to get the name of the health bar a player is assigned to.
+     * @param uuid UUID of the player
+     * @return name of the health bar or null if the player is not assigned to any
+     */
+    public String getHBName(UUID uuid) {
+        BarRecord bar = memberIndex.get(uuid);
+        return bar == null ? null : bar.getName();
+    }
+
+    /**
+     * A method to get the records of all health bars.
+     * @return records of all health bars in the order they were created (must not be modified)
+     */
+    public Collection<BarRecord> getRecords() {
+        return bars.values();
+    }
+
+    /**
+     * A method to get the version of a health bar, which changes whenever the health bar is created,
+     * deleted or its players change. Commands use it to detect changes made by other commands.
+     * @param hbName name of the health bar
+     * @return version of the health bar or -1 if it does not exist
+     */
+    public long getVersion(String hbName) {
+        BarRecord bar = bars.get(hbName);
+        return bar == null ? -1 : bar.getVersion();
+    }
+
+    /**
+     * A method to copy the record of a health bar, so it can be read off the main thread.
+     * @param hbName name of the health bar
+     * @return copy of the record with its players or null if the health bar does not exist
+     */
+    public BarRecord copyRecord(String hbName) {
+        BarRecord bar = bars.get(hbName);
+        return bar == null ? null : bar.copy();
+    }
+
+    /**
+     * A method to copy the records of all health bars, so they can be read off the main thread.
+     * @return copies of the records in the order the health bars were created
+     */
+    public ArrayList<BarRecord> copyRecords() {
+        ArrayList<BarRecord> copy = new ArrayList<BarRecord>(bars.size());
+        for (BarRecord i : bars.values()) {
+            copy.add(i.copy());
         }
-        return hbName;
+        return copy;
+    }
+
+    /**
+     * A method to copy the records of all players with the passed name, so they can be read off
+     * the main thread.
+     * @param name name of the players (case-insensitive)
+     * @return copies of the records of the players
+     */
+    public ArrayList<MemberRecord> copyMembers(String name) {
+        ArrayList<MemberRecord> members = new ArrayList<MemberRecord>();
+        ArrayList<UUID> uuids = nameIndex.get(name.toLowerCase(Locale.ROOT));
+        if (uuids == null) return members; //no player has the name
+        for (UUID i : uuids) {
+            members.add(memberIndex.get(i).getMember(i).copy());
+        }
+        return members;
     }
 
     /**
@@ -401,15 +833,10 @@ public class Config {
      * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
      */
     public ArrayList<String> getPlayerList(HealthBar hb) throws CorruptedConfigException {
-        int hbIndex = getHBIndex(hb.getName());
-        int pcount = getPCount(hb.getName()); //get the player count of the health bar as bound for the for-loop
-        ArrayList<String> players = new ArrayList<String>();
-        for (int i = 0; i < pcount; i++) { //loop through the players
-            try {
-                players.add(plugin.getConfig().get(hbPath + hbIndex + pPath + i + ".Name").toString()); //add the name of the player we look at in this iteration to the array list
-            } catch (NullPointerException e) {
-                throw new CorruptedConfigException("CONFIG ERROR: player name not found!");
-            }
+        Collection<MemberRecord> members = getRecord(hb.getName()).getMembers();
+        ArrayList<String> players = new ArrayList<String>(members.size());
+        for (MemberRecord i : members) { //loop through the players
+            players.add(i.getName()); //add the name of the player we look at in this iteration to the array list
         }
         return players; //return array list
     }
@@ -419,19 +846,22 @@ public class Config {
      * @param player player which needs to be updated
      */
     public void updatePlayer(Player player) {
-        try {
-            int[] index = getPIndex(player); //get the index to find the entry that needs to be updated
-            Calendar calendar = new GregorianCalendar();
-            Date date = calendar.getTime(); //get current time
-            plugin.getConfig().set(hbPath + index[0] + pPath + index[1] + ".Name", player.getName()); //update name
-            plugin.getConfig().set(hbPath + index[0] + pPath + index[1] + ".Last Login", sdf.format(date)); //update last login
-            plugin.saveConfig(); //save all changes made
-        } catch (CorruptedConfigException e) {
-            plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + e.getMessage());
-        } catch (PlayerNotInListException e) {
-            //player is not assigned to any health bar and nothing needs to happen
+        BarRecord bar = memberIndex.get(player.getUniqueId()); //get the health bar to find the entry that needs to be updated
+        if (bar == null) { //player is not assigned to any health bar and nothing needs to happen
             return;
         }
+        MemberRecord member = bar.getMember(player.getUniqueId());
+        if (!member.getName().equals(player.getName())) { //player changed his name
+            unindexName(member.getName(), member.getUniqueId());
+            indexName(nameIndex, memberNames, player.getName(), member.getUniqueId());
+            member.setName(player.getName()); //update name
+            snapshots.publish(bar);
+        }
+        member.setLastLogin(System.currentTimeMillis()); //update last login
+        markDirty(member.getUniqueId());
+        if (journal != null) journal.updateMember(member);
+        persistence.markDirty(); //changes get written with the next flush
+        Metrics.get().getStorage().mutation(Mutation.UPDATE_MEMBER);
     }
 
     /**
@@ -440,17 +870,12 @@ public class Config {
      * @return health bar of the player
      */
     public HealthBar getHealthBar(Player player) {
+        BarRecord bar = memberIndex.get(player.getUniqueId());
+        if (bar == null) return null; //player is not assigned to any health bar
         try {
-            int[] index = getPIndex(player); //get the index to find the entry that holds the needed information
-            String hbName = getHBName(index[0]);
-            HealthBar hb = HealthBar.getHealthBar(hbName); //get the health bar object
-            return hb;
-        } catch (CorruptedConfigException e) {
-            plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + e.getMessage());
+            return HealthBar.getHealthBar(bar.getName()); //get the health bar object
         } catch (ItemNotFoundException e) {
-            plugin.getServer().getConsoleSender().sendMessage((ChatColor.RED + e.getMessage()));
-        } catch (PlayerNotInListException e) {
-            return null;
+            plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + e.getMessage());
         }
         return null;
     }
@@ -461,13 +886,14 @@ public class Config {
      * @param health health value which needs to be set to
      */
     public void setHealth(HealthBar hb, double health) {
-        try {
-            int index = getHBIndex(hb.getName()); //get the index to find the entry
-            plugin.getConfig().set(hbPath + index + ".Health", health); //set health value to passed double
-            plugin.saveConfig();
-        } catch (CorruptedConfigException e) {
-            plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + e.getMessage());
-        }
+        BarRecord bar = bars.get(hb.getName()); //get the record of the health bar
+        if (bar == null) return; //health bar was deleted
+        bar.setHealth(health); //only the latest value gets written with the next flush
+        snapshots.publishHealth(bar);
+        markDirty(hb.getName());
+        if (journal != null) journal.health(hb.getName(), health);
+        persistence.markDirty();
+        Metrics.get().getStorage().mutation(Mutation.SET_HEALTH);
     }
 
 }
@@ -0,0 +1,278 @@
+package com.kalle.syncedhealthbar;
+
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import com.kalle.syncedhealthbar.scheduler.IoExecutor;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import com.kalle.syncedhealthbar.storage.HealthJournal;
+import com.kalle.syncedhealthbar.storage.Storage;
+import com.kalle.syncedhealthbar.storage.StorageSnapshot;
+import com.kalle.syncedhealthbar.storage.YamlStorage;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * A class that writes the records to the storage write-behind. Changes are only marked as dirty and
+ * repeated health updates of the same health bar are coalesced in its record, so the storage is
+ * written at most once per flush interval. The main thread only copies the changed records,
+ * serializing them and the disk I/O happen on the writer thread.
+ * <p>
+ * Durability: the storages never leave their data half written (the config.yml is replaced
+ * atomically, the database is written in one transaction). Creating, deleting and (re)assigning
+ * health bars is flushed on the next tick, health values and last logins at the latest after one
+ * flush interval, and everything is flushed synchronously when the plugin gets disabled. A failed
+ * write is repeated with all records on the next flush.
+ */
+public class ConfigPersistence {
+
+    private Plugin plugin;
+    private Config config;
+    private volatile Storage storage; //storage the snapshots are written to
+    private HealthJournal journal; //journal that gets compacted when a snapshot is written (null if disabled)
+    private HealthJournal.Segment unwrittenSegment; //segment of the oldest snapshot that failed, kept until a full snapshot is written (writer thread)
+
+    private boolean dirty = false; //true if changes were made that are not part of a snapshot yet
+    private boolean flushScheduled = false; //true if a flush on the next tick is already scheduled
+    private AtomicLong oldestUnwritten = new AtomicLong(0); //time in ms of the oldest change that is not part of a snapshot yet (0 if there is none)
+    private ConcurrentLinkedQueue<Long> inFlight = new ConcurrentLinkedQueue<Long>(); //time in ms of the oldest change of every snapshot the writer thread has not written yet
+    private AtomicLong writes = new AtomicLong(0); //count of completed writes of the storage
+    private long flushTime = 0; //time in ns the main thread spent taking snapshots
+    private boolean lagWarned = false; //true if a warning about the flush lag was already sent
+
+    private long maxFlushLag; //flush lag in ms after which a warning is sent to the console
+    private ExecutorService writer; //single thread so the snapshots are written in the order they were taken
+    private TaskScheduler scheduler; //scheduler of the flushes (main thread or global region thread)
+    private TaskScheduler.Task task; //repeating task that flushes the changes
+
+    /**
+     * Class constructor.
+     * @param plugin main class to schedule the flushes and to get the settings
+     * @param config config to take the snapshots of the records from
+     */
+    public ConfigPersistence(Plugin plugin, Config config) {
+        this.plugin = plugin;
+        this.config = config;
+    }
+
+    /**
+     * A method to set the storage the records are written to (when they were loaded from it).
+     * @param storage opened storage
+     */
+    public void setStorage(Storage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * A method to set the journal that gets compacted when a snapshot is written.
+     * @param journal opened journal or null if it is disabled
+     */
+    public void setJournal(HealthJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * A method to get the storage the records are written to.
+     * @return current storage
+     */
+    public Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * A method to start the writer thread and the repeating flush task. The interval and the
+     * maximum flush lag are read from the settings in the config.yml.
+     */
+    public void start() {
+        long interval = Math.max(1, plugin.getConfig().getLong("Settings.Flush Interval", 100)); //flush interval in ticks
+        maxFlushLag = plugin.getConfig().getLong("Settings.Max Flush Lag", 30000);
+        writer = IoExecutor.serial("Writer"); //virtual thread on Java 21
+        scheduler = TaskScheduler.get();
+        task = scheduler.runTimer(() -> {
+            if (dirty) flush(); //write the changes of the last interval
+            checkFlushLag();
+        }, interval, interval);
+    }
+
+    /**
+     * A method to stop the flush task and write all pending changes synchronously. Blocks until
+     * the writer thread has written the last snapshot.
+     */
+    public void shutdown() {
+        if (task != null) task.cancel();
+        if (writer == null) return; //persistence was never started
+        if (dirty) flush();
+        writer.shutdown();
+        boolean finished;
+        try {
+            finished = writer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            finished = false;
+            Thread.currentThread().interrupt();
+        }
+        if (finished) {
+            storage.close();
+        } else { //the storage is not closed under a write that is still running
+            writer.shutdownNow();
+            plugin.getLogger().severe("Timed out while writing the storage, the last changes might be lost!");
+        }
+        if (journal != null) journal.close(); //changes that are not in the storage are replayed from the journal on the next start
+    }
+
+    /**
+     * A method to mark the records as changed, so they are written with the next interval flush.
+     */
+    public void markDirty() {
+        dirty = true;
+        oldestUnwritten.compareAndSet(0, System.currentTimeMillis()); //only set if there is no older change
+    }
+
+    /**
+     * A method to mark the records as changed and write them on the next tick. All changes made
+     * in the same tick are written together.
+     */
+    public void requestFlush() {
+        markDirty();
+        if (flushScheduled || writer == null) return; //flush is already scheduled or persistence is not started yet
+        flushScheduled = true;
+        scheduler.run(this::flush);
+    }
+
+    /**
+     * A method to take a snapshot of the changed records on the main thread and hand it to the
+     * writer thread.
+     */
+    public void flush() {
+        long start = System.nanoTime();
+        flushScheduled = false;
+        dirty = false;
+        final Storage target = storage;
+        final StorageSnapshot snapshot = config.snapshot(target.needsFullSnapshot()); //copy of the records that gets written
+        final long oldest = oldestUnwritten.get();
+        oldestUnwritten.compareAndSet(oldest, 0); //later changes are part of the next snapshot
+        final long since = oldest == 0 ? System.currentTimeMillis() : oldest; //oldest change that is part of the snapshot
+        inFlight.add(since);
+        final HealthJournal.Segment closed = journal == null ? null : journal.rotate(); //entries of the journal that are contained in the snapshot
+        writer.execute(() -> write(target, snapshot, since, closed));
+        flushTime += System.nanoTime() - start;
+        Metrics.get().getStorage().snapshot(start);
+    }
+
+    /**
+     * A method executed by the writer thread to write a snapshot to the storage.
+     * @param target storage the snapshot gets written to
+     * @param snapshot snapshot of the records that needs to be written
+     * @param since time of the oldest change in the snapshot
+     * @param segment closed segment of the journal whose entries are contained in the snapshot (null if there is none)
+     */
+    private void write(Storage target, StorageSnapshot snapshot, long since, HealthJournal.Segment segment) {
+        long start = System.nanoTime();
+        try {
+            target.write(snapshot);
+            Metrics.get().getStorage().write(start, true);
+            writes.incrementAndGet();
+            inFlight.poll(); //snapshots are written in the order they were taken
+            if (unwrittenSegment != null && snapshot.isFull()) unwrittenSegment = null; //the full snapshot was taken after the failed one and contains its changes
+            if (segment != null && unwrittenSegment == null) journal.compact(segment); //entries are in the storage now
+        } catch (StorageException e) {
+            Metrics.get().getStorage().write(start, false);
+            oldestUnwritten.accumulateAndGet(since, (current, failed) -> current == 0 ? failed : Math.min(current, failed)); //changes are written again with the next flush
+            inFlight.poll();
+            if (unwrittenSegment == null) unwrittenSegment = segment; //a later delta snapshot does not contain the changes, so the segments are not compacted
+            plugin.getLogger().log(Level.SEVERE, e.getMessage() + " Retrying with the next flush!", e.getCause());
+            if (plugin.isEnabled()) {
+                scheduler.run(config::markAllDirty); //changes of the snapshot are lost, so everything needs to be written again
+            }
+        }
+    }
+
+    /**
+     * A method to copy all records to another storage and use it from then on. The copy is written
+     * by the writer thread after all pending snapshots, the setting in the config.yml is changed
+     * afterwards.
+     * @param targetName name of the storage the records get copied to
+     * @param sender sender who gets notified when the migration is done
+     * @throws StorageException no storage has the passed name or the storage is already used
+     */
+    public void migrate(String targetName, CommandSender sender) throws StorageException {
+        final Storage target = Storage.create(plugin, targetName);
+        final Storage previous = storage;
+        if (target.getName().equals(previous.getName())) {
+            throw new StorageException("The storage '" + target.getName() + "' is already used!");
+        }
+        final YamlStorage yaml; //writes the setting to the config.yml
+        if (target instanceof YamlStorage) yaml = (YamlStorage) target;
+        else if (previous instanceof YamlStorage) yaml = (YamlStorage) previous;
+        else yaml = new YamlStorage(plugin);
+        final StorageSnapshot snapshot = config.snapshot(true); //all records get copied
+        storage = target; //every later snapshot goes to the new storage
+        writer.execute(() -> {
+            try {
+                yaml.setSetting("Settings.Storage", target.getName());
+                target.open();
+                target.write(snapshot);
+                if (yaml != target) yaml.write(snapshot); //the config.yml keeps a copy of the records in case the storage is changed back
+                previous.close();
+                scheduler.run(() -> sender.sendMessage(ChatColor.GREEN + "The health bars have been migrated to the storage: '" + target.getName() + "'!"));
+            } catch (StorageException e) {
+                plugin.getLogger().log(Level.SEVERE, e.getMessage(), e.getCause());
+                yaml.setSetting("Settings.Storage", previous.getName());
+                scheduler.run(() -> {
+                    storage = previous; //keep the previous storage and write everything to it again
+                    config.markAllDirty();
+                    target.close();
+                    sender.sendMessage(ChatColor.RED + "The migration failed: " + e.getMessage());
+                });
+            }
+        });
+    }
+
+    /**
+     * A method to send a warning to the console once the flush lag exceeds the configured maximum.
+     */
+    private void checkFlushLag() {
+        long lag = getFlushLag();
+        if (lag > maxFlushLag && !lagWarned) {
+            plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + "WARNING: changes of SyncedHealthBar have not been written for " + lag + "ms!");
+            lagWarned = true;
+        } else if (lag <= maxFlushLag) {
+            lagWarned = false;
+        }
+    }
+
+    /**
+     * A method to get the flush lag, which is the age of the oldest change that is not written to
+     * the storage yet (either waiting for a snapshot or in a snapshot the writer thread has not
+     * written yet).
+     * @return flush lag in ms (0 if everything is written)
+     */
+    public long getFlushLag() {
+        Long queued = inFlight.peek(); //oldest snapshot that is not written yet
+        long since = oldestUnwritten.get();
+        if (queued != null && (since == 0 || queued < since)) since = queued;
+        return since == 0 ? 0 : System.currentTimeMillis() - since;
+    }
+
+    /**
+     * A method to get how often the storage has been written.
+     * @return count of completed writes
+     */
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    /**
+     * A method to get how much time the main thread spent taking snapshots in total.
+     * @return time in ns
+     */
+    public long getFlushTime() {
+        return flushTime;
+    }
+
+}
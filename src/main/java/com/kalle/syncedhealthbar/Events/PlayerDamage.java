@@ -2,6 +2,10 @@ package com.kalle.syncedhealthbar.Events;
 
 import com.kalle.syncedhealthbar.Exceptions.PlayerNotInListException;
 import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.HealthPipeline;
+import com.kalle.syncedhealthbar.metrics.EventStats;
+import com.kalle.syncedhealthbar.metrics.EventType;
+import com.kalle.syncedhealthbar.metrics.Metrics;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -12,18 +16,40 @@ import org.bukkit.event.entity.EntityDamageEvent;
  */
 public class PlayerDamage implements Listener {
 
+    private EventStats stats = Metrics.get().event(EventType.DAMAGE); //statistics of the event
+    private HealthPipeline pipeline; //merges the damage of a tick per health bar
+
     /**
-     * The method that implements what happens when the event gets triggered.
+     * A class constructor so we can pass the pipeline to the object.
+     * @param pipeline pipeline that applies the damage at the end of the tick
+     */
+    public PlayerDamage(HealthPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * The method that gets called when the event gets triggered.
      * @param event event that gets triggered
      */
     @EventHandler
     public void onDamage(EntityDamageEvent event) {
+        long start = System.nanoTime();
+        damage(event);
+        stats.record(start); //count the event and the time the listener needed
+    }
+
+    /**
+     * The method that implements what happens when the event gets triggered.
+     * @param event event that gets triggered
+     */
+    private void damage(EntityDamageEvent event) {
         if (event.getEntity() instanceof Player) { //check if the entity is a player
             Player player = (Player) event.getEntity(); //cast entity to player
             try {
                 HealthBar hb = HealthBar.getHealthBar(player); //get the player's health bar
+                hb.getStats().damageEvent();
                 double damage = event.getDamage(); //get the amount of damage the event has caused
-                hb.dealDamage(player,damage); //deal damage to all players in the same health bar
+                pipeline.damage(hb,player,damage,event.getCause()); //deal damage to all players in the same health bar at the end of the tick
             } catch (PlayerNotInListException e) { //player has no health bar assigned
                 //case can occur and nothing needs to be done
                 return;
@@ -0,0 +1,52 @@
+package com.kalle.syncedhealthbar.Events;
+
+import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.metrics.EventStats;
+import com.kalle.syncedhealthbar.metrics.EventType;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import com.kalle.syncedhealthbar.regen.RegenEngine;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.FoodLevelChangeEvent;
+
+/**
+ * A class which implements the listener that detects the event when the food level of a player
+ * changes, so the food level of his health bar is kept up to date for the regeneration.
+ */
+public class PlayerFood implements Listener {
+
+    private EventStats stats = Metrics.get().event(EventType.FOOD); //statistics of the event
+
+    /**
+     * The method that gets called when the event gets triggered. It runs after the other plugins,
+     * so it sees the food level the player gets.
+     * @param event event that gets triggered
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFoodChange(FoodLevelChangeEvent event) {
+        long start = System.nanoTime();
+        food(event);
+        stats.record(start); //count the event and the time the listener needed
+    }
+
+    /**
+     * The method that implements what happens when the event gets triggered.
+     * @param event event that gets triggered
+     */
+    private void food(FoodLevelChangeEvent event) {
+        if (!(event.getEntity() instanceof Player)) return;
+        Player player = (Player) event.getEntity(); //cast entity to player
+        HealthBar hb = HealthBar.getRegistry().getHealthBar(player); //get the player's health bar
+        if (hb == null) return; //player has no health bar assigned
+        boolean ate = event.getFoodLevel() > player.getFoodLevel();
+        hb.getRegen().updateFood(player.getUniqueId(), event.getFoodLevel());
+        TaskScheduler scheduler = TaskScheduler.get();
+        if (ate && scheduler != null && RegenEngine.get() != null) {
+            scheduler.runForEntityLater(player, () -> RegenEngine.refresh(player), 1); //the saturation of the food is added after the event
+        }
+    }
+
+}
@@ -2,38 +2,58 @@ package com.kalle.syncedhealthbar.Events;
 
 import com.kalle.syncedhealthbar.Exceptions.PlayerNotInListException;
 import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.HealthPipeline;
+import com.kalle.syncedhealthbar.metrics.EventStats;
+import com.kalle.syncedhealthbar.metrics.EventType;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import com.kalle.syncedhealthbar.regen.RegenEngine;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityRegainHealthEvent;
 
-import java.util.ArrayList;
-
 /**
  * A class which implements the listener that detects the event when a player heals.
  */
 public class PlayerHeal implements Listener {
 
+    private EventStats stats = Metrics.get().event(EventType.HEAL); //statistics of the event
+    private HealthPipeline pipeline; //merges the healing of a tick per health bar
+
     /**
-     * The method that implements what happens when the event gets triggered.
+     * A class constructor so we can pass the pipeline to the object.
+     * @param pipeline pipeline that applies the healing at the end of the tick
+     */
+    public PlayerHeal(HealthPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * The method that gets called when the event gets triggered.
      * @param event event that gets triggered
      */
     @EventHandler
     public void onHeal(EntityRegainHealthEvent event) {
+        long start = System.nanoTime();
+        heal(event);
+        stats.record(start); //count the event and the time the listener needed
+    }
+
+    /**
+     * The method that implements what happens when the event gets triggered.
+     * @param event event that gets triggered
+     */
+    private void heal(EntityRegainHealthEvent event) {
         if (event.getEntity() instanceof Player) { //check if the entity is a player
             Player player = (Player) event.getEntity(); //cast entity to player
             try {
                 HealthBar hb = HealthBar.getHealthBar(player); //get the player's health bar
+                hb.getStats().healEvent();
                 if (event.getRegainReason().equals(EntityRegainHealthEvent.RegainReason.SATIATED)) { //check if healing is caused because a player has eaten enough
-                    ArrayList<Player> players = hb.getPlayers(); //get all online players assigned to the same health bar
-                    double foodLevel = 0; //create variable to calculate the mean of the food levels of the players
-                    for (int i = 0; i < players.size(); i++) { //loop through players
-                        foodLevel += players.get(i).getFoodLevel(); //add all food levels
-                    }
-                    foodLevel = foodLevel / players.size(); //divide by player size in order to get the mean
-                    if (foodLevel < 18) { event.setCancelled(true); return; } //if the mean exceeds 18 the players regain health regularly
+                    if (RegenEngine.get() != null) { event.setCancelled(true); return; } //the engine regenerates the health bar once per interval instead of every player
+                    if (hb.getRegen().getMeanFood() < 18) { event.setCancelled(true); return; } //if the mean exceeds 18 the players regain health regularly
                 }
-                hb.healHealth(player,event.getAmount()); //heal all players by the same amount of healing done
+                pipeline.heal(hb,player,event.getAmount(),event.getRegainReason()); //heal all players by the same amount of healing done at the end of the tick
             } catch (PlayerNotInListException e) { //player has no health bar assigned
                 //case can occur and nothing needs to be done
                 return;
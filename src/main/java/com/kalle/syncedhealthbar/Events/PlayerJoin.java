@@ -2,6 +2,10 @@ package com.kalle.syncedhealthbar.Events;
 
 import com.kalle.syncedhealthbar.Config;
 import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.metrics.EventStats;
+import com.kalle.syncedhealthbar.metrics.EventType;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -12,6 +16,7 @@ import org.bukkit.event.player.PlayerJoinEvent;
  */
 public class PlayerJoin implements Listener {
 
+    private EventStats stats = Metrics.get().event(EventType.JOIN); //statistics of the event
     private Config config; //config because we need to make changes to the config.yml
 
     /**
@@ -23,17 +28,42 @@ public class PlayerJoin implements Listener {
     }
 
     /**
-     * The method that implements what happens when the event gets triggered.
+     * The method that gets called when the event gets triggered.
      * @param event event that gets triggered
      */
     @EventHandler
     public void onJoin(PlayerJoinEvent event) {
+        long start = System.nanoTime();
+        join(event);
+        stats.record(start); //count the event and the time the listener needed
+    }
+
+    /**
+     * The method that implements what happens when the event gets triggered.
+     * @param event event that gets triggered
+     */
+    private void join(PlayerJoinEvent event) {
         Player player = event.getPlayer(); //get the player that triggered the event
+        TaskScheduler scheduler = TaskScheduler.get();
+        if (scheduler != null && scheduler.isRegionThreaded()) { //on Folia the config is only changed on the global region thread
+            scheduler.run(() -> {
+                if (player.isOnline()) join(player); //player could have left in the meantime
+            });
+            return;
+        }
+        join(player);
+    }
+
+    /**
+     * A method to load a joining player in his health bar.
+     * @param player player that joined
+     */
+    private void join(Player player) {
         config.updatePlayer(player); //update name and last login of the player in the config.yml
         HealthBar hb = config.getHealthBar(player); //get the health bar of the player (by entry stored in the config.yml)
         try {
             hb.joinPlayer(player); //load player in the health bar
-            player.setHealth(hb.getHealth()); //set players health to the health of the health bar
+            hb.syncHealth(player); //set players health to the health of the health bar
         } catch (NullPointerException e) { //player has no health bar assigned
             //case can occur and nothing needs to be done
             return;
@@ -2,6 +2,9 @@ package com.kalle.syncedhealthbar.Events;
 
 import com.kalle.syncedhealthbar.Exceptions.PlayerNotInListException;
 import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.metrics.EventStats;
+import com.kalle.syncedhealthbar.metrics.EventType;
+import com.kalle.syncedhealthbar.metrics.Metrics;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -12,12 +15,24 @@ import org.bukkit.event.player.PlayerQuitEvent;
  */
 public class PlayerQuit implements Listener {
 
+    private EventStats stats = Metrics.get().event(EventType.QUIT); //statistics of the event
+
     /**
-     * The method that implements what happens when the event gets triggered.
+     * The method that gets called when the event gets triggered.
      * @param event event that gets triggered
      */
     @EventHandler
     public void onQuit(PlayerQuitEvent event) {
+        long start = System.nanoTime();
+        quit(event);
+        stats.record(start); //count the event and the time the listener needed
+    }
+
+    /**
+     * The method that implements what happens when the event gets triggered.
+     * @param event event that gets triggered
+     */
+    private void quit(PlayerQuitEvent event) {
         Player player = event.getPlayer(); //get the player that triggered the event
         try {
             HealthBar hb = HealthBar.getHealthBar(player); //get the player's health bar
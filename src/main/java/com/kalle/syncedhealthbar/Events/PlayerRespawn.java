@@ -2,6 +2,9 @@ package com.kalle.syncedhealthbar.Events;
 
 import com.kalle.syncedhealthbar.Exceptions.PlayerNotInListException;
 import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.metrics.EventStats;
+import com.kalle.syncedhealthbar.metrics.EventType;
+import com.kalle.syncedhealthbar.metrics.Metrics;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -12,17 +15,37 @@ import org.bukkit.event.player.PlayerRespawnEvent;
  */
 public class PlayerRespawn implements Listener {
 
+    private EventStats stats = Metrics.get().event(EventType.RESPAWN); //statistics of the event
+    private RespawnService respawnService; //restores the health of the player after he respawned
+
     /**
-     * The method that implements what happens when the event gets triggered.
+     * A class constructor so we can pass the respawn service to the object.
+     * @param respawnService service that restores the health after the respawn
+     */
+    public PlayerRespawn(RespawnService respawnService) {
+        this.respawnService = respawnService;
+    }
+
+    /**
+     * The method that gets called when the event gets triggered.
      * @param event event that gets triggered
      */
     @EventHandler
     public void onRespawn(PlayerRespawnEvent event) {
+        long start = System.nanoTime();
+        respawn(event);
+        stats.record(start); //count the event and the time the listener needed
+    }
+
+    /**
+     * The method that implements what happens when the event gets triggered.
+     * @param event event that gets triggered
+     */
+    private void respawn(PlayerRespawnEvent event) {
         Player player = event.getPlayer(); //get the player that triggered the event
         try {
             HealthBar hb = HealthBar.getHealthBar(player); //get the player's health bar
-            RespawnTask task = new RespawnTask(player,hb); //create thread to track when the player actually spawns on map (otherwise health can not be set cause event overwrites it to full health at the end)
-            task.start(); //start the thread
+            respawnService.schedule(player,hb); //health can only be set after the event, since the event overwrites it to full health at the end
         } catch (PlayerNotInListException e) { //player has no health bar assigned
             //case can occur and nothing needs to be done
             return;
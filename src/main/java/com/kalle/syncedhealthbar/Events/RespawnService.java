@@ -0,0 +1,130 @@
+package com.kalle.syncedhealthbar.Events;
+
+import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.metrics.EventStats;
+import com.kalle.syncedhealthbar.metrics.EventType;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+
+/**
+ * A class that synchronizes the health of respawning players with their health bar. The respawn
+ * event sets the health of the player to full health at its end, so the health can only be set
+ * after the event. The players are tracked per health bar and one task per health bar restores
+ * their health on the next tick, so no CPU is used while waiting. On servers that provide the
+ * PlayerPostRespawnEvent (Paper) the health is restored in that event right away. On Folia every
+ * player is restored by his own scheduler, since the players of a health bar can be in different
+ * regions.
+ */
+public class RespawnService implements Listener {
+
+    private static final String POST_RESPAWN_EVENT = "com.destroystokyo.paper.event.player.PlayerPostRespawnEvent";
+
+    private Plugin plugin;
+    private TaskScheduler scheduler;
+    private EventStats stats = Metrics.get().event(EventType.POST_RESPAWN); //statistics of the PlayerPostRespawnEvent
+    private HashMap<HealthBar, LinkedHashMap<UUID, Player>> pending = new HashMap<HealthBar, LinkedHashMap<UUID, Player>>(); //respawning players of every health bar
+
+    /**
+     * A class constructor to pass the plugin which schedules the tasks.
+     * @param plugin plugin that owns the scheduled tasks
+     * @param scheduler scheduler of the tasks that restore the health
+     */
+    public RespawnService(Plugin plugin, TaskScheduler scheduler) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * A method to listen to the PlayerPostRespawnEvent if the server provides it.
+     */
+    @SuppressWarnings("unchecked")
+    public void registerPostRespawn() {
+        Class<? extends Event> postRespawn;
+        try {
+            postRespawn = (Class<? extends Event>) Class.forName(POST_RESPAWN_EVENT);
+        } catch (ClassNotFoundException e) { //server does not provide the event, the scheduled task is used
+            return;
+        }
+        plugin.getServer().getPluginManager().registerEvent(postRespawn, this, EventPriority.NORMAL, (listener, event) -> {
+            long start = System.nanoTime();
+            if (event instanceof PlayerEvent) resync(((PlayerEvent) event).getPlayer());
+            stats.record(start);
+        }, plugin);
+    }
+
+    /**
+     * A method to schedule the health restore of a respawning player.
+     * @param player player that respawns
+     * @param hb health bar of the player
+     */
+    public void schedule(Player player, HealthBar hb) {
+        if (scheduler.isRegionThreaded()) { //the player is restored on the thread of his region
+            scheduler.runForEntityLater(player, () -> apply(player), 1);
+            return;
+        }
+        LinkedHashMap<UUID, Player> players = pending.get(hb);
+        if (players == null) { //first respawning player of the health bar in this tick
+            players = new LinkedHashMap<UUID, Player>();
+            pending.put(hb, players);
+            scheduler.run(() -> resync(hb)); //one task for all players of the health bar
+        }
+        players.put(player.getUniqueId(), player);
+    }
+
+    /**
+     * A method to restore the health of all respawning players of a health bar.
+     * @param hb health bar of the players
+     */
+    private void resync(HealthBar hb) {
+        LinkedHashMap<UUID, Player> players = pending.remove(hb);
+        if (players == null) return; //all players were already restored
+        for (Player i : players.values()) {
+            apply(i);
+        }
+    }
+
+    /**
+     * A method to restore the health of a single player when he respawned.
+     * @param player player that respawned
+     */
+    private void resync(Player player) {
+        for (LinkedHashMap<UUID, Player> i : pending.values()) { //only a few health bars have respawning players at the same time
+            if (i.remove(player.getUniqueId()) != null) {
+                apply(player);
+                return;
+            }
+        }
+    }
+
+    /**
+     * A method to set the health of a player to the health of his current health bar.
+     * @param player player whose health needs to be set
+     */
+    private void apply(Player player) {
+        if (!player.isOnline() || player.isDead()) return; //player left or died again
+        HealthBar hb = HealthBar.getRegistry().getHealthBar(player); //the player could have been removed from his health bar in the meantime
+        if (hb == null) return;
+        player.setHealth(hb.getHealth()); //set health of the player to the health of his health bar
+    }
+
+    /**
+     * A method to get how many players of a health bar wait for their health to be restored.
+     * @param hb health bar of the players
+     * @return count of respawning players
+     */
+    public int getPendingCount(HealthBar hb) {
+        LinkedHashMap<UUID, Player> players = pending.get(hb);
+        return players == null ? 0 : players.size();
+    }
+
+}
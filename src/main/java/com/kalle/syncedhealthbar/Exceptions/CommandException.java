@@ -0,0 +1,16 @@
+package com.kalle.syncedhealthbar.Exceptions;
+
+/**
+ * An exception that is used when a command can not be executed, its message is sent to the sender.
+ */
+public class CommandException extends Exception {
+
+    /**
+     * A class constructor to pass the error message.
+     * @param errorMessage error message which contains information about what went wrong
+     */
+    public CommandException(String errorMessage) {
+        super(errorMessage);
+    }
+
+}
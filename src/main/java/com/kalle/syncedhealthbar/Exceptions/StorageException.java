@@ -0,0 +1,25 @@
+package com.kalle.syncedhealthbar.Exceptions;
+
+/**
+ * An exception that is used when the data of the plugin could not be read from or written to its storage.
+ */
+public class StorageException extends Exception{
+
+    /**
+     * A class constructor to pass the error message.
+     * @param errorMessage error message which contains information about what went wrong
+     */
+    public StorageException(String errorMessage) {
+        super(errorMessage);
+    }
+
+    /**
+     * A class constructor to pass the error message and the exception that caused the error.
+     * @param errorMessage error message which contains information about what went wrong
+     * @param cause exception that caused the error
+     */
+    public StorageException(String errorMessage, Throwable cause) {
+        super(errorMessage, cause);
+    }
+
+}
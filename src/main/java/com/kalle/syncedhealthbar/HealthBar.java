@@ -4,23 +4,43 @@ import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
 import com.kalle.syncedhealthbar.Exceptions.ItemNotFoundException;
 import com.kalle.syncedhealthbar.Exceptions.PlayerAlreadyInListException;
 import com.kalle.syncedhealthbar.Exceptions.PlayerNotInListException;
+import com.kalle.syncedhealthbar.api.event.HealthBarEvents;
+import com.kalle.syncedhealthbar.api.event.HealthBarPreChangeEvent;
+import com.kalle.syncedhealthbar.history.HealthHistory;
+import com.kalle.syncedhealthbar.history.HistoryBuffer;
+import com.kalle.syncedhealthbar.metrics.BarStats;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import com.kalle.syncedhealthbar.regen.RegenEngine;
+import com.kalle.syncedhealthbar.regen.RegenState;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import com.kalle.syncedhealthbar.simulation.LoadSimulation;
+import com.kalle.syncedhealthbar.sync.HealthSync;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Listener;
 
 import javax.naming.NameAlreadyBoundException;
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A class to represent a health bar in the game.
+ * A class to represent a health bar in the game. The health and the players can be changed from
+ * several threads (the region threads of Folia): the health is stored as the bits of the double
+ * and only changed by compare-and-set, and the list of players is copied on every change.
  */
 public class HealthBar implements Listener {
 
     private Config config; //config because we need to make changes to the config.yml
 
-    private ArrayList<Player> players = new ArrayList<Player>(); //list which holds all players added to the health bar
-    private static ArrayList<HealthBar> healthBars = new ArrayList<HealthBar>(); //list to get health bar objects
-    private double health; //health value which determines how much health the players currently have
+    private volatile List<Player> players = new CopyOnWriteArrayList<Player>(); //list which holds all players added to the health bar
+    private static HealthBarRegistry registry = new HealthBarRegistry(); //indices to get health bar objects by name or player
+    private AtomicLong health = new AtomicLong(); //bits of the health value which determines how much health the players currently have
+    private AtomicBoolean saveScheduled = new AtomicBoolean(false); //true if a task that saves the health is scheduled (Folia)
     private String uName; //unique name by which the health bars can be identified
+    private BarStats stats; //statistics of the health bar
+    private HistoryBuffer history; //recent changes of the health (null until the first change is recorded)
+    private RegenState regen = new RegenState(); //food levels of the online players for the regeneration
 
     /**
      * A class constructor which is used to create a new health bar.
@@ -32,15 +52,15 @@ public class HealthBar implements Listener {
      */
     public HealthBar(Config config, String uName) throws NameAlreadyBoundException, CorruptedConfigException {
         this.config = config;
-        for (HealthBar i : healthBars) { //loop through already existing health bars
-            if (i.getName().equals(uName)) { //check if names equal
-                throw new NameAlreadyBoundException("The name is already taken."); //name is already taken
-            }
+        if (registry.contains(uName)) { //check if name is already taken by another health bar
+            throw new NameAlreadyBoundException("The name is already taken."); //name is already taken
         }
         this.uName = uName; //set name
-        this.health = 20; //set health value to full health since health bar is new
+        this.health.set(Double.doubleToRawLongBits(20)); //set health value to full health since health bar is new
         config.addHealthBar(this); //save health bar in the config.yml
-        healthBars.add(this); //add health bar to list
+        registry.register(this); //add health bar to the registry
+        stats = Metrics.get().bar(uName);
+        HealthBarEvents.created(uName, 20);
     }
 
     /**
@@ -54,14 +74,10 @@ public class HealthBar implements Listener {
      */
     public HealthBar(Config config, String uName, double health) throws NameAlreadyBoundException, CorruptedConfigException {
         this.config = config;
-        for (HealthBar i : healthBars) { //loop through already existing health bars
-            if (i.getName().equals(uName)) { //check if names equal
-                throw new NameAlreadyBoundException("The name is already taken."); //name is already taken
-            }
-        }
         this.uName = uName; //set name
-        this.health = health; //set health value to passed health
-        healthBars.add(this); //add health bar to list
+        this.health.set(Double.doubleToRawLongBits(health)); //set health value to passed health
+        registry.register(this); //add health bar to the registry (throws if the name is duplicated)
+        stats = Metrics.get().bar(uName);
     }
 
     /**
@@ -77,7 +93,39 @@ public class HealthBar implements Listener {
      * @return health value of the health bar
      */
     public double getHealth() {
-        return health;
+        return Double.longBitsToDouble(health.get());
+    }
+
+    /**
+     * A method to get the config that holds the record of the health bar.
+     * @return config of the health bar
+     */
+    Config getConfig() {
+        return config;
+    }
+
+    /**
+     * A method to get the statistics of the health bar.
+     * @return statistics of the health bar
+     */
+    public BarStats getStats() {
+        return stats;
+    }
+
+    /**
+     * A method to get the food levels of the online players for the regeneration.
+     * @return regeneration state of the health bar
+     */
+    public RegenState getRegen() {
+        return regen;
+    }
+
+    /**
+     * A method to get the registry that indexes all health bars.
+     * @return registry of the health bars
+     */
+    public static HealthBarRegistry getRegistry() {
+        return registry;
     }
 
     /**
@@ -87,10 +135,9 @@ public class HealthBar implements Listener {
      * @throws ItemNotFoundException no health bar has the passed name and exception is thrown
      */
     public static HealthBar getHealthBar(String uName) throws ItemNotFoundException {
-        for (HealthBar i : healthBars) { //loop through all health bars
-            if (i.getName().equals(uName)) { //compare names
-                return i; //names match and health bar in this iteration gets returned
-            }
+        HealthBar hb = registry.getHealthBar(uName); //look up the health bar in the name index
+        if (hb != null) {
+            return hb;
         }
         throw new ItemNotFoundException("The health bar: '" + uName + "' does not exist!"); //no health bar has the name
     }
@@ -102,10 +149,9 @@ public class HealthBar implements Listener {
      * @throws PlayerNotInListException player is not assigned to any health bar and exception is thrown
      */
     public static HealthBar getHealthBar(Player player) throws PlayerNotInListException {
-        for (HealthBar i : healthBars) { //loop through health bars
-            if (i.players.contains(player)) { //check if player is in players list of health bar we look at in this iteration
-                return i; //return the health bar if player is a part of the health bar
-            }
+        HealthBar hb = registry.getHealthBar(player); //look up the health bar in the player index
+        if (hb != null) {
+            return hb;
         }
         throw new PlayerNotInListException("Player: '" + player.getName() + "' has no health bar assigned!"); //player is not assigned to any health bar
     }
@@ -119,7 +165,10 @@ public class HealthBar implements Listener {
     public void addPlayer(Player player) throws PlayerAlreadyInListException, CorruptedConfigException {
         config.addPlayer(getName(), player); //make changes to the config.yml also checks if player is already assigned to a health bar
         players.add(player); //add the player to the players list of the health bar
-        player.setHealth(health); //set the health of the player to the health value of the health bar since he is now a part of the health bar
+        registry.bindPlayer(player, this); //index the player under this health bar
+        RegenEngine.join(this, player); //count the food level of the player for the regeneration
+        syncHealth(player); //set the health of the player to the health value of the health bar since he is now a part of the health bar
+        HealthBarEvents.memberAdded(uName, player.getUniqueId(), player.getName());
     }
 
     /**
@@ -128,10 +177,12 @@ public class HealthBar implements Listener {
      * @throws PlayerAlreadyInListException player is already in the players list and exception is thrown
      */
     public void loadPlayer(Player player) throws PlayerAlreadyInListException {
-        if (players.contains(player)) { //check if player is already in the list
+        if (registry.getHealthBar(player) != null) { //check if player is already loaded in a health bar
             throw new PlayerAlreadyInListException("Player: '" + player.getName() + "' is already assigned to this health bar!");
         }
         players.add(player); //add player to the list
+        registry.bindPlayer(player, this); //index the player under this health bar
+        RegenEngine.join(this, player);
     }
 
     /**
@@ -140,6 +191,8 @@ public class HealthBar implements Listener {
      */
     public void joinPlayer(Player player) {
         players.add(player); //add player to the list
+        registry.bindPlayer(player, this); //index the player under this health bar
+        RegenEngine.join(this, player);
     }
 
     /**
@@ -148,6 +201,9 @@ public class HealthBar implements Listener {
      */
     public void quitPlayer(Player player) {
         players.remove(player); //remove player from the list
+        registry.unbindPlayer(player); //remove player from the player index
+        regen.quit(player.getUniqueId());
+        if (players.isEmpty()) registry.markIdle(this); //health bar can be evicted after the idle time
     }
 
     /**
@@ -159,6 +215,10 @@ public class HealthBar implements Listener {
     public void removePlayer(Player player) throws PlayerNotInListException, CorruptedConfigException {
         config.removePlayer(this,player); //remove player from his health bar in the config
         players.remove(player); //remove player from players list of the health bar
+        registry.unbindPlayer(player); //remove player from the player index
+        regen.quit(player.getUniqueId());
+        if (players.isEmpty()) registry.markIdle(this); //health bar can be evicted after the idle time
+        HealthBarEvents.memberRemoved(uName, player.getUniqueId(), player.getName());
     }
 
     /**
@@ -167,8 +227,18 @@ public class HealthBar implements Listener {
      */
     public void deleteHealthBar() throws CorruptedConfigException {
         config.deleteHealthBar(getName()); //delete the entry of the health bar from the config.yml
+        registry.unregister(this); //remove the health bar and its players from the registry so it can not be called anymore
+        Metrics.get().removeBar(uName);
         players = null; //delete the array list of the health bar
-        healthBars.remove(this); //remove the health bar from the health bar list so it can not be called anymore
+        HealthBarEvents.deleted(uName);
+    }
+
+    /**
+     * A method to mark the health bar as evicted, it is created from its record again when it is
+     * needed. References that are still held treat it like a deleted health bar.
+     */
+    void evict() {
+        players = null;
     }
 
     /**
@@ -177,42 +247,215 @@ public class HealthBar implements Listener {
      * @param damage amount of damage to deal to the players
      */
     public void dealDamage(Player player, double damage) {
-        health -= damage; //calculate new health of the health bar
-        if (health < 0) { //check if health is still in bounds
-            health = 0; //set health to 0 (kill the players)
+        dealDamage(player, damage, player, null);
+    }
+
+    /**
+     * A method to deal damage to all online players that are assigned to the health bar.
+     * @param player player that initiated the damage and does not need to be damaged again
+     * @param damage amount of damage to deal to the players
+     * @param source player that took the damage for the history (null if there is none)
+     * @param cause cause of the damage for the history (null if it is not known)
+     */
+    public void dealDamage(Player player, double damage, Player source, Enum<?> cause) {
+        double previous = getHealth();
+        HealthBarPreChangeEvent event = HealthBarEvents.preChange(uName, true, damage, previous, source, cause);
+        if (event != null) {
+            if (event.isCancelled()) {
+                fanOut(null, getHealth()); //the players that already took the damage of the change are set back to the health bar
+                return;
+            }
+            if (event.getAmount() != damage) player = null; //the player needs to be set to the changed damage as well
+            damage = event.getAmount();
         }
-        for (Player i : players) { //apply damage to all players in health bar players list
-            if (player == i) continue; //player is the player that does not need to be damaged
-            if (i.isDead()) continue; //player is not respawned yet and can not take more damage (otherwise visual bug in the game gets created)
-            i.setHealth(health); //set health of the player to new value
+        double applied = damage(player, damage);
+        record(-damage, applied, source, cause);
+        HealthSync sync = HealthSync.get();
+        if (sync != null) sync.health(this, -damage, applied == 0 ? 20 : applied, applied == 0); //send the change to the other servers
+        HealthBarEvents.changed(uName, -damage, previous, applied, source, cause, false);
+    }
+
+    /**
+     * A method to heal the online players that are assigned to the health bar.
+     * @param player player that initiated the healing and does not need to be healed again
+     * @param healing amount of healing to heal the players
+     */
+    public void healHealth(Player player, double healing) {
+        healHealth(player, healing, player, null);
+    }
+
+    /**
+     * A method to heal the online players that are assigned to the health bar.
+     * @param player player that initiated the healing and does not need to be healed again
+     * @param healing amount of healing to heal the players
+     * @param source player that was healed for the history (null if there is none)
+     * @param reason reason of the healing for the history (null if it is not known)
+     */
+    public void healHealth(Player player, double healing, Player source, Enum<?> reason) {
+        double previous = getHealth();
+        HealthBarPreChangeEvent event = HealthBarEvents.preChange(uName, false, healing, previous, source, reason);
+        if (event != null) {
+            if (event.isCancelled()) {
+                fanOut(null, getHealth()); //the players that already got the healing of the change are set back to the health bar
+                return;
+            }
+            if (event.getAmount() != healing) player = null; //the player needs to be set to the changed healing as well
+            healing = event.getAmount();
         }
-        if (health == 0) { //check if players died
-            health = 20; //set health back to full health (respawn)
+        double applied = heal(player, healing);
+        record(healing, applied, source, reason);
+        HealthSync sync = HealthSync.get();
+        if (sync != null) sync.health(this, healing, applied, false); //send the change to the other servers
+        HealthBarEvents.changed(uName, healing, previous, applied, source, reason, false);
+    }
+
+    /**
+     * A method to merge a change of the health made on another server at the same time as a change
+     * on this server (the change is not sent again).
+     * @param delta change of the health (negative for damage)
+     */
+    public void applyRemoteChange(double delta) {
+        if (delta == 0) return;
+        double previous = getHealth();
+        double applied = delta < 0 ? damage(null, -delta) : heal(null, delta);
+        record(delta, applied, null, HealthHistory.Cause.REMOTE);
+        HealthBarEvents.changed(uName, delta, previous, applied, null, HealthHistory.Cause.REMOTE, true);
+    }
+
+    /**
+     * A method to set the health to the health of another server (the change is not sent again).
+     * @param health health of the health bar on the other server
+     * @param died true if the players died by the change
+     */
+    public void applyRemoteHealth(double health, boolean died) {
+        double before = Double.longBitsToDouble(this.health.getAndSet(Double.doubleToRawLongBits(health)));
+        fanOut(null, died ? 0 : health); //all players need to be changed
+        saveHealth();
+        record(died ? -before : health - before, died ? 0 : health, null, HealthHistory.Cause.REMOTE);
+        HealthBarEvents.changed(uName, died ? -before : health - before, before, died ? 0 : health, null, HealthHistory.Cause.REMOTE, true);
+    }
+
+    /**
+     * A method to record a change of the health in the history if it is enabled.
+     * @param delta change of the health (negative for damage)
+     * @param health health the players got (0 if they died)
+     * @param source player that caused the change (null if there is none)
+     * @param cause cause of the damage or reason of the healing (null if it is not known)
+     */
+    private void record(double delta, double health, Player source, Enum<?> cause) {
+        HealthHistory history = HealthHistory.get();
+        if (history == null || LoadSimulation.isSimulated(uName)) return; //the history only holds the changes of real health bars
+        HistoryBuffer buffer = this.history;
+        if (buffer == null || !buffer.belongsTo(history)) { //first change or the history was started again
+            buffer = history.createBuffer(uName);
+            this.history = buffer;
         }
-        config.setHealth(this,health); //save changes to config.yml
+        buffer.record(delta, health, source, cause);
+    }
+
+    /**
+     * A method to deal damage to all online players that are assigned to the health bar.
+     * @param player player that initiated the damage and does not need to be damaged again
+     * @param damage amount of damage to deal to the players
+     * @return health the players got (0 if they died)
+     */
+    private double damage(Player player, double damage) {
+        long start = System.nanoTime();
+        long current, next;
+        double applied; //health the players get
+        do { //repeat if another thread changed the health in the meantime
+            current = health.get();
+            applied = Math.max(0, Double.longBitsToDouble(current) - damage); //calculate new health and keep it in bounds (0 kills the players)
+            next = Double.doubleToRawLongBits(applied == 0 ? 20 : applied); //set health back to full health if the players died (respawn)
+        } while (!health.compareAndSet(current, next));
+        fanOut(player, applied); //set health of the other players to the new value
+        saveHealth(); //save changes to config.yml
+        stats.fanOut(start);
+        return applied;
     }
 
     /**
      * A method to heal the online players that are assigned to the health bar.
      * @param player player that initiated the healing and does not need to be healed again
      * @param healing amount of healing to heal the players
+     * @return health the players got
      */
-    public void healHealth(Player player, double healing) {
-        health += healing; //calculate new health of the health bar
-        if (health >= 20) health = 20; //check if health is still in bounds
-        for (Player i : players) { //apply healing to all players in the health bar players list
-            if (player == i) continue; //player is the player that does not need to be healed
-            if (i.isDead()) continue; //player is not respawned yet and can not be healed
-            i.setHealth(health); //set health of the player to new value
+    private double heal(Player player, double healing) {
+        long start = System.nanoTime();
+        long current;
+        double applied;
+        do { //repeat if another thread changed the health in the meantime
+            current = health.get();
+            applied = Math.min(20, Double.longBitsToDouble(current) + healing); //calculate new health and keep it in bounds
+        } while (!health.compareAndSet(current, Double.doubleToRawLongBits(applied)));
+        fanOut(player, applied); //set health of the other players to the new value
+        saveHealth(); //save changes to config.yml
+        stats.fanOut(start);
+        return applied;
+    }
+
+    /**
+     * A method to set the health of all online players except the one that initiated the change.
+     * On Folia the health is set by the scheduler of every player, by then the latest health of the
+     * health bar is used (unless the players died).
+     * @param player player that initiated the change and does not need to be changed again
+     * @param value new health of the players
+     */
+    private void fanOut(Player player, double value) {
+        TaskScheduler scheduler = TaskScheduler.get();
+        boolean regions = scheduler != null && scheduler.isRegionThreaded();
+        List<Player> members = players;
+        if (members == null) return; //health bar was deleted
+        for (Player i : members) { //apply health to all players in health bar players list
+            if (player == i) continue; //player is the player that does not need to be changed
+            if (regions) {
+                scheduler.runForEntity(i, () -> {
+                    if (!i.isDead()) i.setHealth(value == 0 ? 0 : getHealth());
+                });
+                continue;
+            }
+            if (i.isDead()) continue; //player is not respawned yet and can not take more damage (otherwise visual bug in the game gets created)
+            i.setHealth(value); //set health of the player to new value
+        }
+    }
+
+    /**
+     * A method to set the health of a player to the health of the health bar. On Folia the health
+     * is set by the scheduler of the player.
+     * @param player player whose health needs to be set
+     */
+    public void syncHealth(Player player) {
+        TaskScheduler scheduler = TaskScheduler.get();
+        if (scheduler != null && scheduler.isRegionThreaded()) {
+            scheduler.runForEntity(player, () -> player.setHealth(getHealth()));
+            return;
+        }
+        player.setHealth(getHealth());
+    }
+
+    /**
+     * A method to save the health in the config. On Folia the config is only changed on the global
+     * region thread, so one task saves the latest health of all changes until it runs.
+     */
+    private void saveHealth() {
+        TaskScheduler scheduler = TaskScheduler.get();
+        if (scheduler == null || !scheduler.isRegionThreaded()) {
+            config.setHealth(this, getHealth());
+            return;
+        }
+        if (saveScheduled.compareAndSet(false, true)) {
+            scheduler.run(() -> {
+                saveScheduled.set(false);
+                config.setHealth(this, getHealth());
+            });
         }
-        config.setHealth(this,health); //save changes to config.yml
     }
 
     /**
      * A method to get the players assigned to the health bar that are currently online.
      * @return list of players
      */
-    public ArrayList<Player> getPlayers() {
+    public List<Player> getPlayers() {
         return players;
     }
 
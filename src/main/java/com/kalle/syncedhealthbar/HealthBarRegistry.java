@@ -0,0 +1,220 @@
+package com.kalle.syncedhealthbar;
+
+import com.kalle.syncedhealthbar.metrics.CacheStats;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import org.bukkit.entity.Player;
+
+import javax.naming.NameAlreadyBoundException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A class that indexes the resident health bars by their unique name and by the UUIDs of the
+ * online players assigned to them, so that every lookup takes constant time. The indices can be
+ * read from any thread (the listeners run on the region threads of Folia).
+ * <p>
+ * Health bars are only created from their records when they are needed (a player of the health bar
+ * joins or the health bar is looked up by name). Health bars without online players are kept in
+ * the order they were last used and evicted when they were idle for the idle time or when more
+ * health bars than the maximum are resident. Health bars with online players are never evicted.
+ */
+public class HealthBarRegistry {
+
+    private ConcurrentHashMap<String, HealthBar> byName = new ConcurrentHashMap<String, HealthBar>(); //index to get a health bar by its unique name
+    private ConcurrentHashMap<UUID, HealthBar> byPlayer = new ConcurrentHashMap<UUID, HealthBar>(); //index to get a health bar by the UUID of an online player assigned to it
+    private LinkedHashMap<String, Long> idle = new LinkedHashMap<String, Long>(16, 0.75f, true); //health bars without online players and the time in ms they were last used (least recently used first)
+    private Config loader; //config the health bars are created from (null if nothing is loaded)
+    private int maxResident = Integer.MAX_VALUE; //count of resident health bars above which idle ones are evicted
+    private long idleTime = Long.MAX_VALUE; //time in ms after which an idle health bar is evicted
+    private CacheStats stats = Metrics.get().getCache();
+
+    /**
+     * A method to set the config the health bars are created from when they are needed.
+     * @param loader config that holds the records of all health bars
+     * @param maxResident count of resident health bars above which idle ones are evicted
+     * @param idleTime time in ms after which an idle health bar is evicted
+     */
+    public void setLoader(Config loader, int maxResident, long idleTime) {
+        this.loader = loader;
+        this.maxResident = maxResident;
+        this.idleTime = idleTime;
+    }
+
+    /**
+     * A method to register a new health bar by its name.
+     * @param hb health bar that needs to be registered
+     * @throws NameAlreadyBoundException when the name is already in use for another
+     *                                   health bar exception gets thrown
+     */
+    public void register(HealthBar hb) throws NameAlreadyBoundException {
+        if (byName.putIfAbsent(hb.getName(), hb) != null) { //add health bar to the name index if the name is not already taken
+            throw new NameAlreadyBoundException("The name is already taken.");
+        }
+        markIdle(hb); //no player is loaded yet
+    }
+
+    /**
+     * A method to remove a health bar and all of its online players from the indices.
+     * @param hb health bar that needs to be removed
+     */
+    public void unregister(HealthBar hb) {
+        byName.remove(hb.getName()); //remove health bar from the name index
+        for (Player i : hb.getPlayers()) { //loop through online players of the health bar
+            byPlayer.remove(i.getUniqueId()); //remove player from the player index
+        }
+        synchronized (idle) {
+            idle.remove(hb.getName());
+        }
+    }
+
+    /**
+     * A method to check if a health bar with the passed name exists (resident or not).
+     * @param uName name of the health bar
+     * @return true if the name is taken, false if not
+     */
+    public boolean contains(String uName) {
+        return byName.containsKey(uName) || (loader != null && loader.hasHealthBar(uName));
+    }
+
+    /**
+     * A method to get a health bar by its unique name, it is created from its record if it is not
+     * resident (needs to be called on the main thread then).
+     * @param uName name of the health bar that is needed
+     * @return health bar that has the passed name or null if no health bar has the name
+     */
+    public HealthBar getHealthBar(String uName) {
+        HealthBar hb = byName.get(uName);
+        if (hb != null) {
+            stats.hit();
+            synchronized (idle) {
+                if (idle.containsKey(uName)) idle.put(uName, System.currentTimeMillis()); //used again
+            }
+            return hb;
+        }
+        if (loader == null) return null;
+        try {
+            hb = loader.hydrate(uName);
+        } catch (NameAlreadyBoundException e) { //created by another thread in the meantime
+            return byName.get(uName);
+        }
+        if (hb == null) return null; //no health bar has the name
+        stats.miss();
+        evictIdle(uName); //make room if too many health bars are resident
+        return hb;
+    }
+
+    /**
+     * A method to get a health bar by its unique name only if it is resident.
+     * @param uName name of the health bar that is needed
+     * @return health bar that has the passed name or null if it is not resident
+     */
+    public HealthBar getResident(String uName) {
+        return byName.get(uName);
+    }
+
+    /**
+     * A method to get the health bar of an online player.
+     * @param player player of which the health bar is needed
+     * @return health bar of the player or null if the player is not loaded in any health bar
+     */
+    public HealthBar getHealthBar(Player player) {
+        return byPlayer.get(player.getUniqueId());
+    }
+
+    /**
+     * A method to index an online player under his health bar.
+     * @param player player that was loaded in the health bar
+     * @param hb health bar the player was loaded in
+     */
+    public void bindPlayer(Player player, HealthBar hb) {
+        byPlayer.put(player.getUniqueId(), hb);
+        synchronized (idle) {
+            idle.remove(hb.getName()); //health bar is used by an online player
+        }
+    }
+
+    /**
+     * A method to mark a health bar as idle when its last online player left, so it can be evicted.
+     * @param hb health bar without online players
+     */
+    public void markIdle(HealthBar hb) {
+        synchronized (idle) {
+            idle.put(hb.getName(), System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * A method to evict the health bars that were idle for the idle time and the least recently
+     * used idle health bars while too many health bars are resident. The health of an evicted health
+     * bar is written back to its record first. Needs to be called on the main thread.
+     */
+    public void evictIdle() {
+        evictIdle(null);
+    }
+
+    /**
+     * A method to evict idle health bars.
+     * @param keep name of a health bar that is not evicted (null if every health bar can be evicted)
+     */
+    private void evictIdle(String keep) {
+        if (loader == null) return;
+        long now = System.currentTimeMillis();
+        while (true) {
+            String name;
+            synchronized (idle) {
+                Map.Entry<String, Long> eldest = null;
+                for (Map.Entry<String, Long> i : idle.entrySet()) { //least recently used first
+                    if (!i.getKey().equals(keep)) {
+                        eldest = i;
+                        break;
+                    }
+                }
+                if (eldest == null) return;
+                if (byName.size() <= maxResident && now - eldest.getValue() < idleTime) return; //all others were used more recently
+                name = eldest.getKey();
+                idle.remove(name);
+            }
+            HealthBar hb = byName.get(name);
+            if (hb == null || hb.getPlayers() == null || !hb.getPlayers().isEmpty()) continue; //a player joined in the meantime
+            if (hb.getConfig() != loader) continue; //health bar of the simulation, it can not be created from the records again
+            loader.evict(hb); //write the health back to the record
+            byName.remove(name, hb);
+            Metrics.get().removeBar(name);
+            hb.evict();
+            stats.eviction();
+        }
+    }
+
+    /**
+     * A method to remove an online player from the player index.
+     * @param player player that was removed from his health bar or went offline
+     */
+    public void unbindPlayer(Player player) {
+        byPlayer.remove(player.getUniqueId());
+    }
+
+    /**
+     * A method to get all registered health bars.
+     * @return unmodifiable view of all health bars
+     */
+    public Collection<HealthBar> getHealthBars() {
+        return Collections.unmodifiableCollection(byName.values());
+    }
+
+    /**
+     * A method to remove all health bars and players from the indices.
+     */
+    public void clear() {
+        byName.clear();
+        byPlayer.clear();
+        synchronized (idle) {
+            idle.clear();
+        }
+        loader = null;
+    }
+
+}
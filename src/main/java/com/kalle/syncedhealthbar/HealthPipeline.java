@@ -0,0 +1,233 @@
+package com.kalle.syncedhealthbar;
+
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import org.bukkit.entity.Player;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A class that collects the damage and healing of all players during a tick and applies it once
+ * per health bar at the end of the tick. When an explosion hits several players of the same health
+ * bar, the health bar takes the damage once (depending on the policy) and its players are only
+ * updated once instead of once per hit player. The events can be added from several threads (the
+ * region threads of Folia), the changes are applied on the main thread (global region thread).
+ */
+public class HealthPipeline {
+
+    /**
+     * The policies how several hits of the same health bar in one tick are merged.
+     */
+    public enum Policy {
+        SUM, //all hits are added up
+        MAX, //only the strongest hit counts
+        FIRST //only the first hit counts
+    }
+
+    /**
+     * A class to represent the collected changes of a health bar in the current tick.
+     */
+    private static class Pending {
+        double damage; //merged damage
+        double healing; //merged healing
+        int damageEvents; //count of damage events
+        int healEvents; //count of heal events
+        Player damageSource; //player that took the first damage
+        Player healSource; //player that was healed first
+        Enum<?> damageCause; //cause of the first damage (null if it is not known)
+        Enum<?> healCause; //reason of the first healing (null if it is not known)
+    }
+
+    private TaskScheduler scheduler;
+    private Policy policy;
+    private LinkedHashMap<HealthBar, Pending> pending = new LinkedHashMap<HealthBar, Pending>(); //changes of the current tick by health bar
+    private LinkedHashMap<HealthBar, Pending> applying = new LinkedHashMap<HealthBar, Pending>(); //changes of the tick that is applied (swapped with pending)
+    private boolean scheduled = false; //true if the task that applies the changes is scheduled
+
+    private int tickEvents = 0; //count of events in the current tick
+    private int lastTickEvents = 0; //count of events in the last applied tick
+    private int lastTickFanOuts = 0; //count of fan-outs in the last applied tick
+    private long totalEvents = 0; //count of all events
+    private long totalFanOuts = 0; //count of all fan-outs
+    private long applyTime = 0; //time in ns spent applying the changes
+
+    /**
+     * Class constructor.
+     * @param scheduler scheduler of the task that applies the changes
+     * @param policy policy how several hits of the same health bar are merged
+     */
+    public HealthPipeline(TaskScheduler scheduler, Policy policy) {
+        this.scheduler = scheduler;
+        this.policy = policy;
+    }
+
+    /**
+     * A method to add the damage a player of a health bar took.
+     * @param hb health bar of the player
+     * @param player player that took the damage
+     * @param damage amount of damage
+     */
+    public void damage(HealthBar hb, Player player, double damage) {
+        damage(hb, player, damage, null);
+    }
+
+    /**
+     * A method to add the damage a player of a health bar took.
+     * @param hb health bar of the player
+     * @param player player that took the damage
+     * @param damage amount of damage
+     * @param cause cause of the damage for the history (null if it is not known)
+     */
+    public synchronized void damage(HealthBar hb, Player player, double damage, Enum<?> cause) {
+        Pending changes = get(hb);
+        if (changes.damageEvents == 0) {
+            changes.damage = damage;
+            changes.damageSource = player;
+            changes.damageCause = cause;
+        } else {
+            changes.damage = merge(changes.damage, damage);
+        }
+        changes.damageEvents++;
+    }
+
+    /**
+     * A method to add the healing a player of a health bar got.
+     * @param hb health bar of the player
+     * @param player player that was healed
+     * @param healing amount of healing
+     */
+    public void heal(HealthBar hb, Player player, double healing) {
+        heal(hb, player, healing, null);
+    }
+
+    /**
+     * A method to add the healing a player of a health bar got.
+     * @param hb health bar of the player
+     * @param player player that was healed
+     * @param healing amount of healing
+     * @param reason reason of the healing for the history (null if it is not known)
+     */
+    public synchronized void heal(HealthBar hb, Player player, double healing, Enum<?> reason) {
+        Pending changes = get(hb);
+        if (changes.healEvents == 0) {
+            changes.healing = healing;
+            changes.healSource = player;
+            changes.healCause = reason;
+        } else {
+            changes.healing = merge(changes.healing, healing);
+        }
+        changes.healEvents++;
+    }
+
+    /**
+     * A method to merge an amount with the already collected amount by the policy.
+     * @param collected collected amount of the tick
+     * @param amount new amount
+     * @return merged amount
+     */
+    private double merge(double collected, double amount) {
+        switch (policy) {
+            case SUM: return collected + amount;
+            case MAX: return Math.max(collected, amount);
+            default: return collected;
+        }
+    }
+
+    /**
+     * A method to get the collected changes of a health bar and schedule the task that applies them.
+     * @param hb health bar
+     * @return collected changes of the health bar
+     */
+    private Pending get(HealthBar hb) {
+        tickEvents++;
+        Pending changes = pending.get(hb);
+        if (changes == null) {
+            changes = new Pending();
+            pending.put(hb, changes);
+        }
+        if (!scheduled) { //first event of the tick
+            scheduled = true;
+            scheduler.run(this::apply);
+        }
+        return changes;
+    }
+
+    /**
+     * A method to apply the collected changes once per health bar.
+     */
+    public void apply() {
+        long start = System.nanoTime();
+        LinkedHashMap<HealthBar, Pending> changes; //changes of the tick, new events go to the next tick
+        int events;
+        synchronized (this) {
+            changes = pending;
+            events = tickEvents;
+            pending = applying;
+            tickEvents = 0;
+            scheduled = false;
+        }
+        int fanOuts = 0;
+        for (Map.Entry<HealthBar, Pending> i : changes.entrySet()) {
+            HealthBar hb = i.getKey();
+            Pending bar = i.getValue();
+            if (hb.getPlayers() == null) continue; //health bar was deleted in the meantime
+            if (bar.damageEvents > 0) {
+                //a single hit player already took the damage by his event, merged hits set every player to the health of the health bar
+                hb.dealDamage(bar.damageEvents == 1 && bar.healEvents == 0 ? bar.damageSource : null, bar.damage, bar.damageSource, bar.damageCause);
+                fanOuts++;
+            }
+            if (bar.healEvents > 0) {
+                hb.healHealth(bar.healEvents == 1 && bar.damageEvents == 0 ? bar.healSource : null, bar.healing, bar.healSource, bar.healCause);
+                fanOuts++;
+            }
+        }
+        changes.clear();
+        applying = changes;
+        lastTickEvents = events;
+        lastTickFanOuts = fanOuts;
+        totalEvents += events;
+        totalFanOuts += fanOuts;
+        applyTime += System.nanoTime() - start;
+    }
+
+    /**
+     * A method to get how many events were collected in the last applied tick.
+     * @return count of events
+     */
+    public int getLastTickEvents() {
+        return lastTickEvents;
+    }
+
+    /**
+     * A method to get how many events of the last applied tick were merged into another one.
+     * @return count of merged events
+     */
+    public int getLastTickMerged() {
+        return lastTickEvents - lastTickFanOuts;
+    }
+
+    /**
+     * A method to get how many events were collected in total.
+     * @return count of events
+     */
+    public long getTotalEvents() {
+        return totalEvents;
+    }
+
+    /**
+     * A method to get how many events were merged into another one in total.
+     * @return count of merged events
+     */
+    public long getTotalMerged() {
+        return totalEvents - totalFanOuts;
+    }
+
+    /**
+     * A method to get how much time was spent applying the changes in total.
+     * @return time in ns
+     */
+    public long getApplyTime() {
+        return applyTime;
+    }
+
+}
@@ -3,8 +3,19 @@ package com.kalle.syncedhealthbar;
 import com.kalle.syncedhealthbar.Events.*;
 import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
 import com.kalle.syncedhealthbar.Exceptions.PlayerAlreadyInListException;
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import com.kalle.syncedhealthbar.api.SyncedHealthBarService;
+import com.kalle.syncedhealthbar.api.event.HealthBarEvents;
 import com.kalle.syncedhealthbar.commands.*;
+import com.kalle.syncedhealthbar.history.HealthHistory;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import com.kalle.syncedhealthbar.regen.RegenEngine;
+import com.kalle.syncedhealthbar.scheduler.IoExecutor;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import com.kalle.syncedhealthbar.simulation.LoadSimulation;
+import com.kalle.syncedhealthbar.sync.HealthSync;
 import org.bukkit.ChatColor;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
@@ -16,28 +27,80 @@ public final class Main extends JavaPlugin {
 
     //Commands:
     private CreateHealthBar create = new CreateHealthBar(config);
-    private DeleteHealthBar delete = new DeleteHealthBar();
-    private AddPlayer add = new AddPlayer();
+    private DeleteHealthBar delete = new DeleteHealthBar(config);
+    private AddPlayer add = new AddPlayer(config);
     private RemovePlayer remove = new RemovePlayer(config);
     private ListHealthBar list = new ListHealthBar(config);
+    private MigrateStorage migrate = new MigrateStorage(config);
+    private ShowStats stats = new ShowStats(config);
+    private ExportHealthBars export = new ExportHealthBars(config, this);
+    private ImportHealthBars importer = new ImportHealthBars(config, this);
+    private ShowHistory history = new ShowHistory(config);
+
+    private LoadSimulation simulation; //simulation of /hbsimulate (null if the plugin is not enabled)
+    private HealthPipeline pipeline; //merges the damage and healing of a tick (null if the plugin is not enabled)
 
     @Override
     public void onEnable() {
         // Plugin startup logic
+        TaskScheduler scheduler = TaskScheduler.init(this); //Bukkit scheduler or the region schedulers of Folia
+        config.saveDefaults(); //the config.yml is written on the main thread before loading
+        config.loadAsync(loaded -> enable(scheduler, loaded)); //the health bars are loaded by worker threads
+    }
+
+    /**
+     * A method to attach the loaded health bars and start the plugin once loading finished.
+     * @param scheduler scheduler of the plugin
+     * @param loaded health bars loaded by the worker threads
+     */
+    private void enable(TaskScheduler scheduler, Config.Loaded loaded) {
         try {
-            config.loadConfig();
+            //check the settings before anything is registered, so an invalid setting does not leave a half-enabled plugin
+            HealthPipeline.Policy policy;
+            try {
+                policy = HealthPipeline.Policy.valueOf(getConfig().getString("Settings.Coalescing Policy", "sum").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new CorruptedConfigException("CONFIG ERROR: coalescing policy must be sum, max or first!");
+            }
+            HealthHistory.init(this, scheduler); //record the changes of the health if it is enabled
+            HealthBarEvents.start(this, scheduler); //fire the events of the health bars for other plugins
+            config.attach(loaded); //online players are added to their health bars
+            pipeline = new HealthPipeline(scheduler, policy); //applies the damage and healing once per health bar and tick
+            RegenEngine.init(this, scheduler, pipeline); //regenerate every health bar once per interval instead of every player
+            HealthSync.init(this, config, scheduler); //sync the health bars with the other servers if it is enabled
+            config.getPersistence().start(); //start writing changes to the config.yml write-behind
+            AsyncCommand.start(this); //lookups and formatting of the commands run off the main thread
             //register commands
             getCommand("createHB").setExecutor(create);
             getCommand("deleteHB").setExecutor(delete);
             getCommand("addHB").setExecutor(add);
             getCommand("removeHB").setExecutor(remove);
             getCommand("listHB").setExecutor(list);
+            getCommand("hbmigrate").setExecutor(migrate);
+            getCommand("hbstats").setExecutor(stats);
+            getCommand("hbexport").setExecutor(export);
+            getCommand("hbimport").setExecutor(importer);
+            getCommand("hbhistory").setExecutor(history);
+            Metrics.get().registerJmx(getLogger()); //expose the statistics as MBeans
+            scheduler.runTimer(() -> Metrics.get().updateGauges(config), 20, 20); //sizes of the health bars for JMX
+            scheduler.runTimer(() -> HealthBar.getRegistry().evictIdle(), 100, 100); //evict the health bars without online players
             //register events
-            getServer().getPluginManager().registerEvents(new PlayerJoin(config), this);
-            getServer().getPluginManager().registerEvents(new PlayerQuit(), this);
-            getServer().getPluginManager().registerEvents(new PlayerDamage(), this);
-            getServer().getPluginManager().registerEvents(new PlayerRespawn(), this);
-            getServer().getPluginManager().registerEvents(new PlayerHeal(), this);
+            PlayerJoin join = new PlayerJoin(config);
+            PlayerQuit quit = new PlayerQuit();
+            getServer().getPluginManager().registerEvents(join, this);
+            getServer().getPluginManager().registerEvents(quit, this);
+            PlayerDamage damage = new PlayerDamage(pipeline);
+            getServer().getPluginManager().registerEvents(damage, this);
+            RespawnService respawnService = new RespawnService(this, scheduler);
+            respawnService.registerPostRespawn(); //restore the health right after the respawn if the server supports it
+            PlayerRespawn respawn = new PlayerRespawn(respawnService);
+            getServer().getPluginManager().registerEvents(respawn, this);
+            PlayerHeal heal = new PlayerHeal(pipeline);
+            getServer().getPluginManager().registerEvents(heal, this);
+            getServer().getPluginManager().registerEvents(new PlayerFood(), this);
+            simulation = new LoadSimulation(this, config, pipeline, damage, heal, quit, respawn); //drives simulated events into the same listeners
+            getCommand("hbsimulate").setExecutor(new SimulateLoad(simulation));
+            getServer().getServicesManager().register(SyncedHealthBarService.class, config.getSnapshots(), this, ServicePriority.Normal); //read-only access for other plugins
 
             getServer().getConsoleSender().sendMessage(ChatColor.GREEN + "SyncedHealthBar has been enabled!");
         } catch (CorruptedConfigException e) { //config.yml is corrupted and plugin should get reloaded
@@ -46,12 +109,26 @@ public final class Main extends JavaPlugin {
         } catch (PlayerAlreadyInListException e) { //config.yml is corrupted and plugin should get reloaded
             getServer().getConsoleSender().sendMessage(ChatColor.RED + e.getMessage());
             getServer().getConsoleSender().sendMessage(ChatColor.RED + "ERROR: SyncedHealthBar could not be loaded. Please repair the plugins/SyncedHealthBar/config.yml file and restart the server!");
+        } catch (StorageException e) { //storage could not be opened or read and plugin should get reloaded
+            getServer().getConsoleSender().sendMessage(ChatColor.RED + e.getMessage());
+            getServer().getConsoleSender().sendMessage(ChatColor.RED + "ERROR: SyncedHealthBar could not be loaded. Please check the storage in the plugins/SyncedHealthBar/config.yml file and restart the server!");
         }
     }
 
     @Override
     public void onDisable() {
         // Plugin shutdown logic
+        if (simulation != null) simulation.stop(); //remove the simulated health bars before the last write
+        if (pipeline != null) pipeline.apply(); //the hit players already took the changes of the last tick, so they are synced, recorded and written as well
+        AsyncCommand.shutdown(); //drop the commands that are not finished yet
+        RegenEngine.shutdown();
+        HealthBarEvents.stop();
+        getServer().getServicesManager().unregisterAll(this);
+        HealthSync.shutdown(); //send the last changes to the other servers
+        HealthHistory.shutdown(); //write the changes that are still in the buffers
+        Metrics.get().unregisterJmx();
+        config.getPersistence().shutdown(); //write all changes that are not written yet
+        IoExecutor.shutdownAll(10000, getLogger()); //wait for the blocking work that is still running
         getServer().getConsoleSender().sendMessage(ChatColor.RED + "SyncedHealthBar has been disabled!");
     }
 }
@@ -0,0 +1,74 @@
+package com.kalle.syncedhealthbar.api;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable copy of a health bar (name, health and assigned players) at one version. The version
+ * grows with every change, so two snapshots of the same health bar can be compared.
+ */
+public final class BarSnapshot {
+
+    private final String name;
+    private final double health;
+    private final long version;
+    private final Map<UUID, String> members; //names of the players by their UUID in the order they were added (unmodifiable)
+
+    /**
+     * Class constructor.
+     * @param name name of the health bar
+     * @param health health of the health bar
+     * @param version version of the snapshot
+     * @param members unmodifiable names of the players by their UUID (shared by the snapshots until the players change)
+     */
+    BarSnapshot(String name, double health, long version, Map<UUID, String> members) {
+        this.name = name;
+        this.health = health;
+        this.version = version;
+        this.members = members;
+    }
+
+    /**
+     * A method to create the snapshot of the next version with another health.
+     * @param health new health of the health bar
+     * @param version version of the new snapshot
+     * @return snapshot with the same players
+     */
+    BarSnapshot withHealth(double health, long version) {
+        return new BarSnapshot(name, health, version, members);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getHealth() {
+        return health;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * A method to get the players assigned to the health bar (online and offline).
+     * @return unmodifiable names of the players by their UUID in the order they were added
+     */
+    public Map<UUID, String> getMembers() {
+        return members;
+    }
+
+    /**
+     * A method to check if a player is assigned to the health bar.
+     * @param player UUID of the player
+     * @return true if he is assigned to the health bar
+     */
+    public boolean hasMember(UUID player) {
+        return members.containsKey(player);
+    }
+
+    public int getMemberCount() {
+        return members.size();
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.kalle.syncedhealthbar.api;
+
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The implementation of the service. The config publishes every changed record on the main thread
+ * (global region thread): a change of the health only replaces the snapshot of its health bar
+ * and shares its players, a change of the players copies them once. Readers only look up the
+ * published snapshots in concurrent maps.
+ */
+public final class SnapshotService implements SyncedHealthBarService {
+
+    private final ConcurrentHashMap<String, BarSnapshot> bars = new ConcurrentHashMap<String, BarSnapshot>(); //latest snapshots by the name of the health bar
+    private final ConcurrentHashMap<UUID, String> barOf = new ConcurrentHashMap<UUID, String>(); //name of the health bar of every player by his UUID
+    private long version = 0; //version of the last published snapshot (only changed by the main thread)
+
+    @Override
+    public BarSnapshot getBar(String name) {
+        return bars.get(name);
+    }
+
+    @Override
+    public BarSnapshot getBarOf(UUID player) {
+        String name = barOf.get(player);
+        if (name == null) return null;
+        BarSnapshot bar = bars.get(name);
+        return bar != null && bar.hasMember(player) ? bar : null; //the player could have been removed in the meantime
+    }
+
+    @Override
+    public double getHealth(String name) {
+        BarSnapshot bar = bars.get(name);
+        return bar == null ? Double.NaN : bar.getHealth();
+    }
+
+    @Override
+    public Collection<BarSnapshot> getBars() {
+        return new ArrayList<BarSnapshot>(bars.values());
+    }
+
+    @Override
+    public int getBarCount() {
+        return bars.size();
+    }
+
+    /**
+     * A method to publish all records after they were loaded. The first health bar of a player
+     * wins like in the index of the config.
+     * @param records records of all health bars
+     */
+    public void publishAll(Collection<BarRecord> records) {
+        bars.clear();
+        barOf.clear();
+        for (BarRecord i : records) {
+            bars.put(i.getName(), snapshot(i));
+            for (MemberRecord j : i.getMembers()) {
+                barOf.putIfAbsent(j.getUniqueId(), i.getName());
+            }
+        }
+    }
+
+    /**
+     * A method to publish a health bar after it was created or its players changed.
+     * @param bar record of the health bar
+     */
+    public void publish(BarRecord bar) {
+        bars.put(bar.getName(), snapshot(bar));
+        for (MemberRecord i : bar.getMembers()) {
+            barOf.put(i.getUniqueId(), bar.getName());
+        }
+    }
+
+    /**
+     * A method to publish a health bar after its health changed.
+     * @param bar record of the health bar
+     */
+    public void publishHealth(BarRecord bar) {
+        BarSnapshot current = bars.get(bar.getName());
+        if (current == null) publish(bar);
+        else bars.put(bar.getName(), current.withHealth(bar.getHealth(), ++version));
+    }
+
+    /**
+     * A method to publish a health bar after a player was removed from it.
+     * @param bar record of the health bar
+     * @param player UUID of the removed player
+     */
+    public void removeMember(BarRecord bar, UUID player) {
+        barOf.remove(player, bar.getName());
+        publish(bar);
+    }
+
+    /**
+     * A method to remove a deleted health bar and its players.
+     * @param bar record of the deleted health bar
+     */
+    public void remove(BarRecord bar) {
+        bars.remove(bar.getName());
+        for (MemberRecord i : bar.getMembers()) {
+            barOf.remove(i.getUniqueId(), bar.getName());
+        }
+    }
+
+    /**
+     * A method to create the snapshot of a record.
+     * @param bar record of the health bar
+     * @return snapshot of the next version
+     */
+    private BarSnapshot snapshot(BarRecord bar) {
+        LinkedHashMap<UUID, String> members = new LinkedHashMap<UUID, String>();
+        for (MemberRecord i : bar.getMembers()) {
+            members.put(i.getUniqueId(), i.getName());
+        }
+        return new BarSnapshot(bar.getName(), bar.getHealth(), ++version, Collections.unmodifiableMap(members));
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.kalle.syncedhealthbar.api;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * The read-only service other plugins get from the ServicesManager of Bukkit:
+ * Bukkit.getServicesManager().load(SyncedHealthBarService.class)
+ * Every health bar is published as an immutable snapshot whenever it changes, so the methods can be
+ * called from any thread, never block and never load anything from the storage. A snapshot is
+ * consistent in itself; two calls can see different versions of the health bars.
+ */
+public interface SyncedHealthBarService {
+
+    /**
+     * A method to get a health bar by its name.
+     * @param name name of the health bar
+     * @return latest snapshot of the health bar or null if it does not exist
+     */
+    BarSnapshot getBar(String name);
+
+    /**
+     * A method to get the health bar a player is assigned to (he does not need to be online).
+     * @param player UUID of the player
+     * @return latest snapshot of his health bar or null if he is not assigned to one
+     */
+    BarSnapshot getBarOf(UUID player);
+
+    /**
+     * A method to get the health of a health bar.
+     * @param name name of the health bar
+     * @return health of the health bar or NaN if it does not exist
+     */
+    double getHealth(String name);
+
+    /**
+     * A method to get all health bars.
+     * @return latest snapshots of the health bars (a copy, in no particular order)
+     */
+    Collection<BarSnapshot> getBars();
+
+    /**
+     * A method to get the count of the health bars.
+     * @return count of the health bars
+     */
+    int getBarCount();
+
+}
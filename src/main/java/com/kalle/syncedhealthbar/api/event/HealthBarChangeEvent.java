@@ -0,0 +1,105 @@
+package com.kalle.syncedhealthbar.api.event;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+
+/**
+ * The event that is fired after the health of a health bar changed.
+ */
+public class HealthBarChangeEvent extends HealthBarEvent {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final double delta; //change of the health (negative for damage)
+    private final double previous; //health before the change
+    private final double health; //health the players got (0 if they died)
+    private final Player source; //player the change happened to
+    private final Enum<?> cause; //cause of the damage or reason of the healing
+    private final boolean remote; //true if the change was made on another server
+
+    /**
+     * Class constructor.
+     * @param barName name of the health bar
+     * @param delta change of the health (negative for damage)
+     * @param previous health before the change
+     * @param health health the players got (0 if they died)
+     * @param source player the change happened to (null if there is none)
+     * @param cause cause of the damage or reason of the healing (null if it is not known)
+     * @param remote true if the change was made on another server
+     */
+    public HealthBarChangeEvent(String barName, double delta, double previous, double health, Player source, Enum<?> cause, boolean remote) {
+        super(barName);
+        this.delta = delta;
+        this.previous = previous;
+        this.health = health;
+        this.source = source;
+        this.cause = cause;
+        this.remote = remote;
+    }
+
+    /**
+     * A method to get the change of the health.
+     * @return change (negative for damage)
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    /**
+     * A method to get the health before the change.
+     * @return health of the health bar
+     */
+    public double getPreviousHealth() {
+        return previous;
+    }
+
+    /**
+     * A method to get the health the players got. After a death the health bar is full again.
+     * @return health of the players (0 if they died)
+     */
+    public double getHealth() {
+        return health;
+    }
+
+    /**
+     * A method to check if the players died by the change.
+     * @return true if the players died
+     */
+    public boolean isDeath() {
+        return health == 0;
+    }
+
+    /**
+     * A method to get the player the change happened to.
+     * @return player or null if there is none (e.g. changes of another server)
+     */
+    public Player getSource() {
+        return source;
+    }
+
+    /**
+     * A method to get the cause of the change.
+     * @return DamageCause, RegainReason or null if it is not known
+     */
+    public Enum<?> getCause() {
+        return cause;
+    }
+
+    /**
+     * A method to check if the change was made on another server (sync).
+     * @return true if the change was made on another server
+     */
+    public boolean isRemote() {
+        return remote;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+
+}
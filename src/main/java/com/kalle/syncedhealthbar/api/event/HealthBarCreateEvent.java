@@ -0,0 +1,37 @@
+package com.kalle.syncedhealthbar.api.event;
+
+import org.bukkit.event.HandlerList;
+
+/**
+ * The event that is fired after a health bar was created (by a command, an import or another server).
+ */
+public class HealthBarCreateEvent extends HealthBarEvent {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final double health; //health of the new health bar
+
+    /**
+     * Class constructor.
+     * @param barName name of the health bar
+     * @param health health of the new health bar
+     */
+    public HealthBarCreateEvent(String barName, double health) {
+        super(barName);
+        this.health = health;
+    }
+
+    public double getHealth() {
+        return health;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+
+}
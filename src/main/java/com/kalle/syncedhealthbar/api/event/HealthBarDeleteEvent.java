@@ -0,0 +1,30 @@
+package com.kalle.syncedhealthbar.api.event;
+
+import org.bukkit.event.HandlerList;
+
+/**
+ * The event that is fired after a health bar was deleted. Its players are not assigned to a
+ * health bar anymore, no remove event is fired for them.
+ */
+public class HealthBarDeleteEvent extends HealthBarEvent {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    /**
+     * Class constructor.
+     * @param barName name of the health bar
+     */
+    public HealthBarDeleteEvent(String barName) {
+        super(barName);
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.kalle.syncedhealthbar.api.event;
+
+import org.bukkit.event.Event;
+
+/**
+ * A class for the events of a health bar. The events are fired on the main thread (global region
+ * thread) and only if a listener is registered for them.
+ */
+public abstract class HealthBarEvent extends Event {
+
+    private final String barName; //name of the health bar
+
+    /**
+     * Class constructor.
+     * @param barName name of the health bar
+     */
+    protected HealthBarEvent(String barName) {
+        this.barName = barName;
+    }
+
+    /**
+     * A method to get the name of the health bar.
+     * @return name of the health bar
+     */
+    public String getBarName() {
+        return barName;
+    }
+
+}
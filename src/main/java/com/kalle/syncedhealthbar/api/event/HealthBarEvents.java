@@ -0,0 +1,188 @@
+package com.kalle.syncedhealthbar.api.event;
+
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import com.kalle.syncedhealthbar.simulation.LoadSimulation;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.bukkit.plugin.Plugin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A class the plugin fires the events of the health bars by. An event is only created if a
+ * listener is registered for it, so the events cost nothing while no other plugin uses them.
+ * The changes of a tick are only summed up while a listener of HealthBarTickEvent is registered.
+ */
+public final class HealthBarEvents {
+
+    /**
+     * A class to sum up the changes of a health bar during a tick.
+     */
+    private static class Tick {
+        int changes;
+        double damage, healing;
+        int deaths;
+        double previous; //health before the first change
+        double health; //health after the last change
+    }
+
+    private static volatile Plugin plugin; //plugin that fires the events (null if the events are not started)
+    private static TaskScheduler scheduler;
+    private static LinkedHashMap<String, Tick> ticks = new LinkedHashMap<String, Tick>(); //changes of the current tick by health bar
+    private static boolean scheduled = false; //true if the task that fires the tick events is scheduled
+
+    private HealthBarEvents() {
+    }
+
+    /**
+     * A method to start firing the events.
+     * @param plugin plugin that fires the events
+     * @param scheduler scheduler of the task that fires the tick events
+     */
+    public static void start(Plugin plugin, TaskScheduler scheduler) {
+        HealthBarEvents.scheduler = scheduler;
+        HealthBarEvents.plugin = plugin;
+    }
+
+    /**
+     * A method to stop firing the events. The changes of the current tick are dropped.
+     */
+    public static synchronized void stop() {
+        plugin = null;
+        ticks.clear();
+    }
+
+    /**
+     * A method to check if an event needs to be fired.
+     * @param handlers handlers of the event
+     * @param barName name of the health bar of the event
+     * @return true if the events are started, a listener is registered and the health bar is not simulated
+     */
+    private static boolean isListened(HandlerList handlers, String barName) {
+        return plugin != null && handlers.getRegisteredListeners().length > 0 && !LoadSimulation.isSimulated(barName);
+    }
+
+    /**
+     * A method to fire an event.
+     * @param event event that is fired
+     */
+    private static void call(Event event) {
+        plugin.getServer().getPluginManager().callEvent(event);
+    }
+
+    /**
+     * A method to fire the event before damage or healing is applied.
+     * @param barName name of the health bar
+     * @param damage true for damage, false for healing
+     * @param amount amount of damage or healing
+     * @param health health before the change
+     * @param source player the change happened to (null if there is none)
+     * @param cause cause of the damage or reason of the healing (null if it is not known)
+     * @return fired event or null if no listener is registered
+     */
+    public static HealthBarPreChangeEvent preChange(String barName, boolean damage, double amount, double health, Player source, Enum<?> cause) {
+        if (!isListened(HealthBarPreChangeEvent.getHandlerList(), barName)) return null;
+        HealthBarPreChangeEvent event = new HealthBarPreChangeEvent(barName, damage, amount, health, source, cause);
+        call(event);
+        return event;
+    }
+
+    /**
+     * A method to fire the event after the health changed and add the change to the tick.
+     * @param barName name of the health bar
+     * @param delta change of the health (negative for damage)
+     * @param previous health before the change
+     * @param health health the players got (0 if they died)
+     * @param source player the change happened to (null if there is none)
+     * @param cause cause of the damage or reason of the healing (null if it is not known)
+     * @param remote true if the change was made on another server
+     */
+    public static void changed(String barName, double delta, double previous, double health, Player source, Enum<?> cause, boolean remote) {
+        if (isListened(HealthBarTickEvent.getHandlerList(), barName)) tick(barName, delta, previous, health);
+        if (isListened(HealthBarChangeEvent.getHandlerList(), barName)) call(new HealthBarChangeEvent(barName, delta, previous, health, source, cause, remote));
+    }
+
+    /**
+     * A method to add a change to the tick of the health bar.
+     * @param barName name of the health bar
+     * @param delta change of the health (negative for damage)
+     * @param previous health before the change
+     * @param health health the players got (0 if they died)
+     */
+    private static synchronized void tick(String barName, double delta, double previous, double health) {
+        if (plugin == null) return; //stopped in the meantime
+        Tick tick = ticks.get(barName);
+        if (tick == null) {
+            tick = new Tick();
+            tick.previous = previous;
+            ticks.put(barName, tick);
+        }
+        tick.changes++;
+        if (delta < 0) tick.damage -= delta;
+        else tick.healing += delta;
+        if (health == 0) tick.deaths++;
+        tick.health = health;
+        if (!scheduled) { //first change of the tick
+            scheduled = true;
+            scheduler.run(HealthBarEvents::fireTicks);
+        }
+    }
+
+    /**
+     * A method to fire the tick events of the health bars that changed.
+     */
+    private static void fireTicks() {
+        LinkedHashMap<String, Tick> changes;
+        synchronized (HealthBarEvents.class) {
+            changes = ticks;
+            ticks = new LinkedHashMap<String, Tick>();
+            scheduled = false;
+        }
+        if (plugin == null) return;
+        for (Map.Entry<String, Tick> i : changes.entrySet()) {
+            Tick tick = i.getValue();
+            call(new HealthBarTickEvent(i.getKey(), tick.changes, tick.damage, tick.healing, tick.deaths, tick.previous, tick.health));
+        }
+    }
+
+    /**
+     * A method to fire the event after a health bar was created.
+     * @param barName name of the health bar
+     * @param health health of the health bar
+     */
+    public static void created(String barName, double health) {
+        if (isListened(HealthBarCreateEvent.getHandlerList(), barName)) call(new HealthBarCreateEvent(barName, health));
+    }
+
+    /**
+     * A method to fire the event after a health bar was deleted.
+     * @param barName name of the health bar
+     */
+    public static void deleted(String barName) {
+        if (isListened(HealthBarDeleteEvent.getHandlerList(), barName)) call(new HealthBarDeleteEvent(barName));
+    }
+
+    /**
+     * A method to fire the event after a player was added to a health bar.
+     * @param barName name of the health bar
+     * @param uuid UUID of the player
+     * @param name name of the player
+     */
+    public static void memberAdded(String barName, UUID uuid, String name) {
+        if (isListened(HealthBarMemberAddEvent.getHandlerList(), barName)) call(new HealthBarMemberAddEvent(barName, uuid, name));
+    }
+
+    /**
+     * A method to fire the event after a player was removed from a health bar.
+     * @param barName name of the health bar
+     * @param uuid UUID of the player
+     * @param name name of the player
+     */
+    public static void memberRemoved(String barName, UUID uuid, String name) {
+        if (isListened(HealthBarMemberRemoveEvent.getHandlerList(), barName)) call(new HealthBarMemberRemoveEvent(barName, uuid, name));
+    }
+
+}
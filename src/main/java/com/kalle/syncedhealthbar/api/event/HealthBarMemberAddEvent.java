@@ -0,0 +1,56 @@
+package com.kalle.syncedhealthbar.api.event;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+
+import java.util.UUID;
+
+/**
+ * The event that is fired after a player was added to a health bar (he does not need to be online).
+ */
+public class HealthBarMemberAddEvent extends HealthBarEvent {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final UUID uuid; //UUID of the player
+    private final String name; //name of the player
+
+    /**
+     * Class constructor.
+     * @param barName name of the health bar
+     * @param uuid UUID of the player
+     * @param name name of the player
+     */
+    public HealthBarMemberAddEvent(String barName, UUID uuid, String name) {
+        super(barName);
+        this.uuid = uuid;
+        this.name = name;
+    }
+
+    public UUID getPlayerId() {
+        return uuid;
+    }
+
+    public String getPlayerName() {
+        return name;
+    }
+
+    /**
+     * A method to get the player if he is online.
+     * @return player or null if he is not online
+     */
+    public Player getPlayer() {
+        return Bukkit.getPlayer(uuid);
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.kalle.syncedhealthbar.api.event;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.HandlerList;
+
+/**
+ * The event that is fired before damage or healing is applied to a health bar. The amount can be
+ * changed and the change can be cancelled. The player that took the damage of the Bukkit event is
+ * set to the health of the health bar again, so all players keep the same health. Changes made on
+ * another server (sync) are not passed to this event.
+ */
+public class HealthBarPreChangeEvent extends HealthBarEvent implements Cancellable {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final boolean damage; //true for damage, false for healing
+    private final double health; //health before the change
+    private final Player source; //player the change happened to
+    private final Enum<?> cause; //cause of the damage or reason of the healing
+    private double amount; //amount of damage or healing
+    private boolean cancelled = false;
+
+    /**
+     * Class constructor.
+     * @param barName name of the health bar
+     * @param damage true for damage, false for healing
+     * @param amount amount of damage or healing
+     * @param health health before the change
+     * @param source player the change happened to (null if there is none)
+     * @param cause cause of the damage or reason of the healing (null if it is not known)
+     */
+    public HealthBarPreChangeEvent(String barName, boolean damage, double amount, double health, Player source, Enum<?> cause) {
+        super(barName);
+        this.damage = damage;
+        this.amount = amount;
+        this.health = health;
+        this.source = source;
+        this.cause = cause;
+    }
+
+    /**
+     * A method to check if the change is damage.
+     * @return true for damage, false for healing
+     */
+    public boolean isDamage() {
+        return damage;
+    }
+
+    /**
+     * A method to get the amount of damage or healing.
+     * @return amount (not negative)
+     */
+    public double getAmount() {
+        return amount;
+    }
+
+    /**
+     * A method to change the amount of damage or healing.
+     * @param amount new amount
+     * @throws IllegalArgumentException amount is negative or not a number
+     */
+    public void setAmount(double amount) {
+        if (!(amount >= 0)) throw new IllegalArgumentException("amount must not be negative");
+        this.amount = amount;
+    }
+
+    /**
+     * A method to get the health before the change.
+     * @return health of the health bar
+     */
+    public double getHealth() {
+        return health;
+    }
+
+    /**
+     * A method to get the player the change happened to. If several players of the health bar were
+     * hit in the same tick, it is the first one.
+     * @return player or null if there is none
+     */
+    public Player getSource() {
+        return source;
+    }
+
+    /**
+     * A method to get the cause of the change.
+     * @return DamageCause, RegainReason or null if it is not known
+     */
+    public Enum<?> getCause() {
+        return cause;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.kalle.syncedhealthbar.api.event;
+
+import org.bukkit.event.HandlerList;
+
+/**
+ * The event that sums up the changes of the health of a health bar during one tick. It is fired
+ * once per changed health bar on the next tick, so listeners that only need the result get one
+ * event instead of one per change. The changes are only collected while a listener is registered.
+ */
+public class HealthBarTickEvent extends HealthBarEvent {
+
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final int changes; //count of the changes
+    private final double damage, healing; //sum of the damage and the healing
+    private final int deaths; //count of the deaths
+    private final double previous; //health before the first change
+    private final double health; //health after the last change
+
+    /**
+     * Class constructor.
+     * @param barName name of the health bar
+     * @param changes count of the changes
+     * @param damage sum of the damage
+     * @param healing sum of the healing
+     * @param deaths count of the deaths
+     * @param previous health before the first change
+     * @param health health after the last change (0 if the players died by it)
+     */
+    public HealthBarTickEvent(String barName, int changes, double damage, double healing, int deaths, double previous, double health) {
+        super(barName);
+        this.changes = changes;
+        this.damage = damage;
+        this.healing = healing;
+        this.deaths = deaths;
+        this.previous = previous;
+        this.health = health;
+    }
+
+    public int getChanges() {
+        return changes;
+    }
+
+    public double getDamage() {
+        return damage;
+    }
+
+    public double getHealing() {
+        return healing;
+    }
+
+    public int getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * A method to get the health before the first change of the tick.
+     * @return health of the health bar
+     */
+    public double getPreviousHealth() {
+        return previous;
+    }
+
+    /**
+     * A method to get the health after the last change of the tick.
+     * @return health of the players (0 if they died by the last change)
+     */
+    public double getHealth() {
+        return health;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+
+}
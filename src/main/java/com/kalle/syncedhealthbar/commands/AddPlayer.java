@@ -1,62 +1,203 @@
 package com.kalle.syncedhealthbar.commands;
 
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Exceptions.CommandException;
 import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
 import com.kalle.syncedhealthbar.Exceptions.ItemNotFoundException;
 import com.kalle.syncedhealthbar.Exceptions.PlayerAlreadyInListException;
 import com.kalle.syncedhealthbar.HealthBar;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
 /**
- * The class of the command "addHB" that implements its command execution.
+ * The class of the command "addHB" that implements its command execution. Several players can be
+ * added at once by their names or by entity selectors (e.g. "@a[team=red]"):
+ * "/addHB <players...> <health bar>" adds all players to the health bar and
+ * "/addHB <players...> to <health bars...>" distributes the players round-robin across the health bars.
+ * All arguments are checked before any player is added and all players are added in one batch.
  */
-public class AddPlayer implements CommandExecutor {
+public class AddPlayer extends AsyncCommand<AddPlayer.Batch> {
+
+    private static final String TO = "to"; //separates the players from the health bars (no player name is that short)
+
+    /**
+     * A class to hold the players that are added and their health bars.
+     */
+    static class Batch {
+
+        private ArrayList<Player> players = new ArrayList<Player>(); //players in the order they were passed
+        private ArrayList<String> bars = new ArrayList<String>(); //names of the health bars
+        private String[] assignment; //name of the health bar of every player
+        private int skipped = 0; //players of the selectors that already have a health bar
+
+    }
+
+    /**
+     * A class constructor so we can pass the config to the object.
+     * @param config config object so we can check the health bars and players
+     */
+    public AddPlayer(Config config) {
+        super(config, "addHB");
+    }
 
     /**
-     * The method that implements "addHB" execution procedure.
-     * @param sender sender who is executing the command
-     * @param command command that is getting executed
-     * @param label
-     * @param args arguments of the command that is getting executed
-     * @return true if it is the passed command, false if not
+     * A method to complete the name of an online player or of a health bar.
+     * @param sender sender who is typing the command
+     * @param args arguments typed so far
+     * @return names of the online players without a health bar or of the health bars that start with the typed name
      */
     @Override
-    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        if (command.getName().equalsIgnoreCase("addHB")) { //check if string matches with command
-            //check if command has the right amount of arguments
-            if (args.length > 2) {
-                sender.sendMessage(ChatColor.RED + "Too many arguments!");
-                return true;
-            }
-            if (args.length < 2) {
-                sender.sendMessage(ChatColor.RED + "The command requires a health bar and a player as argument!");
-                return true;
+    protected List<String> complete(CommandSender sender, String[] args) {
+        String prefix = args[args.length - 1];
+        ArrayList<String> result = new ArrayList<String>();
+        for (int i = 0 ; i < args.length - 1 ; i++) {
+            if (args[i].equals(TO)) return config.completeHealthBars(prefix, MAX_COMPLETIONS); //only health bars follow
+        }
+        if (args.length > 1) result.addAll(config.completeHealthBars(prefix, MAX_COMPLETIONS / 2));
+        String lower = prefix.toLowerCase(Locale.ROOT);
+        for (Player i : Bukkit.getOnlinePlayers()) { //only players that can be added
+            if (result.size() >= MAX_COMPLETIONS) break;
+            if (i.getName().toLowerCase(Locale.ROOT).startsWith(lower) && config.getSnapshots().getBarOf(i.getUniqueId()) == null) result.add(i.getName());
+        }
+        return result;
+    }
+
+    /**
+     * A method to check all arguments in one pass and resolve the players. If any argument is
+     * wrong, every problem is sent to the sender and no player is added.
+     * @param context state of the execution
+     * @return players that are added and their health bars
+     * @throws CommandException the arguments are wrong
+     */
+    @Override
+    protected Batch prepare(Context context) throws CommandException {
+        String[] args = context.getArgs();
+        //check if command has the right amount of arguments
+        if (args.length < 2) {
+            throw new CommandException("The command requires a health bar and a player as argument!");
+        }
+        int to = -1;
+        for (int i = 0 ; i < args.length ; i++) {
+            if (args[i].equals(TO)) {
+                to = i;
+                break;
             }
-            try {
-                HealthBar hb = HealthBar.getHealthBar(args[1]); //get health bar that the player is supposed to be added to
-                for (Player i : Bukkit.getOnlinePlayers()) { //loop through online players
-                    if (i.getName().equals(args[0])) { //check if player is meant ot be added (if name is equal)
-                        hb.addPlayer(i); //add player to the health bar
-                        sender.sendMessage(ChatColor.GREEN + "PLayer: '" + args[0] + "' has been added to the health bar: '" + args[1] + "'!");
-                        return true;
-                    }
+        }
+        if (to == 0 || to == args.length - 1) {
+            throw new CommandException("The command requires players before and health bars after '" + TO + "'!");
+        }
+        int playerEnd = to == -1 ? args.length - 1 : to; //without "to" the last argument is the health bar
+        Batch batch = new Batch();
+        ArrayList<String> errors = new ArrayList<String>();
+        LinkedHashSet<String> bars = new LinkedHashSet<String>();
+        for (int i = to == -1 ? args.length - 1 : to + 1 ; i < args.length ; i++) { //check the health bars
+            if (!config.hasHealthBar(args[i])) errors.add("The health bar: '" + args[i] + "' does not exist!");
+            else if (bars.add(args[i])) context.depend(args[i]);
+        }
+        batch.bars.addAll(bars);
+        HashSet<UUID> added = new HashSet<UUID>(); //players are only added once if several arguments match them
+        for (int i = 0 ; i < playerEnd ; i++) { //check the players
+            if (args[i].startsWith("@")) { //entity selector
+                List<Entity> entities;
+                try {
+                    entities = Bukkit.selectEntities(context.getSender(), args[i]);
+                } catch (IllegalArgumentException e) { //selector could not be parsed
+                    errors.add("The selector: '" + args[i] + "' is invalid!");
+                    continue;
                 }
-                //no online player found with that name
-                sender.sendMessage(ChatColor.RED + "Player: '" + args[0] + "' is currently not online!");
-            } catch (ItemNotFoundException e) { //health bar does not exist
-                sender.sendMessage(ChatColor.RED + e.getMessage());
-            } catch (PlayerAlreadyInListException e) { //player is already assigned to a health bar
-                sender.sendMessage(ChatColor.RED + e.getMessage());
-            } catch (CorruptedConfigException e) { //config.yml is corrupted and can not be worked with
-                sender.sendMessage(ChatColor.RED + e.getMessage());
+                for (Entity j : entities) {
+                    if (!(j instanceof Player) || !added.add(j.getUniqueId())) continue;
+                    if (config.getHBName(j.getUniqueId()) != null) batch.skipped++; //selectors only add players without a health bar
+                    else batch.players.add((Player) j);
+                }
+                continue;
+            }
+            Player player = Bukkit.getPlayerExact(args[i]);
+            if (player == null) { //no online player found with that name
+                errors.add("Player: '" + args[i] + "' is currently not online!");
+            } else if (config.getHBName(player.getUniqueId()) != null) { //player is already assigned to a health bar
+                errors.add("Player: '" + player.getName() + "' is already added to the health bar: '" + config.getHBName(player.getUniqueId()) + "'!");
+            } else if (added.add(player.getUniqueId())) {
+                batch.players.add(player);
+            }
+        }
+        if (!errors.isEmpty()) {
+            for (String i : errors) {
+                context.reply(ChatColor.RED + i);
+            }
+            throw new CommandException("No player has been added!");
+        }
+        if (batch.players.isEmpty()) {
+            throw new CommandException("No player without a health bar was found!");
+        }
+        return batch;
+    }
+
+    /**
+     * A method to distribute the players round-robin across the health bars.
+     * @param batch players that are added and their health bars
+     * @param context state of the execution
+     */
+    @Override
+    protected void compute(Batch batch, Context context) {
+        batch.assignment = new String[batch.players.size()];
+        for (int i = 0 ; i < batch.assignment.length ; i++) {
+            batch.assignment[i] = batch.bars.get(i % batch.bars.size());
+        }
+    }
+
+    /**
+     * A method to add the players to their health bars in one batch.
+     * @param batch players that are added and their health bars
+     * @param context state of the execution
+     * @throws CommandException a player left or was added to a health bar in the meantime
+     * @throws ItemNotFoundException health bar does not exist
+     * @throws PlayerAlreadyInListException player is already assigned to a health bar
+     * @throws CorruptedConfigException config.yml is corrupted and can not be worked with
+     */
+    @Override
+    protected void apply(Batch batch, Context context) throws CommandException, ItemNotFoundException, PlayerAlreadyInListException, CorruptedConfigException {
+        for (Player i : batch.players) { //check the players again, so either all or none are added
+            if (!i.isOnline()) {
+                throw new CommandException("Player: '" + i.getName() + "' left the server, no player has been added!");
             }
-            return true;
+            if (config.getHBName(i.getUniqueId()) != null) {
+                throw new CommandException("Player: '" + i.getName() + "' was added to a health bar in the meantime, no player has been added!");
+            }
+        }
+        HashMap<String, HealthBar> healthBars = new HashMap<String, HealthBar>();
+        for (String i : batch.bars) {
+            healthBars.put(i, HealthBar.getHealthBar(i)); //get health bar that the players are supposed to be added to
+        }
+        config.beginBatch(); //all players are written together
+        try {
+            for (int i = 0 ; i < batch.assignment.length ; i++) {
+                healthBars.get(batch.assignment[i]).addPlayer(batch.players.get(i)); //add player to the health bar
+            }
+        } finally {
+            config.endBatch();
+        }
+        if (batch.players.size() == 1) {
+            context.reply(ChatColor.GREEN + "PLayer: '" + batch.players.get(0).getName() + "' has been added to the health bar: '" + batch.assignment[0] + "'!");
+        } else if (batch.bars.size() == 1) {
+            context.reply(ChatColor.GREEN + "" + batch.players.size() + " players have been added to the health bar: '" + batch.bars.get(0) + "'!");
+        } else {
+            context.reply(ChatColor.GREEN + "" + batch.players.size() + " players have been distributed across " + batch.bars.size() + " health bars!");
+        }
+        if (batch.skipped > 0) {
+            context.reply(ChatColor.GRAY + "" + batch.skipped + " players of the selectors already have a health bar and were skipped.");
         }
-        return false;
     }
 
 }
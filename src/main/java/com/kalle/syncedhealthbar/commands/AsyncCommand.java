@@ -0,0 +1,343 @@
+package com.kalle.syncedhealthbar.commands;
+
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.metrics.CommandStats;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import com.kalle.syncedhealthbar.scheduler.IoExecutor;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A class for commands whose work is split between the main thread and a command thread. A command
+ * runs in three phases:
+ * 1. prepare (main thread, the global region thread on Folia): validates the arguments and copies the records it needs, every health
+ *    bar it reads is remembered with its version
+ * 2. compute (command thread): does the lookups and formatting on the copies
+ * 3. apply (main thread, the global region thread on Folia): changes the config and the online players
+ * Before the changes are applied the versions of the remembered health bars are compared. If another
+ * command changed one of them in the meantime (e.g. deleted the health bar a player is added to),
+ * the command is run again from the first phase. All commands share one thread, so they compute in
+ * the order they were executed, except commands whose second phase blocks on files: they compute on
+ * the executor of blocking work, so they do not hold up the other commands. The sender gets all
+ * replies after the last phase. The arguments are completed on the thread that asks for the
+ * suggestions (e.g. a region thread on Folia), so only the concurrent indices of the config are read.
+ * @param <S> type of the copy the command works on
+ */
+public abstract class AsyncCommand<S> implements TabExecutor {
+
+    private static final int MAX_ATTEMPTS = 3; //how often a command is run before a conflict is reported
+    protected static final int MAX_COMPLETIONS = 50; //maximum count of suggestions of the tab completion
+    private static Plugin plugin; //plugin that runs the commands (null if the commands are not started)
+    private static Logger logger = Logger.getLogger("SyncedHealthBar"); //logger of the plugin once the commands are started
+    private static ExecutorService executor; //thread of the second phase of all commands (null if the phases run on the main thread)
+
+    protected Config config;
+    private String name; //name of the command
+
+    /**
+     * Class constructor.
+     * @param config config the command works on
+     * @param name name of the command
+     */
+    protected AsyncCommand(Config config, String name) {
+        this.config = config;
+        this.name = name;
+    }
+
+    /**
+     * A method to start the thread that runs the second phase of the commands.
+     * @param plugin plugin that runs the commands
+     */
+    public static void start(Plugin plugin) {
+        AsyncCommand.plugin = plugin;
+        logger = plugin.getLogger();
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "SyncedHealthBar-Commands");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A method to stop the thread of the commands. Commands that are not finished yet are dropped.
+     */
+    public static void shutdown() {
+        if (executor == null) return;
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    /**
+     * A class to hold the state of one execution of a command.
+     */
+    public class Context {
+
+        private CommandSender sender;
+        private String[] args;
+        private long start = System.nanoTime(); //time in ns the command was executed
+        private int attempt = 0; //how often the command was run
+        private long mainThread, async; //time in ns spent on and off the main thread
+        private LinkedHashMap<String, Long> versions = new LinkedHashMap<String, Long>(); //versions of the health bars the command read
+        private ArrayList<String> replies = new ArrayList<String>(); //messages that are sent when the command is finished
+
+        /**
+         * Class constructor.
+         * @param sender sender who is executing the command
+         * @param args arguments of the command
+         */
+        private Context(CommandSender sender, String[] args) {
+            this.sender = sender;
+            this.args = args;
+        }
+
+        /**
+         * A method to get the sender who is executing the command (only used on the main thread).
+         * @return sender of the command
+         */
+        public CommandSender getSender() {
+            return sender;
+        }
+
+        /**
+         * A method to get the arguments of the command.
+         * @return arguments of the command
+         */
+        public String[] getArgs() {
+            return args;
+        }
+
+        /**
+         * A method to remember the version of a health bar the command read (only used in the first
+         * phase). The command is run again if the health bar is changed before its changes are applied.
+         * @param hbName name of the health bar (it does not need to exist)
+         */
+        public void depend(String hbName) {
+            versions.put(hbName, config.getVersion(hbName));
+        }
+
+        /**
+         * A method to add a message that is sent to the sender when the command is finished.
+         * @param message message for the sender
+         */
+        public void reply(String message) {
+            replies.add(message);
+        }
+
+        /**
+         * A method to send a message to the sender right away (e.g. the progress of a long second phase).
+         * @param message message for the sender
+         */
+        public void progress(String message) {
+            if (executor == null) sender.sendMessage(message); //every phase runs on the calling thread
+            else TaskScheduler.get().run(() -> sender.sendMessage(message));
+        }
+
+        /**
+         * A method to get a health bar that was changed since the command read it.
+         * @return name of the changed health bar or null if none changed
+         */
+        private String conflict() {
+            for (Map.Entry<String, Long> i : versions.entrySet()) {
+                if (config.getVersion(i.getKey()) != i.getValue()) return i.getKey();
+            }
+            return null;
+        }
+
+    }
+
+    /**
+     * The method that executes the command in its phases.
+     * @param sender sender who is executing the command
+     * @param command command that is getting executed
+     * @param label
+     * @param args arguments of the command that is getting executed
+     * @return true if it is the passed command, false if not
+     */
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (!command.getName().equalsIgnoreCase(name)) return false; //check if string matches with command
+        Context context = new Context(sender, args);
+        TaskScheduler scheduler = TaskScheduler.get();
+        if (scheduler != null && scheduler.isRegionThreaded()) scheduler.run(() -> run(context)); //player commands run on the region thread of the player on Folia
+        else run(context);
+        return true;
+    }
+
+    /**
+     * The method that completes the argument that is typed.
+     * @param sender sender who is typing the command
+     * @param command command that is getting typed
+     * @param label
+     * @param args arguments typed so far (the last one is the one that is completed)
+     * @return suggestions for the last argument or null if it is not the passed command
+     */
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+        if (!command.getName().equalsIgnoreCase(name)) return null; //check if string matches with command
+        return complete(sender, args);
+    }
+
+    /**
+     * A method to run the first phase on the main thread and hand the command to the command thread.
+     * @param context state of the execution
+     */
+    private void run(Context context) {
+        long start = System.nanoTime();
+        context.attempt++;
+        context.versions.clear();
+        context.replies.clear();
+        S snapshot;
+        try {
+            snapshot = prepare(context);
+        } catch (Exception e) {
+            context.mainThread += System.nanoTime() - start;
+            finish(context, e);
+            return;
+        }
+        context.mainThread += System.nanoTime() - start;
+        ExecutorService thread = executor;
+        if (thread != null && isBlocking()) thread = IoExecutor.shared();
+        if (thread == null) { //commands are not started, so every phase runs on the calling thread
+            apply(context, snapshot, compute(context, snapshot));
+            return;
+        }
+        thread.execute(() -> {
+            Exception error = compute(context, snapshot);
+            if (!plugin.isEnabled()) return; //plugin was disabled in the meantime
+            TaskScheduler.get().run(() -> apply(context, snapshot, error));
+        });
+    }
+
+    /**
+     * A method to run the second phase.
+     * @param context state of the execution
+     * @param snapshot copy the command works on
+     * @return exception of the second phase (null if there is none)
+     */
+    private Exception compute(Context context, S snapshot) {
+        long start = System.nanoTime();
+        try {
+            compute(snapshot, context);
+            return null;
+        } catch (Exception e) {
+            return e;
+        } finally {
+            context.async += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * A method to check for conflicts and run the last phase on the main thread.
+     * @param context state of the execution
+     * @param snapshot copy the command works on
+     * @param error exception of the second phase (null if there is none)
+     */
+    private void apply(Context context, S snapshot, Exception error) {
+        long start = System.nanoTime();
+        if (error == null) {
+            String conflict = context.conflict();
+            if (conflict != null) { //another command changed a health bar the command read
+                Metrics.get().command(name).conflict();
+                context.mainThread += System.nanoTime() - start;
+                if (context.attempt < MAX_ATTEMPTS) {
+                    run(context); //start again with the current records
+                    return;
+                }
+                finish(context, new Exception("The health bar: '" + conflict + "' was changed by another command, please try again!"));
+                return;
+            }
+            try {
+                apply(snapshot, context);
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+        context.mainThread += System.nanoTime() - start;
+        finish(context, error);
+    }
+
+    /**
+     * A method to send the replies and record the statistics of the command.
+     * @param context state of the execution
+     * @param error exception that stopped the command (null if it succeeded)
+     */
+    private void finish(Context context, Exception error) {
+        CommandStats stats = Metrics.get().command(name);
+        if (error instanceof RuntimeException) { //bug in the command
+            logger.log(Level.SEVERE, "Command '" + name + "' failed!", error);
+            context.reply(ChatColor.RED + "An internal error occurred, please check the console!");
+        } else if (error != null) { //command could not be executed
+            context.reply(ChatColor.RED + error.getMessage());
+        }
+        if (error != null) stats.failure();
+        for (String i : context.replies) {
+            context.sender.sendMessage(i);
+        }
+        stats.record(System.nanoTime() - context.start, context.mainThread, context.async);
+    }
+
+    /**
+     * A method to get the suggestions for the last typed argument. It can be called on every thread,
+     * so it only reads the concurrent indices of the config (e.g. config.completeHealthBars()).
+     * @param sender sender who is typing the command
+     * @param args arguments typed so far (the last one is the one that is completed)
+     * @return at most MAX_COMPLETIONS suggestions
+     */
+    protected List<String> complete(CommandSender sender, String[] args) {
+        return Collections.emptyList(); //no suggestions instead of the names of the online players
+    }
+
+    /**
+     * A method to check if the second phase blocks on files or other threads (e.g. an export).
+     * @return true if the second phase runs on the executor of blocking work instead of the command thread
+     */
+    protected boolean isBlocking() {
+        return false;
+    }
+
+    /**
+     * A method to validate the arguments and copy the records the command needs (main thread).
+     * Every health bar that is read needs to be passed to context.depend().
+     * @param context state of the execution
+     * @return copy the command works on
+     * @throws Exception command can not be executed and the message is sent to the sender
+     */
+    protected abstract S prepare(Context context) throws Exception;
+
+    /**
+     * A method to do the lookups and the formatting on the copy (command thread). Must not touch
+     * the config, the health bars or the players.
+     * @param snapshot copy the command works on
+     * @param context state of the execution
+     * @throws Exception command can not be executed and the message is sent to the sender
+     */
+    protected void compute(S snapshot, Context context) throws Exception {
+        //most commands only need the main thread phases
+    }
+
+    /**
+     * A method to apply the changes to the config and the online players (main thread). The
+     * health bars passed to context.depend() have not changed since the first phase.
+     * @param snapshot copy the command works on
+     * @param context state of the execution
+     * @throws Exception command can not be executed and the message is sent to the sender
+     */
+    protected void apply(S snapshot, Context context) throws Exception {
+        //read-only commands reply in the second phase
+    }
+
+}
@@ -1,60 +1,64 @@
 package com.kalle.syncedhealthbar.commands;
 
 import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Exceptions.CommandException;
 import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
 import com.kalle.syncedhealthbar.HealthBar;
 import org.bukkit.ChatColor;
-import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
-import org.bukkit.command.CommandSender;
 
 import javax.naming.NameAlreadyBoundException;
 
 /**
  * The class of the command "createHB" that implements its command execution.
  */
-public class CreateHealthBar implements CommandExecutor {
-
-    private Config config; //config because we need to make changes to the config.yml
+public class CreateHealthBar extends AsyncCommand<String> {
 
     /**
      * A class constructor so we can pass the config to the object.
      * @param config config object so we can make changes to the config
      */
     public CreateHealthBar(Config config) {
-        this.config = config;
+        super(config, "createHB");
+    }
+
+    /**
+     * A method to check the arguments and that the name is not taken.
+     * @param context state of the execution
+     * @return name of the new health bar
+     * @throws CommandException the arguments are wrong or the name is taken
+     */
+    @Override
+    protected String prepare(Context context) throws CommandException {
+        String[] args = context.getArgs();
+        //check if command has the right amount of arguments
+        if (args.length > 1) {
+            throw new CommandException("Too many arguments!");
+        }
+        if (args.length < 1) {
+            throw new CommandException("The command requires an argument!");
+        }
+        if (config.hasHealthBar(args[0])) { //name is already used by another health bar
+            throw new CommandException("The name: '" + args[0] + "' is already taken!");
+        }
+        context.depend(args[0]); //another command could create it in the meantime
+        return args[0];
     }
 
     /**
-     * The method that implements "createHB" execution procedure.
-     * @param sender sender who is executing the command
-     * @param command command that is getting executed
-     * @param label
-     * @param args arguments of the command that is getting executed
-     * @return true if it is the passed command, false if not
+     * A method to create the health bar.
+     * @param name name of the new health bar
+     * @param context state of the execution
+     * @throws CommandException the name was taken in the meantime
+     * @throws CorruptedConfigException config.yml is corrupted and can not be worked with
      */
     @Override
-    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        if (command.getName().equalsIgnoreCase("createHB")) { //check if string matches with command
-            //check if command has the right amount of arguments
-            if (args.length > 1) {
-                sender.sendMessage(ChatColor.RED + "Too many arguments!");
-                return true;
-            }
-            if (args.length < 1) {
-                sender.sendMessage(ChatColor.RED + "The command requires an argument!");
-                return true;
-            }
-            try {
-                HealthBar hb = new HealthBar(config,args[0]); //create the new health bar
-                sender.sendMessage(ChatColor.GREEN + "The health bar: '" + args[0] + "' has been created!");
-            } catch (NameAlreadyBoundException e) { //name is already used by another health bar
-                sender.sendMessage(ChatColor.RED + "The name: '" + args[0] + "' is already taken!");
-            } catch (CorruptedConfigException e) { //config.yml is corrupted and can not be worked with
-                sender.sendMessage(ChatColor.RED + e.getMessage());
-            }
+    protected void apply(String name, Context context) throws CommandException, CorruptedConfigException {
+        try {
+            new HealthBar(config, name); //create the new health bar
+        } catch (NameAlreadyBoundException e) { //name is already used by another health bar
+            throw new CommandException("The name: '" + name + "' is already taken!");
         }
-        return false;
+        context.reply(ChatColor.GREEN + "The health bar: '" + name + "' has been created!");
     }
 
 }
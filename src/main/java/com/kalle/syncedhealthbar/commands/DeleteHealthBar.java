@@ -1,50 +1,77 @@
 package com.kalle.syncedhealthbar.commands;
 
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Exceptions.CommandException;
 import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
 import com.kalle.syncedhealthbar.Exceptions.ItemNotFoundException;
 import com.kalle.syncedhealthbar.HealthBar;
 import org.bukkit.ChatColor;
-import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * The class of the command "deleteHB" that implements its command execution.
  */
-public class DeleteHealthBar implements CommandExecutor {
+public class DeleteHealthBar extends AsyncCommand<String> {
+
+    /**
+     * A class constructor so we can pass the config to the object.
+     * @param config config object so we can make changes to the config
+     */
+    public DeleteHealthBar(Config config) {
+        super(config, "deleteHB");
+    }
 
     /**
-     * The method that implements "deleteHB" execution procedure.
-     * @param sender sender who is executing the command
-     * @param command command that is getting executed
-     * @param label
-     * @param args arguments of the command that is getting executed
-     * @return true if it is the passed command, false if not
+     * A method to complete the name of the health bar.
+     * @param sender sender who is typing the command
+     * @param args arguments typed so far
+     * @return names of the health bars that start with the typed name
      */
     @Override
-    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        if (command.getName().equalsIgnoreCase("deleteHB")) { //check if string matches with command
-            //check if command has the right amount of arguments
-            if (args.length > 1) {
-                sender.sendMessage(ChatColor.RED + "Too many arguments!");
-                return true;
-            }
-            if (args.length < 1) {
-                sender.sendMessage(ChatColor.RED + "The command requires an argument!");
-                return true;
-            }
-            try {
-                HealthBar hb = HealthBar.getHealthBar(args[0]); //get the health bar
-                hb.deleteHealthBar(); //delete the health bar
-                sender.sendMessage(ChatColor.GREEN + "The health bar: '" + args[0] + "' has been deleted!");
-            } catch (CorruptedConfigException e) { //config.yml is corrupted and can not be worked with
-                sender.sendMessage(ChatColor.RED + e.getMessage());
-            } catch (ItemNotFoundException e) { //health bar that is supposed to be deleted does not exist
-                sender.sendMessage(ChatColor.RED + e.getMessage());
-            }
-            return true;
+    protected List<String> complete(CommandSender sender, String[] args) {
+        if (args.length != 1) return Collections.emptyList();
+        return config.completeHealthBars(args[0], MAX_COMPLETIONS);
+    }
+
+    /**
+     * A method to check the arguments and that the health bar exists.
+     * @param context state of the execution
+     * @return name of the health bar
+     * @throws CommandException the arguments are wrong
+     * @throws ItemNotFoundException health bar that is supposed to be deleted does not exist
+     */
+    @Override
+    protected String prepare(Context context) throws CommandException, ItemNotFoundException {
+        String[] args = context.getArgs();
+        //check if command has the right amount of arguments
+        if (args.length > 1) {
+            throw new CommandException("Too many arguments!");
+        }
+        if (args.length < 1) {
+            throw new CommandException("The command requires an argument!");
         }
-        return false;
+        if (!config.hasHealthBar(args[0])) {
+            throw new ItemNotFoundException("The health bar: '" + args[0] + "' does not exist!");
+        }
+        context.depend(args[0]);
+        return args[0];
+    }
+
+    /**
+     * A method to delete the health bar.
+     * @param name name of the health bar
+     * @param context state of the execution
+     * @throws ItemNotFoundException health bar was deleted in the meantime
+     * @throws CorruptedConfigException config.yml is corrupted and can not be worked with
+     */
+    @Override
+    protected void apply(String name, Context context) throws ItemNotFoundException, CorruptedConfigException {
+        HealthBar hb = HealthBar.getHealthBar(name); //get the health bar
+        hb.deleteHealthBar(); //delete the health bar
+        context.reply(ChatColor.GREEN + "The health bar: '" + name + "' has been deleted!");
     }
 
 }
@@ -0,0 +1,108 @@
+package com.kalle.syncedhealthbar.commands;
+
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Exceptions.CommandException;
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.storage.BarFile;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The class of the command "hbexport" that implements its command execution. The records are
+ * copied on the main thread and written to the file on the command thread.
+ */
+public class ExportHealthBars extends AsyncCommand<ExportHealthBars.Export> {
+
+    private Plugin plugin; //plugin to get the plugin folder
+
+    /**
+     * A class to hold the file and the copied records.
+     */
+    static class Export {
+
+        private File file;
+        private ArrayList<BarRecord> bars; //copies of all health bars with their players
+
+    }
+
+    /**
+     * A class constructor so we can pass the config and the plugin to the object.
+     * @param config config object so we can copy the records
+     * @param plugin plugin to get the plugin folder
+     */
+    public ExportHealthBars(Config config, Plugin plugin) {
+        super(config, "hbexport");
+        this.plugin = plugin;
+    }
+
+    /**
+     * A method to complete the name of the file.
+     * @param sender sender who is typing the command
+     * @param args arguments typed so far
+     * @return file names with the supported extensions
+     */
+    @Override
+    protected List<String> complete(CommandSender sender, String[] args) {
+        if (args.length != 1 || args[0].isEmpty() || args[0].contains(".")) return Collections.emptyList();
+        ArrayList<String> result = new ArrayList<String>();
+        result.add(args[0] + "." + BarFile.CSV);
+        result.add(args[0] + "." + BarFile.JSONL);
+        return result;
+    }
+
+    /**
+     * A method to check the arguments and copy the records.
+     * @param context state of the execution
+     * @return file and copied records
+     * @throws CommandException the arguments are wrong
+     * @throws StorageException the file is not in the plugin folder or has no supported extension
+     */
+    @Override
+    protected Export prepare(Context context) throws CommandException, StorageException {
+        String[] args = context.getArgs();
+        //check if command has the right amount of arguments
+        if (args.length > 1) {
+            throw new CommandException("Too many arguments!");
+        }
+        if (args.length < 1) {
+            throw new CommandException("The command requires the name of the file (.csv or .jsonl) as argument!");
+        }
+        Export export = new Export();
+        export.file = BarFile.resolve(plugin.getDataFolder(), args[0]);
+        export.bars = config.copyRecords();
+        return export;
+    }
+
+    /**
+     * A method to run the second phase on the executor of blocking work, since it writes the file.
+     * @return true
+     */
+    @Override
+    protected boolean isBlocking() {
+        return true;
+    }
+
+    /**
+     * A method to write the records to the file.
+     * @param export file and copied records
+     * @param context state of the execution
+     * @throws StorageException file could not be written
+     */
+    @Override
+    protected void compute(Export export, Context context) throws StorageException {
+        BarFile.write(export.file, export.bars);
+        int members = 0;
+        for (BarRecord i : export.bars) {
+            members += i.getMembers().size();
+        }
+        context.reply(ChatColor.GREEN + "Exported " + export.bars.size() + " health bars with " + members + " players to the file: '" + export.file.getName() + "'!");
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.kalle.syncedhealthbar.commands;
+
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Exceptions.CommandException;
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.Exceptions.PlayerAlreadyInListException;
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import com.kalle.syncedhealthbar.storage.BarFile;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The class of the command "hbimport" that implements its command execution. The file is read
+ * and validated line by line on the command thread. On the main thread the records are checked
+ * against the stored health bars and then added in one batch, so either all or none are imported
+ * and they are written with one snapshot. With "dry-run" only the checks are done.
+ */
+public class ImportHealthBars extends AsyncCommand<ImportHealthBars.Import> {
+
+    private static final String DRY_RUN = "dry-run";
+    private static final long PROGRESS_SIZE = 1024 * 1024; //size in bytes from which the progress is reported
+    private static final int MAX_ERRORS = 20; //problems that are sent to the sender (all are counted)
+
+    private Plugin plugin; //plugin to get the plugin folder
+
+    /**
+     * A class to hold the file and the records read from it.
+     */
+    static class Import {
+
+        private File file;
+        private boolean dryRun;
+        private BarFile.Result result; //records and problems of the file
+
+    }
+
+    /**
+     * A class constructor so we can pass the config and the plugin to the object.
+     * @param config config object so we can add the records
+     * @param plugin plugin to get the plugin folder
+     */
+    public ImportHealthBars(Config config, Plugin plugin) {
+        super(config, "hbimport");
+        this.plugin = plugin;
+    }
+
+    /**
+     * A method to complete the dry run option.
+     * @param sender sender who is typing the command
+     * @param args arguments typed so far
+     * @return the dry run option if it starts with the typed argument
+     */
+    @Override
+    protected List<String> complete(CommandSender sender, String[] args) {
+        if (args.length != 2 || !DRY_RUN.startsWith(args[1])) return Collections.emptyList();
+        return Collections.singletonList(DRY_RUN);
+    }
+
+    /**
+     * A method to check the arguments and the file.
+     * @param context state of the execution
+     * @return file that is imported
+     * @throws CommandException the arguments are wrong or the file does not exist
+     * @throws StorageException the file is not in the plugin folder or has no supported extension
+     */
+    @Override
+    protected Import prepare(Context context) throws CommandException, StorageException {
+        String[] args = context.getArgs();
+        //check if command has the right amount of arguments
+        if (args.length > 2 || (args.length == 2 && !args[1].equalsIgnoreCase(DRY_RUN))) {
+            throw new CommandException("Too many arguments!");
+        }
+        if (args.length < 1) {
+            throw new CommandException("The command requires the name of the file (.csv or .jsonl) as argument!");
+        }
+        Import data = new Import();
+        data.file = BarFile.resolve(plugin.getDataFolder(), args[0]);
+        data.dryRun = args.length == 2;
+        if (!data.file.isFile()) {
+            throw new CommandException("The file: '" + args[0] + "' does not exist!");
+        }
+        return data;
+    }
+
+    /**
+     * A method to run the second phase on the executor of blocking work, since it reads the file.
+     * @return true
+     */
+    @Override
+    protected boolean isBlocking() {
+        return true;
+    }
+
+    /**
+     * A method to read and validate the file.
+     * @param data file that is imported
+     * @param context state of the execution
+     * @throws CommandException the file has problems
+     * @throws StorageException the file could not be read
+     */
+    @Override
+    protected void compute(Import data, Context context) throws CommandException, StorageException {
+        boolean report = data.file.length() >= PROGRESS_SIZE; //small files are read at once
+        data.result = BarFile.read(data.file, percent -> {
+            if (report) context.progress(ChatColor.GRAY + "[hbimport] read " + percent + "% of the file: '" + data.file.getName() + "'...");
+        });
+        if (data.result.getErrorCount() > 0) {
+            fail(context, data.result.getErrors(), data.result.getErrorCount());
+        }
+    }
+
+    /**
+     * A method to check the records against the stored health bars and add them.
+     * @param data records of the file
+     * @param context state of the execution
+     * @throws CommandException a health bar or a player of the file is already stored
+     * @throws CorruptedConfigException config.yml is corrupted and can not be worked with
+     * @throws PlayerAlreadyInListException player is already assigned to a health bar
+     */
+    @Override
+    protected void apply(Import data, Context context) throws CommandException, CorruptedConfigException, PlayerAlreadyInListException {
+        ArrayList<String> errors = new ArrayList<String>();
+        int errorCount = 0;
+        for (BarRecord i : data.result.getBars()) { //check every record before anything is added
+            if (config.hasHealthBar(i.getName())) {
+                if (errors.size() < MAX_ERRORS) errors.add("The health bar: '" + i.getName() + "' already exists!");
+                errorCount++;
+            }
+            for (MemberRecord j : i.getMembers()) {
+                String current = config.getHBName(j.getUniqueId());
+                if (current == null) continue;
+                if (errors.size() < MAX_ERRORS) errors.add("Player: '" + j.getName() + "' is already added to the health bar: '" + current + "'!");
+                errorCount++;
+            }
+        }
+        if (errorCount > 0) fail(context, errors, errorCount);
+        String summary = data.result.getBars().size() + " health bars with " + data.result.getMemberCount() + " players";
+        if (data.dryRun) {
+            context.reply(ChatColor.GREEN + "Dry run: " + summary + " of the file: '" + data.file.getName() + "' can be imported!");
+            return;
+        }
+        config.beginBatch(); //all records are written together
+        try {
+            for (BarRecord i : data.result.getBars()) {
+                config.addHealthBar(i.getName(), i.getHealth()); //created when it is needed
+                for (MemberRecord j : i.getMembers()) {
+                    Player player = Bukkit.getPlayer(j.getUniqueId()); //online players are added through their health bar
+                    if (player != null) HealthBar.getRegistry().getHealthBar(i.getName()).addPlayer(player);
+                    else config.addMember(i.getName(), j.getUniqueId(), j.getName(), j.getLastLogin());
+                }
+            }
+        } finally {
+            config.endBatch();
+        }
+        context.reply(ChatColor.GREEN + "Imported " + summary + " from the file: '" + data.file.getName() + "'!");
+    }
+
+    /**
+     * A method to send the problems to the sender and stop the import.
+     * @param context state of the execution
+     * @param errors first problems
+     * @param errorCount count of all problems
+     * @throws CommandException always, so nothing is imported
+     */
+    private static void fail(Context context, ArrayList<String> errors, int errorCount) throws CommandException {
+        for (String i : errors) {
+            context.reply(ChatColor.RED + i);
+        }
+        if (errorCount > errors.size()) context.reply(ChatColor.RED + "... and " + (errorCount - errors.size()) + " more.");
+        throw new CommandException(errorCount + " problems found, nothing has been imported!");
+    }
+
+}
@@ -1,71 +1,83 @@
 package com.kalle.syncedhealthbar.commands;
 
 import com.kalle.syncedhealthbar.Config;
-import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.Exceptions.CommandException;
 import com.kalle.syncedhealthbar.Exceptions.ItemNotFoundException;
-import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
 import org.bukkit.ChatColor;
-import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * The class of the command "listHB" that implements its command execution.
+ * The class of the command "listHB" that implements its command execution. The players are copied
+ * on the main thread and the list is built on the command thread.
  */
-public class ListHealthBar implements CommandExecutor {
-
-    private Config config; //config because we need to make changes to the config.yml
+public class ListHealthBar extends AsyncCommand<BarRecord> {
 
     /**
      * A class constructor so we can pass the config to the object.
-     * @param config config object so we can make changes to the config
+     * @param config config object so we can read the players of the health bar
      */
     public ListHealthBar(Config config) {
-        this.config = config;
+        super(config, "listHB");
+    }
+
+    /**
+     * A method to complete the name of the health bar.
+     * @param sender sender who is typing the command
+     * @param args arguments typed so far
+     * @return names of the health bars that start with the typed name
+     */
+    @Override
+    protected List<String> complete(CommandSender sender, String[] args) {
+        if (args.length != 1) return Collections.emptyList();
+        return config.completeHealthBars(args[0], MAX_COMPLETIONS);
     }
 
     /**
-     * The method that implements "listHB" execution procedure.
-     * @param sender sender who is executing the command
-     * @param command command that is getting executed
-     * @param label
-     * @param args arguments of the command that is getting executed
-     * @return true if it is the passed command, false if not
+     * A method to check the arguments and copy the record of the health bar.
+     * @param context state of the execution
+     * @return copy of the health bar with its players
+     * @throws CommandException the arguments are wrong
+     * @throws ItemNotFoundException health bar does not exist
      */
     @Override
-    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        if(command.getName().equalsIgnoreCase("listHB")) { //check if string matches with command
-            //check if command has the right amount of arguments
-            if (args.length > 1) {
-                sender.sendMessage(ChatColor.RED + "Too many arguments!");
-                return true;
-            }
-            if (args.length < 1) {
-                sender.sendMessage(ChatColor.RED + "The command requires an argument!");
-                return true;
-            }
-            try {
-                HealthBar hb = HealthBar.getHealthBar(args[0]); //get health bar
-                ArrayList<String> players = config.getPlayerList(hb); //get the list of names for each player
-                if (players.size() == 0) { //check if players are assigned to the health bar
-                    sender.sendMessage(ChatColor.GREEN + "No player is added to the health bar: '" + args[0] + "'!");
-                    return true;
-                }
-                String result = "'" + players.get(0) + "'"; //string that we build to return
-                for (int i = 1; i < players.size(); i++) { //loop through the players
-                    result += ", '" + players.get(i) + "'"; //add player to the result string
-                }
-                sender.sendMessage(ChatColor.GREEN + "The players: " + result + " are assigned to the health bar: '" + args[0] + "'!"); //print the result to the sender
-            } catch (ItemNotFoundException e) { //health bar does not exist
-                sender.sendMessage(ChatColor.RED + e.getMessage());
-            } catch (CorruptedConfigException e) { //config.yml is corrupted and can not be worked with
-                sender.sendMessage(ChatColor.RED + e.getMessage());
-            }
-            return true;
+    protected BarRecord prepare(Context context) throws CommandException, ItemNotFoundException {
+        String[] args = context.getArgs();
+        //check if command has the right amount of arguments
+        if (args.length > 1) {
+            throw new CommandException("Too many arguments!");
+        }
+        if (args.length < 1) {
+            throw new CommandException("The command requires an argument!");
+        }
+        BarRecord bar = config.copyRecord(args[0]); //players are listed off the main thread
+        if (bar == null) {
+            throw new ItemNotFoundException("The health bar: '" + args[0] + "' does not exist!");
+        }
+        return bar;
+    }
+
+    /**
+     * A method to build the list of the players.
+     * @param bar copy of the health bar with its players
+     * @param context state of the execution
+     */
+    @Override
+    protected void compute(BarRecord bar, Context context) {
+        if (bar.getMembers().isEmpty()) { //check if players are assigned to the health bar
+            context.reply(ChatColor.GREEN + "No player is added to the health bar: '" + bar.getName() + "'!");
+            return;
+        }
+        StringBuilder result = new StringBuilder(); //string that we build to return
+        for (MemberRecord i : bar.getMembers()) { //loop through the players
+            if (result.length() > 0) result.append(", ");
+            result.append('\'').append(i.getName()).append('\''); //add player to the result string
         }
-        return false;
+        context.reply(ChatColor.GREEN + "The players: " + result + " are assigned to the health bar: '" + bar.getName() + "'!"); //print the result to the sender
     }
 
 }
@@ -0,0 +1,79 @@
+package com.kalle.syncedhealthbar.commands;
+
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The class of the command "hbmigrate" that implements its command execution.
+ */
+public class MigrateStorage implements TabExecutor {
+
+    private Config config; //config because we need to change its storage
+
+    /**
+     * A class constructor so we can pass the config to the object.
+     * @param config config object so we can change its storage
+     */
+    public MigrateStorage(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * The method that implements "hbmigrate" execution procedure.
+     * @param sender sender who is executing the command
+     * @param command command that is getting executed
+     * @param label
+     * @param args arguments of the command that is getting executed
+     * @return true if it is the passed command, false if not
+     */
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (command.getName().equalsIgnoreCase("hbmigrate")) { //check if string matches with command
+            //check if command has the right amount of arguments
+            if (args.length > 1) {
+                sender.sendMessage(ChatColor.RED + "Too many arguments!");
+                return true;
+            }
+            if (args.length < 1) {
+                sender.sendMessage(ChatColor.RED + "The command requires the storage (yaml or sqlite) as argument!");
+                return true;
+            }
+            try {
+                config.getPersistence().migrate(args[0], sender); //copy the health bars to the new storage
+                sender.sendMessage(ChatColor.GREEN + "Migrating the health bars to the storage: '" + args[0] + "'...");
+            } catch (StorageException e) { //storage does not exist or is already used
+                sender.sendMessage(ChatColor.RED + e.getMessage());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The method that completes the argument of "hbmigrate" that is typed.
+     * @param sender sender who is typing the command
+     * @param command command that is getting typed
+     * @param label
+     * @param args arguments typed so far (the last one is the one that is completed)
+     * @return storages that start with the typed argument or null if it is not the passed command
+     */
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+        if (!command.getName().equalsIgnoreCase("hbmigrate")) return null; //check if string matches with command
+        ArrayList<String> result = new ArrayList<String>();
+        if (args.length != 1) return result;
+        for (String i : new String[] {"yaml", "sqlite"}) {
+            if (i.startsWith(args[0].toLowerCase(Locale.ROOT))) result.add(i);
+        }
+        return result;
+    }
+
+}
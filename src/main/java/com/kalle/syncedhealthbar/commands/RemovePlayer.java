@@ -1,76 +1,129 @@
 package com.kalle.syncedhealthbar.commands;
 
 import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Exceptions.CommandException;
 import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
 import com.kalle.syncedhealthbar.Exceptions.PlayerNotInListException;
 import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.model.MemberRecord;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
- * The class of the command "removeHB" that implements its command execution.
+ * The class of the command "removeHB" that implements its command execution. If the player is
+ * offline, the player with the latest login is picked on the command thread.
  */
-public class RemovePlayer implements CommandExecutor {
+public class RemovePlayer extends AsyncCommand<RemovePlayer.Target> {
+
+    /**
+     * A class to hold the player that is removed.
+     */
+    static class Target {
 
-    private Config config; //config because we need to make changes to the config.yml
+        private String name; //name that was passed to the command
+        private Player player; //online player (null if he is offline)
+        private ArrayList<MemberRecord> members; //copies of the offline players with the name
+        private MemberRecord remove; //offline player that is removed
+
+    }
 
     /**
      * A class constructor so we can pass the config to the object.
      * @param config config object so we can make changes to the config
      */
     public RemovePlayer(Config config) {
-        this.config = config;
+        super(config, "removeHB");
     }
 
     /**
-     * The method that implements "removeHB" execution procedure.
-     * @param sender sender who is executing the command
-     * @param command command that is getting executed
-     * @param label
-     * @param args arguments of the command that is getting executed
-     * @return true if it is the passed command, false if not
+     * A method to complete the name of the player (online or not).
+     * @param sender sender who is typing the command
+     * @param args arguments typed so far
+     * @return names of the assigned players that start with the typed name
      */
     @Override
-    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        if (command.getName().equalsIgnoreCase("removeHB")) { //check if string matches with command
-            //check if command has the right amount of arguments
-            if (args.length > 1) {
-                sender.sendMessage(ChatColor.RED + "Too many arguments!");
-                return true;
-            }
-            if (args.length < 1) {
-                sender.sendMessage(ChatColor.RED + "The command requires an argument!");
-                return true;
-            }
-            for (Player i : Bukkit.getOnlinePlayers()) { //loop through online players
-                if (i.getName().equals(args[0])) { //check if name equals to the player we look at in this iteration
-                    try {
-                        HealthBar hb = HealthBar.getHealthBar(i); //get his health bar
-                        hb.removePlayer(i); //remove the player from the health bar
-                        sender.sendMessage(ChatColor.GREEN + "The player: '" + args[0] + "' has been removed from his health bar!");
-                    } catch (PlayerNotInListException e) { //player is not assigned to any health bar
-                        sender.sendMessage(ChatColor.RED + e.getMessage());
-                    } catch (CorruptedConfigException e) { //config.yml is corrupted and can not be worked with
-                        sender.sendMessage((ChatColor.RED + e.getMessage()));
-                    }
-                    return true;
-                }
+    protected List<String> complete(CommandSender sender, String[] args) {
+        if (args.length != 1) return Collections.emptyList();
+        return config.completeMembers(args[0], MAX_COMPLETIONS);
+    }
+
+    /**
+     * A method to check the arguments and find the player.
+     * @param context state of the execution
+     * @return player that is removed
+     * @throws CommandException the arguments are wrong
+     * @throws PlayerNotInListException the player is not assigned to any health bar
+     */
+    @Override
+    protected Target prepare(Context context) throws CommandException, PlayerNotInListException {
+        String[] args = context.getArgs();
+        //check if command has the right amount of arguments
+        if (args.length > 1) {
+            throw new CommandException("Too many arguments!");
+        }
+        if (args.length < 1) {
+            throw new CommandException("The command requires an argument!");
+        }
+        Target target = new Target();
+        target.name = args[0];
+        for (Player i : Bukkit.getOnlinePlayers()) { //loop through online players
+            if (i.getName().equalsIgnoreCase(args[0])) { //check if name equals to the player we look at in this iteration
+                target.player = i;
+                config.getMember(i); //check if the player is assigned to a health bar
+                context.depend(config.getHBName(i.getUniqueId()));
+                return target;
             }
-            try {
-                config.removePlayer(args[0]); //remove the player from the config.yml (only needs to be removed from the config.yml since he is not online)
-                sender.sendMessage(ChatColor.GREEN + "The player: '" + args[0] + "' has been removed from his health bar!");
-            } catch (CorruptedConfigException e) { //config.yml is corrupted and can not be worked with
-                sender.sendMessage(ChatColor.RED + e.getMessage());
-            } catch (PlayerNotInListException e) { //player is not assigned to any health bar
-                sender.sendMessage(ChatColor.RED + e.getMessage());
+        }
+        target.members = config.copyMembers(args[0]); //only needs to be removed from the config.yml since he is not online
+        if (target.members.isEmpty()) { //there is no player with that name
+            throw new PlayerNotInListException("Player: '" + args[0] + "' has no health bar assigned!");
+        }
+        for (MemberRecord i : target.members) {
+            context.depend(config.getHBName(i.getUniqueId()));
+        }
+        return target;
+    }
+
+    /**
+     * A method to pick the offline player that is removed. Players can have the same name in the
+     * config, so we need to remove the player with the most recent "last login".
+     * @param target player that is removed
+     * @param context state of the execution
+     */
+    @Override
+    protected void compute(Target target, Context context) {
+        if (target.player != null) return;
+        for (MemberRecord i : target.members) { //loop through the players with the name
+            if (target.remove == null || i.getLastLogin() > target.remove.getLastLogin()) { //check if he logged in after the one with the latest login
+                target.remove = i; //change the one that needs be removed
             }
-            return true;
         }
-        return false;
+    }
+
+    /**
+     * A method to remove the player from his health bar.
+     * @param target player that is removed
+     * @param context state of the execution
+     * @throws PlayerNotInListException the player is not assigned to any health bar
+     * @throws CorruptedConfigException config.yml is corrupted and can not be worked with
+     */
+    @Override
+    protected void apply(Target target, Context context) throws PlayerNotInListException, CorruptedConfigException {
+        if (target.player != null) {
+            HealthBar hb = HealthBar.getHealthBar(target.player); //get his health bar
+            hb.removePlayer(target.player); //remove the player from the health bar
+            context.reply(ChatColor.GREEN + "The player: '" + target.name + "' has been removed from his health bar!");
+            return;
+        }
+        config.removeMember(target.remove.getUniqueId()); //remove the player from the config.yml
+        context.reply(ChatColor.GREEN + "The player: '" + target.remove.getName() + "' (last login: " + MemberRecord.formatLastLogin(target.remove.getLastLogin())
+                + ") has been removed from his health bar!");
     }
 
 }
@@ -0,0 +1,230 @@
+package com.kalle.syncedhealthbar.commands;
+
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Exceptions.CommandException;
+import com.kalle.syncedhealthbar.Exceptions.ItemNotFoundException;
+import com.kalle.syncedhealthbar.history.HealthHistory;
+import com.kalle.syncedhealthbar.history.HistorySummary;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The class of the command "hbhistory" that implements its command execution. The buffers of the
+ * history are spilled on the main thread, the history files are read on the history thread and
+ * the summary is formatted on the command thread.
+ */
+public class ShowHistory extends AsyncCommand<ShowHistory.Query> {
+
+    private static final long DEFAULT_WINDOW = 60 * 60 * 1000; //1h
+    private static final long TIMEOUT = 30; //time in s a query may take
+    private static final int TOP = 3; //count of the sources and causes that are shown
+
+    /**
+     * A class to hold the time range and the result of the query.
+     */
+    static class Query {
+
+        private String name; //name of the health bar
+        private HashMap<UUID, String> names = new HashMap<UUID, String>(); //names of the players of the health bar
+        private long window; //length of the time range in ms
+        private Future<HistorySummary> result; //summary that is read on the history thread
+
+    }
+
+    /**
+     * A class constructor so we can pass the config to the object.
+     * @param config config object so we can check the health bar and get the names of its players
+     */
+    public ShowHistory(Config config) {
+        super(config, "hbhistory");
+    }
+
+    /**
+     * A method to complete the name of the health bar or the time range.
+     * @param sender sender who is typing the command
+     * @param args arguments typed so far
+     * @return names of the health bars that start with the typed name or examples of time ranges
+     */
+    @Override
+    protected List<String> complete(CommandSender sender, String[] args) {
+        if (args.length == 1) return config.completeHealthBars(args[0], MAX_COMPLETIONS);
+        if (args.length == 2) return Arrays.asList("10m", "1h", "1d");
+        return Collections.emptyList();
+    }
+
+    /**
+     * A method to check the arguments, spill the buffers and start reading the history files.
+     * @param context state of the execution
+     * @return time range and result of the query
+     * @throws CommandException the arguments are wrong or the history is disabled
+     * @throws ItemNotFoundException health bar does not exist
+     */
+    @Override
+    protected Query prepare(Context context) throws CommandException, ItemNotFoundException {
+        String[] args = context.getArgs();
+        //check if command has the right amount of arguments
+        if (args.length > 2) {
+            throw new CommandException("Too many arguments!");
+        }
+        if (args.length < 1) {
+            throw new CommandException("The command requires a health bar as argument!");
+        }
+        HealthHistory history = HealthHistory.get();
+        if (history == null) {
+            throw new CommandException("The history is disabled in the config.yml!");
+        }
+        BarRecord bar = config.copyRecord(args[0]);
+        if (bar == null) {
+            throw new ItemNotFoundException("The health bar: '" + args[0] + "' does not exist!");
+        }
+        Query query = new Query();
+        query.name = bar.getName();
+        for (MemberRecord i : bar.getMembers()) {
+            query.names.put(i.getUniqueId(), i.getName());
+        }
+        query.window = args.length > 1 ? parseWindow(args[1]) : DEFAULT_WINDOW;
+        long max = TimeUnit.DAYS.toMillis(history.getRetentionDays());
+        if (query.window > max) {
+            throw new CommandException("The history is only kept for " + history.getRetentionDays() + " days!");
+        }
+        history.spill(); //the changes up to now are written before they are read
+        long now = System.currentTimeMillis();
+        query.result = history.query(query.name, now - query.window, now);
+        return query;
+    }
+
+    /**
+     * A method to parse a time range like "30s", "10m", "2h" or "1d".
+     * @param window typed time range
+     * @return length of the time range in ms
+     * @throws CommandException time range is invalid
+     */
+    private static long parseWindow(String window) throws CommandException {
+        TimeUnit unit;
+        switch (window.isEmpty() ? ' ' : Character.toLowerCase(window.charAt(window.length() - 1))) {
+            case 's': unit = TimeUnit.SECONDS; break;
+            case 'm': unit = TimeUnit.MINUTES; break;
+            case 'h': unit = TimeUnit.HOURS; break;
+            case 'd': unit = TimeUnit.DAYS; break;
+            default: throw new CommandException("The time range: '" + window + "' must be a number followed by s, m, h or d!");
+        }
+        try {
+            long amount = Long.parseLong(window.substring(0, window.length() - 1));
+            if (amount <= 0) throw new NumberFormatException();
+            return unit.toMillis(amount);
+        } catch (NumberFormatException e) {
+            throw new CommandException("The time range: '" + window + "' must be a number followed by s, m, h or d!");
+        }
+    }
+
+    /**
+     * A method to run the second phase on the executor of blocking work, since it waits for the history files.
+     * @return true
+     */
+    @Override
+    protected boolean isBlocking() {
+        return true;
+    }
+
+    /**
+     * A method to wait for the summary and format it.
+     * @param query time range and result of the query
+     * @param context state of the execution
+     * @throws CommandException history could not be read
+     * @throws InterruptedException command thread was stopped
+     */
+    @Override
+    protected void compute(Query query, Context context) throws CommandException, InterruptedException {
+        HistorySummary summary;
+        try {
+            summary = query.result.get(TIMEOUT, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new CommandException("The history could not be read: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            query.result.cancel(true);
+            throw new CommandException("Reading the history took too long!");
+        }
+        context.reply(ChatColor.GREEN + "History of the health bar: '" + query.name + "' (last " + formatWindow(query.window) + "):");
+        if (summary.getCount() == 0) {
+            context.reply(ChatColor.GRAY + "No changes of the health were recorded.");
+        } else {
+            context.reply(ChatColor.GRAY + "Changes: " + summary.getCount() + ", damage " + health(summary.getDamage()) + ", healing "
+                    + health(summary.getHealing()) + ", deaths " + summary.getDeaths());
+            StringBuilder sources = new StringBuilder();
+            for (Map.Entry<UUID, Double> i : summary.getTopSources(TOP)) {
+                if (sources.length() > 0) sources.append(", ");
+                sources.append(name(query, i.getKey())).append(' ').append(health(i.getValue()));
+            }
+            if (sources.length() > 0) context.reply(ChatColor.GRAY + "Damage taken by: " + sources);
+            StringBuilder causes = new StringBuilder();
+            for (Map.Entry<String, Double> i : summary.getTopCauses(TOP)) {
+                if (causes.length() > 0) causes.append(", ");
+                causes.append(i.getKey().toLowerCase()).append(' ').append(health(i.getValue()));
+            }
+            if (causes.length() > 0) context.reply(ChatColor.GRAY + "Damage by: " + causes);
+            DateTimeFormatter time = DateTimeFormatter.ofPattern(query.window > TimeUnit.DAYS.toMillis(1) ? "MM-dd HH:mm:ss" : "HH:mm:ss")
+                    .withZone(ZoneId.systemDefault());
+            for (HistorySummary.Change i : summary.getRecent()) {
+                StringBuilder line = new StringBuilder();
+                line.append(time.format(Instant.ofEpochMilli(i.getTime()))).append(' ');
+                line.append(i.getDelta() < 0 ? "" : "+").append(health(i.getDelta()));
+                line.append(i.getHealth() == 0 ? " (died)" : " -> " + health(i.getHealth()));
+                if (i.getSource() != null) line.append(", ").append(name(query, i.getSource()));
+                if (i.getCause() != null) line.append(", ").append(i.getCause().toLowerCase());
+                context.reply(ChatColor.GRAY + line.toString());
+            }
+        }
+        if (summary.getDropped() > 0) {
+            context.reply(ChatColor.YELLOW + "" + summary.getDropped() + " changes were not recorded, increase the History Buffer Size in the config.yml!");
+        }
+    }
+
+    /**
+     * A method to get the name of a player of the health bar.
+     * @param query query with the names of the players
+     * @param uuid UUID of the player
+     * @return name of the player or the beginning of his UUID if he is not in the health bar anymore
+     */
+    private static String name(Query query, UUID uuid) {
+        String name = query.names.get(uuid);
+        return name != null ? name : uuid.toString().substring(0, 8);
+    }
+
+    /**
+     * A method to format an amount of health.
+     * @param health amount of health
+     * @return amount with at most one decimal
+     */
+    private static String health(double health) {
+        return String.format("%.1f", health);
+    }
+
+    /**
+     * A method to format a time range.
+     * @param window length of the time range in ms
+     * @return time range in the largest whole unit
+     */
+    private static String formatWindow(long window) {
+        if (window % TimeUnit.DAYS.toMillis(1) == 0) return TimeUnit.MILLISECONDS.toDays(window) + "d";
+        if (window % TimeUnit.HOURS.toMillis(1) == 0) return TimeUnit.MILLISECONDS.toHours(window) + "h";
+        if (window % TimeUnit.MINUTES.toMillis(1) == 0) return TimeUnit.MILLISECONDS.toMinutes(window) + "m";
+        return TimeUnit.MILLISECONDS.toSeconds(window) + "s";
+    }
+
+}
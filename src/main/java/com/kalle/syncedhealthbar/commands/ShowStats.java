@@ -0,0 +1,139 @@
+package com.kalle.syncedhealthbar.commands;
+
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.metrics.BarStats;
+import com.kalle.syncedhealthbar.metrics.CacheStats;
+import com.kalle.syncedhealthbar.metrics.CommandStats;
+import com.kalle.syncedhealthbar.metrics.EventStats;
+import com.kalle.syncedhealthbar.metrics.EventType;
+import com.kalle.syncedhealthbar.metrics.ExecutorStats;
+import com.kalle.syncedhealthbar.metrics.Histogram;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+import com.kalle.syncedhealthbar.metrics.Mutation;
+import com.kalle.syncedhealthbar.metrics.StorageStats;
+import com.kalle.syncedhealthbar.regen.RegenEngine;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The class of the command "hbstats" that implements its command execution.
+ */
+public class ShowStats implements TabExecutor {
+
+    private Config config; //config because we need the flush lag of its persistence
+
+    /**
+     * A class constructor so we can pass the config to the object.
+     * @param config config object to get the flush lag
+     */
+    public ShowStats(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * The method that implements "hbstats" execution procedure.
+     * @param sender sender who is executing the command
+     * @param command command that is getting executed
+     * @param label
+     * @param args arguments of the command that is getting executed
+     * @return true if it is the passed command, false if not
+     */
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (command.getName().equalsIgnoreCase("hbstats")) { //check if string matches with command
+            //check if command has the right amount of arguments
+            if (args.length > 1) {
+                sender.sendMessage(ChatColor.RED + "Too many arguments!");
+                return true;
+            }
+            Metrics metrics = Metrics.get();
+            if (args.length == 1) { //statistics of a single health bar
+                HealthBar hb = HealthBar.getRegistry().getHealthBar(args[0]); //created if it is not resident
+                if (hb == null) {
+                    sender.sendMessage(ChatColor.RED + "The health bar: '" + args[0] + "' does not exist!");
+                    return true;
+                }
+                metrics.updateGauges(config); //show the current sizes
+                BarStats i = hb.getStats();
+                sender.sendMessage(ChatColor.GREEN + "Health bar '" + i.getName() + "': " + i.getMembers() + " players (" + i.getOnlineMembers() + " online), health " + i.getHealth());
+                sender.sendMessage(ChatColor.GRAY + "Damage events: " + i.getDamageEvents() + ", heal events: " + i.getHealEvents() + " (since it is resident)");
+                sender.sendMessage(ChatColor.GRAY + "Fan-outs: " + format(i.getFanOut()));
+                sender.sendMessage(ChatColor.GRAY + "Mean food level: " + String.format("%.1f", hb.getRegen().getMeanFood()));
+                return true;
+            }
+            metrics.updateGauges(config); //show the current sizes
+            double seconds = Math.max(1, (System.currentTimeMillis() - metrics.getStartTime()) / 1000.0);
+            sender.sendMessage(ChatColor.GREEN + "SyncedHealthBar statistics of the last " + (long) seconds + "s:");
+            for (EventType i : EventType.values()) {
+                EventStats stats = metrics.event(i);
+                sender.sendMessage(ChatColor.GRAY + i.name().toLowerCase() + ": " + String.format("%.1f", stats.getCount() / seconds) + "/s, " + format(stats.getLatency()));
+            }
+            for (CommandStats i : metrics.getCommands()) { //only commands that were executed
+                sender.sendMessage(ChatColor.GRAY + "/" + i.getName() + ": " + format(i.getLatency()) + ", main thread max " + micros(i.getMainThreadMaxNanos())
+                        + ", conflicts " + i.getConflicts() + ", failed " + i.getFailures());
+            }
+            for (ExecutorStats i : metrics.getExecutors()) {
+                sender.sendMessage(ChatColor.GRAY + "Executor " + i.getName() + " (" + i.getThreads() + " threads): queued " + i.getQueueDepth() + " (max " + i.getMaxQueueDepth()
+                        + "), wait p99 " + micros(i.getWaitP99Nanos()) + ", run " + format(i.getRun()));
+            }
+            RegenEngine regen = RegenEngine.get();
+            if (regen != null) {
+                sender.sendMessage(ChatColor.GRAY + "Regeneration: " + regen.getScheduled() + " health bars scheduled, " + regen.getHeals() + " heals");
+            }
+            StorageStats storage = metrics.getStorage();
+            StringBuilder mutations = new StringBuilder("Changes:");
+            for (Mutation i : Mutation.values()) {
+                mutations.append(' ').append(i.name().toLowerCase()).append('=').append(storage.getMutations(i));
+            }
+            sender.sendMessage(ChatColor.GRAY + mutations.toString());
+            sender.sendMessage(ChatColor.GRAY + "Snapshots: " + format(storage.getSnapshotLatency()));
+            sender.sendMessage(ChatColor.GRAY + "Writes: " + format(storage.getWriteLatency()) + ", failed " + storage.getFailedWrites() + ", flush lag " + config.getPersistence().getFlushLag() + "ms");
+            CacheStats cache = metrics.getCache();
+            sender.sendMessage(ChatColor.GRAY + "Health bars: " + config.getHBCount() + " (" + cache.getResident() + " resident, hits " + cache.getHits() + ", misses " + cache.getMisses()
+                    + ", evictions " + cache.getEvictions() + ", use /hbstats <health bar name> for details)");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A method to format the count and the latencies of a histogram.
+     * @param histogram histogram of the latencies
+     * @return formatted text
+     */
+    private static String format(Histogram histogram) {
+        return histogram.getCount() + " total, mean " + micros(histogram.getMean()) + ", p50 " + micros(histogram.getPercentile(50))
+                + ", p99 " + micros(histogram.getPercentile(99)) + ", max " + micros(histogram.getMax());
+    }
+
+    /**
+     * A method to format a time in microseconds.
+     * @param nanos time in ns
+     * @return formatted time
+     */
+    private static String micros(long nanos) {
+        return String.format("%.1fus", nanos / 1000.0);
+    }
+
+    /**
+     * The method that completes the argument of "hbstats" that is typed.
+     * @param sender sender who is typing the command
+     * @param command command that is getting typed
+     * @param label
+     * @param args arguments typed so far (the last one is the one that is completed)
+     * @return names of the health bars that start with the typed name or null if it is not the passed command
+     */
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+        if (!command.getName().equalsIgnoreCase("hbstats")) return null; //check if string matches with command
+        if (args.length != 1) return Collections.emptyList();
+        return config.completeHealthBars(args[0], AsyncCommand.MAX_COMPLETIONS);
+    }
+
+}
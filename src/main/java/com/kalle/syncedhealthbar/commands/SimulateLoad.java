@@ -0,0 +1,112 @@
+package com.kalle.syncedhealthbar.commands;
+
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.simulation.LoadSimulation;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+import javax.naming.NameAlreadyBoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The class of the command "hbsimulate" that implements its command execution.
+ */
+public class SimulateLoad implements TabExecutor {
+
+    private LoadSimulation simulation; //simulation that gets started and stopped
+
+    /**
+     * A class constructor so we can pass the simulation to the object.
+     * @param simulation simulation that gets started and stopped
+     */
+    public SimulateLoad(LoadSimulation simulation) {
+        this.simulation = simulation;
+    }
+
+    /**
+     * The method that implements "hbsimulate" execution procedure.
+     * @param sender sender who is executing the command
+     * @param command command that is getting executed
+     * @param label
+     * @param args arguments of the command that is getting executed
+     * @return true if it is the passed command, false if not
+     */
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (command.getName().equalsIgnoreCase("hbsimulate")) { //check if string matches with command
+            if (args.length == 1 && args[0].equalsIgnoreCase("stop")) {
+                if (!simulation.isRunning()) {
+                    sender.sendMessage(ChatColor.RED + "No simulation is running!");
+                    return true;
+                }
+                simulation.stop();
+                return true;
+            }
+            //check if command has the right amount of arguments
+            if (args.length > 8) {
+                sender.sendMessage(ChatColor.RED + "Too many arguments!");
+                return true;
+            }
+            if (args.length < 4 || !args[0].equalsIgnoreCase("start")) {
+                sender.sendMessage(ChatColor.RED + "Usage: /hbsimulate start <health bars> <players per health bar> <seconds> [damage/s] [heal/s] [join-quit/s] [respawn/s] or /hbsimulate stop");
+                return true;
+            }
+            if (simulation.isRunning()) {
+                sender.sendMessage(ChatColor.RED + "A simulation is already running!");
+                return true;
+            }
+            int bars, members, seconds;
+            double damage, heal, joinQuit, respawn;
+            try {
+                bars = Integer.parseInt(args[1]);
+                members = Integer.parseInt(args[2]);
+                seconds = Integer.parseInt(args[3]);
+                damage = args.length > 4 ? Double.parseDouble(args[4]) : 200;
+                heal = args.length > 5 ? Double.parseDouble(args[5]) : 100;
+                joinQuit = args.length > 6 ? Double.parseDouble(args[6]) : 10;
+                respawn = args.length > 7 ? Double.parseDouble(args[7]) : 5;
+            } catch (NumberFormatException e) {
+                sender.sendMessage(ChatColor.RED + "The arguments must be numbers!");
+                return true;
+            }
+            if (bars < 1 || members < 1 || seconds < 1 || damage < 0 || heal < 0 || joinQuit < 0 || respawn < 0) {
+                sender.sendMessage(ChatColor.RED + "The counts and the duration must be positive and the rates must not be negative!");
+                return true;
+            }
+            try {
+                simulation.start(sender, bars, members, seconds, damage, heal, joinQuit, respawn);
+                sender.sendMessage(ChatColor.GREEN + "Simulating " + bars + " health bars with " + members + " players each for " + seconds + " seconds...");
+            } catch (NameAlreadyBoundException e) { //a health bar starting with the prefix already exists
+                sender.sendMessage(ChatColor.RED + "Health bars named '" + LoadSimulation.PREFIX + "<number>' already exist!");
+            } catch (CorruptedConfigException e) {
+                sender.sendMessage(ChatColor.RED + e.getMessage());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The method that completes the argument of "hbsimulate" that is typed.
+     * @param sender sender who is typing the command
+     * @param command command that is getting typed
+     * @param label
+     * @param args arguments typed so far (the last one is the one that is completed)
+     * @return actions that start with the typed argument or null if it is not the passed command
+     */
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+        if (!command.getName().equalsIgnoreCase("hbsimulate")) return null; //check if string matches with command
+        ArrayList<String> result = new ArrayList<String>();
+        if (args.length != 1) return result;
+        for (String i : new String[] {"start", "stop"}) {
+            if (i.startsWith(args[0].toLowerCase(Locale.ROOT))) result.add(i);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,260 @@
+package com.kalle.syncedhealthbar.history;
+
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.Main;
+import com.kalle.syncedhealthbar.scheduler.IoExecutor;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A class that keeps the history of the health of every health bar. Every health bar records its
+ * changes in a ring buffer in memory (see HistoryBuffer). Once per second the buffers are spilled
+ * on the main thread and the history thread appends the changes compressed to the file of the day
+ * in the history folder (see HistoryFile). Files older than the retention are deleted once a day. Queries
+ * spill the buffers first and read the files on the history thread, so they see every change and
+ * never block the main thread or the writes.
+ */
+public class HealthHistory {
+
+    private static volatile HealthHistory history; //history of the plugin (null if it is disabled)
+
+    /**
+     * The causes of changes that are not caused by an event of this server.
+     */
+    public enum Cause {
+        REMOTE //change made on another server (sync)
+    }
+
+    private File folder; //folder of the history files
+    private int capacity; //count of changes every buffer holds between two spills
+    private int retentionDays; //count of days the files are kept
+    private Logger logger;
+    private ExecutorService writer; //thread that writes and reads the history files
+    private TaskScheduler.Task task; //repeating task that spills the buffers
+    private ArrayList<HistoryBuffer> queued = new ArrayList<HistoryBuffer>(); //buffers with changes since the last spill
+    private volatile long dropped = 0; //count of changes that were overwritten before they were spilled
+    private LocalDate cleaned; //day the old files were deleted last (history thread)
+
+    /**
+     * Class constructor.
+     * @param folder folder of the history files
+     * @param capacity count of changes every buffer holds between two spills
+     * @param retentionDays count of days the files are kept
+     * @param logger logger of the plugin
+     */
+    private HealthHistory(File folder, int capacity, int retentionDays, Logger logger) {
+        this.folder = folder;
+        this.capacity = capacity;
+        this.retentionDays = retentionDays;
+        this.logger = logger;
+        writer = IoExecutor.serial("History");
+    }
+
+    /**
+     * A method to start the history if it is enabled in the settings.
+     * @param plugin main class to get the settings and the folder
+     * @param scheduler scheduler of the task that spills the buffers
+     * @throws CorruptedConfigException the settings of the history are invalid and exception is thrown
+     */
+    public static void init(Main plugin, TaskScheduler scheduler) throws CorruptedConfigException {
+        shutdown();
+        FileConfiguration settings = plugin.getConfig();
+        if (!settings.getBoolean("Settings.History.Enabled", true)) return;
+        int capacity = settings.getInt("Settings.History.Buffer Size", 128);
+        if (capacity < 1) throw new CorruptedConfigException("CONFIG ERROR: history buffer size must be at least 1!");
+        int retentionDays = settings.getInt("Settings.History.Retention Days", 7);
+        if (retentionDays < 1) throw new CorruptedConfigException("CONFIG ERROR: history retention days must be at least 1!");
+        HealthHistory history = new HealthHistory(new File(plugin.getDataFolder(), "history"), capacity, retentionDays, plugin.getLogger());
+        history.task = scheduler.runTimer(history::spill, 20, 20);
+        HealthHistory.history = history;
+    }
+
+    /**
+     * A method to get the history of the plugin.
+     * @return history or null if it is disabled
+     */
+    public static HealthHistory get() {
+        return history;
+    }
+
+    /**
+     * A method to stop the history. The changes that are not written yet are written first.
+     */
+    public static void shutdown() {
+        HealthHistory current = history;
+        if (current == null) return;
+        history = null;
+        current.task.cancel();
+        current.spill();
+        current.writer.shutdown();
+        try {
+            if (!current.writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                current.logger.warning("The history could not be written completely!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A method to create the buffer of a health bar.
+     * @param hbName name of the health bar
+     * @return buffer the health bar records its changes in
+     */
+    public HistoryBuffer createBuffer(String hbName) {
+        return new HistoryBuffer(this, hbName, capacity);
+    }
+
+    /**
+     * A method to add a buffer to the buffers that are spilled next (main thread).
+     * @param buffer buffer with new changes
+     */
+    void queue(HistoryBuffer buffer) {
+        queued.add(buffer);
+    }
+
+    /**
+     * A method to count changes that were overwritten before they were spilled (main thread).
+     * @param count count of the changes
+     */
+    void dropped(long count) {
+        dropped += count;
+    }
+
+    /**
+     * A method to take the changes out of the buffers and hand them to the history thread (main thread).
+     */
+    public void spill() {
+        if (queued.isEmpty()) return;
+        ArrayList<HistoryBlock> blocks = new ArrayList<HistoryBlock>(queued.size());
+        for (HistoryBuffer i : queued) {
+            HistoryBlock block = i.spill();
+            if (block != null) blocks.add(block);
+        }
+        queued.clear();
+        if (!blocks.isEmpty()) writer.execute(() -> write(blocks));
+    }
+
+    /**
+     * A method to sum up the changes of a health bar in a time range. The buffers need to be
+     * spilled before (main thread), so the changes up to now are included.
+     * @param hbName name of the health bar
+     * @param from time in ms of the first change
+     * @param to time in ms of the last change
+     * @return summary that is finished on the history thread
+     */
+    public Future<HistorySummary> query(String hbName, long from, long to) {
+        long dropped = this.dropped;
+        return writer.submit(() -> {
+            HistorySummary summary = new HistorySummary();
+            summary.dropped(dropped);
+            for (LocalDate i = day(from) ; !i.isAfter(day(to)) ; i = i.plusDays(1)) {
+                File file = file(i);
+                if (file.isFile()) HistoryFile.read(file, hbName, from, to, summary);
+            }
+            return summary;
+        });
+    }
+
+    /**
+     * A method to append the spilled changes to the files of their days (history thread).
+     * @param blocks changes of the health bars
+     */
+    private void write(ArrayList<HistoryBlock> blocks) {
+        if (!LocalDate.now().equals(cleaned)) cleanup(); //first write of a new day
+        LinkedHashMap<LocalDate, OutputStream> files = new LinkedHashMap<LocalDate, OutputStream>(); //one spill is mostly written to one file
+        try {
+            if (!folder.isDirectory() && !folder.mkdirs()) throw new IOException("folder " + folder + " could not be created");
+            for (HistoryBlock i : blocks) {
+                int from = 0;
+                while (from < i.size()) { //split the changes at midnight
+                    LocalDate day = day(i.times[from]);
+                    long end = day.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    int to = from + 1;
+                    while (to < i.size() && i.times[to] < end) to++;
+                    OutputStream out = files.get(day);
+                    if (out == null) {
+                        out = HistoryFile.append(file(day));
+                        files.put(day, out);
+                    }
+                    HistoryFile.write(out, i, from, to);
+                    from = to;
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "The history could not be written!", e);
+        } finally {
+            for (Map.Entry<LocalDate, OutputStream> i : files.entrySet()) {
+                try {
+                    i.getValue().close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "The history of " + i.getKey() + " could not be written!", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A method to delete the files older than the retention (history thread).
+     */
+    private void cleanup() {
+        cleaned = LocalDate.now();
+        File[] files = folder.listFiles();
+        if (files == null) return;
+        LocalDate oldest = cleaned.minusDays(retentionDays - 1);
+        for (File i : files) {
+            String name = i.getName();
+            if (!name.endsWith(".bin")) continue;
+            try {
+                if (LocalDate.parse(name.substring(0, name.length() - 4)).isBefore(oldest) && !i.delete()) {
+                    logger.warning("The history file " + name + " could not be deleted!");
+                }
+            } catch (DateTimeParseException e) { //not a history file
+                continue;
+            }
+        }
+    }
+
+    /**
+     * A method to get the count of days the files are kept.
+     * @return count of days
+     */
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    /**
+     * A method to get the day of a time.
+     * @param time time in ms
+     * @return day in the time zone of the server
+     */
+    private static LocalDate day(long time) {
+        return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    /**
+     * A method to get the history file of a day.
+     * @param day day of the changes
+     * @return file "yyyy-MM-dd.bin" in the history folder
+     */
+    private File file(LocalDate day) {
+        return new File(folder, day + ".bin");
+    }
+
+}
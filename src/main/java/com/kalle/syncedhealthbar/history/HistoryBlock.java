@@ -0,0 +1,58 @@
+package com.kalle.syncedhealthbar.history;
+
+/**
+ * A class to hold the changes of a health bar that were spilled at once until they are written
+ * to the history files.
+ */
+class HistoryBlock {
+
+    final String name; //name of the health bar
+    final long[] times;
+    final double[] deltas;
+    final double[] healths;
+    final long[] sourceMost, sourceLeast;
+    final String[] causes;
+
+    /**
+     * Class constructor.
+     * @param name name of the health bar
+     * @param count count of the changes
+     */
+    HistoryBlock(String name, int count) {
+        this.name = name;
+        times = new long[count];
+        deltas = new double[count];
+        healths = new double[count];
+        sourceMost = new long[count];
+        sourceLeast = new long[count];
+        causes = new String[count];
+    }
+
+    /**
+     * A method to set a change of the block.
+     * @param i index of the change
+     * @param time time in ms of the change
+     * @param delta change of the health
+     * @param health health the players got
+     * @param most most significant bits of the UUID of the source
+     * @param least least significant bits of the UUID of the source
+     * @param cause name of the cause (null if it is not known)
+     */
+    void set(int i, long time, double delta, double health, long most, long least, String cause) {
+        times[i] = time;
+        deltas[i] = delta;
+        healths[i] = health;
+        sourceMost[i] = most;
+        sourceLeast[i] = least;
+        causes[i] = cause;
+    }
+
+    /**
+     * A method to get the count of the changes.
+     * @return count of the changes
+     */
+    int size() {
+        return times.length;
+    }
+
+}
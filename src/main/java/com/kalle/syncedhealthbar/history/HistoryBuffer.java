@@ -0,0 +1,103 @@
+package com.kalle.syncedhealthbar.history;
+
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+
+/**
+ * A class to record the changes of the health of one health bar in memory. The changes are stored
+ * in a ring of primitive arrays, so recording a change does not allocate anything. The recorded
+ * changes are taken out regularly (spilled) and written to the history files; if more changes are
+ * recorded in the meantime than the ring holds, the oldest ones are dropped and counted. Changes
+ * are only recorded and spilled on the main thread (global region thread).
+ */
+public class HistoryBuffer {
+
+    private HealthHistory owner; //history the buffer is spilled by
+    private String name; //name of the health bar
+    private int capacity; //count of changes the ring holds
+    private long[] times; //time in ms of every change
+    private double[] deltas; //change of the health (negative for damage)
+    private double[] healths; //health the players got (0 if they died)
+    private long[] sourceMost, sourceLeast; //UUID of the player that caused the change (both 0 if there is none)
+    private Enum<?>[] causes; //cause of the damage or reason of the healing (null if it is not known)
+    private long written = 0; //count of all recorded changes
+    private long spilled = 0; //count of the changes that were spilled or dropped
+    private boolean queued = false; //true if the buffer is in the list of buffers that need to be spilled
+
+    /**
+     * Class constructor.
+     * @param owner history the buffer is spilled by
+     * @param name name of the health bar
+     * @param capacity count of changes the ring holds
+     */
+    HistoryBuffer(HealthHistory owner, String name, int capacity) {
+        this.owner = owner;
+        this.name = name;
+        this.capacity = capacity;
+        times = new long[capacity];
+        deltas = new double[capacity];
+        healths = new double[capacity];
+        sourceMost = new long[capacity];
+        sourceLeast = new long[capacity];
+        causes = new Enum<?>[capacity];
+    }
+
+    /**
+     * A method to record a change of the health.
+     * @param delta change of the health (negative for damage)
+     * @param health health the players got (0 if they died)
+     * @param source player that caused the change (null if there is none)
+     * @param cause cause of the damage or reason of the healing (null if it is not known)
+     */
+    public void record(double delta, double health, Player source, Enum<?> cause) {
+        int i = (int) (written % capacity);
+        times[i] = System.currentTimeMillis();
+        deltas[i] = delta;
+        healths[i] = health;
+        if (source == null) {
+            sourceMost[i] = 0;
+            sourceLeast[i] = 0;
+        } else {
+            UUID uuid = source.getUniqueId();
+            sourceMost[i] = uuid.getMostSignificantBits();
+            sourceLeast[i] = uuid.getLeastSignificantBits();
+        }
+        causes[i] = cause;
+        written++;
+        if (!queued) { //first change since the last spill
+            queued = true;
+            owner.queue(this);
+        }
+    }
+
+    /**
+     * A method to check if the buffer is spilled by a history.
+     * @param history history of the plugin
+     * @return true if the buffer was created by the history
+     */
+    public boolean belongsTo(HealthHistory history) {
+        return owner == history;
+    }
+
+    /**
+     * A method to take out the changes recorded since the last spill.
+     * @return copy of the changes or null if there are none
+     */
+    HistoryBlock spill() {
+        queued = false;
+        long dropped = Math.max(0, written - spilled - capacity); //overwritten before they were spilled
+        long from = spilled + dropped;
+        int count = (int) (written - from);
+        spilled = written;
+        if (dropped > 0) owner.dropped(dropped);
+        if (count == 0) return null;
+        HistoryBlock block = new HistoryBlock(name, count);
+        for (int j = 0 ; j < count ; j++) {
+            int i = (int) ((from + j) % capacity);
+            block.set(j, times[i], deltas[i], healths[i], sourceMost[i], sourceLeast[i], causes[i] == null ? null : causes[i].name());
+        }
+        return block;
+    }
+
+}
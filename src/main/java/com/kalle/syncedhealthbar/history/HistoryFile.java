@@ -0,0 +1,270 @@
+package com.kalle.syncedhealthbar.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+
+/**
+ * A class to write and read the history files. Every day has its own file ("yyyy-MM-dd.bin") and
+ * every spill appends one block per health bar:
+ * name of the health bar, time of the first and the last change, length of the rest of the block,
+ * count of the changes, the UUIDs of the sources and the names of the causes of the block and then
+ * every change as variable-length numbers: time since the change before, change of the health and
+ * health in 1/1000 (the change zig-zag encoded) and the index of its source and cause (0 if there
+ * is none). A change takes 5-8 bytes most of the time. A query reads the name and the times in
+ * front of every block and skips the blocks of other health bars and of other times without
+ * reading them.
+ */
+final class HistoryFile {
+
+    private static final double SCALE = 1000; //health is stored in 1/1000
+
+    /**
+     * An interface for the changes read from the history files.
+     */
+    interface Visitor {
+
+        /**
+         * A method that gets a change of the health bar.
+         * @param time time in ms of the change
+         * @param delta change of the health (negative for damage)
+         * @param health health the players got (0 if they died)
+         * @param source UUID of the player that caused the change (null if there is none)
+         * @param cause name of the cause (null if it is not known)
+         */
+        void accept(long time, double delta, double health, UUID source, String cause);
+
+    }
+
+    /**
+     * A class to count the bytes read from a history file, so the length of a block can be checked
+     * against the rest of the file.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) count += skipped;
+            return skipped;
+        }
+
+    }
+
+    private HistoryFile() {
+    }
+
+    /**
+     * A method to append the changes of a health bar to a history file.
+     * @param out stream of the history file
+     * @param block changes of the health bar
+     * @param from index of the first change that is written
+     * @param to index after the last change that is written
+     * @throws IOException file could not be written
+     */
+    static void write(OutputStream out, HistoryBlock block, int from, int to) throws IOException {
+        ArrayList<UUID> sources = new ArrayList<UUID>();
+        LinkedHashMap<UUID, Integer> sourceIndex = new LinkedHashMap<UUID, Integer>();
+        LinkedHashMap<String, Integer> causeIndex = new LinkedHashMap<String, Integer>();
+        int[] sourceOf = new int[to - from];
+        int[] causeOf = new int[to - from];
+        long last = block.times[from];
+        for (int i = from ; i < to ; i++) { //dictionaries of the sources and causes of the block
+            last = Math.max(last, block.times[i]);
+            if (block.sourceMost[i] != 0 || block.sourceLeast[i] != 0) {
+                UUID uuid = new UUID(block.sourceMost[i], block.sourceLeast[i]);
+                Integer index = sourceIndex.get(uuid);
+                if (index == null) {
+                    sources.add(uuid);
+                    index = sources.size();
+                    sourceIndex.put(uuid, index);
+                }
+                sourceOf[i - from] = index;
+            }
+            if (block.causes[i] != null) {
+                Integer index = causeIndex.get(block.causes[i]);
+                if (index == null) {
+                    index = causeIndex.size() + 1;
+                    causeIndex.put(block.causes[i], index);
+                }
+                causeOf[i - from] = index;
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (to - from) * 8);
+        DataOutputStream data = new DataOutputStream(bytes);
+        writeVarint(data, to - from);
+        writeVarint(data, sources.size());
+        for (UUID i : sources) {
+            data.writeLong(i.getMostSignificantBits());
+            data.writeLong(i.getLeastSignificantBits());
+        }
+        writeVarint(data, causeIndex.size());
+        for (String i : causeIndex.keySet()) {
+            data.writeUTF(i);
+        }
+        long time = block.times[from];
+        for (int i = from ; i < to ; i++) {
+            writeVarint(data, Math.max(0, block.times[i] - time)); //the clock could have been set back
+            time = Math.max(time, block.times[i]);
+            long delta = Math.round(block.deltas[i] * SCALE);
+            writeVarint(data, (delta << 1) ^ (delta >> 63)); //zig-zag, so small negative changes are short as well
+            writeVarint(data, Math.max(0, Math.round(block.healths[i] * SCALE)));
+            writeVarint(data, sourceOf[i - from]);
+            writeVarint(data, causeOf[i - from]);
+        }
+        data.flush();
+        DataOutputStream file = new DataOutputStream(out);
+        file.writeUTF(block.name); //in front of the length, so a query can skip the block after reading it
+        file.writeLong(block.times[from]);
+        file.writeLong(last);
+        writeVarint(file, bytes.size());
+        bytes.writeTo(file);
+    }
+
+    /**
+     * A method to read the changes of a health bar in a time range from a history file.
+     * @param file history file of a day
+     * @param hbName name of the health bar
+     * @param from time in ms of the first change that is read
+     * @param to time in ms of the last change that is read
+     * @param visitor gets every change in the order they were recorded
+     * @throws IOException file could not be read
+     */
+    static void read(File file, String hbName, long from, long to, Visitor visitor) throws IOException {
+        long size = file.length();
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        try (DataInputStream in = new DataInputStream(counter)) {
+            while (counter.count < size) {
+                String name;
+                long first;
+                long last;
+                long length;
+                try {
+                    name = in.readUTF();
+                    first = in.readLong();
+                    last = in.readLong();
+                    length = readVarint(in);
+                } catch (EOFException e) { //last block was not written completely (e.g. the server crashed)
+                    return;
+                }
+                if (length < 0 || length > Math.min(Integer.MAX_VALUE, size - counter.count)) return; //the block does not fit into the rest of the file, it was not written completely
+                if (!name.equals(hbName) || last < from || first > to) { //block of another health bar or no change of the block is in the time range
+                    in.skipBytes((int) length);
+                    continue;
+                }
+                byte[] block = new byte[(int) length];
+                in.readFully(block);
+                readBlock(new DataInputStream(new ByteArrayInputStream(block)), first, from, to, visitor);
+            }
+        }
+    }
+
+    /**
+     * A method to decode the changes of a block.
+     * @param data stream of the block after its length
+     * @param first time in ms of the first change of the block
+     * @param from time in ms of the first change that is read
+     * @param to time in ms of the last change that is read
+     * @param visitor gets every change in the time range
+     * @throws IOException block is corrupted
+     */
+    private static void readBlock(DataInputStream data, long first, long from, long to, Visitor visitor) throws IOException {
+        int count = (int) readVarint(data);
+        UUID[] sources = new UUID[(int) readVarint(data) + 1];
+        for (int i = 1 ; i < sources.length ; i++) {
+            sources[i] = new UUID(data.readLong(), data.readLong());
+        }
+        String[] causes = new String[(int) readVarint(data) + 1];
+        for (int i = 1 ; i < causes.length ; i++) {
+            causes[i] = data.readUTF();
+        }
+        long time = first;
+        for (int i = 0 ; i < count ; i++) {
+            time += readVarint(data);
+            long zigzag = readVarint(data);
+            long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+            long health = readVarint(data);
+            int source = (int) readVarint(data);
+            int cause = (int) readVarint(data);
+            if (time < from || time > to) continue;
+            if (source >= sources.length || cause >= causes.length) throw new IOException("history block is corrupted");
+            visitor.accept(time, delta / SCALE, health / SCALE, sources[source], causes[cause]);
+        }
+    }
+
+    /**
+     * A method to write a non-negative number in 7 bit groups (the highest bit marks a following group).
+     * @param out stream the number is written to
+     * @param value non-negative number
+     * @throws IOException number could not be written
+     */
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * A method to read a number written by writeVarint().
+     * @param in stream the number is read from
+     * @return number that was read
+     * @throws IOException number could not be read
+     */
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0 ; shift < 64 ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("history number is corrupted");
+    }
+
+    /**
+     * A method to open a history file for appending.
+     * @param file history file of a day
+     * @return stream of the file
+     * @throws IOException file could not be opened
+     */
+    static OutputStream append(File file) throws IOException {
+        return new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16);
+    }
+
+}
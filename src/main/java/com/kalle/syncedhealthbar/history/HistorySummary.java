@@ -0,0 +1,181 @@
+package com.kalle.syncedhealthbar.history;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A class to sum up the changes of a health bar in a time range while they are read, so a query
+ * never holds all changes in memory.
+ */
+public class HistorySummary implements HistoryFile.Visitor {
+
+    private static final int MAX_RECENT = 10; //count of the last changes that are kept
+
+    /**
+     * A class to represent a change of the health.
+     */
+    public static class Change {
+
+        private long time;
+        private double delta;
+        private double health;
+        private UUID source;
+        private String cause;
+
+        private Change(long time, double delta, double health, UUID source, String cause) {
+            this.time = time;
+            this.delta = delta;
+            this.health = health;
+            this.source = source;
+            this.cause = cause;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public double getDelta() {
+            return delta;
+        }
+
+        /**
+         * A method to get the health after the change.
+         * @return health the players got (0 if they died)
+         */
+        public double getHealth() {
+            return health;
+        }
+
+        /**
+         * A method to get the player that caused the change.
+         * @return UUID of the player or null if there is none
+         */
+        public UUID getSource() {
+            return source;
+        }
+
+        /**
+         * A method to get the cause of the damage or reason of the healing.
+         * @return name of the cause or null if it is not known
+         */
+        public String getCause() {
+            return cause;
+        }
+
+    }
+
+    private long count = 0; //count of the changes
+    private double damage = 0, healing = 0; //sum of the damage and the healing
+    private int deaths = 0;
+    private HashMap<UUID, double[]> damageBySource = new HashMap<UUID, double[]>();
+    private HashMap<String, double[]> damageByCause = new HashMap<String, double[]>();
+    private Change[] recent = new Change[MAX_RECENT]; //ring of the last changes
+    private long dropped = 0; //changes that were overwritten before they were written
+
+    @Override
+    public void accept(long time, double delta, double health, UUID source, String cause) {
+        count++;
+        if (delta < 0) {
+            damage -= delta;
+            if (source != null) add(damageBySource, source, -delta);
+            if (cause != null) add(damageByCause, cause, -delta);
+        } else {
+            healing += delta;
+        }
+        if (health == 0) deaths++;
+        recent[(int) ((count - 1) % MAX_RECENT)] = new Change(time, delta, health, source, cause);
+    }
+
+    /**
+     * A method to add an amount to the sum of a key.
+     * @param sums sums by key
+     * @param key key of the sum
+     * @param amount amount that is added
+     * @param <K> type of the key
+     */
+    private static <K> void add(HashMap<K, double[]> sums, K key, double amount) {
+        double[] sum = sums.get(key);
+        if (sum == null) sums.put(key, new double[] {amount});
+        else sum[0] += amount;
+    }
+
+    /**
+     * A method to get the keys with the largest sums.
+     * @param sums sums by key
+     * @param limit maximum count of keys
+     * @param <K> type of the key
+     * @return keys with their sums ordered by the largest sum
+     */
+    private static <K> List<Map.Entry<K, Double>> top(HashMap<K, double[]> sums, int limit) {
+        ArrayList<Map.Entry<K, Double>> result = new ArrayList<Map.Entry<K, Double>>();
+        for (Map.Entry<K, double[]> i : sums.entrySet()) {
+            result.add(new AbstractMap.SimpleImmutableEntry<K, Double>(i.getKey(), i.getValue()[0]));
+        }
+        result.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    void dropped(long count) {
+        dropped += count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getDamage() {
+        return damage;
+    }
+
+    public double getHealing() {
+        return healing;
+    }
+
+    public int getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * A method to get the count of the changes that were not recorded because the buffers were full.
+     * @return count of all health bars since the plugin was enabled
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * A method to get the players that dealt the most damage.
+     * @param limit maximum count of players
+     * @return UUIDs of the players with their damage ordered by the largest damage
+     */
+    public List<Map.Entry<UUID, Double>> getTopSources(int limit) {
+        return top(damageBySource, limit);
+    }
+
+    /**
+     * A method to get the causes of the most damage.
+     * @param limit maximum count of causes
+     * @return names of the causes with their damage ordered by the largest damage
+     */
+    public List<Map.Entry<String, Double>> getTopCauses(int limit) {
+        return top(damageByCause, limit);
+    }
+
+    /**
+     * A method to get the last changes.
+     * @return at most 10 changes ordered by their time
+     */
+    public List<Change> getRecent() {
+        ArrayList<Change> result = new ArrayList<Change>(MAX_RECENT);
+        for (long i = Math.max(0, count - MAX_RECENT) ; i < count ; i++) {
+            result.add(recent[(int) (i % MAX_RECENT)]);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.kalle.syncedhealthbar.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class that holds the statistics of a health bar. The sizes and the health are copied from the
+ * main thread once per second, so they can be read from any thread.
+ */
+public class BarStats implements BarStatsMBean {
+
+    private String name; //name of the health bar
+    private LongAdder damageEvents = new LongAdder(); //damage events of the players of the health bar
+    private LongAdder healEvents = new LongAdder(); //heal events of the players of the health bar
+    private Histogram fanOut = new Histogram(); //time needed to set the health of all players
+    private volatile int members; //count of players assigned to the health bar
+    private volatile int online; //count of online players of the health bar
+    private volatile double health; //health of the health bar
+
+    /**
+     * Class constructor.
+     * @param name name of the health bar
+     */
+    public BarStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * A method to get the name of the health bar.
+     * @return name of the health bar
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * A method to count a damage event of a player of the health bar.
+     */
+    public void damageEvent() {
+        damageEvents.increment();
+    }
+
+    /**
+     * A method to count a heal event of a player of the health bar.
+     */
+    public void healEvent() {
+        healEvents.increment();
+    }
+
+    /**
+     * A method to record the time it took to set the health of all players.
+     * @param start time in ns the fan-out started
+     */
+    public void fanOut(long start) {
+        fanOut.record(System.nanoTime() - start);
+    }
+
+    /**
+     * A method to update the sizes and the health of the health bar.
+     * @param members count of players assigned to the health bar
+     * @param online count of online players of the health bar
+     * @param health health of the health bar
+     */
+    public void update(int members, int online, double health) {
+        this.members = members;
+        this.online = online;
+        this.health = health;
+    }
+
+    /**
+     * A method to get the latencies of the fan-outs.
+     * @return histogram of the latencies
+     */
+    public Histogram getFanOut() {
+        return fanOut;
+    }
+
+    @Override
+    public int getMembers() {
+        return members;
+    }
+
+    @Override
+    public int getOnlineMembers() {
+        return online;
+    }
+
+    @Override
+    public double getHealth() {
+        return health;
+    }
+
+    @Override
+    public long getDamageEvents() {
+        return damageEvents.sum();
+    }
+
+    @Override
+    public long getHealEvents() {
+        return healEvents.sum();
+    }
+
+    @Override
+    public long getFanOuts() {
+        return fanOut.getCount();
+    }
+
+    @Override
+    public long getFanOutMeanNanos() {
+        return fanOut.getMean();
+    }
+
+    @Override
+    public long getFanOutP99Nanos() {
+        return fanOut.getPercentile(99);
+    }
+
+    @Override
+    public long getFanOutMaxNanos() {
+        return fanOut.getMax();
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.kalle.syncedhealthbar.metrics;
+
+/**
+ * The JMX interface of the statistics of a health bar.
+ */
+public interface BarStatsMBean {
+
+    int getMembers();
+
+    int getOnlineMembers();
+
+    double getHealth();
+
+    long getDamageEvents();
+
+    long getHealEvents();
+
+    long getFanOuts();
+
+    long getFanOutMeanNanos();
+
+    long getFanOutP99Nanos();
+
+    long getFanOutMaxNanos();
+
+}
@@ -0,0 +1,59 @@
+package com.kalle.syncedhealthbar.metrics;
+
+import com.kalle.syncedhealthbar.HealthBar;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class that holds the statistics of the resident health bars: how often a looked up health bar
+ * was resident (hit), how often it had to be created from its record (miss) and how many idle
+ * health bars were evicted.
+ */
+public class CacheStats implements CacheStatsMBean {
+
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+    private LongAdder evictions = new LongAdder();
+
+    /**
+     * A method to count a lookup of a resident health bar.
+     */
+    public void hit() {
+        hits.increment();
+    }
+
+    /**
+     * A method to count a lookup that created the health bar from its record.
+     */
+    public void miss() {
+        misses.increment();
+    }
+
+    /**
+     * A method to count an evicted health bar.
+     */
+    public void eviction() {
+        evictions.increment();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public int getResident() {
+        return HealthBar.getRegistry().getHealthBars().size();
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.kalle.syncedhealthbar.metrics;
+
+/**
+ * The JMX interface of the statistics of the resident health bars.
+ */
+public interface CacheStatsMBean {
+
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    int getResident();
+
+}
@@ -0,0 +1,122 @@
+package com.kalle.syncedhealthbar.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class that holds the statistics of a command: how long it took until the sender got the
+ * result, how much of it was spent on the main thread and off the main thread, how often it had
+ * to be run again because another command changed the same health bar and how often it failed.
+ */
+public class CommandStats implements CommandStatsMBean {
+
+    private String name; //name of the command
+    private Histogram latency = new Histogram(); //time from the execution until the result was sent
+    private Histogram mainThread = new Histogram(); //time spent on the main thread
+    private Histogram async = new Histogram(); //time spent off the main thread
+    private LongAdder conflicts = new LongAdder();
+    private LongAdder failures = new LongAdder();
+
+    /**
+     * Class constructor.
+     * @param name name of the command
+     */
+    public CommandStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * A method to get the name of the command.
+     * @return name of the command
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * A method to record an executed command.
+     * @param latency time in ns from the execution until the result was sent
+     * @param mainThread time in ns spent on the main thread
+     * @param async time in ns spent off the main thread
+     */
+    public void record(long latency, long mainThread, long async) {
+        this.latency.record(latency);
+        this.mainThread.record(mainThread);
+        this.async.record(async);
+    }
+
+    /**
+     * A method to count a command that was run again because its health bars were changed.
+     */
+    public void conflict() {
+        conflicts.increment();
+    }
+
+    /**
+     * A method to count a command that could not be executed.
+     */
+    public void failure() {
+        failures.increment();
+    }
+
+    /**
+     * A method to get the latencies of the command.
+     * @return histogram of the latencies
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * A method to get the times the command spent on the main thread.
+     * @return histogram of the times
+     */
+    public Histogram getMainThread() {
+        return mainThread;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getMeanNanos() {
+        return latency.getMean();
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return latency.getPercentile(99);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return latency.getMax();
+    }
+
+    @Override
+    public long getMainThreadMeanNanos() {
+        return mainThread.getMean();
+    }
+
+    @Override
+    public long getMainThreadMaxNanos() {
+        return mainThread.getMax();
+    }
+
+    @Override
+    public long getAsyncMeanNanos() {
+        return async.getMean();
+    }
+
+    @Override
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.kalle.syncedhealthbar.metrics;
+
+/**
+ * The JMX interface of the statistics of a command.
+ */
+public interface CommandStatsMBean {
+
+    long getCount();
+
+    long getMeanNanos();
+
+    long getP99Nanos();
+
+    long getMaxNanos();
+
+    long getMainThreadMeanNanos();
+
+    long getMainThreadMaxNanos();
+
+    long getAsyncMeanNanos();
+
+    long getConflicts();
+
+    long getFailures();
+
+}
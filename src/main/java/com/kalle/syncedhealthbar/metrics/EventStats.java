@@ -0,0 +1,52 @@
+package com.kalle.syncedhealthbar.metrics;
+
+/**
+ * A class that holds the statistics of the events of one type: how many were handled and how long
+ * the listener needed.
+ */
+public class EventStats implements EventStatsMBean {
+
+    private Histogram latency = new Histogram(); //time the listener needed per event
+
+    /**
+     * A method to record a handled event.
+     * @param start time in ns the listener started
+     */
+    public void record(long start) {
+        latency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * A method to get the latencies of the listener.
+     * @return histogram of the latencies
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getMeanNanos() {
+        return latency.getMean();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return latency.getPercentile(50);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return latency.getPercentile(99);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return latency.getMax();
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.kalle.syncedhealthbar.metrics;
+
+/**
+ * The JMX interface of the statistics of an event type.
+ */
+public interface EventStatsMBean {
+
+    long getCount();
+
+    long getMeanNanos();
+
+    long getP50Nanos();
+
+    long getP99Nanos();
+
+    long getMaxNanos();
+
+}
@@ -0,0 +1,14 @@
+package com.kalle.syncedhealthbar.metrics;
+
+/**
+ * The events the listeners of the plugin handle.
+ */
+public enum EventType {
+    DAMAGE,
+    HEAL,
+    JOIN,
+    QUIT,
+    FOOD,
+    RESPAWN,
+    POST_RESPAWN
+}
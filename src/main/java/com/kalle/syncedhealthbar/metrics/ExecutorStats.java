@@ -0,0 +1,138 @@
+package com.kalle.syncedhealthbar.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class that holds the statistics of an executor of blocking work: how many tasks are waiting
+ * (queue depth), how long they waited until they started and how long they ran.
+ */
+public class ExecutorStats implements ExecutorStatsMBean {
+
+    private String name; //name of the executor
+    private String threads; //kind of the threads ("virtual" or "platform")
+    private AtomicLong queued = new AtomicLong(); //tasks that were submitted and did not start yet
+    private AtomicLong maxQueued = new AtomicLong();
+    private LongAdder submitted = new LongAdder();
+    private Histogram wait = new Histogram(); //time from the submission until the task started
+    private Histogram run = new Histogram(); //time the task ran
+
+    /**
+     * Class constructor.
+     * @param name name of the executor
+     * @param threads kind of the threads ("virtual" or "platform")
+     */
+    public ExecutorStats(String name, String threads) {
+        this.name = name;
+        this.threads = threads;
+    }
+
+    /**
+     * A method to get the name of the executor.
+     * @return name of the executor
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * A method to count a submitted task.
+     */
+    public void submitted() {
+        submitted.increment();
+        long depth = queued.incrementAndGet();
+        long max;
+        while (depth > (max = maxQueued.get()) && !maxQueued.compareAndSet(max, depth)); //keep the largest depth
+    }
+
+    /**
+     * A method to record a task that started.
+     * @param wait time in ns the task waited
+     */
+    public void started(long wait) {
+        queued.decrementAndGet();
+        this.wait.record(wait);
+    }
+
+    /**
+     * A method to record a task that finished.
+     * @param run time in ns the task ran
+     */
+    public void finished(long run) {
+        this.run.record(run);
+    }
+
+    /**
+     * A method to record a task that was dropped before it started (the executor was shut down).
+     */
+    public void dropped() {
+        queued.decrementAndGet();
+    }
+
+    /**
+     * A method to get the times the tasks waited.
+     * @return histogram of the times
+     */
+    public Histogram getWait() {
+        return wait;
+    }
+
+    /**
+     * A method to get the times the tasks ran.
+     * @return histogram of the times
+     */
+    public Histogram getRun() {
+        return run;
+    }
+
+    @Override
+    public String getThreads() {
+        return threads;
+    }
+
+    @Override
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    @Override
+    public long getCompleted() {
+        return run.getCount();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return queued.get();
+    }
+
+    @Override
+    public long getMaxQueueDepth() {
+        return maxQueued.get();
+    }
+
+    @Override
+    public long getWaitMeanNanos() {
+        return wait.getMean();
+    }
+
+    @Override
+    public long getWaitP99Nanos() {
+        return wait.getPercentile(99);
+    }
+
+    @Override
+    public long getRunMeanNanos() {
+        return run.getMean();
+    }
+
+    @Override
+    public long getRunP99Nanos() {
+        return run.getPercentile(99);
+    }
+
+    @Override
+    public long getRunMaxNanos() {
+        return run.getMax();
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.kalle.syncedhealthbar.metrics;
+
+/**
+ * The JMX interface of the statistics of an executor.
+ */
+public interface ExecutorStatsMBean {
+
+    String getThreads();
+
+    long getSubmitted();
+
+    long getCompleted();
+
+    long getQueueDepth();
+
+    long getMaxQueueDepth();
+
+    long getWaitMeanNanos();
+
+    long getWaitP99Nanos();
+
+    long getRunMeanNanos();
+
+    long getRunP99Nanos();
+
+    long getRunMaxNanos();
+
+}
@@ -0,0 +1,93 @@
+package com.kalle.syncedhealthbar.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class to record latencies in fixed buckets. Recording only increments striped counters, so it
+ * never blocks and can be called from any thread. Percentiles are estimated by the upper bound of
+ * the bucket they fall into.
+ */
+public class Histogram {
+
+    //upper bounds of the buckets in ns (1 us to 1 s), the last bucket holds everything above
+    private static final long[] BOUNDS = {
+            1000L, 2000L, 5000L, 10000L, 20000L, 50000L, 100000L, 200000L, 500000L,
+            1000000L, 2000000L, 5000000L, 10000000L, 20000000L, 50000000L, 100000000L, 200000000L, 500000000L, 1000000000L
+    };
+
+    private LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private LongAdder count = new LongAdder();
+    private LongAdder sum = new LongAdder();
+    private LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Class constructor.
+     */
+    public Histogram() {
+        for (int i = 0 ; i < buckets.length ; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * A method to record a latency.
+     * @param nanos latency in ns
+     */
+    public void record(long nanos) {
+        int i = 0;
+        while (i < BOUNDS.length && nanos > BOUNDS[i]) i++; //most latencies fall into the first buckets
+        buckets[i].increment();
+        count.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * A method to get how many latencies were recorded.
+     * @return count of latencies
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * A method to get the mean of the recorded latencies.
+     * @return mean in ns (0 if nothing was recorded)
+     */
+    public long getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * A method to get the highest recorded latency.
+     * @return maximum in ns
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * A method to estimate a percentile of the recorded latencies.
+     * @param percentile percentile between 0 and 100
+     * @return upper bound of the bucket of the percentile in ns (the maximum for the last bucket)
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0 ; i < buckets.length ; i++) { //copy once, so the counts add up even while recording
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0 ; i < BOUNDS.length ; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(BOUNDS[i], getMax());
+        }
+        return getMax();
+    }
+
+}
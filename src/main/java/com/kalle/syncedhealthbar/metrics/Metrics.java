@@ -0,0 +1,281 @@
+package com.kalle.syncedhealthbar.metrics;
+
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.HealthBar;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * A class that holds all statistics of the plugin: the handled events by type, the statistics of
+ * every health bar, of the commands and of the storage. All counters are striped and the latencies go into fixed
+ * buckets, so recording is cheap enough for every event. The statistics can be read with /hbstats
+ * and as JMX MBeans under "com.kalle.syncedhealthbar".
+ */
+public class Metrics {
+
+    private static final String DOMAIN = "com.kalle.syncedhealthbar";
+    private static Metrics metrics = new Metrics(); //statistics of the plugin
+
+    private EnumMap<EventType, EventStats> events = new EnumMap<EventType, EventStats>(EventType.class); //statistics of every event type
+    private ConcurrentHashMap<String, BarStats> bars = new ConcurrentHashMap<String, BarStats>(); //statistics of every health bar by its name
+    private ConcurrentHashMap<String, CommandStats> commands = new ConcurrentHashMap<String, CommandStats>(); //statistics of every command by its name
+    private ConcurrentHashMap<String, ExecutorStats> executors = new ConcurrentHashMap<String, ExecutorStats>(); //statistics of every executor of blocking work by its name
+    private StorageStats storage = new StorageStats();
+    private CacheStats cache = new CacheStats();
+    private long startTime = System.currentTimeMillis(); //time in ms the statistics started
+    private MBeanServer server; //server the MBeans are registered to (null if JMX is not used)
+    private Logger logger;
+
+    /**
+     * Class constructor.
+     */
+    private Metrics() {
+        for (EventType i : EventType.values()) {
+            events.put(i, new EventStats());
+        }
+    }
+
+    /**
+     * A method to get the statistics of the plugin.
+     * @return statistics of the plugin
+     */
+    public static Metrics get() {
+        return metrics;
+    }
+
+    /**
+     * A method to get the statistics of an event type.
+     * @param type type of the events
+     * @return statistics of the events
+     */
+    public EventStats event(EventType type) {
+        return events.get(type);
+    }
+
+    /**
+     * A method to get the statistics of the config and its storage.
+     * @return statistics of the storage
+     */
+    public StorageStats getStorage() {
+        return storage;
+    }
+
+    /**
+     * A method to get the statistics of the resident health bars.
+     * @return statistics of the resident health bars
+     */
+    public CacheStats getCache() {
+        return cache;
+    }
+
+    /**
+     * A method to get the statistics of a health bar, they are created on the first call.
+     * @param name name of the health bar
+     * @return statistics of the health bar
+     */
+    public BarStats bar(String name) {
+        BarStats stats = bars.get(name);
+        if (stats == null) {
+            stats = new BarStats(name);
+            bars.put(name, stats);
+            if (server != null) register(stats, barName(name));
+        }
+        return stats;
+    }
+
+    /**
+     * A method to remove the statistics of a deleted or evicted health bar.
+     * @param name name of the health bar
+     */
+    public void removeBar(String name) {
+        if (bars.remove(name) != null && server != null) unregister(barName(name));
+    }
+
+    /**
+     * A method to get the statistics of all health bars.
+     * @return statistics of the health bars
+     */
+    public Collection<BarStats> getBars() {
+        return Collections.unmodifiableCollection(bars.values());
+    }
+
+    /**
+     * A method to get the statistics of a command, they are created on the first call.
+     * @param name name of the command
+     * @return statistics of the command
+     */
+    public CommandStats command(String name) {
+        CommandStats stats = commands.get(name);
+        if (stats == null) {
+            stats = new CommandStats(name);
+            commands.put(name, stats);
+            if (server != null) register(stats, commandName(name));
+        }
+        return stats;
+    }
+
+    /**
+     * A method to get the statistics of all executed commands.
+     * @return statistics of the commands
+     */
+    public Collection<CommandStats> getCommands() {
+        return Collections.unmodifiableCollection(commands.values());
+    }
+
+    /**
+     * A method to get the statistics of an executor, they are created on the first call.
+     * @param name name of the executor
+     * @param threads kind of the threads ("virtual" or "platform")
+     * @return statistics of the executor
+     */
+    public synchronized ExecutorStats executor(String name, String threads) {
+        ExecutorStats stats = executors.get(name);
+        if (stats == null) {
+            stats = new ExecutorStats(name, threads);
+            executors.put(name, stats);
+            if (server != null) register(stats, executorName(name));
+        }
+        return stats;
+    }
+
+    /**
+     * A method to get the statistics of all executors.
+     * @return statistics of the executors
+     */
+    public Collection<ExecutorStats> getExecutors() {
+        return Collections.unmodifiableCollection(executors.values());
+    }
+
+    /**
+     * A method to get the time the statistics started.
+     * @return time in ms
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * A method to copy the sizes and the health of all health bars into their statistics. Needs to
+     * be called on the main thread.
+     * @param config config that holds the players of the health bars
+     */
+    public void updateGauges(Config config) {
+        for (HealthBar i : HealthBar.getRegistry().getHealthBars()) {
+            try {
+                i.getStats().update(config.getPCount(i.getName()), i.getPlayers().size(), i.getHealth());
+            } catch (CorruptedConfigException e) { //health bar is being deleted
+                continue;
+            }
+        }
+    }
+
+    /**
+     * A method to register all statistics as MBeans of the platform MBean server.
+     * @param logger logger for the warnings if an MBean can not be registered
+     */
+    public void registerJmx(Logger logger) {
+        this.logger = logger;
+        server = ManagementFactory.getPlatformMBeanServer();
+        for (EventType i : EventType.values()) {
+            register(events.get(i), DOMAIN + ":type=Event,name=" + i.name());
+        }
+        register(storage, DOMAIN + ":type=Storage");
+        register(cache, DOMAIN + ":type=Cache");
+        for (BarStats i : bars.values()) {
+            register(i, barName(i.getName()));
+        }
+        for (CommandStats i : commands.values()) {
+            register(i, commandName(i.getName()));
+        }
+        for (ExecutorStats i : executors.values()) {
+            register(i, executorName(i.getName()));
+        }
+    }
+
+    /**
+     * A method to unregister all MBeans, so they are not kept when the plugin gets reloaded.
+     */
+    public void unregisterJmx() {
+        if (server == null) return;
+        for (EventType i : EventType.values()) {
+            unregister(DOMAIN + ":type=Event,name=" + i.name());
+        }
+        unregister(DOMAIN + ":type=Storage");
+        unregister(DOMAIN + ":type=Cache");
+        for (BarStats i : bars.values()) {
+            unregister(barName(i.getName()));
+        }
+        for (CommandStats i : commands.values()) {
+            unregister(commandName(i.getName()));
+        }
+        for (ExecutorStats i : executors.values()) {
+            unregister(executorName(i.getName()));
+        }
+        server = null;
+    }
+
+    /**
+     * A method to get the name of the MBean of a health bar.
+     * @param name name of the health bar
+     * @return name of the MBean
+     */
+    private static String barName(String name) {
+        return DOMAIN + ":type=HealthBar,name=" + ObjectName.quote(name);
+    }
+
+    /**
+     * A method to get the name of the MBean of a command.
+     * @param name name of the command
+     * @return name of the MBean
+     */
+    private static String commandName(String name) {
+        return DOMAIN + ":type=Command,name=" + ObjectName.quote(name);
+    }
+
+    /**
+     * A method to get the name of the MBean of an executor.
+     * @param name name of the executor
+     * @return name of the MBean
+     */
+    private static String executorName(String name) {
+        return DOMAIN + ":type=Executor,name=" + ObjectName.quote(name);
+    }
+
+    /**
+     * A method to register an MBean and replace an MBean with the same name.
+     * @param bean MBean
+     * @param name name of the MBean
+     */
+    private void register(Object bean, String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName); //left over by a previous load of the plugin
+            server.registerMBean(bean, objectName);
+        } catch (JMException e) {
+            logger.warning("Could not register the MBean " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * A method to unregister an MBean.
+     * @param name name of the MBean
+     */
+    private void unregister(String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warning("Could not unregister the MBean " + name + ": " + e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.kalle.syncedhealthbar.metrics;
+
+/**
+ * The changes that can be made to the data of the config.
+ */
+public enum Mutation {
+    CREATE_BAR,
+    DELETE_BAR,
+    ADD_MEMBER,
+    REMOVE_MEMBER,
+    UPDATE_MEMBER,
+    SET_HEALTH
+}
@@ -0,0 +1,142 @@
+package com.kalle.syncedhealthbar.metrics;
+
+import java.util.EnumMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class that holds the statistics of the config and its storage: how often the data was changed,
+ * how long taking a snapshot on the main thread took and how long writing it to the storage took.
+ */
+public class StorageStats implements StorageStatsMBean {
+
+    private EnumMap<Mutation, LongAdder> mutations = new EnumMap<Mutation, LongAdder>(Mutation.class); //count of every change
+    private Histogram snapshots = new Histogram(); //time the main thread needed to take a snapshot
+    private Histogram writes = new Histogram(); //time the writer thread needed to write a snapshot
+    private LongAdder failedWrites = new LongAdder();
+
+    /**
+     * Class constructor.
+     */
+    public StorageStats() {
+        for (Mutation i : Mutation.values()) {
+            mutations.put(i, new LongAdder());
+        }
+    }
+
+    /**
+     * A method to count a change of the data.
+     * @param mutation kind of the change
+     */
+    public void mutation(Mutation mutation) {
+        mutations.get(mutation).increment();
+    }
+
+    /**
+     * A method to get how often the data was changed.
+     * @param mutation kind of the change
+     * @return count of changes
+     */
+    public long getMutations(Mutation mutation) {
+        return mutations.get(mutation).sum();
+    }
+
+    /**
+     * A method to record the time needed to take a snapshot.
+     * @param start time in ns taking the snapshot started
+     */
+    public void snapshot(long start) {
+        snapshots.record(System.nanoTime() - start);
+    }
+
+    /**
+     * A method to record the time needed to write a snapshot.
+     * @param start time in ns the write started
+     * @param success true if the snapshot was written
+     */
+    public void write(long start, boolean success) {
+        if (success) writes.record(System.nanoTime() - start);
+        else failedWrites.increment();
+    }
+
+    /**
+     * A method to get the latencies of taking the snapshots.
+     * @return histogram of the latencies
+     */
+    public Histogram getSnapshotLatency() {
+        return snapshots;
+    }
+
+    /**
+     * A method to get the latencies of the writes.
+     * @return histogram of the latencies
+     */
+    public Histogram getWriteLatency() {
+        return writes;
+    }
+
+    @Override
+    public long getBarsCreated() {
+        return getMutations(Mutation.CREATE_BAR);
+    }
+
+    @Override
+    public long getBarsDeleted() {
+        return getMutations(Mutation.DELETE_BAR);
+    }
+
+    @Override
+    public long getMembersAdded() {
+        return getMutations(Mutation.ADD_MEMBER);
+    }
+
+    @Override
+    public long getMembersRemoved() {
+        return getMutations(Mutation.REMOVE_MEMBER);
+    }
+
+    @Override
+    public long getMembersUpdated() {
+        return getMutations(Mutation.UPDATE_MEMBER);
+    }
+
+    @Override
+    public long getHealthUpdates() {
+        return getMutations(Mutation.SET_HEALTH);
+    }
+
+    @Override
+    public long getSnapshots() {
+        return snapshots.getCount();
+    }
+
+    @Override
+    public long getSnapshotP99Nanos() {
+        return snapshots.getPercentile(99);
+    }
+
+    @Override
+    public long getWrites() {
+        return writes.getCount();
+    }
+
+    @Override
+    public long getFailedWrites() {
+        return failedWrites.sum();
+    }
+
+    @Override
+    public long getWriteMeanNanos() {
+        return writes.getMean();
+    }
+
+    @Override
+    public long getWriteP99Nanos() {
+        return writes.getPercentile(99);
+    }
+
+    @Override
+    public long getWriteMaxNanos() {
+        return writes.getMax();
+    }
+
+}
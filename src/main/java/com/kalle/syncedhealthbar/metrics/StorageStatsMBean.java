@@ -0,0 +1,34 @@
+package com.kalle.syncedhealthbar.metrics;
+
+/**
+ * The JMX interface of the statistics of the config and its storage.
+ */
+public interface StorageStatsMBean {
+
+    long getBarsCreated();
+
+    long getBarsDeleted();
+
+    long getMembersAdded();
+
+    long getMembersRemoved();
+
+    long getMembersUpdated();
+
+    long getHealthUpdates();
+
+    long getSnapshots();
+
+    long getSnapshotP99Nanos();
+
+    long getWrites();
+
+    long getFailedWrites();
+
+    long getWriteMeanNanos();
+
+    long getWriteP99Nanos();
+
+    long getWriteMaxNanos();
+
+}
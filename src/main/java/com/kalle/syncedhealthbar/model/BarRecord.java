@@ -0,0 +1,113 @@
+package com.kalle.syncedhealthbar.model;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+
+/**
+ * A class to represent the stored data of a health bar (name, health value and assigned players).
+ */
+public class BarRecord {
+
+    private String name; //unique name of the health bar
+    private double health; //stored health value of the health bar
+    private long version = 0; //version of the health bar and its players, changed by the config on every structural change (not stored)
+    private LinkedHashMap<UUID, MemberRecord> members = new LinkedHashMap<UUID, MemberRecord>(); //players assigned to the health bar by their UUID in the order they were added
+
+    /**
+     * Class constructor.
+     * @param name unique name of the health bar
+     * @param health health value of the health bar
+     */
+    public BarRecord(String name, double health) {
+        this.name = name;
+        this.health = health;
+    }
+
+    /**
+     * A method to get the name of the health bar.
+     * @return name of the health bar
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * A method to get the stored health value of the health bar.
+     * @return health value of the health bar
+     */
+    public double getHealth() {
+        return health;
+    }
+
+    /**
+     * A method to set the stored health value of the health bar.
+     * @param health new health value
+     */
+    public void setHealth(double health) {
+        this.health = health;
+    }
+
+    /**
+     * A method to get the version of the health bar and its players.
+     * @return version of the health bar
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * A method to set the version of the health bar after its players changed.
+     * @param version new version of the health bar
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * A method to get the players assigned to the health bar (online and offline).
+     * @return member records in the order they were added
+     */
+    public Collection<MemberRecord> getMembers() {
+        return members.values();
+    }
+
+    /**
+     * A method to get the record of a player assigned to the health bar.
+     * @param uuid UUID of the player
+     * @return record of the player or null if he is not assigned to the health bar
+     */
+    public MemberRecord getMember(UUID uuid) {
+        return members.get(uuid);
+    }
+
+    /**
+     * A method to assign a player to the health bar (replaces his former record).
+     * @param member record of the player
+     */
+    public void addMember(MemberRecord member) {
+        members.put(member.getUniqueId(), member);
+    }
+
+    /**
+     * A method to remove a player from the health bar.
+     * @param uuid UUID of the player
+     * @return record of the removed player or null if he was not assigned to the health bar
+     */
+    public MemberRecord removeMember(UUID uuid) {
+        return members.remove(uuid);
+    }
+
+    /**
+     * A method to create a deep copy of the record, so it can be serialized on another thread.
+     * @return copy of the record
+     */
+    public BarRecord copy() {
+        BarRecord copy = new BarRecord(name, health);
+        for (MemberRecord i : members.values()) { //copy every member
+            copy.members.put(i.getUniqueId(), i.copy());
+        }
+        return copy;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.kalle.syncedhealthbar.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * A class to represent the stored data of a player assigned to a health bar.
+ */
+public class MemberRecord {
+
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("HH:mm | dd.MM.yyyy"); //format the last login is shown in (and was stored in before)
+
+    private UUID uuid; //UUID which identifies the player
+    private String name; //last known name of the player
+    private long lastLogin; //last login of the player in ms since the epoch
+
+    /**
+     * Class constructor.
+     * @param uuid UUID of the player
+     * @param name last known name of the player
+     * @param lastLogin last login of the player in ms since the epoch
+     */
+    public MemberRecord(UUID uuid, String name, long lastLogin) {
+        this.uuid = uuid;
+        this.name = name;
+        this.lastLogin = lastLogin;
+    }
+
+    /**
+     * A method to get the UUID of the player.
+     * @return UUID of the player
+     */
+    public UUID getUniqueId() {
+        return uuid;
+    }
+
+    /**
+     * A method to get the last known name of the player.
+     * @return name of the player
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * A method to set the name of the player (when he changed it).
+     * @param name new name of the player
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * A method to get the last login of the player.
+     * @return last login of the player in ms since the epoch
+     */
+    public long getLastLogin() {
+        return lastLogin;
+    }
+
+    /**
+     * A method to set the last login of the player.
+     * @param lastLogin new last login of the player in ms since the epoch
+     */
+    public void setLastLogin(long lastLogin) {
+        this.lastLogin = lastLogin;
+    }
+
+    /**
+     * A method to create a copy of the record, so it can be serialized on another thread.
+     * @return copy of the record
+     */
+    public MemberRecord copy() {
+        return new MemberRecord(uuid, name, lastLogin);
+    }
+
+    /**
+     * A method to parse a last login of the former layout of the config.yml. Besides ms since the
+     * epoch the format "HH:mm | dd.MM.yyyy" (local time of the server) is accepted, which the first
+     * versions of the plugin stored.
+     * @param value stored last login
+     * @return last login in ms since the epoch
+     * @throws IllegalArgumentException the value has none of the formats
+     */
+    public static long parseLastLogin(String value) {
+        if (!isLegacy(value)) return Long.parseLong(value);
+        try {
+            return LocalDateTime.parse(value, FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("last login '" + value + "' can not be parsed", e);
+        }
+    }
+
+    /**
+     * A method to check if a stored last login has the format of the first versions.
+     * @param value stored last login
+     * @return true if the value is no count of ms
+     */
+    private static boolean isLegacy(String value) {
+        if (value.isEmpty()) return true;
+        for (int i = 0 ; i < value.length() ; i++) {
+            if (!Character.isDigit(value.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A method to format a last login, so it can be shown to players.
+     * @param lastLogin last login in ms since the epoch
+     * @return last login in the local time of the server
+     */
+    public static String formatLastLogin(long lastLogin) {
+        return FORMAT.format(Instant.ofEpochMilli(lastLogin).atZone(ZoneId.systemDefault()));
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.kalle.syncedhealthbar.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A class to find names by their beginning for the tab completion. Every name is stored with its
+ * lower case in front ("<lower case>\0<name>") in a sorted set, so a lookup only walks the range of
+ * the typed prefix and stops after the names it returns. The set is concurrent, so the names can be
+ * completed on every thread (e.g. the region threads of Folia) while the main thread changes them.
+ * Names that only differ in case are stored next to each other.
+ */
+public class NameIndex {
+
+    private static final char SEPARATOR = '\0'; //separates the lower case from the name (sorts before every character)
+
+    private ConcurrentSkipListSet<String> names = new ConcurrentSkipListSet<String>(); //keys of the names in alphabetical order
+
+    /**
+     * A method to get the key of a name.
+     * @param name name
+     * @return lower case and name
+     */
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT) + SEPARATOR + name;
+    }
+
+    /**
+     * A method to add a name.
+     * @param name name that is added
+     * @return true if the name was added, false if it was already stored
+     */
+    public boolean add(String name) {
+        return names.add(key(name));
+    }
+
+    /**
+     * A method to remove a name.
+     * @param name name that is removed
+     * @return true if the name was removed, false if it was not stored
+     */
+    public boolean remove(String name) {
+        return names.remove(key(name));
+    }
+
+    /**
+     * A method to remove all names that equal the passed name ignoring the case.
+     * @param name name that is removed
+     * @return true if a name was removed, false if none was stored
+     */
+    public boolean removeIgnoreCase(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        NavigableSet<String> variants = names.subSet(lower + SEPARATOR, true, lower + (char) (SEPARATOR + 1), false);
+        boolean removed = false;
+        for (String i : variants) {
+            removed |= names.remove(i);
+        }
+        return removed;
+    }
+
+    /**
+     * A method to get the names that start with the prefix (case-insensitive) in alphabetical order.
+     * @param prefix typed beginning of the names
+     * @param limit maximum count of names that are returned
+     * @return names that start with the prefix
+     */
+    public List<String> complete(String prefix, int limit) {
+        ArrayList<String> result = new ArrayList<String>(Math.min(limit, 16));
+        String lower = prefix.toLowerCase(Locale.ROOT);
+        for (String i : names.tailSet(lower)) { //keys of the prefix follow each other
+            if (result.size() >= limit || !i.startsWith(lower)) break;
+            result.add(i.substring(i.indexOf(SEPARATOR) + 1));
+        }
+        return result;
+    }
+
+    /**
+     * A method to get the count of the names.
+     * @return count of the names
+     */
+    public int size() {
+        return names.size();
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.kalle.syncedhealthbar.regen;
+
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.HealthPipeline;
+import com.kalle.syncedhealthbar.Main;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.event.entity.EntityRegainHealthEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A class that regenerates the health bars instead of the natural regeneration of their players.
+ * Every health bar with online players is healed once per interval while the mean food level of
+ * its players is high enough, no matter how many players are online. The mean is read from the
+ * sums of the health bar (see RegenState), so a health bar is checked in constant time. The health
+ * bars are kept in a timer wheel with a slot for every tick, so a tick only visits the health bars
+ * that are due and thousands of health bars can be ticked by one task. The natural regeneration
+ * of the players is cancelled by PlayerHeal while the engine is running.
+ */
+public class RegenEngine {
+
+    private static final int WHEEL_SIZE = 2048; //count of slots of the timer wheel (power of 2)
+    public static final int MAX_INTERVAL = 2000; //maximum interval in ticks (smaller than the wheel)
+    private static volatile RegenEngine engine; //engine of the plugin (null if it is disabled)
+
+    /**
+     * A class to hold the settings of the regeneration of a health bar.
+     */
+    static class Settings {
+
+        private int interval; //interval in ticks of the regeneration
+        private int saturatedInterval; //interval in ticks while all players are full and have saturation
+        private double amount; //health that is healed per interval
+        private int minFood; //mean food level the players need
+
+    }
+
+    private HealthPipeline pipeline; //merges the regeneration with the healing of the tick
+    private Settings defaults; //settings of the health bars without own settings
+    private HashMap<String, Settings> bars = new HashMap<String, Settings>(); //own settings of health bars by their name
+    private ArrayList<ArrayList<HealthBar>> wheel = new ArrayList<ArrayList<HealthBar>>(WHEEL_SIZE); //health bars by the tick they are due
+    private ConcurrentLinkedQueue<HealthBar> woken = new ConcurrentLinkedQueue<HealthBar>(); //health bars that got their first online player
+    private TaskScheduler.Task task; //repeating task that ticks the wheel
+    private long tick = 0; //ticks since the engine was started
+    private int scheduled = 0; //count of health bars in the wheel
+    private volatile long heals = 0; //count of heals since the engine was started
+
+    /**
+     * Class constructor.
+     * @param pipeline pipeline that applies the healing at the end of the tick
+     * @param defaults settings of the health bars without own settings
+     */
+    private RegenEngine(HealthPipeline pipeline, Settings defaults) {
+        this.pipeline = pipeline;
+        this.defaults = defaults;
+        for (int i = 0 ; i < WHEEL_SIZE ; i++) {
+            wheel.add(new ArrayList<HealthBar>());
+        }
+    }
+
+    /**
+     * A method to start the regeneration if it is enabled in the settings. The health bars that
+     * already have online players are scheduled right away.
+     * @param plugin main class to get the settings
+     * @param scheduler scheduler of the task that ticks the wheel
+     * @param pipeline pipeline that applies the healing at the end of the tick
+     * @throws CorruptedConfigException the settings of the regeneration are invalid and exception is thrown
+     */
+    public static void init(Main plugin, TaskScheduler scheduler, HealthPipeline pipeline) throws CorruptedConfigException {
+        shutdown();
+        ConfigurationSection settings = plugin.getConfig().getConfigurationSection("Settings.Regen");
+        if (settings != null && !settings.getBoolean("Enabled", true)) return;
+        Settings defaults = new Settings();
+        defaults.interval = 80; //values of the natural regeneration
+        defaults.saturatedInterval = 10;
+        defaults.amount = 1;
+        defaults.minFood = 18;
+        RegenEngine engine = new RegenEngine(pipeline, settings == null ? defaults : read(settings, defaults, "regen"));
+        ConfigurationSection bars = settings == null ? null : settings.getConfigurationSection("Bars");
+        if (bars != null) {
+            for (String i : bars.getKeys(false)) {
+                ConfigurationSection bar = bars.getConfigurationSection(i);
+                if (bar == null) throw new CorruptedConfigException("CONFIG ERROR: regen settings of the health bar: '" + i + "' corrupted!");
+                engine.bars.put(i, read(bar, engine.defaults, "regen of the health bar: '" + i + "'"));
+            }
+        }
+        for (HealthBar i : HealthBar.getRegistry().getHealthBars()) { //players that joined before the engine was started
+            if (i.getRegen().claim()) engine.schedule(i, engine.settings(i).interval);
+        }
+        engine.task = scheduler.runTimer(engine::tick, 1, 1);
+        RegenEngine.engine = engine;
+    }
+
+    /**
+     * A method to read the settings of the regeneration.
+     * @param section section of the settings
+     * @param parent settings that are used if an entry is missing
+     * @param name name of the settings for the error messages
+     * @return settings of the regeneration
+     * @throws CorruptedConfigException an entry is out of its bounds and exception is thrown
+     */
+    private static Settings read(ConfigurationSection section, Settings parent, String name) throws CorruptedConfigException {
+        Settings settings = new Settings();
+        settings.interval = section.getInt("Interval", parent.interval);
+        settings.saturatedInterval = section.getInt("Saturated Interval", parent.saturatedInterval);
+        settings.amount = section.getDouble("Amount", parent.amount);
+        settings.minFood = section.getInt("Min Food", parent.minFood);
+        if (settings.interval < 1 || settings.interval > MAX_INTERVAL || settings.saturatedInterval < 1 || settings.saturatedInterval > MAX_INTERVAL) {
+            throw new CorruptedConfigException("CONFIG ERROR: " + name + " intervals must be between 1 and " + MAX_INTERVAL + " ticks!");
+        }
+        if (!(settings.amount > 0) || settings.amount > 20) throw new CorruptedConfigException("CONFIG ERROR: " + name + " amount must be between 0 and 20!");
+        if (settings.minFood < 0 || settings.minFood > 20) throw new CorruptedConfigException("CONFIG ERROR: " + name + " min food must be between 0 and 20!");
+        return settings;
+    }
+
+    /**
+     * A method to get the regeneration engine of the plugin.
+     * @return engine or null if it is disabled
+     */
+    public static RegenEngine get() {
+        return engine;
+    }
+
+    /**
+     * A method to stop the regeneration, the natural regeneration of the players is used again.
+     */
+    public static void shutdown() {
+        RegenEngine current = engine;
+        if (current == null) return;
+        engine = null;
+        current.task.cancel();
+    }
+
+    /**
+     * A method to add a player that joined or was added to a health bar.
+     * @param hb health bar of the player
+     * @param player player that is added
+     */
+    public static void join(HealthBar hb, Player player) {
+        if (!hb.getRegen().join(player)) return; //health bar is already scheduled
+        RegenEngine current = engine;
+        if (current != null) current.woken.add(hb); //scheduled by the next tick
+    }
+
+    /**
+     * A method to read the food level and the saturation of a player again, e.g. after he ate
+     * (the saturation is changed after the event of the food level).
+     * @param player player whose values are read
+     */
+    public static void refresh(Player player) {
+        HealthBar hb = HealthBar.getRegistry().getHealthBar(player);
+        if (hb == null || !player.isOnline()) return; //player left or was removed in the meantime
+        hb.getRegen().update(player.getUniqueId(), player.getFoodLevel(), player.getSaturation());
+    }
+
+    /**
+     * A method executed every tick to heal the health bars that are due.
+     */
+    private void tick() {
+        tick++;
+        for (HealthBar i = woken.poll() ; i != null ; i = woken.poll()) {
+            schedule(i, settings(i).interval); //first heal after a full interval like the natural regeneration
+        }
+        ArrayList<HealthBar> due = wheel.get((int) (tick & (WHEEL_SIZE - 1)));
+        if (due.isEmpty()) return;
+        scheduled -= due.size();
+        for (HealthBar i : due) { //intervals are shorter than the wheel, so no health bar is added to this slot again
+            if (i.getPlayers() == null) continue; //health bar was deleted or evicted, a new one is scheduled when a player joins
+            RegenState state = i.getRegen();
+            if (state.release()) continue; //no player is online anymore
+            Settings settings = settings(i);
+            RegenState.Level level = state.getLevel(settings.minFood);
+            if (level != RegenState.Level.NONE && i.getHealth() < 20) {
+                pipeline.heal(i, null, settings.amount, EntityRegainHealthEvent.RegainReason.SATIATED); //all players get the healing at the end of the tick
+                heals++;
+            }
+            schedule(i, level == RegenState.Level.SATURATED ? settings.saturatedInterval : settings.interval);
+        }
+        due.clear();
+    }
+
+    /**
+     * A method to add a health bar to the slot of the tick it is due.
+     * @param hb health bar
+     * @param interval ticks until the health bar is due
+     */
+    private void schedule(HealthBar hb, int interval) {
+        wheel.get((int) ((tick + interval) & (WHEEL_SIZE - 1))).add(hb);
+        scheduled++;
+    }
+
+    /**
+     * A method to get the settings of a health bar, they are looked up once per health bar.
+     * @param hb health bar
+     * @return settings of the regeneration of the health bar
+     */
+    private Settings settings(HealthBar hb) {
+        RegenState state = hb.getRegen();
+        if (state.settings == null) {
+            Settings settings = bars.get(hb.getName());
+            state.settings = settings == null ? defaults : settings;
+        }
+        return state.settings;
+    }
+
+    /**
+     * A method to get the count of health bars that are scheduled.
+     * @return count of health bars with online players
+     */
+    public int getScheduled() {
+        return scheduled;
+    }
+
+    /**
+     * A method to get the count of heals since the engine was started.
+     * @return count of heals
+     */
+    public long getHeals() {
+        return heals;
+    }
+
+}
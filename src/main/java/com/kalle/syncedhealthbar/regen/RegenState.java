@@ -0,0 +1,141 @@
+package com.kalle.syncedhealthbar.regen;
+
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * A class to hold the food levels of the online players of a health bar. The sums are changed by
+ * the difference of a player's last known values, so the mean food level of a health bar is read
+ * without looping through its players. The values can be changed from every thread.
+ */
+public class RegenState {
+
+    /**
+     * The levels of the regeneration a health bar can be at.
+     */
+    public enum Level {
+        NONE, //mean food level is too low
+        NORMAL, //mean food level is high enough
+        SATURATED //all players are full and have saturation left
+    }
+
+    /**
+     * A class to hold the last known values of a player.
+     */
+    private static class Member {
+
+        private int food;
+        private float saturation;
+
+    }
+
+    private HashMap<UUID, Member> members = new HashMap<UUID, Member>(); //last known values of the online players
+    private int food = 0; //sum of the food levels of the online players
+    private double saturation = 0; //sum of the saturation of the online players
+    private boolean scheduled = false; //true if the health bar is in the schedule of the regeneration engine
+    RegenEngine.Settings settings; //settings of the health bar (engine thread, null until it is first due)
+
+    /**
+     * A method to add a player that joined or was added to the health bar.
+     * @param player player that is added
+     * @return true if the health bar needs to be scheduled by the regeneration engine
+     */
+    public synchronized boolean join(Player player) {
+        if (members.containsKey(player.getUniqueId())) {
+            update(player.getUniqueId(), player.getFoodLevel(), player.getSaturation());
+        } else {
+            Member member = new Member();
+            member.food = player.getFoodLevel();
+            member.saturation = player.getSaturation();
+            members.put(player.getUniqueId(), member);
+            food += member.food;
+            saturation += member.saturation;
+        }
+        if (scheduled) return false;
+        scheduled = true;
+        return true;
+    }
+
+    /**
+     * A method to remove a player that left or was removed from the health bar.
+     * @param uuid uuid of the player
+     */
+    public synchronized void quit(UUID uuid) {
+        Member member = members.remove(uuid);
+        if (member == null) return;
+        food -= member.food;
+        saturation -= member.saturation;
+        if (members.isEmpty()) saturation = 0; //no rounding errors are carried over
+    }
+
+    /**
+     * A method to change the food level of a player.
+     * @param uuid uuid of the player
+     * @param foodLevel new food level of the player
+     */
+    public synchronized void updateFood(UUID uuid, int foodLevel) {
+        Member member = members.get(uuid);
+        if (member == null) return; //player is not online in this health bar
+        food += foodLevel - member.food;
+        member.food = foodLevel;
+    }
+
+    /**
+     * A method to change the food level and the saturation of a player.
+     * @param uuid uuid of the player
+     * @param foodLevel new food level of the player
+     * @param saturationLevel new saturation of the player
+     */
+    public synchronized void update(UUID uuid, int foodLevel, float saturationLevel) {
+        Member member = members.get(uuid);
+        if (member == null) return;
+        food += foodLevel - member.food;
+        saturation += saturationLevel - member.saturation;
+        member.food = foodLevel;
+        member.saturation = saturationLevel;
+    }
+
+    /**
+     * A method to get the mean food level of the online players.
+     * @return mean food level (0 if no player is online)
+     */
+    public synchronized double getMeanFood() {
+        return members.isEmpty() ? 0 : (double) food / members.size();
+    }
+
+    /**
+     * A method to get the level of the regeneration.
+     * @param minFood mean food level the players need
+     * @return level of the regeneration
+     */
+    public synchronized Level getLevel(int minFood) {
+        int count = members.size();
+        if (count == 0 || food < minFood * count) return Level.NONE;
+        if (food == 20 * count && saturation > 0) return Level.SATURATED;
+        return Level.NORMAL;
+    }
+
+    /**
+     * A method to take the health bar out of the schedule if no player is online anymore.
+     * @return true if the health bar was taken out of the schedule
+     */
+    synchronized boolean release() {
+        if (!members.isEmpty()) return false;
+        scheduled = false;
+        return true;
+    }
+
+    /**
+     * A method to mark the health bar as scheduled when the regeneration engine is started. The
+     * settings of a former engine are dropped.
+     * @return true if a player is online and the health bar needs to be scheduled
+     */
+    synchronized boolean claim() {
+        settings = null;
+        scheduled = !members.isEmpty();
+        return scheduled;
+    }
+
+}
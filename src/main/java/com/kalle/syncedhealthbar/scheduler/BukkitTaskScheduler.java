@@ -0,0 +1,50 @@
+package com.kalle.syncedhealthbar.scheduler;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * A class that schedules all tasks with the scheduler of Bukkit on the main thread.
+ */
+public class BukkitTaskScheduler extends TaskScheduler {
+
+    private Plugin plugin;
+
+    /**
+     * Class constructor.
+     * @param plugin plugin that owns the tasks
+     */
+    public BukkitTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean isRegionThreaded() {
+        return false;
+    }
+
+    @Override
+    public void run(Runnable task) {
+        plugin.getServer().getScheduler().runTask(plugin, task);
+    }
+
+    @Override
+    public Task runTimer(Runnable task, long delay, long period) {
+        BukkitTask bukkitTask = plugin.getServer().getScheduler().runTaskTimer(plugin, task, delay, period);
+        return () -> {
+            if (bukkitTask != null) bukkitTask.cancel();
+        };
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task) {
+        task.run(); //every entity is owned by the main thread
+    }
+
+    @Override
+    public void runForEntityLater(Entity entity, Runnable task, long delay) {
+        plugin.getServer().getScheduler().runTaskLater(plugin, task, delay);
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.kalle.syncedhealthbar.scheduler;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Consumer;
+
+/**
+ * A class that schedules the tasks with the region schedulers of Folia. The plugin is compiled
+ * against the Spigot API, so the schedulers are called by reflection. The methods are looked up
+ * once when the plugin gets enabled.
+ */
+public class FoliaTaskScheduler extends TaskScheduler {
+
+    private static final String PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+
+    private Plugin plugin;
+    private Object globalScheduler; //scheduler of the global region
+    private Method globalExecute; //GlobalRegionScheduler.execute(Plugin, Runnable)
+    private Method globalRunAtFixedRate; //GlobalRegionScheduler.runAtFixedRate(Plugin, Consumer, long, long)
+    private Method entityScheduler; //Entity.getScheduler()
+    private Method entityExecute; //EntityScheduler.execute(Plugin, Runnable, Runnable, long)
+    private Method cancel; //ScheduledTask.cancel()
+
+    /**
+     * Class constructor.
+     * @param plugin plugin that owns the tasks
+     * @throws ReflectiveOperationException the schedulers of Folia could not be found
+     */
+    public FoliaTaskScheduler(Plugin plugin) throws ReflectiveOperationException {
+        this.plugin = plugin;
+        Class<?> global = Class.forName(PACKAGE + "GlobalRegionScheduler");
+        Class<?> entity = Class.forName(PACKAGE + "EntityScheduler");
+        globalScheduler = plugin.getServer().getClass().getMethod("getGlobalRegionScheduler").invoke(plugin.getServer());
+        globalExecute = global.getMethod("execute", Plugin.class, Runnable.class);
+        globalRunAtFixedRate = global.getMethod("runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class);
+        entityScheduler = Entity.class.getMethod("getScheduler");
+        entityExecute = entity.getMethod("execute", Plugin.class, Runnable.class, Runnable.class, long.class);
+        cancel = Class.forName(PACKAGE + "ScheduledTask").getMethod("cancel");
+    }
+
+    @Override
+    public boolean isRegionThreaded() {
+        return true;
+    }
+
+    @Override
+    public void run(Runnable task) {
+        invoke(globalExecute, globalScheduler, plugin, task);
+    }
+
+    @Override
+    public Task runTimer(Runnable task, long delay, long period) {
+        Consumer<Object> consumer = scheduled -> task.run();
+        Object scheduled = invoke(globalRunAtFixedRate, globalScheduler, plugin, consumer, Math.max(1, delay), Math.max(1, period));
+        return () -> invoke(cancel, scheduled);
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task) {
+        runForEntityLater(entity, task, 1);
+    }
+
+    @Override
+    public void runForEntityLater(Entity entity, Runnable task, long delay) {
+        Object scheduler = invoke(entityScheduler, entity);
+        if (scheduler == null) { //entity is not known to the server (e.g. a simulated player)
+            task.run();
+            return;
+        }
+        invoke(entityExecute, scheduler, plugin, task, null, Math.max(1, delay)); //task is dropped if the entity is removed
+    }
+
+    /**
+     * A method to call a method of the schedulers.
+     * @param method method that gets called
+     * @param target object the method is called on
+     * @param args arguments of the method
+     * @return result of the method
+     */
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
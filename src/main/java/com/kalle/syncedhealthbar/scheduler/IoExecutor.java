@@ -0,0 +1,170 @@
+package com.kalle.syncedhealthbar.scheduler;
+
+import com.kalle.syncedhealthbar.metrics.ExecutorStats;
+import com.kalle.syncedhealthbar.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A class for the executors of blocking work (writing the storage, the history and files of the
+ * commands). On Java 21 and later the tasks run on virtual threads, on older versions on a bounded
+ * count of platform threads (see IoThreads). Every executor records how many tasks wait and how
+ * long they wait and run. All executors are remembered until they are shut down, so the plugin can
+ * close the ones that are still open in the reverse order they were created when it gets disabled.
+ */
+public class IoExecutor extends AbstractExecutorService {
+
+    private static final int MAX_POOL_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())); //platform threads of the shared executor
+    private static final ArrayList<IoExecutor> open = new ArrayList<IoExecutor>(); //executors that are not shut down in the order they were created
+    private static IoExecutor shared; //executor of the blocking tasks that do not need an order (null until it is needed)
+
+    private ExecutorService executor;
+    private ExecutorStats stats;
+
+    /**
+     * Class constructor.
+     * @param name name of the executor
+     * @param executor executor that runs the tasks
+     */
+    private IoExecutor(String name, ExecutorService executor) {
+        this.executor = executor;
+        this.stats = Metrics.get().executor(name, IoThreads.kind());
+        synchronized (open) {
+            open.add(this);
+        }
+    }
+
+    /**
+     * A method to create an executor that runs the tasks one after another in the order they were submitted.
+     * @param name name of the executor (the thread is named "SyncedHealthBar-<name>")
+     * @return executor of one thread
+     */
+    public static IoExecutor serial(String name) {
+        return new IoExecutor(name, IoThreads.serial("SyncedHealthBar-" + name));
+    }
+
+    /**
+     * A method to get the executor of the blocking tasks that do not need an order (e.g. reading a
+     * file of a command). It is created on the first call.
+     * @return shared executor
+     */
+    public static IoExecutor shared() {
+        synchronized (open) {
+            if (shared == null || shared.isShutdown()) shared = new IoExecutor("IO", IoThreads.pool("SyncedHealthBar-IO", MAX_POOL_THREADS));
+            return shared;
+        }
+    }
+
+    /**
+     * A method to create a thread of blocking work that is not started yet (e.g. a thread that
+     * reads a connection).
+     * @param name name of the thread
+     * @param task task of the thread
+     * @return virtual thread on Java 21 and later, otherwise a daemon thread
+     */
+    public static Thread newThread(String name, Runnable task) {
+        return IoThreads.newThread(name, task);
+    }
+
+    /**
+     * A method to shut down the executors that are still open in the reverse order they were
+     * created and wait for their tasks, so no task of the plugin runs after it was disabled.
+     * @param timeout time in ms to wait for every executor
+     * @param logger logger for the executors that did not finish in time
+     */
+    public static void shutdownAll(long timeout, Logger logger) {
+        ArrayList<IoExecutor> executors;
+        synchronized (open) {
+            executors = new ArrayList<IoExecutor>(open);
+            shared = null;
+        }
+        for (int i = executors.size() - 1 ; i >= 0 ; i--) {
+            IoExecutor executor = executors.get(i);
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                    logger.warning("The executor " + executor.stats.getName() + " did not finish its tasks in time, they are stopped!");
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A method to get the statistics of the executor.
+     * @return statistics of the executor
+     */
+    public ExecutorStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        stats.submitted();
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                stats.started(start - submitted);
+                try {
+                    task.run();
+                } finally {
+                    stats.finished(System.nanoTime() - start);
+                }
+            });
+        } catch (RejectedExecutionException e) { //executor was shut down
+            stats.dropped();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+        closed();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> dropped = executor.shutdownNow();
+        for (int i = 0 ; i < dropped.size() ; i++) {
+            stats.dropped();
+        }
+        closed();
+        return dropped;
+    }
+
+    /**
+     * A method to forget the executor after it was shut down.
+     */
+    private void closed() {
+        synchronized (open) {
+            open.remove(this);
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+}
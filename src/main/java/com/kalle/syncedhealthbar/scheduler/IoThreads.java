@@ -0,0 +1,64 @@
+package com.kalle.syncedhealthbar.scheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class to create the threads of blocking work. This is the version for Java 8 to 20, which
+ * uses platform threads. The multi-release jar replaces it on Java 21 and later with the version
+ * in src/main/java21, which uses virtual threads.
+ */
+final class IoThreads {
+
+    private IoThreads() {
+    }
+
+    /**
+     * A method to get the kind of the threads for the statistics (not a constant, so it is not
+     * copied into the classes that use it when they are compiled).
+     * @return kind of the threads
+     */
+    static String kind() {
+        return "platform";
+    }
+
+    /**
+     * A method to create an executor that runs the tasks one after another in the order they were submitted.
+     * @param name name of the thread
+     * @return executor with one daemon thread
+     */
+    static ExecutorService serial(String name) {
+        return Executors.newSingleThreadExecutor(r -> newThread(name, r));
+    }
+
+    /**
+     * A method to create an executor that runs the tasks at the same time.
+     * @param name prefix of the names of the threads
+     * @param maxThreads maximum count of threads, further tasks wait in the queue
+     * @return executor with a bounded count of daemon threads (idle threads end after a minute)
+     */
+    static ExecutorService pool(String name, int maxThreads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                r -> newThread(name + "-" + count.incrementAndGet(), r));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * A method to create a thread that is not started yet (e.g. a thread that reads a connection).
+     * @param name name of the thread
+     * @param task task of the thread
+     * @return daemon thread
+     */
+    static Thread newThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.kalle.syncedhealthbar.scheduler;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * A class to schedule the tasks of the plugin on the thread they need to run on. On classic servers
+ * everything runs on the main thread. On Folia the data of the plugin is changed on the global
+ * region thread and the health of a player can only be set on the thread of his region, so those
+ * tasks are passed to the scheduler of the player. The kind of server is detected at runtime.
+ */
+public abstract class TaskScheduler {
+
+    private static final String FOLIA_SERVER = "io.papermc.paper.threadedregions.RegionizedServer";
+    private static TaskScheduler scheduler; //scheduler of the plugin (null if the plugin is not enabled)
+
+    /**
+     * A task that can be cancelled.
+     */
+    public interface Task {
+        void cancel();
+    }
+
+    /**
+     * A method to create the scheduler that fits the server.
+     * @param plugin plugin that owns the tasks
+     * @return created scheduler
+     */
+    public static TaskScheduler init(Plugin plugin) {
+        scheduler = null;
+        if (isFolia()) {
+            try {
+                scheduler = new FoliaTaskScheduler(plugin);
+            } catch (ReflectiveOperationException e) { //API changed, the classic scheduler is tried instead
+                plugin.getLogger().severe("Could not use the schedulers of Folia: " + e);
+            }
+        }
+        if (scheduler == null) scheduler = new BukkitTaskScheduler(plugin);
+        return scheduler;
+    }
+
+    /**
+     * A method to get the scheduler of the plugin.
+     * @return scheduler or null if the plugin is not enabled
+     */
+    public static TaskScheduler get() {
+        return scheduler;
+    }
+
+    /**
+     * A method to check if the server runs its regions on several threads (Folia).
+     * @return true if the server is a Folia server
+     */
+    public static boolean isFolia() {
+        try {
+            Class.forName(FOLIA_SERVER);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A method to check if the health of players needs to be set on the threads of their regions.
+     * @return true if the regions run on several threads
+     */
+    public abstract boolean isRegionThreaded();
+
+    /**
+     * A method to run a task on the next tick on the main thread (global region thread on Folia).
+     * @param task task that gets executed
+     */
+    public abstract void run(Runnable task);
+
+    /**
+     * A method to run a task repeatedly on the main thread (global region thread on Folia).
+     * @param task task that gets executed
+     * @param delay ticks until the first execution (at least 1)
+     * @param period ticks between the executions
+     * @return task to cancel the executions
+     */
+    public abstract Task runTimer(Runnable task, long delay, long period);
+
+    /**
+     * A method to run a task on the thread that owns an entity. The task is dropped if the entity
+     * is removed before.
+     * @param entity entity the task works on
+     * @param task task that gets executed
+     */
+    public abstract void runForEntity(Entity entity, Runnable task);
+
+    /**
+     * A method to run a task on the thread that owns an entity after a delay. The task is dropped
+     * if the entity is removed before.
+     * @param entity entity the task works on
+     * @param task task that gets executed
+     * @param delay ticks until the execution (at least 1)
+     */
+    public abstract void runForEntityLater(Entity entity, Runnable task, long delay);
+
+}
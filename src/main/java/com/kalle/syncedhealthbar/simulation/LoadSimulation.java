@@ -0,0 +1,299 @@
+package com.kalle.syncedhealthbar.simulation;
+
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Events.PlayerDamage;
+import com.kalle.syncedhealthbar.Events.PlayerHeal;
+import com.kalle.syncedhealthbar.Events.PlayerJoin;
+import com.kalle.syncedhealthbar.Events.PlayerQuit;
+import com.kalle.syncedhealthbar.Events.PlayerRespawn;
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.Exceptions.PlayerAlreadyInListException;
+import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.HealthPipeline;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityRegainHealthEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.plugin.Plugin;
+
+import javax.naming.NameAlreadyBoundException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A class that simulates load on the plugin to measure its impact on the tick time. It creates
+ * health bars with simulated players and fires damage, heal, join/quit and respawn events at the
+ * configured rates into the same listeners the server calls. The events are not passed to the
+ * server, so other plugins never see the simulated players. The simulated health bars are kept in a
+ * config of their own that is never written, and their names are left out of the history, the
+ * events and the sync while the simulation runs. Every second the time spent in the
+ * plugin per tick, the writes of the storage and the longest tick are reported. When the
+ * simulation ends, all simulated players leave and the health bars are deleted again.
+ */
+public class LoadSimulation {
+
+    public static final String PREFIX = "sim-"; //prefix of the names of the simulated health bars
+    private static final Set<String> simulated = ConcurrentHashMap.newKeySet(); //names of the simulated health bars while they exist (read on every thread)
+    private static final int DAMAGE = 0, HEAL = 1, JOIN_QUIT = 2, RESPAWN = 3; //kinds of the simulated events
+
+    private Plugin plugin;
+    private Config config; //config of the plugin whose writes are measured
+    private Config records; //config of the simulated health bars, only kept in memory (null if no simulation is running)
+    private HealthPipeline pipeline;
+    private PlayerDamage damageListener;
+    private PlayerHeal healListener;
+    private PlayerJoin joinListener;
+    private PlayerQuit quitListener;
+    private PlayerRespawn respawnListener;
+
+    private CommandSender sender; //sender who started the simulation and gets the reports
+    private ArrayList<HealthBar> bars = new ArrayList<HealthBar>(); //simulated health bars
+    private ArrayList<Player> members = new ArrayList<Player>(); //all simulated players
+    private ArrayList<Player> online = new ArrayList<Player>(); //simulated players that are online
+    private Random random = new Random();
+    private TaskScheduler.Task task;
+    private Location spawn = new Location((World) null, 0, 0, 0); //respawn location of the simulated players
+
+    private double[] rates = new double[4]; //events per tick of every kind
+    private double[] due = new double[4]; //fractions of events of every kind that are carried to the next tick
+
+    private int ticks; //ticks the simulation has run
+    private int duration; //ticks the simulation runs
+    private long lastTick; //time in ns the last tick started
+    private long lastApplyTime; //time of the pipeline at the last tick
+    private long lastFlushTime; //time of the persistence at the last tick
+    private long secondPluginTime, secondMaxPluginTime, secondPeakTick, secondWrites; //values of the current second
+    private long totalPluginTime, maxPluginTime, peakTick, startWrites; //values of the whole simulation
+
+    /**
+     * Class constructor.
+     * @param plugin plugin that owns the task of the simulation
+     * @param config config of the plugin whose writes are measured
+     * @param pipeline pipeline that applies the damage and healing
+     * @param damageListener listener of the damage events
+     * @param healListener listener of the heal events
+     * @param quitListener listener of the quit events
+     * @param respawnListener listener of the respawn events
+     */
+    public LoadSimulation(Plugin plugin, Config config, HealthPipeline pipeline, PlayerDamage damageListener, PlayerHeal healListener,
+                          PlayerQuit quitListener, PlayerRespawn respawnListener) {
+        this.plugin = plugin;
+        this.config = config;
+        this.pipeline = pipeline;
+        this.damageListener = damageListener;
+        this.healListener = healListener;
+        this.quitListener = quitListener;
+        this.respawnListener = respawnListener;
+    }
+
+    /**
+     * A method to check if a health bar belongs to the running simulation (can be called on every
+     * thread). The names are unique across both configs, since the registry holds all health bars.
+     * @param hbName name of the health bar
+     * @return true if the health bar is simulated
+     */
+    public static boolean isSimulated(String hbName) {
+        return simulated.contains(hbName);
+    }
+
+    /**
+     * A method to check if a simulation is running.
+     * @return true if a simulation is running
+     */
+    public boolean isRunning() {
+        return task != null;
+    }
+
+    /**
+     * A method to create the simulated health bars and players and to start the simulation.
+     * @param sender sender who gets the reports
+     * @param barCount count of health bars
+     * @param membersPerBar count of players of every health bar
+     * @param seconds duration of the simulation
+     * @param damage damage events per second
+     * @param heal heal events per second
+     * @param joinQuit join and quit events per second
+     * @param respawn respawn events per second
+     * @throws NameAlreadyBoundException a health bar with the name of a simulated one already exists
+     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     */
+    public void start(CommandSender sender, int barCount, int membersPerBar, int seconds, double damage, double heal, double joinQuit, double respawn)
+            throws NameAlreadyBoundException, CorruptedConfigException {
+        this.sender = sender;
+        records = new Config(plugin); //never attached, so nothing is loaded or written
+        joinListener = new PlayerJoin(records); //finds the simulated players in their own config
+        try {
+            for (int i = 0 ; i < barCount ; i++) {
+                String name = PREFIX + i;
+                if (HealthBar.getRegistry().contains(name)) throw new NameAlreadyBoundException("The name is already taken.");
+                simulated.add(name); //before the health bar is created, so its creation is left out as well
+                HealthBar hb = new HealthBar(records, name);
+                bars.add(hb);
+                for (int j = 0 ; j < membersPerBar ; j++) {
+                    Player player = SimulatedPlayer.create("sim" + i + "_" + j);
+                    hb.addPlayer(player); //player is online from the start
+                    members.add(player);
+                    online.add(player);
+                }
+            }
+        } catch (PlayerAlreadyInListException e) { //the players are new, so this can not happen
+            cleanUp();
+            throw new CorruptedConfigException("CONFIG ERROR: simulated player already assigned!");
+        } catch (NameAlreadyBoundException | CorruptedConfigException e) {
+            cleanUp();
+            throw e;
+        }
+        rates = new double[] {damage / 20, heal / 20, joinQuit / 20, respawn / 20};
+        due = new double[4];
+        ticks = 0;
+        duration = seconds * 20;
+        lastTick = 0;
+        lastApplyTime = pipeline.getApplyTime();
+        lastFlushTime = config.getPersistence().getFlushTime();
+        totalPluginTime = maxPluginTime = peakTick = 0;
+        startWrites = secondWrites = config.getPersistence().getWriteCount();
+        resetSecond();
+        task = TaskScheduler.get().runTimer(this::tick, 1, 1);
+    }
+
+    /**
+     * A method executed every tick to fire the events of the tick and to measure the times.
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        if (lastTick != 0) { //time since the last tick started is the length of the last tick
+            long tick = now - lastTick;
+            secondPeakTick = Math.max(secondPeakTick, tick);
+            peakTick = Math.max(peakTick, tick);
+        }
+        lastTick = now;
+        //time of the tasks of the plugin since the last tick (applying the changes, taking snapshots)
+        long pluginTime = pipeline.getApplyTime() - lastApplyTime + config.getPersistence().getFlushTime() - lastFlushTime;
+        for (int i = due(DAMAGE) ; i > 0 && !online.isEmpty() ; i--) {
+            Player player = online.get(random.nextInt(online.size()));
+            long start = System.nanoTime();
+            damageListener.onDamage(new EntityDamageEvent(player, EntityDamageEvent.DamageCause.CUSTOM, 1));
+            pluginTime += System.nanoTime() - start;
+        }
+        for (int i = due(HEAL) ; i > 0 && !online.isEmpty() ; i--) {
+            Player player = online.get(random.nextInt(online.size()));
+            long start = System.nanoTime();
+            healListener.onHeal(new EntityRegainHealthEvent(player, 1, EntityRegainHealthEvent.RegainReason.SATIATED));
+            pluginTime += System.nanoTime() - start;
+        }
+        for (int i = due(JOIN_QUIT) ; i > 0 && !members.isEmpty() ; i--) {
+            Player player = members.get(random.nextInt(members.size()));
+            boolean isOnline = player.isOnline();
+            SimulatedPlayer.setOnline(player, !isOnline);
+            long start = System.nanoTime();
+            if (isOnline) quitListener.onQuit(new PlayerQuitEvent(player, null));
+            else joinListener.onJoin(new PlayerJoinEvent(player, null));
+            pluginTime += System.nanoTime() - start;
+            if (isOnline) online.remove(player);
+            else online.add(player);
+        }
+        for (int i = due(RESPAWN) ; i > 0 && !online.isEmpty() ; i--) {
+            Player player = online.get(random.nextInt(online.size()));
+            long start = System.nanoTime();
+            respawnListener.onRespawn(new PlayerRespawnEvent(player, spawn, false, false));
+            pluginTime += System.nanoTime() - start;
+        }
+        lastApplyTime = pipeline.getApplyTime();
+        lastFlushTime = config.getPersistence().getFlushTime();
+        secondPluginTime += pluginTime;
+        secondMaxPluginTime = Math.max(secondMaxPluginTime, pluginTime);
+        totalPluginTime += pluginTime;
+        maxPluginTime = Math.max(maxPluginTime, pluginTime);
+        ticks++;
+        if (ticks % 20 == 0) report();
+        if (ticks >= duration) stop();
+    }
+
+    /**
+     * A method to get how many events of a kind are fired in this tick.
+     * @param kind kind of the events
+     * @return count of events
+     */
+    private int due(int kind) {
+        due[kind] += rates[kind];
+        int count = (int) due[kind];
+        due[kind] -= count;
+        return count;
+    }
+
+    /**
+     * A method to send the values of the last second to the sender.
+     */
+    private void report() {
+        long writes = config.getPersistence().getWriteCount();
+        sender.sendMessage(ChatColor.GRAY + "[hbsimulate] " + (ticks / 20) + "s: plugin " + ms(secondPluginTime / 20) + " ms/tick (max " + ms(secondMaxPluginTime)
+                + " ms), " + (writes - secondWrites) + " writes/s, peak tick " + ms(secondPeakTick) + " ms");
+        secondWrites = writes;
+        resetSecond();
+    }
+
+    /**
+     * A method to reset the values of the current second.
+     */
+    private void resetSecond() {
+        secondPluginTime = 0;
+        secondMaxPluginTime = 0;
+        secondPeakTick = 0;
+    }
+
+    /**
+     * A method to stop the simulation, send the summary and remove all simulated health bars and players.
+     */
+    public void stop() {
+        if (task == null) return; //no simulation is running
+        task.cancel();
+        task = null;
+        double seconds = Math.max(1, ticks) / 20.0;
+        long writes = config.getPersistence().getWriteCount() - startWrites;
+        sender.sendMessage(ChatColor.GREEN + "[hbsimulate] Simulation finished after " + ticks + " ticks: plugin " + ms(totalPluginTime / Math.max(1, ticks))
+                + " ms/tick (max " + ms(maxPluginTime) + " ms), " + String.format("%.1f", writes / seconds) + " writes/s, peak tick " + ms(peakTick) + " ms");
+        cleanUp();
+    }
+
+    /**
+     * A method to let all simulated players leave and delete the simulated health bars.
+     */
+    private void cleanUp() {
+        for (Player i : online) {
+            SimulatedPlayer.setOnline(i, false);
+            quitListener.onQuit(new PlayerQuitEvent(i, null));
+        }
+        for (HealthBar i : bars) {
+            try {
+                i.deleteHealthBar(); //deletes the entries of the simulated players as well
+            } catch (CorruptedConfigException e) {
+                plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + e.getMessage());
+            }
+        }
+        simulated.clear();
+        records = null;
+        joinListener = null;
+        bars.clear();
+        members.clear();
+        online.clear();
+    }
+
+    /**
+     * A method to format a time in ms.
+     * @param nanos time in ns
+     * @return time in ms with two decimals
+     */
+    private static String ms(long nanos) {
+        return String.format("%.2f", nanos / 1000000.0);
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.kalle.syncedhealthbar.simulation;
+
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+
+/**
+ * A class that stands in for a player during a load simulation. It only keeps the state the plugin
+ * uses (UUID, name, health and online state), every other method of the player does nothing. The
+ * player is never known to the server, so no other plugin can see it.
+ */
+public class SimulatedPlayer implements InvocationHandler {
+
+    private UUID uuid;
+    private String name;
+    private double health = 20;
+    private boolean online = true;
+
+    /**
+     * A method to create a simulated player.
+     * @param name name of the player
+     * @return player backed by a simulated player
+     */
+    public static Player create(String name) {
+        SimulatedPlayer handler = new SimulatedPlayer();
+        handler.uuid = UUID.randomUUID();
+        handler.name = name;
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[] {Player.class}, handler);
+    }
+
+    /**
+     * A method to set if a simulated player is online.
+     * @param player player created by create(name)
+     * @param online true if the player is online
+     */
+    public static void setOnline(Player player, boolean online) {
+        ((SimulatedPlayer) Proxy.getInvocationHandler(player)).online = online;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getUniqueId": return uuid;
+            case "getName": case "getDisplayName": return name;
+            case "getHealth": return health;
+            case "setHealth": health = (Double) args[0]; return null;
+            case "getMaxHealth": return 20D;
+            case "getFoodLevel": return 20;
+            case "isDead": return false;
+            case "isOnline": return online;
+            case "hashCode": return System.identityHashCode(proxy);
+            case "equals": return proxy == args[0];
+            case "toString": return "SimulatedPlayer{" + name + "}";
+        }
+        Class<?> type = method.getReturnType(); //every other method does nothing
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == double.class) return 0D;
+        if (type == float.class) return 0F;
+        if (type == long.class) return 0L;
+        if (type == int.class) return 0;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        return '\0';
+    }
+
+}
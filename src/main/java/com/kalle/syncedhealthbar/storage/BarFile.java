@@ -0,0 +1,463 @@
+package com.kalle.syncedhealthbar.storage;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+
+/**
+ * A class to export the health bars with their players to a file in the plugin folder and to
+ * import them again. Two formats are supported and picked by the extension of the file:
+ * - csv: one line per player ("bar,health,uuid,name,last_login"), health bars without players
+ *   have a line with empty player columns
+ * - jsonl: one JSON object per health bar and line ({"name", "health", "members": [{"uuid",
+ *   "name", "lastLogin"}]})
+ * Both formats are read and written line by line, so the file is never held in memory as a whole.
+ * Reading validates every line and collects the problems, the records are only used if there are
+ * none.
+ */
+public final class BarFile {
+
+    public static final String CSV = "csv";
+    public static final String JSONL = "jsonl";
+
+    private static final String CSV_HEADER = "bar,health,uuid,name,last_login";
+    private static final int MAX_ERRORS = 20; //problems that are kept with their line (all are counted)
+
+    private BarFile() {
+    }
+
+    /**
+     * A class to hold the records read from a file and the problems found.
+     */
+    public static class Result {
+
+        private LinkedHashMap<String, BarRecord> bars = new LinkedHashMap<String, BarRecord>(); //records by their name in the order of the file
+        private HashSet<UUID> members = new HashSet<UUID>(); //UUIDs of all players of the file
+        private ArrayList<String> errors = new ArrayList<String>(); //first problems with their line
+        private int errorCount = 0; //count of all problems
+        private long lines = 0; //count of the read lines
+
+        /**
+         * A method to get the records of the file.
+         * @return records of the health bars with their players in the order of the file
+         */
+        public Collection<BarRecord> getBars() {
+            return bars.values();
+        }
+
+        /**
+         * A method to get the count of the players of the file.
+         * @return count of the players
+         */
+        public int getMemberCount() {
+            return members.size();
+        }
+
+        /**
+         * A method to get the first problems found in the file.
+         * @return problems with their line
+         */
+        public ArrayList<String> getErrors() {
+            return errors;
+        }
+
+        /**
+         * A method to get the count of all problems found in the file.
+         * @return count of the problems
+         */
+        public int getErrorCount() {
+            return errorCount;
+        }
+
+        /**
+         * A method to get the count of the read lines.
+         * @return count of the lines
+         */
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * A method to add a problem of a line.
+         * @param message description of the problem
+         */
+        private void error(String message) {
+            if (errors.size() < MAX_ERRORS) errors.add("Line " + lines + ": " + message);
+            errorCount++;
+        }
+
+    }
+
+    /**
+     * A class to count the bytes read from a file for the progress.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) count += read;
+            return read;
+        }
+
+    }
+
+    /**
+     * A method to resolve the name of a file in the plugin folder.
+     * @param folder plugin folder
+     * @param name name of the file (relative to the plugin folder)
+     * @return file in the plugin folder
+     * @throws StorageException the file is outside of the plugin folder or has no supported extension
+     */
+    public static File resolve(File folder, String name) throws StorageException {
+        format(name);
+        try {
+            File file = new File(folder, name).getCanonicalFile();
+            if (!file.toPath().startsWith(folder.getCanonicalFile().toPath())) {
+                throw new StorageException("STORAGE ERROR: the file: '" + name + "' is not in the plugin folder!");
+            }
+            return file;
+        } catch (IOException e) {
+            throw new StorageException("STORAGE ERROR: the file: '" + name + "' can not be resolved!", e);
+        }
+    }
+
+    /**
+     * A method to get the format of a file by its extension.
+     * @param name name of the file
+     * @return CSV or JSONL
+     * @throws StorageException the extension is not supported
+     */
+    private static String format(String name) throws StorageException {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith("." + CSV)) return CSV;
+        if (lower.endsWith("." + JSONL)) return JSONL;
+        throw new StorageException("STORAGE ERROR: the file: '" + name + "' needs the extension ." + CSV + " or ." + JSONL + "!");
+    }
+
+    /**
+     * A method to write the records to a file. An existing file is replaced.
+     * @param file file in the plugin folder
+     * @param bars records of the health bars with their players
+     * @throws StorageException file could not be written and exception is thrown
+     */
+    public static void write(File file, Collection<BarRecord> bars) throws StorageException {
+        boolean csv = format(file.getName()).equals(CSV);
+        file.getParentFile().mkdirs();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            if (csv) {
+                out.write(CSV_HEADER);
+                out.write('\n');
+            }
+            for (BarRecord i : bars) {
+                if (csv) writeCsv(out, i);
+                else writeJson(out, i);
+            }
+        } catch (IOException e) {
+            throw new StorageException("STORAGE ERROR: could not write the file: '" + file.getName() + "'!", e);
+        }
+    }
+
+    /**
+     * A method to write the lines of a health bar in the CSV format.
+     * @param out writer of the file
+     * @param bar record of the health bar
+     * @throws IOException line could not be written
+     */
+    private static void writeCsv(Writer out, BarRecord bar) throws IOException {
+        String prefix = quote(bar.getName()) + "," + bar.getHealth() + ",";
+        if (bar.getMembers().isEmpty()) {
+            out.write(prefix + ",,\n");
+            return;
+        }
+        for (MemberRecord i : bar.getMembers()) {
+            out.write(prefix + i.getUniqueId() + "," + quote(i.getName()) + "," + i.getLastLogin() + "\n");
+        }
+    }
+
+    /**
+     * A method to write the line of a health bar in the JSONL format.
+     * @param out writer of the file
+     * @param bar record of the health bar
+     * @throws IOException line could not be written
+     */
+    private static void writeJson(Writer out, BarRecord bar) throws IOException {
+        JsonWriter json = new JsonWriter(out); //not closed, it would close the file
+        json.beginObject();
+        json.name("name").value(bar.getName());
+        json.name("health").value(bar.getHealth());
+        json.name("members").beginArray();
+        for (MemberRecord i : bar.getMembers()) {
+            json.beginObject();
+            json.name("uuid").value(i.getUniqueId().toString());
+            json.name("name").value(i.getName());
+            json.name("lastLogin").value(i.getLastLogin());
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        out.write('\n');
+    }
+
+    /**
+     * A method to quote a value of the CSV format if it contains a separator or a quote.
+     * @param value value of a column
+     * @return value that can be written
+     */
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * A method to read and validate the records of a file line by line.
+     * @param file file in the plugin folder
+     * @param progress gets the read part of the file in percent in steps of 10
+     * @return records and problems of the file
+     * @throws StorageException file could not be read and exception is thrown
+     */
+    public static Result read(File file, IntConsumer progress) throws StorageException {
+        boolean csv = format(file.getName()).equals(CSV);
+        Result result = new Result();
+        long now = System.currentTimeMillis(); //last login of players without one
+        long size = Math.max(1, file.length());
+        int reported = 0; //last reported percentage
+        try (CountingInputStream counter = new CountingInputStream(Files.newInputStream(file.toPath()));
+             BufferedReader in = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                result.lines++;
+                if (line.trim().isEmpty()) continue;
+                if (csv) readCsv(result, line, now);
+                else readJson(result, line, now);
+                int percent = (int) (counter.count * 10 / size) * 10; //read ahead of the buffer, so it is rounded down
+                if (percent > reported && percent < 100) {
+                    reported = percent;
+                    progress.accept(percent);
+                }
+            }
+        } catch (IOException e) {
+            throw new StorageException("STORAGE ERROR: could not read the file: '" + file.getName() + "'!", e);
+        }
+        return result;
+    }
+
+    /**
+     * A method to read a line of the CSV format.
+     * @param result records and problems read so far
+     * @param line line of the file
+     * @param now last login of players without one
+     */
+    private static void readCsv(Result result, String line, long now) {
+        if (result.lines == 1 && line.startsWith("bar,")) return; //header
+        ArrayList<String> columns = split(line);
+        if (columns == null) {
+            result.error("unclosed quote!");
+            return;
+        }
+        if (columns.size() != 2 && columns.size() != 5) {
+            result.error("expected the columns " + CSV_HEADER + "!");
+            return;
+        }
+        double health;
+        try {
+            health = Double.parseDouble(columns.get(1));
+        } catch (NumberFormatException e) {
+            result.error("health value '" + columns.get(1) + "' is no number!");
+            return;
+        }
+        BarRecord bar = bar(result, columns.get(0), health, true);
+        if (bar == null || columns.size() == 2 || columns.get(2).isEmpty()) return; //health bar without players
+        member(result, bar, columns.get(2), columns.get(3), columns.get(4).isEmpty() ? null : columns.get(4), now);
+    }
+
+    /**
+     * A method to split a line of the CSV format into its columns.
+     * @param line line of the file
+     * @return columns of the line or null if a quote is not closed
+     */
+    private static ArrayList<String> split(String line) {
+        ArrayList<String> columns = new ArrayList<String>();
+        StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0 ; i < line.length() ; i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') column.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') column.append(line.charAt(++i)); //escaped quote
+                else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(column.toString());
+                column.setLength(0);
+            } else {
+                column.append(c);
+            }
+        }
+        if (quoted) return null;
+        columns.add(column.toString());
+        return columns;
+    }
+
+    /**
+     * A method to read a line of the JSONL format.
+     * @param result records and problems read so far
+     * @param line line of the file
+     * @param now last login of players without one
+     */
+    private static void readJson(Result result, String line, long now) {
+        String name = null;
+        double health = Double.NaN;
+        ArrayList<String[]> members = new ArrayList<String[]>(); //uuid, name and last login of the players
+        try (JsonReader json = new JsonReader(new StringReader(line))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "name": name = json.nextString(); break;
+                    case "health": health = json.nextDouble(); break;
+                    case "members":
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            String[] member = new String[3];
+                            json.beginObject();
+                            while (json.hasNext()) {
+                                switch (json.nextName()) {
+                                    case "uuid": member[0] = json.nextString(); break;
+                                    case "name": member[1] = json.nextString(); break;
+                                    case "lastLogin": member[2] = json.nextString(); break; //numbers are read as strings as well
+                                    default: json.skipValue();
+                                }
+                            }
+                            json.endObject();
+                            members.add(member);
+                        }
+                        json.endArray();
+                        break;
+                    default: json.skipValue();
+                }
+            }
+            json.endObject();
+            if (json.peek() != JsonToken.END_DOCUMENT) {
+                result.error("only one health bar per line is allowed!");
+                return;
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) { //malformed JSON or wrong type of a value
+            result.error("invalid JSON (" + String.valueOf(e.getMessage()).split("\n")[0] + ")!"); //only the first line of the description
+            return;
+        }
+        if (name == null || Double.isNaN(health)) {
+            result.error("the health bar needs a name and a health value!");
+            return;
+        }
+        BarRecord bar = bar(result, name, health, false);
+        if (bar == null) return;
+        for (String[] i : members) {
+            member(result, bar, i[0], i[1], i[2], now);
+        }
+    }
+
+    /**
+     * A method to validate a health bar and get its record.
+     * @param result records and problems read so far
+     * @param name name of the health bar
+     * @param health health value of the health bar
+     * @param repeated true if the health bar can appear on several lines (csv)
+     * @return record of the health bar or null if it is invalid
+     */
+    private static BarRecord bar(Result result, String name, double health, boolean repeated) {
+        if (name.isEmpty() || name.matches(".*\\s.*")) { //commands can not address names with spaces
+            result.error("health bar name '" + name + "' is empty or contains spaces!");
+            return null;
+        }
+        if (Double.isNaN(health) || health > 20 || health < 0) { //health needs to be between 0 and 20 (infinite values are out of range as well)
+            result.error("health value " + health + " of the health bar '" + name + "' is not between 0 and 20!");
+            return null;
+        }
+        BarRecord bar = result.bars.get(name);
+        if (bar == null) {
+            bar = new BarRecord(name, health);
+            result.bars.put(name, bar);
+        } else if (!repeated) {
+            result.error("health bar '" + name + "' is duplicated!");
+            return null;
+        } else if (bar.getHealth() != health) {
+            result.error("health bar '" + name + "' has different health values!");
+            return null;
+        }
+        return bar;
+    }
+
+    /**
+     * A method to validate a player and add him to his health bar.
+     * @param result records and problems read so far
+     * @param bar record of the health bar
+     * @param uuid UUID of the player
+     * @param name name of the player
+     * @param lastLogin last login of the player (null if it is not known)
+     * @param now last login of players without one
+     */
+    private static void member(Result result, BarRecord bar, String uuid, String name, String lastLogin, long now) {
+        UUID id;
+        try {
+            id = UUID.fromString(uuid);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            result.error("player uuid '" + uuid + "' is invalid!");
+            return;
+        }
+        if (name == null || name.isEmpty()) {
+            result.error("player '" + uuid + "' has no name!");
+            return;
+        }
+        long login;
+        try {
+            login = lastLogin == null ? now : Long.parseLong(lastLogin);
+        } catch (NumberFormatException e) {
+            result.error("last login '" + lastLogin + "' of the player '" + name + "' is invalid!");
+            return;
+        }
+        if (!result.members.add(id)) { //every player can only be assigned to one health bar
+            result.error("player '" + name + "' (" + uuid + ") is duplicated!");
+            return;
+        }
+        bar.addMember(new MemberRecord(id, name, login));
+    }
+
+}
@@ -0,0 +1,573 @@
+package com.kalle.syncedhealthbar.storage;
+
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import com.kalle.syncedhealthbar.scheduler.IoExecutor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A class that appends every change of the records to a binary journal, so changes survive a crash
+ * between two snapshots of the storage. The journal is split into segments: when a snapshot is
+ * taken the current segment is closed and a new one is started, once the snapshot is written the
+ * closed segments are deleted (compaction). On startup all remaining segments are replayed on top
+ * of the records loaded from the storage.
+ * <p>
+ * The entries are only encoded by the thread that changes the records. They are queued and the
+ * journal thread writes them, so the main thread never waits for the disk. The journal thread
+ * writes all entries that are queued at once and forces them together (group commit), the policy
+ * only decides when it forces the segment: after every group (ALWAYS), every few ms (INTERVAL) or
+ * never (OS).
+ * <p>
+ * Every entry is stored as: length (int), CRC32 of the content (int), content (type byte and
+ * values). A torn entry at the end of a segment (crash while writing) is detected by its length
+ * or checksum and the segment is truncated before it. An entry with a wrong checksum in the middle
+ * of a segment is treated the same way, the entries behind it are not trusted anymore.
+ */
+public class HealthJournal {
+
+    /**
+     * The policies when the journal is forced to the disk.
+     */
+    public enum FsyncPolicy {
+        ALWAYS, //after every group of entries
+        INTERVAL, //every few ms
+        OS //whenever the operating system decides to
+    }
+
+    //types of the entries
+    private static final byte CREATE_BAR = 1;
+    private static final byte DELETE_BAR = 2;
+    private static final byte HEALTH = 3;
+    private static final byte ADD_MEMBER = 4;
+    private static final byte REMOVE_MEMBER = 5;
+    private static final byte UPDATE_MEMBER = 6;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final Object STOP = new Object(); //queued when the journal is closed
+
+    private File folder; //folder of the segments
+    private FsyncPolicy policy;
+    private long fsyncInterval; //interval in ms of the INTERVAL policy
+    private Logger logger;
+
+    private FileChannel channel; //channel of the current segment (journal thread)
+    private long segment; //number of the last segment that was started
+    private ByteBuffer buffer = ByteBuffer.allocate(1024); //reused buffer to encode the entries
+    private CRC32 crc = new CRC32();
+    private ByteArrayOutputStream batch; //entries of the current batch (null if no batch is running)
+    private LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<Object>(); //encoded entries and rotations in the order they were made
+    private Thread writer; //journal thread that writes and forces the segments (null until the journal is opened)
+    private boolean unsynced = false; //true if entries were written since the last force (journal thread)
+    private long lastForce = 0; //time in ms of the last force (journal thread)
+    private boolean failed = false; //true if an entry could not be written (reported once, journal thread)
+
+    /**
+     * A class to represent a closed segment that can be deleted once the snapshot taken at the
+     * time it was closed is written. The journal thread closes it once it wrote the entries that
+     * were queued before the rotation.
+     */
+    public static class Segment {
+
+        private long number;
+        private CountDownLatch done = new CountDownLatch(1); //counted down once the journal thread switched the segment
+        private volatile boolean closed = false; //false if the next segment could not be created and the entries are still appended to this one
+
+        private Segment(long number) {
+            this.number = number;
+        }
+
+    }
+
+    /**
+     * Class constructor.
+     * @param folder folder of the segments
+     * @param policy policy when the journal is forced to the disk
+     * @param fsyncInterval interval in ms of the INTERVAL policy
+     * @param logger logger to report errors
+     */
+    public HealthJournal(File folder, FsyncPolicy policy, long fsyncInterval, Logger logger) {
+        this.folder = folder;
+        this.policy = policy;
+        this.fsyncInterval = fsyncInterval;
+        this.logger = logger;
+    }
+
+    /**
+     * A method to get the numbers of all segments in the folder in ascending order.
+     * @return numbers of the segments
+     */
+    private long[] segments() {
+        File[] files = folder.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) return new long[0];
+        long[] numbers = new long[files.length];
+        int count = 0;
+        for (File i : files) {
+            try {
+                numbers[count++] = Long.parseLong(i.getName().substring(PREFIX.length(), i.getName().length() - SUFFIX.length()));
+            } catch (NumberFormatException e) { //not a segment of the journal
+                count--;
+            }
+        }
+        numbers = Arrays.copyOf(numbers, count);
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * A method to get the file of a segment.
+     * @param number number of the segment
+     * @return file of the segment
+     */
+    private File file(long number) {
+        return new File(folder, PREFIX + number + SUFFIX);
+    }
+
+    /**
+     * A method to replay all segments on top of the records loaded from the storage.
+     * @param bars records loaded from the storage (get changed)
+     * @return count of replayed entries
+     * @throws StorageException a segment could not be read and exception is thrown
+     */
+    public int replay(ArrayList<BarRecord> bars) throws StorageException {
+        HashMap<String, BarRecord> byName = new HashMap<String, BarRecord>();
+        HashMap<UUID, BarRecord> byMember = new HashMap<UUID, BarRecord>();
+        for (BarRecord i : bars) {
+            byName.put(i.getName(), i);
+            for (MemberRecord j : i.getMembers()) {
+                byMember.put(j.getUniqueId(), i);
+            }
+        }
+        int count = 0;
+        for (long i : segments()) { //segments are replayed in the order they were written
+            try (FileChannel in = FileChannel.open(file(i).toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer data = ByteBuffer.allocate((int) in.size());
+                while (data.hasRemaining() && in.read(data) >= 0) {
+                    //read the whole segment
+                }
+                data.flip();
+                while (data.remaining() >= 8) { //loop through the entries
+                    int start = data.position();
+                    int length = data.getInt();
+                    int checksum = data.getInt();
+                    if (length <= 0 || length > data.remaining()) { //torn entry
+                        data.position(start);
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(data.array(), data.position(), length);
+                    if ((int) crc.getValue() != checksum) { //torn or corrupted entry
+                        data.position(start);
+                        break;
+                    }
+                    ByteBuffer entry = ByteBuffer.wrap(data.array(), data.position(), length);
+                    data.position(data.position() + length);
+                    apply(entry, bars, byName, byMember);
+                    count++;
+                }
+                if (data.hasRemaining()) { //cut off the torn entry and everything behind it, so later entries are not appended behind it
+                    int valid = data.limit() - data.remaining();
+                    logger.warning("Journal segment " + i + " has an incomplete or corrupted entry, it was cut off at byte " + valid + ".");
+                    in.truncate(valid);
+                }
+            } catch (IOException | RuntimeException e) {
+                throw new StorageException("STORAGE ERROR: could not replay the journal segment " + i + "!", e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A method to apply one entry of the journal to the records.
+     * @param entry content of the entry
+     * @param bars records of all health bars
+     * @param byName records of the health bars by their name
+     * @param byMember records of the health bars by the UUIDs of their players
+     */
+    private void apply(ByteBuffer entry, ArrayList<BarRecord> bars, HashMap<String, BarRecord> byName, HashMap<UUID, BarRecord> byMember) {
+        byte type = entry.get();
+        if (type == CREATE_BAR) {
+            String name = readString(entry);
+            double health = entry.getDouble();
+            if (byName.containsKey(name)) return; //already part of the snapshot
+            BarRecord bar = new BarRecord(name, health);
+            bars.add(bar);
+            byName.put(name, bar);
+        } else if (type == DELETE_BAR) {
+            BarRecord bar = byName.remove(readString(entry));
+            if (bar == null) return;
+            bars.remove(bar);
+            for (MemberRecord i : bar.getMembers()) {
+                byMember.remove(i.getUniqueId());
+            }
+        } else if (type == HEALTH) {
+            BarRecord bar = byName.get(readString(entry));
+            double health = entry.getDouble();
+            if (bar != null) bar.setHealth(health);
+        } else if (type == ADD_MEMBER) {
+            BarRecord bar = byName.get(readString(entry));
+            UUID uuid = new UUID(entry.getLong(), entry.getLong());
+            String name = readString(entry);
+            MemberRecord member = new MemberRecord(uuid, name, entry.getLong());
+            if (bar == null) return;
+            removeMember(uuid, byMember); //the player can only be assigned once
+            bar.addMember(member);
+            byMember.put(uuid, bar);
+        } else if (type == REMOVE_MEMBER) {
+            removeMember(new UUID(entry.getLong(), entry.getLong()), byMember);
+        } else if (type == UPDATE_MEMBER) {
+            UUID uuid = new UUID(entry.getLong(), entry.getLong());
+            String name = readString(entry);
+            long lastLogin = entry.getLong();
+            BarRecord bar = byMember.get(uuid);
+            if (bar == null) return;
+            MemberRecord member = bar.getMember(uuid);
+            member.setName(name);
+            member.setLastLogin(lastLogin);
+        }
+    }
+
+    /**
+     * A method to remove a player from the health bar he is assigned to while replaying.
+     * @param uuid UUID of the player
+     * @param byMember records of the health bars by the UUIDs of their players
+     */
+    private void removeMember(UUID uuid, HashMap<UUID, BarRecord> byMember) {
+        BarRecord bar = byMember.remove(uuid);
+        if (bar != null) bar.removeMember(uuid);
+    }
+
+    /**
+     * A method to open a new segment for the entries and start the journal thread.
+     * @throws StorageException segment could not be created and exception is thrown
+     */
+    public void open() throws StorageException {
+        folder.mkdirs();
+        long[] existing = segments();
+        segment = existing.length == 0 ? 0 : existing[existing.length - 1] + 1;
+        channel = openSegment(segment);
+        lastForce = System.currentTimeMillis();
+        writer = IoExecutor.newThread("SyncedHealthBar-Journal", this::run); //virtual thread on Java 21
+        writer.start();
+    }
+
+    /**
+     * A method to create the file of a segment.
+     * @param number number of the segment
+     * @return channel to append to the segment
+     * @throws StorageException segment could not be created and exception is thrown
+     */
+    private FileChannel openSegment(long number) throws StorageException {
+        try {
+            return FileChannel.open(file(number).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new StorageException("STORAGE ERROR: could not create the journal segment " + number + "!", e);
+        }
+    }
+
+    /**
+     * A method to close the current segment and continue with a new one (when a snapshot is taken).
+     * The entries that are queued before are still written to the closed segment.
+     * @return the closed segment
+     */
+    public Segment rotate() {
+        Segment closed = new Segment(segment++);
+        queue.add(closed);
+        return closed;
+    }
+
+    /**
+     * A method to delete all segments up to the passed one (when the snapshot that contains their
+     * entries is written). Waits until the journal thread closed the segment.
+     * @param closed last segment that is contained in the written snapshot
+     */
+    public void compact(Segment closed) {
+        try {
+            if (!closed.done.await(30, TimeUnit.SECONDS)) return; //segment is compacted with a later snapshot
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!closed.closed) return; //entries after the rotation were appended to the segment as well
+        for (long i : segments()) {
+            if (i > closed.number) break;
+            if (!file(i).delete()) {
+                logger.warning("Could not delete the journal segment " + i + ".");
+            }
+        }
+    }
+
+    /**
+     * A method to write the queued entries, force and close the current segment and stop the
+     * journal thread.
+     */
+    public void close() {
+        if (writer == null) return; //journal was never opened
+        queue.add(STOP);
+        try {
+            writer.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) logger.warning("The journal could not be closed in time, the last changes might be lost!");
+        writer = null;
+    }
+
+    /**
+     * The method executed by the journal thread. It writes all queued entries at once and forces
+     * them by the policy until the journal is closed.
+     */
+    private void run() {
+        ArrayList<Object> group = new ArrayList<Object>();
+        boolean stop = false;
+        while (!stop) {
+            try {
+                Object first;
+                if (policy == FsyncPolicy.INTERVAL && unsynced) { //wake up when the next force is due
+                    first = queue.poll(Math.max(1, lastForce + fsyncInterval - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } else {
+                    first = queue.take();
+                }
+                if (first != null) {
+                    group.add(first);
+                    queue.drainTo(group); //everything that was queued in the meantime is written together
+                }
+            } catch (InterruptedException e) {
+                stop = true;
+            }
+            for (Object i : group) {
+                if (i == STOP) stop = true;
+                else if (i instanceof Segment) switchSegment((Segment) i);
+                else write((byte[]) i);
+            }
+            group.clear();
+            if (stop || policy == FsyncPolicy.ALWAYS || (policy == FsyncPolicy.INTERVAL && System.currentTimeMillis() - lastForce >= fsyncInterval)) force();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not close the journal.", e);
+        }
+    }
+
+    /**
+     * A method to append encoded entries to the current segment (journal thread).
+     * @param entries encoded entries
+     */
+    private void write(byte[] entries) {
+        try {
+            ByteBuffer data = ByteBuffer.wrap(entries);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            unsynced = true;
+        } catch (IOException e) {
+            if (!failed) logger.log(Level.SEVERE, "Could not write to the journal, changes are only stored with the next snapshot!", e);
+            failed = true;
+        }
+    }
+
+    /**
+     * A method to force the current segment to the disk if entries were written since the last
+     * force (journal thread).
+     */
+    private void force() {
+        lastForce = System.currentTimeMillis();
+        if (!unsynced) return;
+        unsynced = false;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            if (!failed) logger.log(Level.SEVERE, "Could not force the journal to the disk!", e);
+            failed = true;
+        }
+    }
+
+    /**
+     * A method to close the current segment and continue with the next one (journal thread). If
+     * the next segment can not be created, the entries are still appended to the current one.
+     * @param closed segment that is closed
+     */
+    private void switchSegment(Segment closed) {
+        try {
+            FileChannel next = openSegment(closed.number + 1);
+            force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //the entries are forced, the snapshot contains them anyway
+            }
+            channel = next;
+            closed.closed = true;
+        } catch (StorageException e) { //segment is compacted with a later snapshot
+            logger.log(Level.SEVERE, e.getMessage(), e.getCause());
+        } finally {
+            closed.done.countDown();
+        }
+    }
+
+    /**
+     * A method to append an entry for a created health bar.
+     * @param name name of the health bar
+     * @param health health value of the health bar
+     */
+    public void createBar(String name, double health) {
+        begin(CREATE_BAR);
+        writeString(name);
+        buffer.putDouble(health);
+        end();
+    }
+
+    /**
+     * A method to append an entry for a deleted health bar.
+     * @param name name of the health bar
+     */
+    public void deleteBar(String name) {
+        begin(DELETE_BAR);
+        writeString(name);
+        end();
+    }
+
+    /**
+     * A method to append an entry for a changed health value.
+     * @param name name of the health bar
+     * @param health new health value of the health bar
+     */
+    public void health(String name, double health) {
+        begin(HEALTH);
+        writeString(name);
+        buffer.putDouble(health);
+        end();
+    }
+
+    /**
+     * A method to append an entry for a player that was added to a health bar.
+     * @param bar name of the health bar
+     * @param member record of the player
+     */
+    public void addMember(String bar, MemberRecord member) {
+        begin(ADD_MEMBER);
+        writeString(bar);
+        buffer.putLong(member.getUniqueId().getMostSignificantBits());
+        buffer.putLong(member.getUniqueId().getLeastSignificantBits());
+        writeString(member.getName());
+        buffer.putLong(member.getLastLogin());
+        end();
+    }
+
+    /**
+     * A method to append an entry for a player that was removed from his health bar.
+     * @param uuid UUID of the player
+     */
+    public void removeMember(UUID uuid) {
+        begin(REMOVE_MEMBER);
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+        end();
+    }
+
+    /**
+     * A method to append an entry for a player whose name or last login changed.
+     * @param member record of the player
+     */
+    public void updateMember(MemberRecord member) {
+        begin(UPDATE_MEMBER);
+        buffer.putLong(member.getUniqueId().getMostSignificantBits());
+        buffer.putLong(member.getUniqueId().getLeastSignificantBits());
+        writeString(member.getName());
+        buffer.putLong(member.getLastLogin());
+        end();
+    }
+
+    /**
+     * A method to start a batch. The entries are collected until the batch ends and then queued
+     * together, so the journal thread writes them at once.
+     */
+    public void beginBatch() {
+        if (batch == null) batch = new ByteArrayOutputStream(4096);
+    }
+
+    /**
+     * A method to append the entries of the current batch to the current segment.
+     */
+    public void endBatch() {
+        if (batch == null) return;
+        byte[] entries = batch.toByteArray();
+        batch = null;
+        if (entries.length > 0) queue.add(entries);
+    }
+
+    /**
+     * A method to start encoding an entry (space for length and checksum is reserved).
+     * @param type type of the entry
+     */
+    private void begin(byte type) {
+        buffer.clear();
+        buffer.position(8);
+        buffer.put(type);
+    }
+
+    /**
+     * A method to finish the encoded entry and queue it or add it to the current batch.
+     */
+    private void end() {
+        int length = buffer.position() - 8;
+        crc.reset();
+        crc.update(buffer.array(), 8, length);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        if (batch != null) { //queued when the batch ends
+            batch.write(buffer.array(), 0, buffer.limit());
+            return;
+        }
+        queue.add(Arrays.copyOf(buffer.array(), buffer.limit())); //the buffer is reused for the next entry
+    }
+
+    /**
+     * A method to encode a string (length as short and UTF-8 bytes).
+     * @param value string that gets encoded
+     */
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < bytes.length + 64) { //grow the buffer for long values
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() + bytes.length + 1024);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * A method to decode a string.
+     * @param entry content of the entry
+     * @return decoded string
+     */
+    private String readString(ByteBuffer entry) {
+        int length = entry.getShort() & 0xFFFF;
+        String value = new String(entry.array(), entry.position(), length, StandardCharsets.UTF_8);
+        entry.position(entry.position() + length);
+        return value;
+    }
+
+}
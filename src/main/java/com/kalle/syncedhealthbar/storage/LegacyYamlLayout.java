@@ -0,0 +1,108 @@
+package com.kalle.syncedhealthbar.storage;
+
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * A class to migrate the config.yml of former versions, which stored the health bars by their
+ * position ("Health Bar 0", ".Player 0") with separate counts. The health bars are streamed one
+ * by one: every entry is parsed, handed to the sink and removed from the loaded config.yml, so the
+ * old and the new layout are never held in memory at the same time.
+ */
+public final class LegacyYamlLayout {
+
+    //paths of the former config.yml entries
+    static final String HB_PATH = "Health Bar ";
+    static final String HB_COUNT_PATH = "Health Bar Count";
+    private static final String P_PATH = ".Player ";
+    private static final String P_COUNT_PATH = ".Player Count";
+
+    private LegacyYamlLayout() {
+    }
+
+    /**
+     * A method to check if the loaded config.yml still has the former layout.
+     * @param file loaded config.yml
+     * @return true if the health bars need to be migrated
+     */
+    public static boolean isPresent(ConfigurationSection file) {
+        return file.get(HB_COUNT_PATH) != null;
+    }
+
+    /**
+     * A method to check if an entry of the config.yml belongs to the former layout.
+     * @param path path of the entry
+     * @return true if the entry is health bar data of the former layout
+     */
+    static boolean isLegacyPath(String path) {
+        return path.startsWith(HB_PATH) || path.equals(HB_COUNT_PATH);
+    }
+
+    /**
+     * A method to parse all health bars of the former layout in the order of their entries and
+     * remove them from the loaded config.yml.
+     * @param file loaded config.yml
+     * @param sink gets every parsed health bar
+     * @return count of migrated health bars
+     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     */
+    public static int migrate(ConfigurationSection file, Consumer<BarRecord> sink) throws CorruptedConfigException {
+        int hbCount;
+        try {
+            hbCount = Integer.parseInt(file.get(HB_COUNT_PATH).toString());
+        } catch (NullPointerException e) { //entry was deleted (count = null)
+            throw new CorruptedConfigException("CONFIG ERROR: health bar count not found!");
+        } catch (NumberFormatException e) { //entry was changed and is not convertable to integer anymore
+            throw new CorruptedConfigException("CONFIG ERROR: health bar count corrupted!");
+        }
+        for (int i = 0 ; i < hbCount ; i++) { //loop through all health bars
+            sink.accept(readBar(file, i));
+            file.set(HB_PATH + i, null); //entry is not needed anymore
+        }
+        file.set(HB_COUNT_PATH, null);
+        return hbCount;
+    }
+
+    /**
+     * A method to parse the entry of a health bar and its players.
+     * @param file loaded config.yml
+     * @param i index of the health bar
+     * @return record of the health bar
+     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     */
+    private static BarRecord readBar(ConfigurationSection file, int i) throws CorruptedConfigException {
+        String hbName = YamlStorage.readString(file, HB_PATH + i + ".Name", "CONFIG ERROR: health bar name not found!");
+        BarRecord bar = new BarRecord(hbName, YamlStorage.readHealth(file, HB_PATH + i + ".Health"));
+        int pCount;
+        try {
+            pCount = Integer.parseInt(file.get(HB_PATH + i + P_COUNT_PATH).toString());
+        } catch (NullPointerException e) {
+            throw new CorruptedConfigException("CONFIG ERROR: player count not found!");
+        } catch (NumberFormatException e) {
+            throw new CorruptedConfigException("CONFIG ERROR: player count corrupted!");
+        }
+        for (int j = 0 ; j < pCount ; j++) { //loop through the players of the health bar
+            String path = HB_PATH + i + P_PATH + j;
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(YamlStorage.readString(file, path + ".UUID", "CONFIG ERROR: player uuid not found!"));
+            } catch (IllegalArgumentException e) {
+                throw new CorruptedConfigException("CONFIG ERROR: player uuid corrupted!");
+            }
+            String name = YamlStorage.readString(file, path + ".Name", "CONFIG ERROR: player name not found!");
+            String lastLogin = YamlStorage.readString(file, path + ".Last Login", "CONFIG ERROR: players last login not found!");
+            try {
+                bar.addMember(new MemberRecord(uuid, name, MemberRecord.parseLastLogin(lastLogin)));
+            } catch (IllegalArgumentException e) {
+                throw new CorruptedConfigException("CONFIG ERROR: players last login corrupted!");
+            }
+        }
+        return bar;
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.kalle.syncedhealthbar.storage;
+
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A class that stores the health bars in an embedded SQLite database file (data.db in the plugin
+ * folder). Health bars and players have their own tables keyed by the name of the health bar and
+ * the UUID of the player, so only the changed rows are written, in one transaction with batched
+ * prepared statements.
+ */
+public class SqlStorage implements Storage {
+
+    public static final String NAME = "sqlite";
+
+    private Plugin plugin;
+    private Connection connection; //only used by the thread that loads or writes
+
+    /**
+     * Class constructor.
+     * @param plugin main class to get the data folder
+     */
+    public SqlStorage(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean needsFullSnapshot() {
+        return false;
+    }
+
+    /**
+     * A method to open the database file and create the tables if they do not exist yet.
+     * @throws StorageException database could not be opened and exception is thrown
+     */
+    @Override
+    public void open() throws StorageException {
+        if (connection != null) return; //already opened
+        try {
+            Class.forName("org.sqlite.JDBC"); //driver is shipped with the server
+        } catch (ClassNotFoundException e) {
+            throw new StorageException("STORAGE ERROR: the server does not provide a SQLite driver!", e);
+        }
+        File file = new File(plugin.getDataFolder(), "data.db");
+        file.getParentFile().mkdirs();
+        try {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS health_bars (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL UNIQUE, health REAL NOT NULL)");
+                statement.execute("CREATE TABLE IF NOT EXISTS players (id INTEGER PRIMARY KEY AUTOINCREMENT, uuid TEXT NOT NULL UNIQUE, health_bar TEXT NOT NULL, name TEXT NOT NULL, last_login INTEGER NOT NULL)");
+                statement.execute("CREATE INDEX IF NOT EXISTS players_health_bar ON players (health_bar)");
+            }
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            throw new StorageException("STORAGE ERROR: could not open the database!", e);
+        }
+    }
+
+    /**
+     * A method to load the records of all health bars in the order they were created.
+     * @return records of all health bars
+     * @throws CorruptedConfigException a player is assigned to a health bar that does not exist
+     * @throws StorageException database could not be read and exception is thrown
+     */
+    @Override
+    public ArrayList<BarRecord> load() throws CorruptedConfigException, StorageException {
+        ArrayList<BarRecord> bars = new ArrayList<BarRecord>();
+        HashMap<String, BarRecord> byName = new HashMap<String, BarRecord>();
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet result = statement.executeQuery("SELECT name, health FROM health_bars ORDER BY id")) {
+                while (result.next()) { //loop through all health bars
+                    BarRecord bar = new BarRecord(result.getString(1), result.getDouble(2));
+                    if (bar.getHealth() > 20 || bar.getHealth() < 0) { //health needs to be between 0 and 20
+                        throw new CorruptedConfigException("STORAGE ERROR: health bar health value corrupted!");
+                    }
+                    bars.add(bar);
+                    byName.put(bar.getName(), bar);
+                }
+            }
+            try (ResultSet result = statement.executeQuery("SELECT uuid, health_bar, name, last_login FROM players ORDER BY id")) {
+                while (result.next()) { //loop through all players
+                    BarRecord bar = byName.get(result.getString(2));
+                    if (bar == null) {
+                        throw new CorruptedConfigException("STORAGE ERROR: health bar of player '" + result.getString(3) + "' not found!");
+                    }
+                    UUID uuid;
+                    try {
+                        uuid = UUID.fromString(result.getString(1));
+                    } catch (IllegalArgumentException e) {
+                        throw new CorruptedConfigException("STORAGE ERROR: player uuid corrupted!");
+                    }
+                    bar.addMember(new MemberRecord(uuid, result.getString(3), result.getLong(4)));
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new StorageException("STORAGE ERROR: could not read the database!", e);
+        }
+        return bars;
+    }
+
+    /**
+     * A method to write the changes of a snapshot in one transaction. Every change only touches
+     * the rows of its own health bar or player.
+     * @param snapshot changes that need to be written
+     * @throws StorageException database could not be written and the transaction was rolled back
+     */
+    @Override
+    public void write(StorageSnapshot snapshot) throws StorageException {
+        try {
+            if (snapshot.isFull()) { //full snapshot replaces everything
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("DELETE FROM players");
+                    statement.executeUpdate("DELETE FROM health_bars");
+                }
+            }
+            try (PreparedStatement deleteBar = connection.prepareStatement("DELETE FROM health_bars WHERE name = ?");
+                 PreparedStatement deletePlayers = connection.prepareStatement("DELETE FROM players WHERE health_bar = ?");
+                 PreparedStatement deletePlayer = connection.prepareStatement("DELETE FROM players WHERE uuid = ? AND health_bar = ?");
+                 PreparedStatement upsertBar = connection.prepareStatement("INSERT INTO health_bars (name, health) VALUES (?, ?) ON CONFLICT(name) DO UPDATE SET health = excluded.health");
+                 PreparedStatement upsertPlayer = connection.prepareStatement("INSERT INTO players (uuid, health_bar, name, last_login) VALUES (?, ?, ?, ?) "
+                         + "ON CONFLICT(uuid) DO UPDATE SET health_bar = excluded.health_bar, name = excluded.name, last_login = excluded.last_login")) {
+                for (String i : snapshot.getDeleted()) { //delete the health bars and their players
+                    deleteBar.setString(1, i);
+                    deleteBar.addBatch();
+                    deletePlayers.setString(1, i);
+                    deletePlayers.addBatch();
+                }
+                deletePlayers.executeBatch();
+                deleteBar.executeBatch();
+                for (Map.Entry<String, HashSet<UUID>> i : snapshot.getRemoved().entrySet()) { //delete the removed players
+                    for (UUID j : i.getValue()) {
+                        deletePlayer.setString(1, j.toString());
+                        deletePlayer.setString(2, i.getKey());
+                        deletePlayer.addBatch();
+                    }
+                }
+                deletePlayer.executeBatch(); //players must be deleted before they get inserted again
+                for (BarRecord i : snapshot.getBars()) {
+                    upsertBar.setString(1, i.getName());
+                    upsertBar.setDouble(2, i.getHealth());
+                    upsertBar.addBatch();
+                    for (MemberRecord j : i.getMembers()) { //only full snapshots contain the players of the health bars
+                        addPlayer(upsertPlayer, i.getName(), j);
+                    }
+                }
+                for (Map.Entry<String, ArrayList<MemberRecord>> i : snapshot.getMembers().entrySet()) { //added or changed players
+                    for (MemberRecord j : i.getValue()) {
+                        addPlayer(upsertPlayer, i.getKey(), j);
+                    }
+                }
+                upsertBar.executeBatch();
+                upsertPlayer.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+                //the connection is broken, the error is reported below
+            }
+            throw new StorageException("STORAGE ERROR: could not write the database!", e);
+        }
+    }
+
+    /**
+     * A method to add the row of a player to the batch of the statement.
+     * @param statement statement that inserts or updates the player
+     * @param hbName name of the health bar of the player
+     * @param member record of the player
+     * @throws SQLException parameters could not be set and exception is thrown
+     */
+    private void addPlayer(PreparedStatement statement, String hbName, MemberRecord member) throws SQLException {
+        statement.setString(1, member.getUniqueId().toString());
+        statement.setString(2, hbName);
+        statement.setString(3, member.getName());
+        statement.setLong(4, member.getLastLogin());
+        statement.addBatch();
+    }
+
+    @Override
+    public void close() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Could not close the database: " + e.getMessage());
+        }
+        connection = null;
+    }
+
+}
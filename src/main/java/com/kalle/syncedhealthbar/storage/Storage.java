@@ -0,0 +1,89 @@
+package com.kalle.syncedhealthbar.storage;
+
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * An interface for the backends the records of the health bars are stored in. Loading happens
+ * once at startup, writing is only called by the writer thread of the persistence.
+ */
+public interface Storage {
+
+    /**
+     * A method to get the name of the storage as it is used in the settings.
+     * @return name of the storage
+     */
+    String getName();
+
+    /**
+     * A method to open the storage (create files and tables if they do not exist yet).
+     * @throws StorageException storage could not be opened and exception is thrown
+     */
+    void open() throws StorageException;
+
+    /**
+     * A method to load the records of all health bars in the order they were created.
+     * @return records of all health bars
+     * @throws CorruptedConfigException the stored data is corrupted and exception is thrown
+     * @throws StorageException storage could not be read and exception is thrown
+     */
+    ArrayList<BarRecord> load() throws CorruptedConfigException, StorageException;
+
+    /**
+     * A method to load the records of all health bars in the order they were created. Storages
+     * that can split the parsing use the threads of the pool.
+     * @param pool threads that can be used
+     * @return records of all health bars
+     * @throws CorruptedConfigException the stored data is corrupted and exception is thrown
+     * @throws StorageException storage could not be read and exception is thrown
+     */
+    default ArrayList<BarRecord> load(ExecutorService pool) throws CorruptedConfigException, StorageException {
+        return load();
+    }
+
+    /**
+     * A method to check if the last load found data in a former format, so all records need
+     * to be written again.
+     * @return true if the data needs to be migrated
+     */
+    default boolean needsMigration() {
+        return false;
+    }
+
+    /**
+     * A method to write the changes of a snapshot to the storage.
+     * @param snapshot changes that need to be written
+     * @throws StorageException storage could not be written and exception is thrown
+     */
+    void write(StorageSnapshot snapshot) throws StorageException;
+
+    /**
+     * A method to check if every write needs all records (true) or only the changed ones (false).
+     * @return true if the storage can only be written as a whole
+     */
+    boolean needsFullSnapshot();
+
+    /**
+     * A method to close the storage.
+     */
+    void close();
+
+    /**
+     * A method to create the storage with the passed name.
+     * @param plugin main class to get the data folder and the config.yml
+     * @param name name of the storage ("yaml" or "sqlite")
+     * @return the storage
+     * @throws StorageException no storage has the passed name and exception is thrown
+     */
+    static Storage create(Plugin plugin, String name) throws StorageException {
+        if (name.equalsIgnoreCase(YamlStorage.NAME)) return new YamlStorage(plugin);
+        if (name.equalsIgnoreCase(SqlStorage.NAME)) return new SqlStorage(plugin);
+        throw new StorageException("STORAGE ERROR: unknown storage '" + name + "'!");
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.kalle.syncedhealthbar.storage;
+
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+
+/**
+ * A class to represent the changes of the records that are handed to the writer thread. A full
+ * snapshot contains all health bars with their players, otherwise only the changed entries keyed
+ * by the name of their health bar and the UUID of the player. Storages apply the deleted health
+ * bars first, then the removed players, then the changed health bars and then the changed players.
+ */
+public class StorageSnapshot {
+
+    private boolean full; //true if the snapshot contains all health bars
+    private ArrayList<BarRecord> bars; //copies of all health bars with their players or of the changed ones without players
+    private HashMap<String, ArrayList<MemberRecord>> members; //copies of the added or changed players by the name of their health bar
+    private HashMap<String, HashSet<UUID>> removed; //UUIDs of the removed players by the name of the health bar they were removed from
+    private HashSet<String> deleted; //names of the deleted health bars
+
+    /**
+     * Class constructor of a full snapshot.
+     * @param bars copies of all health bars with their players
+     */
+    public StorageSnapshot(ArrayList<BarRecord> bars) {
+        this(true, bars, new HashMap<String, ArrayList<MemberRecord>>(), new HashMap<String, HashSet<UUID>>(), new HashSet<String>());
+    }
+
+    /**
+     * Class constructor.
+     * @param full true if the snapshot contains all health bars
+     * @param bars copies of all health bars with their players (full) or of the changed ones without players
+     * @param members copies of the added or changed players by the name of their health bar
+     * @param removed UUIDs of the removed players by the name of the health bar they were removed from
+     * @param deleted names of the deleted health bars
+     */
+    public StorageSnapshot(boolean full, ArrayList<BarRecord> bars, HashMap<String, ArrayList<MemberRecord>> members,
+                           HashMap<String, HashSet<UUID>> removed, HashSet<String> deleted) {
+        this.full = full;
+        this.bars = bars;
+        this.members = members;
+        this.removed = removed;
+        this.deleted = deleted;
+    }
+
+    /**
+     * A method to check if the snapshot contains all health bars.
+     * @return true if the snapshot is full
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * A method to get the copies of the health bars in the snapshot.
+     * @return records of all health bars (full snapshot) or of the changed ones
+     */
+    public ArrayList<BarRecord> getBars() {
+        return bars;
+    }
+
+    /**
+     * A method to get the players that were added or changed (empty for a full snapshot).
+     * @return copies of the players by the name of their health bar
+     */
+    public HashMap<String, ArrayList<MemberRecord>> getMembers() {
+        return members;
+    }
+
+    /**
+     * A method to get the players that were removed from their health bar (empty for a full snapshot).
+     * @return UUIDs of the players by the name of the health bar they were removed from
+     */
+    public HashMap<String, HashSet<UUID>> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * A method to get the names of the deleted health bars.
+     * @return names of the deleted health bars
+     */
+    public HashSet<String> getDeleted() {
+        return deleted;
+    }
+
+}
@@ -0,0 +1,375 @@
+package com.kalle.syncedhealthbar.storage;
+
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.Exceptions.StorageException;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A class that stores the health bars in the config.yml. Every health bar has its own section
+ * keyed by a stable id ("Health Bars.<id>") and every player a section keyed by his UUID below
+ * it, so a change only touches the entries of its own health bar or player. The file can only be
+ * written as a whole, but the document is kept in memory and only the changes are applied to it.
+ */
+public class YamlStorage implements Storage {
+
+    public static final String NAME = "yaml";
+
+    private static final int CHUNK = 256; //health bars parsed by one task of the pool
+
+    //paths of the config.yml entries to make statements more readable
+    static final String BARS_PATH = "Health Bars";
+    static final String PLAYERS_PATH = ".Players";
+
+    private Plugin plugin;
+    private volatile boolean legacy = false; //true if the last load migrated the former layout
+    private YamlConfiguration document = new YamlConfiguration(); //content of the config.yml (settings and health bars)
+    private HashMap<String, String> keys = new HashMap<String, String>(); //id of the section of every health bar by its name
+
+    /**
+     * Class constructor. Takes over all entries of the loaded config.yml that are no health bar data.
+     * @param plugin main class to get the loaded config.yml and the data folder
+     */
+    public YamlStorage(Plugin plugin) {
+        this.plugin = plugin;
+        FileConfiguration file = plugin.getConfig();
+        for (String i : file.getKeys(true)) { //take over all entries that are no health bar data
+            if (!i.startsWith(BARS_PATH) && !LegacyYamlLayout.isLegacyPath(i) && !file.isConfigurationSection(i)) {
+                document.set(i, file.get(i));
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void open() {
+        //the config.yml is already loaded by the plugin
+    }
+
+    @Override
+    public boolean needsFullSnapshot() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        //nothing needs to be closed
+    }
+
+    @Override
+    public boolean needsMigration() {
+        return legacy;
+    }
+
+    /**
+     * A method to change a setting that gets written with the next snapshot.
+     * @param path path of the setting
+     * @param value new value of the setting
+     */
+    public synchronized void setSetting(String path, Object value) {
+        document.set(path, value);
+    }
+
+    /**
+     * A method to parse the entries of the config.yml into records.
+     * @return records of all health bars
+     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     */
+    @Override
+    public ArrayList<BarRecord> load() throws CorruptedConfigException {
+        FileConfiguration file = plugin.getConfig();
+        ArrayList<String> ids = ids(file);
+        ArrayList<BarRecord> bars = new ArrayList<BarRecord>(ids.size());
+        for (String i : ids) { //loop through all health bars
+            bars.add(readBar(file, i));
+        }
+        return migrate(file, ids, bars);
+    }
+
+    /**
+     * A method to parse the entries of the config.yml into records on several threads. Every task
+     * parses a range of health bars, the loaded config.yml is only read while they run.
+     * @param pool threads that parse the health bars
+     * @return records of all health bars
+     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     */
+    @Override
+    public ArrayList<BarRecord> load(ExecutorService pool) throws CorruptedConfigException {
+        FileConfiguration file = plugin.getConfig();
+        ArrayList<String> ids = ids(file);
+        ArrayList<Future<BarRecord[]>> chunks = new ArrayList<Future<BarRecord[]>>();
+        for (int i = 0 ; i < ids.size() ; i += CHUNK) {
+            int from = i;
+            int to = Math.min(ids.size(), i + CHUNK);
+            chunks.add(pool.submit(() -> {
+                BarRecord[] chunk = new BarRecord[to - from];
+                for (int j = from ; j < to ; j++) {
+                    chunk[j - from] = readBar(file, ids.get(j));
+                }
+                return chunk;
+            }));
+        }
+        ArrayList<BarRecord> bars = new ArrayList<BarRecord>(ids.size());
+        try {
+            for (Future<BarRecord[]> i : chunks) { //in the order of the entries
+                for (BarRecord j : i.get()) {
+                    bars.add(j);
+                }
+            }
+        } catch (ExecutionException e) {
+            for (Future<BarRecord[]> i : chunks) {
+                i.cancel(false);
+            }
+            if (e.getCause() instanceof CorruptedConfigException) throw (CorruptedConfigException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CorruptedConfigException("CONFIG ERROR: loading the health bars was interrupted!");
+        }
+        return migrate(file, ids, bars);
+    }
+
+    /**
+     * A method to get the ids of the sections of all health bars in the order of their entries.
+     * @param file loaded config.yml
+     * @return ids of the health bars
+     */
+    private ArrayList<String> ids(FileConfiguration file) {
+        ConfigurationSection section = file.getConfigurationSection(BARS_PATH);
+        return section == null ? new ArrayList<String>() : new ArrayList<String>(section.getKeys(false));
+    }
+
+    /**
+     * A method to take over the parsed health bars into the document and to stream the health
+     * bars of the former layout behind them (if the config.yml still has it).
+     * @param file loaded config.yml
+     * @param ids ids of the parsed health bars
+     * @param bars parsed health bars (in the order of the ids)
+     * @return records of all health bars
+     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     */
+    private synchronized ArrayList<BarRecord> migrate(FileConfiguration file, ArrayList<String> ids, ArrayList<BarRecord> bars) throws CorruptedConfigException {
+        document.set(BARS_PATH, null);
+        keys.clear();
+        for (int i = 0 ; i < bars.size() ; i++) {
+            keys.put(bars.get(i).getName(), ids.get(i));
+            putBar(bars.get(i));
+        }
+        if (LegacyYamlLayout.isPresent(file)) { //written by a former version of the plugin
+            int count = LegacyYamlLayout.migrate(file, bar -> {
+                bars.add(bar);
+                putBar(bar);
+            });
+            legacy = true;
+            plugin.getLogger().info("Migrated " + count + " health bars of the former layout of the config.yml, they are written with the next flush.");
+        }
+        return bars;
+    }
+
+    /**
+     * A method to parse the section of a health bar and its players.
+     * @param file loaded config.yml
+     * @param id id of the section of the health bar
+     * @return record of the health bar
+     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     */
+    private BarRecord readBar(FileConfiguration file, String id) throws CorruptedConfigException {
+        String path = BARS_PATH + "." + id;
+        String hbName = readString(file, path + ".Name", "CONFIG ERROR: health bar name not found!");
+        BarRecord bar = new BarRecord(hbName, readHealth(file, path + ".Health"));
+        ConfigurationSection players = file.getConfigurationSection(path + PLAYERS_PATH);
+        if (players == null) return bar; //health bar has no players
+        for (String i : players.getKeys(false)) { //loop through the players of the health bar
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(i);
+            } catch (IllegalArgumentException e) {
+                throw new CorruptedConfigException("CONFIG ERROR: player uuid corrupted!");
+            }
+            bar.addMember(readMember(file, path + PLAYERS_PATH + "." + i, uuid));
+        }
+        return bar;
+    }
+
+    /**
+     * A method to parse the entry of a player.
+     * @param file loaded config.yml
+     * @param path path of the entry
+     * @param uuid UUID of the player
+     * @return record of the player
+     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     */
+    private static MemberRecord readMember(ConfigurationSection file, String path, UUID uuid) throws CorruptedConfigException {
+        String name = readString(file, path + ".Name", "CONFIG ERROR: player name not found!");
+        String lastLogin = readString(file, path + ".Last Login", "CONFIG ERROR: players last login not found!");
+        try {
+            return new MemberRecord(uuid, name, Long.parseLong(lastLogin));
+        } catch (NumberFormatException e) {
+            throw new CorruptedConfigException("CONFIG ERROR: players last login corrupted!");
+        }
+    }
+
+    /**
+     * A method to read a string entry of the config.yml.
+     * @param file loaded config.yml
+     * @param path path of the entry
+     * @param error error message if the entry does not exist
+     * @return value of the entry as string
+     * @throws CorruptedConfigException entry was deleted and exception is thrown
+     */
+    static String readString(ConfigurationSection file, String path, String error) throws CorruptedConfigException {
+        Object value = file.get(path);
+        if (value == null) {
+            throw new CorruptedConfigException(error);
+        }
+        return value.toString();
+    }
+
+    /**
+     * A method to read the health value of a health bar entry of the config.yml.
+     * @param file loaded config.yml
+     * @param path path of the health value
+     * @return the health value of the health bar
+     * @throws CorruptedConfigException config.yml was corrupted and exception is thrown
+     */
+    static double readHealth(ConfigurationSection file, String path) throws CorruptedConfigException {
+        double health;
+        try {
+            health = Double.parseDouble(file.get(path).toString()); //parsing the entry into a double
+        } catch (NullPointerException e) {
+            throw new CorruptedConfigException("CONFIG ERROR: health bar health value not found!");
+        } catch (NumberFormatException e) {
+            throw new CorruptedConfigException("CONFIG ERROR: health bar health value corrupted!");
+        }
+        if (health > 20 || health < 0) { //health needs to be between 0 and 20
+            throw new CorruptedConfigException("CONFIG ERROR: health bar health value corrupted!");
+        }
+        return health;
+    }
+
+    /**
+     * A method to apply a snapshot to the document and write it to the config.yml. The content goes to a
+     * temporary file which is forced to disk and then atomically moved over the config.yml, so the
+     * file is never left half written.
+     * @param snapshot changes that need to be written
+     * @throws StorageException config.yml could not be written and exception is thrown
+     */
+    @Override
+    public void write(StorageSnapshot snapshot) throws StorageException {
+        File file = new File(plugin.getDataFolder(), "config.yml");
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            String content = apply(snapshot);
+            file.getParentFile().mkdirs();
+            try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true); //make sure the data is on the disk before it replaces the old file
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) { //file system can not move atomically
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new StorageException("STORAGE ERROR: could not write the config.yml!", e);
+        }
+    }
+
+    /**
+     * A method to apply the changes of a snapshot to the document and serialize it into the
+     * content of the config.yml.
+     * @param snapshot changes that need to be written
+     * @return content of the config.yml
+     */
+    private synchronized String apply(StorageSnapshot snapshot) {
+        if (snapshot.isFull()) { //all health bars are written again
+            document.set(BARS_PATH, null);
+            HashMap<String, String> previous = keys;
+            keys = new HashMap<String, String>();
+            for (BarRecord i : snapshot.getBars()) {
+                if (previous.containsKey(i.getName())) keys.put(i.getName(), previous.get(i.getName())); //health bars keep their id
+                putBar(i);
+            }
+            return document.saveToString();
+        }
+        for (String i : snapshot.getDeleted()) { //delete the health bars and their players
+            String id = keys.remove(i);
+            if (id != null) document.set(BARS_PATH + "." + id, null);
+        }
+        for (Map.Entry<String, HashSet<UUID>> i : snapshot.getRemoved().entrySet()) { //delete the removed players
+            String id = keys.get(i.getKey());
+            if (id == null) continue; //health bar was deleted as well
+            for (UUID j : i.getValue()) {
+                document.set(BARS_PATH + "." + id + PLAYERS_PATH + "." + j, null);
+            }
+        }
+        for (BarRecord i : snapshot.getBars()) { //changed health bars
+            putBar(i);
+        }
+        for (Map.Entry<String, ArrayList<MemberRecord>> i : snapshot.getMembers().entrySet()) { //added or changed players
+            for (MemberRecord j : i.getValue()) {
+                putMember(i.getKey(), j);
+            }
+        }
+        return document.saveToString();
+    }
+
+    /**
+     * A method to write the section of a health bar and the sections of the players it contains.
+     * @param bar record of the health bar
+     */
+    private void putBar(BarRecord bar) {
+        String id = keys.get(bar.getName());
+        if (id == null) { //new health bar gets a stable id
+            id = UUID.randomUUID().toString();
+            keys.put(bar.getName(), id);
+        }
+        document.set(BARS_PATH + "." + id + ".Name", bar.getName());
+        document.set(BARS_PATH + "." + id + ".Health", bar.getHealth());
+        for (MemberRecord i : bar.getMembers()) {
+            putMember(bar.getName(), i);
+        }
+    }
+
+    /**
+     * A method to write the section of a player.
+     * @param hbName name of the health bar of the player
+     * @param member record of the player
+     */
+    private void putMember(String hbName, MemberRecord member) {
+        String path = BARS_PATH + "." + keys.get(hbName) + PLAYERS_PATH + "." + member.getUniqueId();
+        document.set(path + ".Name", member.getName());
+        document.set(path + ".Last Login", member.getLastLogin());
+    }
+
+}
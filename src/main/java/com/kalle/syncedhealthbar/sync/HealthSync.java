@@ -0,0 +1,553 @@
+package com.kalle.syncedhealthbar.sync;
+
+import com.kalle.syncedhealthbar.Config;
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.Exceptions.ItemNotFoundException;
+import com.kalle.syncedhealthbar.Exceptions.PlayerAlreadyInListException;
+import com.kalle.syncedhealthbar.Exceptions.PlayerNotInListException;
+import com.kalle.syncedhealthbar.HealthBar;
+import com.kalle.syncedhealthbar.Main;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import com.kalle.syncedhealthbar.scheduler.TaskScheduler;
+import com.kalle.syncedhealthbar.simulation.LoadSimulation;
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import javax.naming.NameAlreadyBoundException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A class that keeps the health bars of several servers in sync. Every server (node) keeps its own
+ * health bars and storage, the changes are collected and sent to the other servers in one batch
+ * every few ticks.
+ * <p>
+ * Every health bar and every player has a version with the node that wrote it. A health change
+ * that was based on the version a server has is taken as it is. If the server changed the health
+ * bar in the meantime (concurrent changes), the delta is merged into its own health and the node
+ * with the larger id sends its merged health as a new version, so all servers end up with the same
+ * health. Creating and deleting health bars and (re)assigning players is resolved by the larger
+ * version (the larger node id on equal versions). When a connection is (re)established the full
+ * state is sent, so a server that was offline catches up.
+ */
+public class HealthSync implements SyncTransport.Receiver {
+
+    private static volatile HealthSync sync; //sync of the plugin (null if it is disabled)
+
+    /**
+     * A class to represent the version of a health bar or of the assignment of a player.
+     */
+    private static class Version {
+
+        long version;
+        String writer; //node that wrote the version
+        boolean deleted; //true if the health bar was deleted (kept so an older state does not create it again)
+        String bar; //health bar of the player (null if he was removed)
+        String name; //name of the player
+
+        Version(long version, String writer) {
+            this.version = version;
+            this.writer = writer;
+        }
+
+    }
+
+    private Main plugin;
+    private Config config;
+    private TaskScheduler scheduler;
+    private SyncTransport transport;
+    private String node; //id of this server
+    private TaskScheduler.Task task; //repeating task that sends the batches
+
+    private HashMap<String, Version> bars = new HashMap<String, Version>(); //versions of the health bars by name
+    private HashMap<UUID, Version> members = new HashMap<UUID, Version>(); //versions of the assignments by UUID
+    private ArrayList<SyncBatch.Entry> changes = new ArrayList<SyncBatch.Entry>(); //changes of health bars and players of the next batch
+    private LinkedHashMap<String, SyncBatch.Entry> health = new LinkedHashMap<String, SyncBatch.Entry>(); //health changes of the next batch by health bar
+    private LinkedHashSet<String> resolve = new LinkedHashSet<String>(); //health bars whose merged health needs to be sent
+    private volatile boolean applying = false; //true while changes of another server are applied (they are not sent again)
+
+    /**
+     * Class constructor.
+     * @param plugin main class to get the players and the logger
+     * @param config config the changes are applied to
+     * @param scheduler scheduler of the tasks that apply the changes
+     * @param transport connections to the other servers
+     * @param node id of this server
+     */
+    private HealthSync(Main plugin, Config config, TaskScheduler scheduler, SyncTransport transport, String node) {
+        this.plugin = plugin;
+        this.config = config;
+        this.scheduler = scheduler;
+        this.transport = transport;
+        this.node = node;
+    }
+
+    /**
+     * A method to start the sync if it is enabled in the settings.
+     * @param plugin main class to get the settings
+     * @param config config the changes are applied to
+     * @param scheduler scheduler of the tasks that send and apply the changes
+     * @throws CorruptedConfigException the settings of the sync are invalid and exception is thrown
+     */
+    public static void init(Main plugin, Config config, TaskScheduler scheduler) throws CorruptedConfigException {
+        shutdown();
+        FileConfiguration settings = plugin.getConfig();
+        if (!settings.getBoolean("Settings.Sync.Enabled", false)) return;
+        String node = settings.getString("Settings.Sync.Node Id", "");
+        if (node == null || node.trim().isEmpty()) { //the port is the same on most servers behind a proxy, so there is no default
+            plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + "ERROR: the sync could not be started: Settings.Sync.Node Id must be set to an id that is different on every server!");
+            return;
+        }
+        String name = settings.getString("Settings.Sync.Transport", TcpTransport.NAME);
+        SyncTransport transport;
+        if (name.equalsIgnoreCase(TcpTransport.NAME)) {
+            ArrayList<InetSocketAddress> peers = new ArrayList<InetSocketAddress>();
+            for (String i : settings.getStringList("Settings.Sync.Peers")) {
+                int colon = i.lastIndexOf(':');
+                try {
+                    if (colon <= 0) throw new NumberFormatException();
+                    peers.add(InetSocketAddress.createUnresolved(i.substring(0, colon), Integer.parseInt(i.substring(colon + 1))));
+                } catch (IllegalArgumentException e) { //also thrown for a port out of range
+                    throw new CorruptedConfigException("CONFIG ERROR: sync peer '" + i + "' must be host:port!");
+                }
+            }
+            String secret = settings.getString("Settings.Sync.Secret", "");
+            if (secret == null || secret.isEmpty()) { //everyone who can reach the port could change the health bars
+                plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + "ERROR: the sync could not be started: Settings.Sync.Secret must be set to the same secret on every server!");
+                return;
+            }
+            transport = new TcpTransport(settings.getString("Settings.Sync.Bind Address", "127.0.0.1"), settings.getInt("Settings.Sync.Port", 25580), secret, peers, plugin.getLogger());
+        } else if (name.equalsIgnoreCase(LoopbackTransport.NAME)) {
+            transport = new LoopbackTransport();
+        } else {
+            throw new CorruptedConfigException("CONFIG ERROR: sync transport must be tcp or loopback!");
+        }
+        long interval = Math.max(1, settings.getLong("Settings.Sync.Batch Interval", 2));
+        sync = new HealthSync(plugin, config, scheduler, transport, node);
+        try {
+            transport.start(sync);
+        } catch (IOException e) { //the health bars of this server are still working, only not synced
+            sync = null;
+            plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + "ERROR: the sync could not be started: " + e.getMessage());
+            return;
+        }
+        sync.task = scheduler.runTimer(sync::flush, interval, interval);
+        plugin.getLogger().info("Syncing the health bars as node '" + node + "' over " + transport.getName());
+    }
+
+    /**
+     * A method to get the sync of the plugin.
+     * @return sync or null if it is disabled
+     */
+    public static HealthSync get() {
+        return sync;
+    }
+
+    /**
+     * A method to send the last changes and close the connections.
+     */
+    public static void shutdown() {
+        if (sync == null) return;
+        HealthSync stopped = sync;
+        sync = null;
+        stopped.task.cancel();
+        stopped.flush();
+        stopped.transport.close();
+    }
+
+    /**
+     * A method to check if a health bar is synced (simulated health bars stay on their server).
+     * @param bar name of the health bar
+     * @return true if the health bar is synced
+     */
+    private static boolean isSynced(String bar) {
+        return !LoadSimulation.isSimulated(bar);
+    }
+
+    /**
+     * A method to get the version of a health bar.
+     * @param bar name of the health bar
+     * @return version of the health bar (created if it has none yet)
+     */
+    private Version bar(String bar) {
+        Version version = bars.get(bar);
+        if (version == null) {
+            version = new Version(0, node);
+            bars.put(bar, version);
+        }
+        return version;
+    }
+
+    /**
+     * A method to get the version of the assignment of a player.
+     * @param uuid UUID of the player
+     * @return version of the assignment (created if it has none yet)
+     */
+    private Version member(UUID uuid) {
+        Version version = members.get(uuid);
+        if (version == null) {
+            String bar = config.getHBName(uuid);
+            version = new Version(bar == null ? -1 : 0, node); //a stored assignment wins against none
+            version.bar = bar;
+            members.put(uuid, version);
+        }
+        return version;
+    }
+
+    /**
+     * A method to compare two versions.
+     * @param version first version
+     * @param writer node that wrote the first version
+     * @param other second version
+     * @return true if the first version is newer than the second one
+     */
+    private static boolean newer(long version, String writer, Version other) {
+        return version > other.version || (version == other.version && writer.compareTo(other.writer) > 0);
+    }
+
+    /**
+     * A method to add a health change of this server to the next batch.
+     * @param hb health bar that changed
+     * @param delta change of the health (negative for damage)
+     * @param health health after the change
+     * @param died true if the players died by the change
+     */
+    public synchronized void health(HealthBar hb, double delta, double health, boolean died) {
+        if (!isSynced(hb.getName())) return;
+        Version version = bar(hb.getName());
+        SyncBatch.Entry entry = this.health.get(hb.getName());
+        if (entry == null) { //first change of the batch, later changes of the batch are merged into it
+            entry = new SyncBatch.Entry(SyncBatch.HEALTH, hb.getName());
+            entry.base = version.version;
+            this.health.put(hb.getName(), entry);
+        }
+        version.version++;
+        version.writer = node;
+        entry.version = version.version;
+        entry.delta += delta;
+        entry.health = health;
+        entry.died |= died;
+    }
+
+    /**
+     * A method to add a health bar created on this server to the next batch.
+     * @param bar name of the health bar
+     * @param health health of the health bar
+     */
+    public synchronized void barCreated(String bar, double health) {
+        if (applying || !isSynced(bar)) return;
+        Version old = bars.get(bar);
+        Version version = new Version(old == null ? 0 : old.version + 1, node); //newer than a former deletion
+        bars.put(bar, version);
+        changes.add(state(bar, version, health));
+    }
+
+    /**
+     * A method to add a health bar deleted on this server to the next batch.
+     * @param bar name of the health bar
+     */
+    public synchronized void barDeleted(String bar) {
+        if (applying || !isSynced(bar)) return;
+        Version version = bar(bar);
+        version.version++;
+        version.writer = node;
+        version.deleted = true;
+        health.remove(bar); //changes before the deletion do not matter anymore
+        resolve.remove(bar);
+        SyncBatch.Entry entry = new SyncBatch.Entry(SyncBatch.DELETE, bar);
+        entry.version = version.version;
+        entry.writer = node;
+        changes.add(entry);
+    }
+
+    /**
+     * A method to add a player assigned on this server to the next batch.
+     * @param bar name of the health bar
+     * @param uuid UUID of the player
+     * @param name name of the player
+     */
+    public synchronized void memberAdded(String bar, UUID uuid, String name) {
+        if (applying || !isSynced(bar)) return;
+        Version version = member(uuid);
+        version.version++;
+        version.writer = node;
+        version.bar = bar;
+        version.name = name;
+        changes.add(member(uuid, version));
+    }
+
+    /**
+     * A method to add a player removed on this server to the next batch.
+     * @param bar name of the health bar he was removed from
+     * @param uuid UUID of the player
+     * @param name name of the player
+     */
+    public synchronized void memberRemoved(String bar, UUID uuid, String name) {
+        if (applying || !isSynced(bar)) return;
+        Version version = member(uuid);
+        version.version++;
+        version.writer = node;
+        version.bar = null;
+        version.name = name;
+        changes.add(member(uuid, version));
+    }
+
+    /**
+     * A method to create the entry of the state of a health bar.
+     * @param bar name of the health bar
+     * @param version version of the health bar
+     * @param health health of the health bar
+     * @return created entry
+     */
+    private static SyncBatch.Entry state(String bar, Version version, double health) {
+        SyncBatch.Entry entry = new SyncBatch.Entry(SyncBatch.STATE, bar);
+        entry.version = version.version;
+        entry.writer = version.writer;
+        entry.health = health;
+        return entry;
+    }
+
+    /**
+     * A method to create the entry of the assignment of a player.
+     * @param uuid UUID of the player
+     * @param version version of the assignment
+     * @return created entry
+     */
+    private static SyncBatch.Entry member(UUID uuid, Version version) {
+        SyncBatch.Entry entry = new SyncBatch.Entry(SyncBatch.MEMBER, version.bar == null ? "" : version.bar);
+        entry.version = version.version;
+        entry.writer = version.writer;
+        entry.uuid = uuid;
+        entry.name = version.name == null ? "" : version.name;
+        return entry;
+    }
+
+    /**
+     * A method executed every batch interval to send the collected changes.
+     */
+    private void flush() {
+        SyncBatch batch = new SyncBatch(node);
+        synchronized (this) {
+            for (SyncBatch.Entry i : changes) { //creations and assignments first, so the health changes find their health bars
+                batch.add(i);
+            }
+            changes.clear();
+            for (SyncBatch.Entry i : health.values()) {
+                batch.add(i);
+            }
+            health.clear();
+            for (String i : resolve) { //merged health as a new version
+                HealthBar hb = HealthBar.getRegistry().getHealthBar(i);
+                if (hb == null) continue;
+                Version version = bar(i);
+                version.version++;
+                version.writer = node;
+                batch.add(state(i, version, hb.getHealth()));
+            }
+            resolve.clear();
+        }
+        if (!batch.isEmpty()) transport.send(batch.encode());
+    }
+
+    /**
+     * A method to send the full state of this server (all health bars, players and deletions).
+     */
+    private void sendState() {
+        flush(); //changes that are not sent yet go first
+        SyncBatch batch = new SyncBatch(node);
+        synchronized (this) {
+            for (BarRecord i : config.getRecords()) {
+                if (!isSynced(i.getName())) continue;
+                HealthBar hb = HealthBar.getRegistry().getResident(i.getName()); //the record holds the health of the others
+                batch.add(state(i.getName(), bar(i.getName()), hb == null ? i.getHealth() : hb.getHealth()));
+                for (MemberRecord j : i.getMembers()) {
+                    Version version = member(j.getUniqueId());
+                    version.name = j.getName();
+                    batch.add(member(j.getUniqueId(), version));
+                }
+            }
+            for (Map.Entry<String, Version> i : bars.entrySet()) {
+                if (!i.getValue().deleted) continue;
+                SyncBatch.Entry entry = new SyncBatch.Entry(SyncBatch.DELETE, i.getKey());
+                entry.version = i.getValue().version;
+                entry.writer = i.getValue().writer;
+                batch.add(entry);
+            }
+            for (Map.Entry<UUID, Version> i : members.entrySet()) {
+                if (i.getValue().bar == null && i.getValue().version >= 0) batch.add(member(i.getKey(), i.getValue())); //removed players
+            }
+        }
+        if (!batch.isEmpty()) transport.send(batch.encode());
+    }
+
+    @Override
+    public void receive(byte[] frame) {
+        SyncBatch batch;
+        try {
+            batch = SyncBatch.decode(frame); //decoded on the thread of the transport
+        } catch (IOException e) {
+            plugin.getLogger().warning("Dropped a corrupted sync frame: " + e.getMessage());
+            return;
+        }
+        if (batch.getNode().equals(node)) { //two servers have the same node id
+            plugin.getLogger().warning("Dropped a sync frame of a server with the same node id '" + node + "'!");
+            return;
+        }
+        scheduler.run(() -> apply(batch)); //the config is only changed on the main thread
+    }
+
+    @Override
+    public void connected() {
+        scheduler.run(this::sendState);
+    }
+
+    /**
+     * A method to apply the changes of another server. The versions are resolved under the lock,
+     * the health bars are changed after it is released, as they fire events into other plugins.
+     * @param batch changes of the other server
+     */
+    private void apply(SyncBatch batch) {
+        ArrayList<Runnable> resolved = new ArrayList<Runnable>(); //changes of the health bars in the order of the batch
+        synchronized (this) {
+            if (sync != this) return; //sync was stopped in the meantime
+            for (SyncBatch.Entry i : batch.getEntries()) {
+                if (!isSynced(i.bar)) continue;
+                Runnable change = null;
+                switch (i.type) {
+                    case SyncBatch.HEALTH: change = applyHealth(i); break;
+                    case SyncBatch.STATE: change = applyState(i); break;
+                    case SyncBatch.DELETE: change = applyDelete(i); break;
+                    case SyncBatch.MEMBER: change = applyMember(i); break;
+                }
+                if (change != null) resolved.add(change);
+            }
+        }
+        applying = true; //only read on the main thread, which also applies the changes
+        try {
+            for (Runnable i : resolved) {
+                i.run();
+            }
+        } finally {
+            applying = false;
+        }
+    }
+
+    /**
+     * A method to resolve a health change of another server.
+     * @param entry health change
+     * @return change of the health bar (null if there is none)
+     */
+    private Runnable applyHealth(SyncBatch.Entry entry) {
+        Version known = bars.get(entry.bar);
+        if (HealthBar.getRegistry().getHealthBar(entry.bar) == null && (known == null || known.deleted)) return null; //health bar is created by the full state (or by a state of this batch)
+        Version version = bar(entry.bar);
+        boolean merge = entry.base < version.version; //concurrent changes, both are merged
+        if (!merge || entry.version > version.version) { //the other server knew all changes of this one, so its result is taken
+            version.version = entry.version;
+            version.writer = entry.writer;
+        }
+        if (merge && node.compareTo(entry.writer) > 0) resolve.add(entry.bar); //the larger node sends the merged health
+        return () -> {
+            HealthBar hb = HealthBar.getRegistry().getHealthBar(entry.bar);
+            if (hb == null) return; //deleted or not created in the meantime
+            if (merge) hb.applyRemoteChange(entry.delta);
+            else hb.applyRemoteHealth(entry.health, entry.died);
+        };
+    }
+
+    /**
+     * A method to resolve the state of a health bar of another server.
+     * @param entry state of the health bar
+     * @return change of the health bar (null if there is none)
+     */
+    private Runnable applyState(SyncBatch.Entry entry) {
+        HealthBar resident = HealthBar.getRegistry().getHealthBar(entry.bar);
+        Version old = bars.get(entry.bar);
+        if (old != null || resident != null) {
+            if (!newer(entry.version, entry.writer, old == null ? bar(entry.bar) : old)) return null;
+        }
+        Version version = new Version(entry.version, entry.writer);
+        bars.put(entry.bar, version);
+        health.remove(entry.bar); //older than the state
+        resolve.remove(entry.bar);
+        return () -> {
+            HealthBar hb = HealthBar.getRegistry().getHealthBar(entry.bar); //a deletion of the batch may have removed it
+            try {
+                if (hb == null) hb = new HealthBar(config, entry.bar);
+            } catch (NameAlreadyBoundException | CorruptedConfigException e) {
+                plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + "ERROR: synced health bar '" + entry.bar + "' could not be created: " + e.getMessage());
+                synchronized (this) {
+                    if (bars.get(entry.bar) != version) return; //a newer version was resolved in the meantime
+                    if (old == null) bars.remove(entry.bar);
+                    else bars.put(entry.bar, old);
+                }
+                return;
+            }
+            hb.applyRemoteHealth(entry.health, false);
+        };
+    }
+
+    /**
+     * A method to resolve the deletion of a health bar of another server.
+     * @param entry deletion of the health bar
+     * @return deletion of the health bar (null if there is none)
+     */
+    private Runnable applyDelete(SyncBatch.Entry entry) {
+        Version version = bar(entry.bar);
+        if (!newer(entry.version, entry.writer, version)) return null;
+        version.version = entry.version;
+        version.writer = entry.writer;
+        version.deleted = true;
+        health.remove(entry.bar);
+        resolve.remove(entry.bar);
+        return () -> {
+            HealthBar hb = HealthBar.getRegistry().getHealthBar(entry.bar);
+            if (hb == null) return;
+            try {
+                hb.deleteHealthBar();
+            } catch (CorruptedConfigException e) {
+                plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + e.getMessage());
+            }
+        };
+    }
+
+    /**
+     * A method to resolve the assignment of a player of another server.
+     * @param entry assignment of the player
+     * @return change of the assignment (null if there is none)
+     */
+    private Runnable applyMember(SyncBatch.Entry entry) {
+        Version version = member(entry.uuid);
+        if (!newer(entry.version, entry.writer, version)) return null;
+        version.version = entry.version;
+        version.writer = entry.writer;
+        version.bar = entry.bar.isEmpty() ? null : entry.bar;
+        version.name = entry.name;
+        String bar = version.bar; //the version can change before the assignment is applied
+        return () -> {
+            String current = config.getHBName(entry.uuid);
+            Player player = plugin.getServer().getPlayer(entry.uuid); //online players are changed through their health bar
+            try {
+                if (current != null && !current.equals(bar)) {
+                    if (player != null) HealthBar.getHealthBar(current).removePlayer(player);
+                    else config.removeMember(entry.uuid);
+                }
+                if (bar != null && !bar.equals(current) && config.hasHealthBar(bar)) {
+                    if (player != null) HealthBar.getHealthBar(bar).addPlayer(player);
+                    else config.addMember(bar, entry.uuid, entry.name);
+                }
+            } catch (CorruptedConfigException | ItemNotFoundException | PlayerNotInListException | PlayerAlreadyInListException e) {
+                plugin.getServer().getConsoleSender().sendMessage(ChatColor.RED + "ERROR: synced player '" + entry.name + "' could not be assigned: " + e.getMessage());
+            }
+        };
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.kalle.syncedhealthbar.sync;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A transport that connects all instances of the plugin in the same JVM (e.g. several plugins
+ * created by the benchmarks). The frames are passed directly to the receivers of the other
+ * instances on the thread that sends them.
+ */
+public class LoopbackTransport implements SyncTransport {
+
+    public static final String NAME = "loopback";
+
+    private static List<LoopbackTransport> transports = new CopyOnWriteArrayList<LoopbackTransport>(); //started transports of the JVM
+
+    private volatile Receiver receiver;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        this.receiver = receiver;
+        for (LoopbackTransport i : transports) { //the others send their full state to the new instance
+            i.receiver.connected();
+        }
+        transports.add(this);
+        receiver.connected();
+    }
+
+    @Override
+    public void send(byte[] frame) {
+        for (LoopbackTransport i : transports) {
+            if (i != this) i.receiver.receive(frame);
+        }
+    }
+
+    @Override
+    public void close() {
+        transports.remove(this);
+    }
+
+}
@@ -0,0 +1,211 @@
+package com.kalle.syncedhealthbar.sync;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * A class to represent the changes a server sends to the others in one frame. Health changes are
+ * sent as the change (delta) together with the version they were based on and the resulting
+ * health, so a server that saw the same version can take the result and a server with concurrent
+ * changes can merge the delta. Versions are written as variable length numbers and the version
+ * of a health change only as the difference to its base.
+ * <p>
+ * Frame: format (byte), node of the sender, count of entries, entries (type byte and values).
+ */
+public class SyncBatch {
+
+    private static final byte FORMAT = 1;
+
+    //types of the entries
+    public static final byte HEALTH = 1; //health changed by the sender
+    public static final byte STATE = 2; //health bar exists with the health (full state, resolved conflicts)
+    public static final byte DELETE = 3; //health bar was deleted
+    public static final byte MEMBER = 4; //player was assigned to a health bar or removed (empty name of the health bar)
+
+    /**
+     * A class to represent one change. Only the values of its type are used.
+     */
+    public static class Entry {
+
+        public byte type;
+        public String bar; //name of the health bar
+        public long version; //version of the health bar or of the player after the change
+        public long base; //version of the health bar the change was based on (HEALTH)
+        public String writer; //node that made the change (STATE, DELETE, MEMBER)
+        public double delta; //change of the health (HEALTH)
+        public double health; //health after the change (HEALTH, STATE)
+        public boolean died; //true if the players died by the change (HEALTH)
+        public UUID uuid; //UUID of the player (MEMBER)
+        public String name; //name of the player (MEMBER)
+
+        public Entry(byte type, String bar) {
+            this.type = type;
+            this.bar = bar;
+        }
+
+    }
+
+    private String node; //node that sent the batch
+    private ArrayList<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * Class constructor.
+     * @param node node that sends the batch
+     */
+    public SyncBatch(String node) {
+        this.node = node;
+    }
+
+    /**
+     * A method to get the node that sent the batch.
+     * @return id of the node
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * A method to get the changes of the batch in the order they were made.
+     * @return entries of the batch
+     */
+    public ArrayList<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * A method to add a change to the batch.
+     * @param entry change that gets added
+     */
+    public void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    /**
+     * A method to check if the batch contains no changes.
+     * @return true if the batch is empty
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * A method to encode the batch to a frame.
+     * @return encoded batch
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entries.size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(FORMAT);
+            out.writeUTF(node);
+            writeVarLong(out, entries.size());
+            for (Entry i : entries) {
+                out.writeByte(i.type);
+                out.writeUTF(i.bar);
+                writeVarLong(out, i.version);
+                switch (i.type) {
+                    case HEALTH:
+                        writeVarLong(out, i.version - i.base);
+                        out.writeDouble(i.delta);
+                        out.writeDouble(i.health);
+                        out.writeBoolean(i.died);
+                        break;
+                    case STATE:
+                        out.writeUTF(i.writer);
+                        out.writeDouble(i.health);
+                        break;
+                    case DELETE:
+                        out.writeUTF(i.writer);
+                        break;
+                    case MEMBER:
+                        out.writeUTF(i.writer);
+                        out.writeLong(i.uuid.getMostSignificantBits());
+                        out.writeLong(i.uuid.getLeastSignificantBits());
+                        out.writeUTF(i.name);
+                        break;
+                }
+            }
+        } catch (IOException e) { //can not happen on a byte array
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A method to decode a frame.
+     * @param frame encoded batch
+     * @return decoded batch
+     * @throws IOException the frame is corrupted or has an unknown format and exception is thrown
+     */
+    public static SyncBatch decode(byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        if (in.readByte() != FORMAT) throw new IOException("unknown sync format");
+        SyncBatch batch = new SyncBatch(in.readUTF());
+        long count = readVarLong(in);
+        for (long i = 0 ; i < count ; i++) {
+            Entry entry = new Entry(in.readByte(), in.readUTF());
+            entry.version = readVarLong(in);
+            switch (entry.type) {
+                case HEALTH:
+                    entry.base = entry.version - readVarLong(in);
+                    entry.writer = batch.node;
+                    entry.delta = in.readDouble();
+                    entry.health = in.readDouble();
+                    entry.died = in.readBoolean();
+                    break;
+                case STATE:
+                    entry.writer = in.readUTF();
+                    entry.health = in.readDouble();
+                    break;
+                case DELETE:
+                    entry.writer = in.readUTF();
+                    break;
+                case MEMBER:
+                    entry.writer = in.readUTF();
+                    entry.uuid = new UUID(in.readLong(), in.readLong());
+                    entry.name = in.readUTF();
+                    break;
+                default:
+                    throw new IOException("unknown sync entry " + entry.type);
+            }
+            batch.add(entry);
+        }
+        return batch;
+    }
+
+    /**
+     * A method to write a positive number with 7 bits per byte (small numbers take one byte).
+     * @param out stream the number is written to
+     * @param value number that gets written
+     * @throws IOException number could not be written and exception is thrown
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * A method to read a number written by writeVarLong.
+     * @param in stream the number is read from
+     * @return read number
+     * @throws IOException number could not be read and exception is thrown
+     */
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0 ; shift < 64 ; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("corrupted number");
+    }
+
+}
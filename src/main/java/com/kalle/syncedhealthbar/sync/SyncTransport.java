@@ -0,0 +1,55 @@
+package com.kalle.syncedhealthbar.sync;
+
+import java.io.IOException;
+
+/**
+ * An interface for the connections to the other servers of the network. A transport only moves
+ * encoded batches, it does not know what they contain. Frames that can not be delivered (peer is
+ * offline) may be dropped, a peer gets the full state again when it is (re)connected.
+ */
+public interface SyncTransport {
+
+    /**
+     * An interface for the receiver of the frames. Its methods are called on the threads of the
+     * transport.
+     */
+    interface Receiver {
+
+        /**
+         * A method to handle a frame sent by another server.
+         * @param frame encoded batch
+         */
+        void receive(byte[] frame);
+
+        /**
+         * A method called when a connection to another server was (re)established.
+         */
+        void connected();
+
+    }
+
+    /**
+     * A method to get the name of the transport as it is used in the settings.
+     * @return name of the transport
+     */
+    String getName();
+
+    /**
+     * A method to open the connections to the other servers.
+     * @param receiver receiver of the frames of the other servers
+     * @throws IOException the transport could not be started and exception is thrown
+     */
+    void start(Receiver receiver) throws IOException;
+
+    /**
+     * A method to send a frame to all other servers (must not block).
+     * @param frame encoded batch
+     */
+    void send(byte[] frame);
+
+    /**
+     * A method to close all connections.
+     */
+    void close();
+
+}
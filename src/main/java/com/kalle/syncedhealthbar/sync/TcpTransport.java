@@ -0,0 +1,363 @@
+package com.kalle.syncedhealthbar.sync;
+
+import com.kalle.syncedhealthbar.scheduler.IoExecutor;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * A transport over TCP sockets. Every server listens on its port for the frames of the others and
+ * opens one connection to every configured peer to send its own frames, so every frame is
+ * received exactly once per peer. Every frame is sent as its length (int), its bytes and its MAC.
+ * Lost connections are reopened every few seconds; frames that could not be sent in the meantime
+ * are dropped since the peer gets the full state when the connection is back.
+ * <p>
+ * Both servers of a connection prove that they know the shared secret before any frame is sent,
+ * so the secret itself is never sent: each one sends a random nonce and answers with the
+ * HMAC-SHA256 of its role and both nonces keyed by the secret. The accepting server answers first
+ * and the connecting server only answers a right proof, so neither side can be used to compute the
+ * answer of the other one. Every frame carries the HMAC of its sequence number and its bytes keyed
+ * by a session key derived from both nonces, so frames can not be changed, replayed or reordered.
+ * Connections with a wrong proof or a wrong MAC are closed.
+ */
+public class TcpTransport implements SyncTransport {
+
+    public static final String NAME = "tcp";
+
+    private static final int MAX_FRAME = 16 * 1024 * 1024; //larger frames are treated as a corrupted stream
+    private static final int QUEUE_SIZE = 1024; //frames per peer that are queued while it is slow
+    private static final long RECONNECT_DELAY = 5000; //ms between two connection attempts
+    private static final int CONNECT_TIMEOUT = 3000; //ms
+    private static final int NONCE_SIZE = 32; //bytes of the random nonce of each side of a connection
+    private static final String MAC = "HmacSHA256";
+    private static final byte ACCEPTOR = 1; //role of the accepting server in its proof
+    private static final byte CONNECTOR = 2; //role of the connecting server in its proof
+    private static final byte SESSION = 3; //role of the session key
+
+    private String bindAddress; //address this server listens on
+    private int port; //port this server listens on
+    private byte[] secret; //shared secret of the servers
+    private List<InetSocketAddress> peers; //addresses of the other servers
+    private Logger logger;
+
+    private volatile boolean closed = false;
+    private Receiver receiver;
+    private ServerSocket server;
+    private List<Peer> connections = new ArrayList<Peer>(); //outgoing connections
+    private List<Socket> incoming = new CopyOnWriteArrayList<Socket>(); //accepted connections
+
+    /**
+     * A class to represent the outgoing connection to a peer with its own sender thread.
+     */
+    private class Peer implements Runnable {
+
+        private InetSocketAddress address;
+        private BlockingQueue<byte[]> queue = new LinkedBlockingQueue<byte[]>(QUEUE_SIZE); //frames that are not sent yet
+        private volatile Socket socket;
+        private Thread thread; //sender thread (virtual thread on Java 21)
+        private boolean failed = false; //true if the last attempt failed (reported once)
+
+        private Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                try {
+                    socket = new Socket();
+                    socket.setTcpNoDelay(true);
+                    socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()), CONNECT_TIMEOUT); //resolved again on every attempt
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    Mac mac = connect(socket, out);
+                    logger.info("Connected to the sync peer " + address);
+                    failed = false;
+                    queue.clear(); //replaced by the full state
+                    receiver.connected();
+                    for (long sequence = 0 ; !closed ; sequence++) {
+                        byte[] frame = queue.take();
+                        out.writeInt(frame.length);
+                        out.write(frame);
+                        out.write(frameMac(mac, sequence, frame));
+                        if (queue.isEmpty()) out.flush();
+                    }
+                } catch (IOException e) {
+                    if (!failed && !closed) logger.warning("Could not send to the sync peer " + address + ": " + e.getMessage());
+                    failed = true;
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    closeQuietly(socket);
+                }
+                try {
+                    Thread.sleep(RECONNECT_DELAY);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Class constructor.
+     * @param bindAddress address this server listens on (e.g. 127.0.0.1 or 0.0.0.0 for all interfaces)
+     * @param port port this server listens on
+     * @param secret shared secret of the servers
+     * @param peers addresses of the other servers
+     * @param logger logger of the plugin
+     */
+    public TcpTransport(String bindAddress, int port, String secret, List<InetSocketAddress> peers, Logger logger) {
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.peers = peers;
+        this.logger = logger;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void start(Receiver receiver) throws IOException {
+        this.receiver = receiver;
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(bindAddress, port));
+        IoExecutor.newThread("SyncedHealthBar-sync-accept", this::accept).start(); //virtual thread on Java 21
+        for (InetSocketAddress i : peers) {
+            Peer peer = new Peer(i);
+            connections.add(peer);
+            peer.thread = IoExecutor.newThread("SyncedHealthBar-sync-" + i, peer); //virtual thread on Java 21
+            peer.thread.start();
+        }
+    }
+
+    /**
+     * A method executed by the acceptor thread to accept the connections of the other servers.
+     */
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                incoming.add(socket);
+                IoExecutor.newThread("SyncedHealthBar-sync-" + socket.getRemoteSocketAddress(), () -> read(socket)).start();
+            } catch (IOException e) {
+                if (!closed) logger.warning("Could not accept a sync connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A method executed by a reader thread to receive the frames of one connection.
+     * @param socket accepted connection
+     */
+    private void read(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Mac mac = accept(socket, in);
+            if (mac == null) {
+                logger.warning("Rejected the sync connection of " + socket.getRemoteSocketAddress() + ", its secret is wrong!");
+                return;
+            }
+            byte[] expected = new byte[mac.getMacLength()];
+            for (long sequence = 0 ; !closed ; sequence++) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_FRAME) throw new IOException("invalid frame length " + length);
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                in.readFully(expected);
+                if (!MessageDigest.isEqual(expected, frameMac(mac, sequence, frame))) {
+                    logger.warning("Closed the sync connection of " + socket.getRemoteSocketAddress() + ", a frame has a wrong MAC!");
+                    return;
+                }
+                receiver.receive(frame);
+            }
+        } catch (IOException e) { //connection closed by the peer
+        } finally {
+            incoming.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * A method to authenticate a connection of another server (reader thread).
+     * @param socket accepted connection
+     * @param in stream of the connection
+     * @return MAC of the frames keyed by the session key (null if the proof of the other server is wrong)
+     * @throws IOException connection was closed or did not answer in time
+     */
+    private Mac accept(Socket socket, DataInputStream in) throws IOException {
+        socket.setSoTimeout(CONNECT_TIMEOUT); //a connection that does not answer is closed
+        byte[] connector = new byte[NONCE_SIZE];
+        in.readFully(connector);
+        byte[] acceptor = nonce();
+        OutputStream out = socket.getOutputStream();
+        out.write(acceptor);
+        out.write(proof(ACCEPTOR, connector, acceptor));
+        out.flush();
+        byte[] expected = proof(CONNECTOR, connector, acceptor);
+        byte[] answer = new byte[expected.length];
+        in.readFully(answer);
+        if (!MessageDigest.isEqual(answer, expected)) return null;
+        out.write(1); //connection is accepted
+        out.flush();
+        socket.setSoTimeout(0);
+        return session(connector, acceptor);
+    }
+
+    /**
+     * A method to authenticate the connection to another server (sender thread).
+     * @param socket outgoing connection
+     * @param out stream of the connection
+     * @return MAC of the frames keyed by the session key
+     * @throws IOException connection was closed, did not answer in time or one of the proofs is wrong
+     */
+    private Mac connect(Socket socket, DataOutputStream out) throws IOException {
+        socket.setSoTimeout(CONNECT_TIMEOUT);
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] connector = nonce();
+        out.write(connector);
+        out.flush();
+        byte[] acceptor = new byte[NONCE_SIZE];
+        in.readFully(acceptor);
+        byte[] expected = proof(ACCEPTOR, connector, acceptor);
+        byte[] proof = new byte[expected.length];
+        in.readFully(proof);
+        if (!MessageDigest.isEqual(proof, expected)) throw new IOException("the peer does not know the secret");
+        out.write(proof(CONNECTOR, connector, acceptor));
+        out.flush();
+        if (in.read() != 1) throw new IOException("the peer rejected the secret");
+        socket.setSoTimeout(0);
+        return session(connector, acceptor);
+    }
+
+    /**
+     * A method to create a random nonce for one side of a connection.
+     * @return random nonce
+     */
+    private static byte[] nonce() {
+        byte[] nonce = new byte[NONCE_SIZE];
+        new SecureRandom().nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * A method to compute the HMAC of a role and the nonces of a connection keyed by the secret.
+     * @param role role the HMAC is computed for (ACCEPTOR, CONNECTOR or SESSION)
+     * @param connector nonce of the connecting server
+     * @param acceptor nonce of the accepting server
+     * @return HMAC of the role and the nonces
+     */
+    private byte[] proof(byte role, byte[] connector, byte[] acceptor) {
+        Mac mac = mac(secret);
+        mac.update(role);
+        mac.update(connector);
+        mac.update(acceptor);
+        return mac.doFinal();
+    }
+
+    /**
+     * A method to create the MAC of the frames of a connection.
+     * @param connector nonce of the connecting server
+     * @param acceptor nonce of the accepting server
+     * @return MAC keyed by the session key of the connection
+     */
+    private Mac session(byte[] connector, byte[] acceptor) {
+        return mac(proof(SESSION, connector, acceptor));
+    }
+
+    /**
+     * A method to compute the MAC of a frame.
+     * @param mac MAC of the connection
+     * @param sequence number of the frame on the connection
+     * @param frame bytes of the frame
+     * @return MAC of the sequence number and the frame
+     */
+    private static byte[] frameMac(Mac mac, long sequence, byte[] frame) {
+        for (int i = 56 ; i >= 0 ; i -= 8) {
+            mac.update((byte) (sequence >>> i));
+        }
+        return mac.doFinal(frame); //resets the MAC for the next frame
+    }
+
+    /**
+     * A method to create an HMAC-SHA256.
+     * @param key key of the HMAC
+     * @return initialized HMAC
+     */
+    private static Mac mac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance(MAC);
+            mac.init(new SecretKeySpec(key, MAC));
+            return mac;
+        } catch (GeneralSecurityException e) { //every Java platform supports HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void send(byte[] frame) {
+        for (Peer i : connections) {
+            if (!i.queue.offer(frame)) closeQuietly(i.socket); //peer is too slow, it gets the full state when it is reconnected
+        }
+    }
+
+    @Override
+    public void close() {
+        long deadline = System.currentTimeMillis() + 1000; //give the sender threads a moment to send the last frames
+        for (Peer i : connections) {
+            while (!i.queue.isEmpty() && i.socket != null && i.socket.isConnected() && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        closed = true;
+        closeQuietly(server);
+        for (Peer i : connections) {
+            i.thread.interrupt();
+            closeQuietly(i.socket);
+        }
+        for (Socket i : incoming) {
+            closeQuietly(i);
+        }
+    }
+
+    /**
+     * A method to close a socket and ignore errors.
+     * @param socket socket or null
+     */
+    private static void closeQuietly(Closeable socket) {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException e) { //already closed
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.kalle.syncedhealthbar.scheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A class to create the threads of blocking work. This is the version for Java 21 and later, which
+ * uses virtual threads: a task that blocks on the disk or the network does not hold a platform
+ * thread, so no pool needs to be sized for it.
+ */
+final class IoThreads {
+
+    private IoThreads() {
+    }
+
+    /**
+     * A method to get the kind of the threads for the statistics (not a constant, so it is not
+     * copied into the classes that use it when they are compiled).
+     * @return kind of the threads
+     */
+    static String kind() {
+        return "virtual";
+    }
+
+    /**
+     * A method to create an executor that runs the tasks one after another in the order they were submitted.
+     * @param name name of the thread
+     * @return executor with one virtual thread
+     */
+    static ExecutorService serial(String name) {
+        return Executors.newSingleThreadExecutor(Thread.ofVirtual().name(name).factory());
+    }
+
+    /**
+     * A method to create an executor that runs the tasks at the same time.
+     * @param name prefix of the names of the threads
+     * @param maxThreads not used, every task gets its own virtual thread
+     * @return executor with a virtual thread per task
+     */
+    static ExecutorService pool(String name, int maxThreads) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+    }
+
+    /**
+     * A method to create a thread that is not started yet (e.g. a thread that reads a connection).
+     * @param name name of the thread
+     * @param task task of the thread
+     * @return virtual thread
+     */
+    static Thread newThread(String name, Runnable task) {
+        return Thread.ofVirtual().name(name).unstarted(task);
+    }
+
+}
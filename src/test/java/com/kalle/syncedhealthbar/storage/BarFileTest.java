@@ -0,0 +1,109 @@
+package com.kalle.syncedhealthbar.storage;
+
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the parsers of the export files: every line is validated and invalid health bars and
+ * players are reported with their line instead of being imported.
+ */
+public class BarFileTest {
+
+    private static final UUID ALICE = UUID.fromString("1b9a3c5e-7d2f-4a61-9c8e-0f4b2d6a8e10");
+    private static final UUID BOB = UUID.fromString("6f0e2d4c-8b1a-4e39-a7c5-3d9f1b2e4c76");
+
+    @TempDir
+    File folder;
+
+    /**
+     * A method to write a file and read it with the parser of its format.
+     * @param name name of the file (the extension picks the format)
+     * @param content content of the file
+     * @return records and problems of the file
+     * @throws Exception file could not be written or read
+     */
+    private BarFile.Result read(String name, String content) throws Exception {
+        File file = new File(folder, name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return BarFile.read(file, percent -> { });
+    }
+
+    /**
+     * A method to check that a file has exactly one problem in a line and no records.
+     * @param result records and problems of the file
+     * @param line line of the problem
+     */
+    private static void assertRejected(BarFile.Result result, int line) {
+        assertEquals(1, result.getErrorCount());
+        assertTrue(result.getErrors().get(0).startsWith("Line " + line + ": "));
+        assertTrue(result.getBars().isEmpty());
+    }
+
+    @Test
+    public void csvHealthThatIsNoFiniteNumberIsRejected() throws Exception {
+        assertRejected(read("bars.csv", "bar,health,uuid,name,last_login\nred,NaN,,,\n"), 2);
+        assertRejected(read("bars.csv", "bar,health,uuid,name,last_login\nred,Infinity,,,\n"), 2);
+        assertRejected(read("bars.csv", "bar,health,uuid,name,last_login\nred,-Infinity,,,\n"), 2);
+        assertRejected(read("bars.csv", "red,twenty,,,\n"), 1);
+    }
+
+    @Test
+    public void jsonlHealthThatIsNoFiniteNumberIsRejected() throws Exception {
+        assertRejected(read("bars.jsonl", "{\"name\":\"red\",\"health\":NaN,\"members\":[]}\n"), 1);
+        assertRejected(read("bars.jsonl", "{\"name\":\"red\",\"health\":Infinity,\"members\":[]}\n"), 1);
+        assertRejected(read("bars.jsonl", "{\"name\":\"red\",\"members\":[]}\n"), 1);
+    }
+
+    @Test
+    public void csvLinesAreValidated() throws Exception {
+        BarFile.Result result = read("bars.csv", "bar,health,uuid,name,last_login\n"
+                + "red,15.5," + ALICE + ",Alice,1700000000000\n"
+                + "red,10," + BOB + ",Bob,1700000000000\n" //different health value
+                + "blue,20,no-uuid,Carol,\n"
+                + "green,20," + BOB + ",Bob,13:37 | 24.12.2022\n" //formatted last logins are only read from the former config.yml
+                + "\"unclosed,20,,,\n");
+        assertEquals(4, result.getErrorCount());
+        assertTrue(result.getErrors().get(0).startsWith("Line 3: "));
+        assertTrue(result.getErrors().get(1).startsWith("Line 4: "));
+        assertTrue(result.getErrors().get(2).startsWith("Line 5: "));
+        assertTrue(result.getErrors().get(3).startsWith("Line 6: "));
+        assertEquals(1, result.getMemberCount());
+    }
+
+    @Test
+    public void exportedRecordsAreReadAgain() throws Exception {
+        ArrayList<BarRecord> bars = new ArrayList<BarRecord>();
+        BarRecord red = new BarRecord("red", 15.5);
+        red.addMember(new MemberRecord(ALICE, "Alice, the first", 1700000000000L)); //quoted in the CSV format
+        red.addMember(new MemberRecord(BOB, "Bob", 1700000060000L));
+        bars.add(red);
+        bars.add(new BarRecord("blue", 0));
+        for (String i : new String[] {"bars.csv", "bars.jsonl"}) {
+            File file = new File(folder, i);
+            BarFile.write(file, bars);
+            BarFile.Result result = BarFile.read(file, percent -> { });
+            assertEquals(0, result.getErrorCount());
+            assertEquals(2, result.getBars().size());
+            assertEquals(2, result.getMemberCount());
+            ArrayList<BarRecord> read = new ArrayList<BarRecord>(result.getBars());
+            assertEquals("red", read.get(0).getName());
+            assertEquals(15.5, read.get(0).getHealth());
+            assertEquals("Alice, the first", read.get(0).getMember(ALICE).getName());
+            assertEquals(1700000060000L, read.get(0).getMember(BOB).getLastLogin());
+            assertEquals("blue", read.get(1).getName());
+            assertTrue(read.get(1).getMembers().isEmpty());
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.kalle.syncedhealthbar.storage;
+
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the crash recovery of the journal: entries that were torn or corrupted by a crash are
+ * cut off and the remaining segments are replayed on top of the last snapshot.
+ */
+public class HealthJournalTest {
+
+    private static final int CREATE_ENTRY = 8 + 1 + 2 + 1 + 8; //size of a create entry of a health bar with a one letter name
+    private static final Logger LOGGER = Logger.getLogger("HealthJournalTest");
+
+    @TempDir
+    File folder;
+
+    /**
+     * A method to open a journal that forces every group of entries.
+     * @return opened journal
+     * @throws Exception segment could not be created
+     */
+    private HealthJournal open() throws Exception {
+        HealthJournal journal = new HealthJournal(folder, HealthJournal.FsyncPolicy.ALWAYS, 1000, LOGGER);
+        journal.replay(new ArrayList<BarRecord>()); //a journal is always replayed before it is opened
+        journal.open();
+        return journal;
+    }
+
+    /**
+     * A method to replay the journal on top of records.
+     * @param bars records of the snapshot (get changed)
+     * @return count of replayed entries
+     * @throws Exception a segment could not be read
+     */
+    private int replay(ArrayList<BarRecord> bars) throws Exception {
+        return new HealthJournal(folder, HealthJournal.FsyncPolicy.ALWAYS, 1000, LOGGER).replay(bars);
+    }
+
+    /**
+     * A method to get the record of a health bar by its name.
+     * @param bars records of the health bars
+     * @param name name of the health bar
+     * @return record or null if there is none
+     */
+    private static BarRecord find(ArrayList<BarRecord> bars, String name) {
+        for (BarRecord i : bars) {
+            if (i.getName().equals(name)) return i;
+        }
+        return null;
+    }
+
+    @Test
+    public void tornTailEntryIsCutOff() throws Exception {
+        HealthJournal journal = open();
+        journal.createBar("a", 20);
+        journal.health("a", 15);
+        journal.close();
+        File segment = new File(folder, "journal-0.log");
+        long valid = segment.length();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) { //crash in the middle of an entry
+            file.seek(valid);
+            file.writeInt(19);
+            file.writeInt(0x12345678);
+            file.write(new byte[] {3, 0, 1});
+        }
+
+        ArrayList<BarRecord> bars = new ArrayList<BarRecord>();
+        assertEquals(2, replay(bars));
+        assertEquals(15, find(bars, "a").getHealth());
+        assertEquals(valid, segment.length()); //torn entry was cut off
+
+        journal = open(); //entries after the crash are replayed as well
+        journal.health("a", 10);
+        journal.close();
+        bars = new ArrayList<BarRecord>();
+        assertEquals(3, replay(bars));
+        assertEquals(10, find(bars, "a").getHealth());
+    }
+
+    @Test
+    public void badChecksumInTheMiddleStopsTheSegment() throws Exception {
+        HealthJournal journal = open();
+        journal.createBar("a", 20);
+        journal.createBar("b", 20);
+        journal.createBar("c", 20);
+        journal.close();
+        File segment = new File(folder, "journal-0.log");
+        byte[] data = Files.readAllBytes(segment.toPath());
+        assertEquals(3 * CREATE_ENTRY, data.length);
+        data[CREATE_ENTRY + 8 + 3] ^= 0x7F; //name of the second entry, the checksum does not match anymore
+        Files.write(segment.toPath(), data);
+
+        ArrayList<BarRecord> bars = new ArrayList<BarRecord>();
+        assertEquals(1, replay(bars));
+        assertNotNull(find(bars, "a"));
+        assertEquals(1, bars.size()); //entries behind the corrupted one are not trusted
+        assertEquals(CREATE_ENTRY, segment.length());
+    }
+
+    @Test
+    public void snapshotAndRemainingSegmentsAreReplayedAfterCompaction() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        HealthJournal journal = open();
+        journal.createBar("a", 20);
+        journal.addMember("a", new MemberRecord(uuid, "Steve", 1000));
+        journal.health("a", 15);
+        HealthJournal.Segment closed = journal.rotate(); //snapshot is taken
+        ArrayList<BarRecord> snapshot = new ArrayList<BarRecord>();
+        BarRecord a = new BarRecord("a", 15);
+        a.addMember(new MemberRecord(uuid, "Steve", 1000));
+        snapshot.add(a);
+        journal.health("a", 12);
+        journal.createBar("b", 18);
+        journal.removeMember(uuid);
+        journal.compact(closed); //snapshot is written
+        journal.close();
+        assertFalse(new File(folder, "journal-0.log").exists());
+        assertTrue(new File(folder, "journal-1.log").exists());
+
+        assertEquals(3, replay(snapshot));
+        assertEquals(12, find(snapshot, "a").getHealth());
+        assertNull(find(snapshot, "a").getMember(uuid));
+        assertEquals(18, find(snapshot, "b").getHealth());
+    }
+
+    @Test
+    public void rotatedSegmentIsKeptUntilCompaction() throws Exception {
+        HealthJournal journal = open();
+        journal.createBar("a", 20);
+        journal.rotate();
+        journal.health("a", 5);
+        journal.close();
+
+        ArrayList<BarRecord> bars = new ArrayList<BarRecord>(); //crash before the snapshot was written
+        assertEquals(2, replay(bars));
+        assertEquals(5, find(bars, "a").getHealth());
+    }
+
+}
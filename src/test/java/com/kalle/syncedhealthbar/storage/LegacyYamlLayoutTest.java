@@ -0,0 +1,179 @@
+package com.kalle.syncedhealthbar.storage;
+
+import com.kalle.syncedhealthbar.Exceptions.CorruptedConfigException;
+import com.kalle.syncedhealthbar.model.BarRecord;
+import com.kalle.syncedhealthbar.model.MemberRecord;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the migration of the config.yml of the first versions, which stored the health bars by
+ * their position and the last logins as "HH:mm | dd.MM.yyyy", into records and the keyed layout.
+ */
+public class LegacyYamlLayoutTest {
+
+    private static final Logger LOGGER = Logger.getLogger("LegacyYamlLayoutTest");
+    private static final UUID ALICE = UUID.fromString("1b9a3c5e-7d2f-4a61-9c8e-0f4b2d6a8e10");
+    private static final UUID BOB = UUID.fromString("6f0e2d4c-8b1a-4e39-a7c5-3d9f1b2e4c76");
+    private static final UUID CAROL = UUID.fromString("c4d2e0f8-1a3b-4c5d-9e7f-8a6b4c2d0e1f");
+
+    //config.yml as the first versions wrote it
+    private static final String FORMER = ""
+            + "Settings:\n"
+            + "  Save Interval: 100\n"
+            + "Health Bar Count: 2\n"
+            + "Health Bar 0:\n"
+            + "  Name: red\n"
+            + "  Health: 15.5\n"
+            + "  Player Count: 2\n"
+            + "  Player 0:\n"
+            + "    UUID: " + ALICE + "\n"
+            + "    Name: Alice\n"
+            + "    Last Login: 13:37 | 24.12.2022\n"
+            + "  Player 1:\n"
+            + "    UUID: " + BOB + "\n"
+            + "    Name: Bob\n"
+            + "    Last Login: 08:05 | 01.01.2023\n"
+            + "Health Bar 1:\n"
+            + "  Name: blue\n"
+            + "  Health: 20.0\n"
+            + "  Player Count: 1\n"
+            + "  Player 0:\n"
+            + "    UUID: " + CAROL + "\n"
+            + "    Name: Carol\n"
+            + "    Last Login: 23:59 | 31.10.2022\n";
+
+    @TempDir
+    File folder;
+
+    /**
+     * A method to parse the content of a config.yml.
+     * @param content content of the config.yml
+     * @return loaded config.yml
+     * @throws Exception content is no valid YAML
+     */
+    private static YamlConfiguration parse(String content) throws Exception {
+        YamlConfiguration file = new YamlConfiguration();
+        file.loadFromString(content);
+        return file;
+    }
+
+    /**
+     * A method to create a plugin that only provides what the storage needs.
+     * @param config loaded config.yml of the plugin
+     * @return plugin with the config.yml and the data folder of the test
+     */
+    private Plugin plugin(FileConfiguration config) {
+        return (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[] {Plugin.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getConfig": return config;
+                case "getDataFolder": return folder;
+                case "getLogger": return LOGGER;
+                default: throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * A method to convert a time in the local time of the server into ms since the epoch.
+     * @param time local time
+     * @return ms since the epoch
+     */
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * A method to check that the records are the ones of the former config.yml.
+     * @param bars records of the health bars
+     */
+    private static void assertRecords(ArrayList<BarRecord> bars) {
+        assertEquals(2, bars.size());
+        BarRecord red = bars.get(0);
+        assertEquals("red", red.getName());
+        assertEquals(15.5, red.getHealth());
+        assertEquals(2, red.getMembers().size());
+        MemberRecord alice = red.getMember(ALICE);
+        assertNotNull(alice);
+        assertEquals("Alice", alice.getName());
+        assertEquals(millis(LocalDateTime.of(2022, 12, 24, 13, 37)), alice.getLastLogin());
+        assertEquals(millis(LocalDateTime.of(2023, 1, 1, 8, 5)), red.getMember(BOB).getLastLogin());
+        BarRecord blue = bars.get(1);
+        assertEquals("blue", blue.getName());
+        assertEquals(20.0, blue.getHealth());
+        assertEquals(1, blue.getMembers().size());
+        assertEquals(millis(LocalDateTime.of(2022, 10, 31, 23, 59)), blue.getMember(CAROL).getLastLogin());
+    }
+
+    @Test
+    public void formerLayoutIsMigratedIntoRecords() throws Exception {
+        YamlConfiguration file = parse(FORMER);
+        assertTrue(LegacyYamlLayout.isPresent(file));
+        ArrayList<BarRecord> bars = new ArrayList<BarRecord>();
+        assertEquals(2, LegacyYamlLayout.migrate(file, bars::add));
+        assertRecords(bars);
+        assertFalse(LegacyYamlLayout.isPresent(file)); //the entries of the former layout are removed
+        assertNull(file.get("Health Bar 0"));
+        assertNull(file.get("Health Bar 1"));
+        assertEquals(100, file.getInt("Settings.Save Interval"));
+    }
+
+    @Test
+    public void migratedHealthBarsAreWrittenInTheKeyedLayout() throws Exception {
+        YamlStorage storage = new YamlStorage(plugin(parse(FORMER)));
+        ArrayList<BarRecord> bars = storage.load();
+        assertRecords(bars);
+        assertTrue(storage.needsMigration());
+        storage.write(new StorageSnapshot(bars));
+
+        YamlConfiguration written = YamlConfiguration.loadConfiguration(new File(folder, "config.yml"));
+        assertFalse(LegacyYamlLayout.isPresent(written));
+        assertNull(written.get("Health Bar 0"));
+        assertEquals(100, written.getInt("Settings.Save Interval")); //settings are kept
+        ConfigurationSection section = written.getConfigurationSection(YamlStorage.BARS_PATH);
+        assertNotNull(section);
+        assertEquals(2, section.getKeys(false).size());
+        for (String i : section.getKeys(false)) { //every health bar has its own section keyed by its id
+            String path = YamlStorage.BARS_PATH + "." + i;
+            if (written.getString(path + ".Name").equals("red")) {
+                assertEquals(15.5, written.getDouble(path + ".Health"));
+                assertEquals(2, written.getConfigurationSection(path + YamlStorage.PLAYERS_PATH).getKeys(false).size());
+                assertEquals("Alice", written.getString(path + YamlStorage.PLAYERS_PATH + "." + ALICE + ".Name"));
+                assertEquals(millis(LocalDateTime.of(2022, 12, 24, 13, 37)), written.getLong(path + YamlStorage.PLAYERS_PATH + "." + ALICE + ".Last Login")); //stored as ms
+            } else {
+                assertEquals("blue", written.getString(path + ".Name"));
+                assertEquals("Carol", written.getString(path + YamlStorage.PLAYERS_PATH + "." + CAROL + ".Name"));
+            }
+        }
+
+        YamlStorage reloaded = new YamlStorage(plugin(written));
+        assertRecords(reloaded.load());
+        assertFalse(reloaded.needsMigration()); //nothing left to migrate
+    }
+
+    @Test
+    public void corruptedLastLoginIsRejected() throws Exception {
+        YamlConfiguration file = parse(FORMER.replace("08:05 | 01.01.2023", "yesterday"));
+        assertThrows(CorruptedConfigException.class, () -> LegacyYamlLayout.migrate(file, bar -> { }));
+    }
+
+}